@@ -0,0 +1,108 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.repo.search.impl.lucene.analysis;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.alfresco.repo.search.MLAnalysisMode;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.core.WhitespaceTokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Duplicates the tokens of a multilingual text value per locale prefix ({@link MLTokenDuplicator}), as done when
+ * indexing the mltext properties.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MLTokenDuplicatorBenchmark
+{
+    private static final Locale LOCALE = Locale.CANADA_FRENCH;
+
+    @Param({"EXACT_LANGUAGE", "EXACT_LANGUAGE_AND_ALL", "ALL_LANGUAGES_AND_ALL"})
+    public String mode;
+
+    @Param({"100", "10000"})
+    public int tokens;
+
+    private MLAnalysisMode analysisMode;
+    private String text;
+
+    @Setup
+    public void setUp()
+    {
+        analysisMode = MLAnalysisMode.valueOf(mode);
+
+        SplittableRandom random = new SplittableRandom(42);
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < tokens; i++)
+        {
+            builder.append("token").append(random.nextInt(1000)).append(' ');
+        }
+        text = builder.toString();
+    }
+
+    @Benchmark
+    public long duplicate() throws IOException
+    {
+        StringReader reader = new StringReader(text);
+        WhitespaceTokenizer tokenizer = new WhitespaceTokenizer();
+        tokenizer.setReader(reader);
+
+        long length = 0;
+        try (TokenStream stream = new MLTokenDuplicator(tokenizer, LOCALE, reader, analysisMode))
+        {
+            CharTermAttribute term = stream.getAttribute(CharTermAttribute.class);
+            stream.reset();
+            while (stream.incrementToken())
+            {
+                length += term.length();
+            }
+            stream.end();
+        }
+        return length;
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.solr.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.alfresco.solr.client.Acl;
+import org.alfresco.solr.query.SolrAuthoritySetQuery;
+import org.apache.solr.search.SolrIndexSearcher;
+import org.apache.solr.search.WrappedQuery;
+import org.apache.solr.util.RefCounted;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Runs the ACL filter of a user ({@link SolrAuthoritySetQuery}) against an embedded core indexed by the ACL and
+ * metadata trackers, bypassing the filter cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class AuthoritySetQueryBenchmark
+{
+    private static final int AUTHORITY_POOL = 1000;
+    private static final int READERS_PER_ACL = 5;
+
+    @Param({"1000", "20000"})
+    public int acls;
+
+    @Param({"20000"})
+    public int nodes;
+
+    @Param({"1", "50"})
+    public int userAuthorities;
+
+    private String authorities;
+
+    @Setup(Level.Trial)
+    public void startCore() throws Exception
+    {
+        EmbeddedAlfrescoCore.start();
+        List<Acl> indexedAcls = EmbeddedAlfrescoCore.indexAcls(acls, READERS_PER_ACL, AUTHORITY_POOL);
+        EmbeddedAlfrescoCore.indexNodes(nodes, indexedAcls);
+
+        authorities = EmbeddedAlfrescoCore.authorities(userAuthorities, AUTHORITY_POOL).stream()
+                .collect(Collectors.joining("|", "|", ""));
+    }
+
+    @TearDown(Level.Trial)
+    public void stopCore() throws Exception
+    {
+        EmbeddedAlfrescoCore.stop();
+    }
+
+    @Benchmark
+    public int authorityFilter() throws Exception
+    {
+        WrappedQuery query = new WrappedQuery(new SolrAuthoritySetQuery(authorities));
+        query.setCache(false);
+
+        RefCounted<SolrIndexSearcher> searcher = EmbeddedAlfrescoCore.core().getSearcher();
+        try
+        {
+            return searcher.get().getDocSet(query).size();
+        }
+        finally
+        {
+            searcher.decref();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.solr.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Properties;
+
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of the benchmarks jar.
+ *
+ * Accepts the standard JMH command line options (e.g. a benchmark regexp, "-p scale=100000", "-prof gc") and, unless
+ * a result file is explicitly requested, stores the raw JMH results as JSON in target/benchmark-results together with
+ * a sorted tab separated summary (see {@link BenchmarkResults}) which can be kept and diffed between releases.
+ *
+ * "compare &lt;baseline&gt; &lt;current&gt; [threshold %]" compares two summaries instead of running the benchmarks.
+ */
+public final class BenchmarkMain
+{
+    static final Path RESULTS_DIRECTORY = Paths.get("target", "benchmark-results");
+
+    private BenchmarkMain()
+    {
+        // Entry point only
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        if (args.length > 0 && "compare".equals(args[0]))
+        {
+            System.exit(BenchmarkResults.compare(Arrays.copyOfRange(args, 1, args.length)));
+        }
+
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        if (commandLine.shouldHelp()
+                || commandLine.shouldList()
+                || commandLine.shouldListWithParams()
+                || commandLine.shouldListProfilers()
+                || commandLine.shouldListResultFormats())
+        {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+
+        Files.createDirectories(RESULTS_DIRECTORY);
+        OptionsBuilder builder = new OptionsBuilder();
+        builder.parent(commandLine);
+        if (!commandLine.getResult().hasValue() && !commandLine.getResultFormat().hasValue())
+        {
+            builder.resultFormat(ResultFormatType.JSON)
+                    .result(RESULTS_DIRECTORY.resolve("jmh-result.json").toString());
+        }
+        Options options = builder.build();
+
+        Collection<RunResult> results = new Runner(options).run();
+
+        Path summary = RESULTS_DIRECTORY.resolve("summary.tsv");
+        BenchmarkResults.write(results, version(), summary);
+        System.out.println("Benchmark summary written to " + summary.toAbsolutePath());
+    }
+
+    /**
+     * @return the version of the benchmarked Search Services build.
+     */
+    static String version() throws IOException
+    {
+        Properties properties = new Properties();
+        try (InputStream in = BenchmarkMain.class.getResourceAsStream("/benchmark.properties"))
+        {
+            if (in != null)
+            {
+                properties.load(in);
+            }
+        }
+        return properties.getProperty("version", "unknown");
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.solr.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+
+/**
+ * Stable, machine readable summary of a benchmark run.
+ *
+ * The summary is a tab separated file with one row per benchmark, parameters combination and mode, sorted by key,
+ * so two summaries produced by different releases can be compared line by line (or with {@link #compare(String...)}).
+ * The rows of the secondary results (e.g. the "-prof gc" allocation rates) are reported as "benchmark:label".
+ *
+ * <pre>
+ * # alfresco-search-benchmarks 2.1.0
+ * # java 11.0.12 OpenJDK 64-Bit Server VM
+ * benchmark	params	mode	count	score	error	unit
+ * org.alfresco.solr.query.HybridBitSetBenchmark.lookup	aclCount=10000,idRange=1000000	avgt	5	12.345	0.678	us/op
+ * </pre>
+ */
+public final class BenchmarkResults
+{
+    static final String HEADER = "benchmark\tparams\tmode\tcount\tscore\terror\tunit";
+
+    /** The only secondary result compared between runs: the allocated bytes per operation. */
+    private static final String ALLOCATION_LABEL = "gc.alloc.rate.norm";
+
+    private static final double DEFAULT_THRESHOLD_PERCENT = 10;
+
+    private BenchmarkResults()
+    {
+        // Static methods only
+    }
+
+    /**
+     * Writes the summary of the given results.
+     *
+     * @param results the JMH run results.
+     * @param version the version of the benchmarked build.
+     * @param target the summary file.
+     * @throws IOException in case of failure.
+     */
+    public static void write(Collection<RunResult> results, String version, Path target) throws IOException
+    {
+        Map<String, String> rows = new TreeMap<>();
+        for (RunResult result : results)
+        {
+            BenchmarkParams params = result.getParams();
+            String parameters = params.getParamsKeys().stream()
+                    .sorted()
+                    .map(key -> key + "=" + params.getParam(key))
+                    .collect(Collectors.joining(","));
+            String mode = params.getMode().shortLabel();
+
+            Result primary = result.getPrimaryResult();
+            String key = params.getBenchmark() + "\t" + parameters + "\t" + mode;
+            rows.put(key, row(key, primary));
+
+            for (Map.Entry<String, Result> secondary : result.getSecondaryResults().entrySet())
+            {
+                String secondaryKey = params.getBenchmark() + ":" + secondary.getKey() + "\t" + parameters + "\t" + mode;
+                rows.put(secondaryKey, row(secondaryKey, secondary.getValue()));
+            }
+        }
+
+        try (BufferedWriter writer = Files.newBufferedWriter(target, StandardCharsets.UTF_8))
+        {
+            writer.write("# alfresco-search-benchmarks " + version);
+            writer.newLine();
+            writer.write("# java " + System.getProperty("java.version") + " " + System.getProperty("java.vm.name"));
+            writer.newLine();
+            writer.write(HEADER);
+            writer.newLine();
+            for (String row : rows.values())
+            {
+                writer.write(row);
+                writer.newLine();
+            }
+        }
+    }
+
+    private static String row(String key, Result result)
+    {
+        return String.format(Locale.ROOT, "%s\t%d\t%.3f\t%.3f\t%s",
+                key, result.getSampleCount(), result.getScore(), result.getScoreError(), result.getScoreUnit());
+    }
+
+    /**
+     * Compares two summaries and prints the relative change of each benchmark which is in both.
+     *
+     * Throughput scores are better when higher, all the other modes (and the allocation rates) when lower: a change
+     * in the wrong direction greater than the threshold is reported as a regression.
+     *
+     * @param args the baseline summary, the current summary and optionally the threshold percentage (10 by default).
+     * @return the number of regressions (i.e. the exit status).
+     * @throws IOException in case of failure.
+     */
+    public static int compare(String... args) throws IOException
+    {
+        if (args.length < 2)
+        {
+            System.err.println("Usage: compare <baseline summary> <current summary> [threshold %]");
+            return -1;
+        }
+
+        Map<String, String[]> baseline = read(Paths.get(args[0]));
+        Map<String, String[]> current = read(Paths.get(args[1]));
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : DEFAULT_THRESHOLD_PERCENT;
+
+        int regressions = 0;
+        for (Map.Entry<String, String[]> entry : current.entrySet())
+        {
+            String[] before = baseline.get(entry.getKey());
+            String[] after = entry.getValue();
+            String benchmark = after[0];
+            boolean secondary = benchmark.indexOf(':') > 0;
+            if (before == null || (secondary && !benchmark.endsWith(ALLOCATION_LABEL)))
+            {
+                continue;
+            }
+
+            double oldScore = Double.parseDouble(before[4]);
+            double newScore = Double.parseDouble(after[4]);
+            if (oldScore == 0)
+            {
+                continue;
+            }
+
+            double change = (newScore - oldScore) * 100 / oldScore;
+            boolean higherIsBetter = !secondary && "thrpt".equals(after[2]);
+            boolean regression = higherIsBetter ? change < -threshold : change > threshold;
+            if (regression)
+            {
+                regressions++;
+            }
+
+            System.out.println(String.format(Locale.ROOT, "%-8s %+8.2f%%  %s %s (%s)  %.3f -> %.3f %s",
+                    regression ? "WORSE" : "", change, benchmark, after[1], after[2], oldScore, newScore, after[6]));
+        }
+
+        System.out.println(regressions + " regression(s) above " + threshold + "%");
+        return regressions;
+    }
+
+    private static Map<String, String[]> read(Path summary) throws IOException
+    {
+        Map<String, String[]> rows = new LinkedHashMap<>();
+        for (String line : Files.readAllLines(summary, StandardCharsets.UTF_8))
+        {
+            if (line.startsWith("#") || line.equals(HEADER) || line.isEmpty())
+            {
+                continue;
+            }
+
+            String[] columns = line.split("\t", -1);
+            rows.put(columns[0] + "\t" + columns[1] + "\t" + columns[2], columns);
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.solr.benchmark;
+
+import static org.alfresco.solr.AlfrescoSolrUtils.ancestors;
+import static org.alfresco.solr.AlfrescoSolrUtils.getAcl;
+import static org.alfresco.solr.AlfrescoSolrUtils.getAclChangeSet;
+import static org.alfresco.solr.AlfrescoSolrUtils.getAclReaders;
+import static org.alfresco.solr.AlfrescoSolrUtils.getNode;
+import static org.alfresco.solr.AlfrescoSolrUtils.getNodeMetaData;
+import static org.alfresco.solr.AlfrescoSolrUtils.getTransaction;
+import static org.alfresco.solr.AlfrescoSolrUtils.indexAclChangeSet;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import org.alfresco.solr.AbstractAlfrescoSolrIT;
+import org.alfresco.solr.AlfrescoCoreAdminHandler;
+import org.alfresco.solr.InformationServer;
+import org.alfresco.solr.client.Acl;
+import org.alfresco.solr.client.AclChangeSet;
+import org.alfresco.solr.client.AclReaders;
+import org.alfresco.solr.client.Node;
+import org.alfresco.solr.client.NodeMetaData;
+import org.alfresco.solr.client.SOLRAPIQueueClient;
+import org.alfresco.solr.client.Transaction;
+import org.alfresco.solr.tracker.AclTracker;
+import org.alfresco.solr.tracker.MetadataTracker;
+import org.alfresco.solr.tracker.Tracker;
+import org.apache.solr.core.SolrCore;
+
+/**
+ * An embedded Alfresco core (the test harness of the integration tests, with the "rerank" template) whose trackers
+ * are fed through the {@link SOLRAPIQueueClient} queues and run on demand by the benchmarks: the scheduled tracker
+ * jobs are paused as soon as the core is up.
+ *
+ * One core per JVM: the benchmarks using it must run in their own fork.
+ */
+final class EmbeddedAlfrescoCore extends AbstractAlfrescoSolrIT
+{
+    private static final SplittableRandom RANDOM = new SplittableRandom(42);
+
+    private EmbeddedAlfrescoCore()
+    {
+        // Static methods only
+    }
+
+    static void start() throws Exception
+    {
+        clearQueues();
+        initAlfrescoCore("schema.xml");
+        admin().getScheduler().pauseAll();
+    }
+
+    static void stop() throws IOException
+    {
+        tearDown();
+        clearQueues();
+    }
+
+    private static void clearQueues()
+    {
+        SOLRAPIQueueClient.TRANSACTION_QUEUE.clear();
+        SOLRAPIQueueClient.NODE_MAP.clear();
+        SOLRAPIQueueClient.NODE_META_DATA_MAP.clear();
+        SOLRAPIQueueClient.NODE_CONTENT_MAP.clear();
+        SOLRAPIQueueClient.ACL_CHANGE_SET_QUEUE.clear();
+        SOLRAPIQueueClient.ACL_MAP.clear();
+        SOLRAPIQueueClient.ACL_READERS_MAP.clear();
+    }
+
+    static AlfrescoCoreAdminHandler admin()
+    {
+        return (AlfrescoCoreAdminHandler) getMultiCoreHandler();
+    }
+
+    static SolrCore core()
+    {
+        return getCore();
+    }
+
+    static InformationServer informationServer()
+    {
+        return admin().getInformationServers().get(getCore().getName());
+    }
+
+    static void track(Class<? extends Tracker> trackerClass)
+    {
+        Tracker tracker = admin().getTrackerRegistry().getTrackerForCore(getCore().getName(), trackerClass);
+        tracker.track();
+    }
+
+    static void commit() throws IOException
+    {
+        informationServer().commit();
+    }
+
+    /**
+     * Indexes the given number of ACLs (in change sets of at most 100 ACLs), each one readable by a random subset of
+     * "GROUP_0".."GROUP_{authorityPool - 1}".
+     *
+     * @return the indexed ACLs.
+     */
+    static List<Acl> indexAcls(int aclCount, int readersPerAcl, int authorityPool) throws IOException
+    {
+        List<Acl> acls = new ArrayList<>(aclCount);
+        for (int start = 0; start < aclCount; start += 100)
+        {
+            int size = Math.min(100, aclCount - start);
+            AclChangeSet aclChangeSet = getAclChangeSet(size);
+            List<Acl> changeSetAcls = new ArrayList<>(size);
+            List<AclReaders> readers = new ArrayList<>(size);
+            for (int i = 0; i < size; i++)
+            {
+                Acl acl = getAcl(aclChangeSet);
+                changeSetAcls.add(acl);
+                readers.add(getAclReaders(aclChangeSet, acl, authorities(readersPerAcl, authorityPool),
+                        Collections.emptyList(), null));
+            }
+            indexAclChangeSet(aclChangeSet, changeSetAcls, readers);
+            acls.addAll(changeSetAcls);
+        }
+
+        track(AclTracker.class);
+        commit();
+        return acls;
+    }
+
+    /**
+     * @return the given number of distinct authorities picked from "GROUP_0".."GROUP_{authorityPool - 1}".
+     */
+    static List<String> authorities(int count, int authorityPool)
+    {
+        List<String> authorities = new ArrayList<>(count);
+        RANDOM.ints(0, authorityPool).distinct().limit(Math.min(count, authorityPool))
+                .forEach(group -> authorities.add("GROUP_" + group));
+        return authorities;
+    }
+
+    /**
+     * Queues a transaction which updates the given number of nodes, each one with one of the given ACLs.
+     *
+     * @return the queued nodes.
+     */
+    static List<Node> queueTransaction(int nodeCount, List<Acl> acls)
+    {
+        Transaction transaction = getTransaction(0, nodeCount);
+        List<Node> nodes = new ArrayList<>(nodeCount);
+        List<NodeMetaData> metadata = new ArrayList<>(nodeCount);
+        for (int i = 0; i < nodeCount; i++)
+        {
+            Acl acl = acls.get(RANDOM.nextInt(acls.size()));
+            Node node = getNode(transaction, acl, Node.SolrApiNodeStatus.UPDATED);
+            nodes.add(node);
+            metadata.add(getNodeMetaData(node, transaction, acl, "mike", ancestors(), false));
+        }
+        indexTransaction(transaction, nodes, metadata);
+        return nodes;
+    }
+
+    /**
+     * Queues and indexes (through the {@link MetadataTracker}) the given number of nodes, in transactions of
+     * 500 nodes.
+     */
+    static void indexNodes(int nodeCount, List<Acl> acls) throws IOException
+    {
+        for (int start = 0; start < nodeCount; start += 500)
+        {
+            queueTransaction(Math.min(500, nodeCount - start), acls);
+        }
+        track(MetadataTracker.class);
+        commit();
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.solr.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.alfresco.solr.client.Acl;
+import org.alfresco.solr.client.SOLRAPIQueueClient;
+import org.alfresco.solr.tracker.MetadataTracker;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Runs the {@link MetadataTracker} of an embedded core over a backlog of transactions queued in the
+ * {@link SOLRAPIQueueClient}: each measurement is a single tracker run which indexes the whole backlog (fetching
+ * the transactions, the nodes and their metadata, routing, indexing), followed by a commit outside the measurement.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class MetadataTrackerBenchmark
+{
+    @Param({"10", "100"})
+    public int transactions;
+
+    @Param({"10", "100"})
+    public int nodesPerTransaction;
+
+    private List<Acl> acls;
+
+    @Setup(Level.Trial)
+    public void startCore() throws Exception
+    {
+        EmbeddedAlfrescoCore.start();
+        acls = EmbeddedAlfrescoCore.indexAcls(100, 5, 100);
+    }
+
+    @Setup(Level.Iteration)
+    public void queueTransactions()
+    {
+        for (int i = 0; i < transactions; i++)
+        {
+            EmbeddedAlfrescoCore.queueTransaction(nodesPerTransaction, acls);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void commit() throws Exception
+    {
+        EmbeddedAlfrescoCore.commit();
+    }
+
+    @TearDown(Level.Trial)
+    public void stopCore() throws Exception
+    {
+        EmbeddedAlfrescoCore.stop();
+    }
+
+    @Benchmark
+    public void track()
+    {
+        EmbeddedAlfrescoCore.track(MetadataTracker.class);
+    }
+}
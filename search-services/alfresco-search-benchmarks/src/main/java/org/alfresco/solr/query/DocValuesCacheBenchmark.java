@@ -0,0 +1,150 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.solr.query;
+
+import java.io.IOException;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Loads (cold) and reads (hot) the ACLID docValues of a RAMDirectory index through the {@link DocValuesCache}.
+ *
+ * The cold benchmark opens a new reader per invocation, so each call pays the uncompressing of every segment; the
+ * hot benchmark reads all the values of an already cached reader, as the authority filters do per segment.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DocValuesCacheBenchmark
+{
+    private static final String FIELD = "ACLID";
+
+    @Param({"100000", "1000000"})
+    public int docs;
+
+    @Param({"1000", "100000000"})
+    public long aclIdRange;
+
+    private Directory directory;
+    private DirectoryReader hotReader;
+
+    @Setup(Level.Trial)
+    public void buildIndex() throws IOException
+    {
+        directory = new RAMDirectory();
+        SplittableRandom random = new SplittableRandom(42);
+        try (IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(new KeywordAnalyzer())))
+        {
+            for (int i = 0; i < docs; i++)
+            {
+                Document document = new Document();
+                document.add(new NumericDocValuesField(FIELD, random.nextLong(aclIdRange)));
+                writer.addDocument(document);
+                if ((i + 1) % (docs / 4) == 0)
+                {
+                    writer.commit();
+                }
+            }
+        }
+
+        hotReader = DirectoryReader.open(directory);
+        load(hotReader, null);
+    }
+
+    @TearDown(Level.Trial)
+    public void closeIndex() throws IOException
+    {
+        hotReader.close();
+        directory.close();
+    }
+
+    @Benchmark
+    public void cold(Blackhole blackhole) throws IOException
+    {
+        try (DirectoryReader reader = DirectoryReader.open(directory))
+        {
+            load(reader, blackhole);
+        }
+    }
+
+    @Benchmark
+    public void hot(Blackhole blackhole) throws IOException
+    {
+        for (LeafReaderContext context : hotReader.leaves())
+        {
+            LeafReader leaf = context.reader();
+            NumericDocValues values = DocValuesCache.getNumericDocValues(FIELD, leaf);
+            long sum = 0;
+            for (int doc = 0, maxDoc = leaf.maxDoc(); doc < maxDoc; doc++)
+            {
+                sum += values.get(doc);
+            }
+            blackhole.consume(sum);
+        }
+    }
+
+    private static void load(DirectoryReader reader, Blackhole blackhole) throws IOException
+    {
+        for (LeafReaderContext context : reader.leaves())
+        {
+            NumericDocValues values = DocValuesCache.getNumericDocValues(FIELD, context.reader());
+            if (blackhole != null)
+            {
+                blackhole.consume(values);
+            }
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.solr.query;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Builds and probes the {@link HybridBitSet} of the readable ACL ids, as the authority set queries do.
+ *
+ * The ACL ids are drawn uniformly from [0, idRange): with an idRange above the bit set size used by the authority
+ * queries (60M) part of the ids falls into the hash set.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HybridBitSetBenchmark
+{
+    private static final int BIT_SET_SIZE = 60_000_000;
+    private static final int PROBES = 100_000;
+
+    @Param({"10000", "1000000"})
+    public int aclCount;
+
+    @Param({"1000000", "100000000"})
+    public long idRange;
+
+    private long[] aclIds;
+    private long[] probes;
+    private HybridBitSet bitSet;
+
+    @Setup
+    public void setUp()
+    {
+        SplittableRandom random = new SplittableRandom(42);
+        aclIds = random.longs(aclCount, 0, idRange).toArray();
+        probes = random.longs(PROBES, 0, idRange).toArray();
+        bitSet = build();
+    }
+
+    private HybridBitSet build()
+    {
+        HybridBitSet set = new HybridBitSet(BIT_SET_SIZE);
+        for (long aclId : aclIds)
+        {
+            set.set(aclId);
+        }
+        return set;
+    }
+
+    @Benchmark
+    public HybridBitSet populate()
+    {
+        return build();
+    }
+
+    @Benchmark
+    public void lookup(Blackhole blackhole)
+    {
+        for (long probe : probes)
+        {
+            blackhole.consume(bitSet.get(probe));
+        }
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.solr.query;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.analysis.core.WhitespaceAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.QueryRescorer;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the {@link ReRankRescorer} with the Lucene {@link QueryRescorer} it replaces, across re-rank window sizes.
+ * Run with "-prof gc" for comparing the allocation per rescoring too.
+ *
+ * Both rescorers update the first pass hits in place, so each invocation starts from a fresh copy of the first pass
+ * (the same cost for both).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReRankRescorerBenchmark
+{
+    private static final int DOCS = 50_000;
+    private static final int SEGMENTS = 8;
+    private static final double RERANK_WEIGHT = 2;
+    private static final int ROWS = 10;
+
+    @Param({"100", "1000", "5000"})
+    public int reRankDocs;
+
+    private Directory directory;
+    private DirectoryReader reader;
+    private IndexSearcher searcher;
+
+    private Query reRankQuery;
+    private QueryRescorer queryRescorer;
+    private ReRankRescorer reRankRescorer;
+
+    private TopDocs firstPass;
+    private int[] firstPassDocs;
+    private float[] firstPassScores;
+
+    @Setup(Level.Trial)
+    public void buildIndex() throws IOException
+    {
+        directory = new RAMDirectory();
+        IndexWriterConfig config = new IndexWriterConfig(new WhitespaceAnalyzer()).setMergePolicy(NoMergePolicy.INSTANCE);
+        try (IndexWriter writer = new IndexWriter(directory, config))
+        {
+            for (int id = 0; id < DOCS; id++)
+            {
+                StringBuilder text = new StringBuilder("a");
+                for (int j = 0; j < id % 4; j++)
+                {
+                    text.append(" a");
+                }
+                if (id % 3 == 0)
+                {
+                    text.append(" b");
+                }
+                for (int j = 0; j < id % 5; j++)
+                {
+                    text.append(" c");
+                }
+
+                Document document = new Document();
+                document.add(new TextField("text", text.toString(), Field.Store.NO));
+                writer.addDocument(document);
+
+                if ((id + 1) % (DOCS / SEGMENTS) == 0)
+                {
+                    writer.commit();
+                }
+            }
+        }
+
+        reader = DirectoryReader.open(directory);
+        searcher = new IndexSearcher(reader);
+        searcher.setQueryCache(null);
+
+        reRankQuery = new BooleanQuery.Builder()
+                .add(new TermQuery(new Term("text", "b")), Occur.SHOULD)
+                .add(new TermQuery(new Term("text", "c")), Occur.SHOULD)
+                .build();
+        queryRescorer = new QueryRescorer(reRankQuery)
+        {
+            @Override
+            protected float combine(float firstPassScore, boolean secondPassMatches, float secondPassScore)
+            {
+                return ReRankRescorer.combine(firstPassScore, secondPassMatches, secondPassScore, RERANK_WEIGHT);
+            }
+        };
+        reRankRescorer = new ReRankRescorer(reRankQuery, RERANK_WEIGHT);
+
+        firstPass = searcher.search(new TermQuery(new Term("text", "a")), reRankDocs);
+        firstPassDocs = new int[firstPass.scoreDocs.length];
+        firstPassScores = new float[firstPass.scoreDocs.length];
+        for (int i = 0; i < firstPassDocs.length; i++)
+        {
+            firstPassDocs[i] = firstPass.scoreDocs[i].doc;
+            firstPassScores[i] = firstPass.scoreDocs[i].score;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void closeIndex() throws IOException
+    {
+        reader.close();
+        directory.close();
+    }
+
+    private TopDocs firstPass()
+    {
+        ScoreDoc[] hits = new ScoreDoc[firstPassDocs.length];
+        for (int i = 0; i < hits.length; i++)
+        {
+            hits[i] = new ScoreDoc(firstPassDocs[i], firstPassScores[i]);
+        }
+        return new TopDocs(firstPass.totalHits, hits, firstPass.getMaxScore());
+    }
+
+    @Benchmark
+    public TopDocs queryRescorer() throws IOException
+    {
+        return queryRescorer.rescore(searcher, firstPass(), ROWS);
+    }
+
+    @Benchmark
+    public TopDocs reRankRescorer() throws IOException
+    {
+        return reRankRescorer.rescore(searcher, firstPass(), ROWS);
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.solr.query;
+
+import static java.util.Arrays.asList;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.alfresco.repo.search.impl.lucene.analysis.PathAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Runs the positional matching of {@link SolrPathScorer} against the synthetic hierarchy of SolrPathScorerTest (a
+ * chain of nested folders, each one with a fixed number of leaf children) at configurable depth and fan out.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SolrPathScorerBenchmark
+{
+    private static final String CM = "http://www.alfresco.org/model/content/1.0";
+    private static final String APP = "http://www.alfresco.org/model/application/1.0";
+
+    @Param({"8", "32"})
+    public int depth;
+
+    @Param({"100", "10000"})
+    public int fanOut;
+
+    private Directory directory;
+    private DirectoryReader reader;
+    private IndexSearcher searcher;
+
+    private SolrPathQuery childrenOfDeepestFolder;
+    private SolrPathQuery descendantsOfTopFolder;
+    private SolrPathQuery namedDescendantsOfTopFolder;
+
+    @Setup(Level.Trial)
+    public void buildHierarchy() throws IOException
+    {
+        directory = new RAMDirectory();
+        try (IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(new PathAnalyzer())))
+        {
+            StringBuilder folder = new StringBuilder();
+            for (int level = 1; level <= depth; level++)
+            {
+                folder.append("/{").append(CM).append("}folder").append(level);
+                writer.addDocument(pathDocument(folder.toString()));
+
+                for (int leaf = 0; leaf < fanOut; leaf++)
+                {
+                    writer.addDocument(pathDocument(folder + "/{" + APP + "}leaf" + leaf));
+                }
+
+                if (level % 4 == 0)
+                {
+                    writer.commit();
+                }
+            }
+        }
+
+        reader = DirectoryReader.open(directory);
+        searcher = new IndexSearcher(reader);
+        searcher.setQueryCache(null);
+
+        List<List<StructuredFieldPosition>> deepest = new ArrayList<>();
+        for (int level = 1; level <= depth; level++)
+        {
+            deepest.add(step(CM, "folder" + level));
+        }
+        deepest.add(wildcard());
+
+        childrenOfDeepestFolder = query(deepest);
+        descendantsOfTopFolder = query(asList(step(CM, "folder1"), descendantOrSelf(), wildcard()));
+        namedDescendantsOfTopFolder = query(asList(step(CM, "folder1"), descendantOrSelf(), step(APP, "leaf3")));
+    }
+
+    @TearDown(Level.Trial)
+    public void closeIndex() throws IOException
+    {
+        reader.close();
+        directory.close();
+    }
+
+    @Benchmark
+    public int children() throws IOException
+    {
+        return searcher.count(childrenOfDeepestFolder);
+    }
+
+    @Benchmark
+    public int descendants() throws IOException
+    {
+        return searcher.count(descendantsOfTopFolder);
+    }
+
+    @Benchmark
+    public int namedDescendants() throws IOException
+    {
+        return searcher.count(namedDescendantsOfTopFolder);
+    }
+
+    private static Document pathDocument(String path)
+    {
+        Document document = new Document();
+        document.add(new TextField("PATH", path, Field.Store.NO));
+        return document;
+    }
+
+    private static SolrPathQuery query(List<List<StructuredFieldPosition>> steps)
+    {
+        List<StructuredFieldPosition> positions = new ArrayList<>();
+        for (List<StructuredFieldPosition> step : steps)
+        {
+            positions.addAll(step);
+        }
+
+        SolrPathQuery query = new SolrPathQuery(null);
+        query.setQuery(positions);
+        return query;
+    }
+
+    private static List<StructuredFieldPosition> step(String namespace, String localName)
+    {
+        return asList(new RelativeStructuredFieldPosition(namespace), new RelativeStructuredFieldPosition(localName));
+    }
+
+    private static List<StructuredFieldPosition> wildcard()
+    {
+        return asList(new RelativeStructuredFieldPosition("*"), new RelativeStructuredFieldPosition("*"));
+    }
+
+    private static List<StructuredFieldPosition> descendantOrSelf()
+    {
+        return asList(new DescendantAndSelfStructuredFieldPosition(), new DescendantAndSelfStructuredFieldPosition());
+    }
+}
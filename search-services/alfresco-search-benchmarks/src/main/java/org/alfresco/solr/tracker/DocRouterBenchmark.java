@@ -0,0 +1,151 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.solr.tracker;
+
+import java.util.Locale;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.alfresco.repo.index.shard.ShardMethodEnum;
+import org.alfresco.solr.client.Node;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Routes a batch of nodes with each {@link DocRouter} created by the {@link DocRouterFactory}.
+ *
+ * The shard property values (dates for DATE, user names for PROPERTY, shard numbers for the explicit id routers) are
+ * drawn from a pool of "distinctValues" values. "sameNodes" routes the same nodes over and over (the case of the
+ * per-node routing caches); "newNodes" assigns fresh node ids to the batch before routing it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DocRouterBenchmark
+{
+    private static final int BATCH_SIZE = 10_000;
+
+    @Param({"DB_ID", "DB_ID_RANGE", "ACL_ID", "MOD_ACL_ID", "DATE", "PROPERTY", "LAST_REGISTERED_INDEXING_SHARD",
+            "EXPLICIT_ID_FALLBACK_LRIS", "EXPLICIT_ID"})
+    public String method;
+
+    @Param({"4", "32"})
+    public int shardCount;
+
+    @Param({"100", "100000"})
+    public int distinctValues;
+
+    private DocRouter router;
+    private Node[] nodes;
+    private long nextId;
+
+    @Setup
+    public void setUp()
+    {
+        Properties properties = new Properties();
+        properties.setProperty(DocRouterFactory.SHARD_RANGE_KEY, "0-" + (BATCH_SIZE / 2));
+        properties.setProperty(DocRouterFactory.SHARD_DATE_GROUPING_KEY, "3");
+        properties.setProperty(DocRouterFactory.SHARD_REGEX_KEY, "user(\\d+)");
+        ShardMethodEnum shardMethod = ShardMethodEnum.valueOf(method);
+        router = DocRouterFactory.getRouter(properties, shardMethod);
+
+        SplittableRandom random = new SplittableRandom(42);
+        nodes = new Node[BATCH_SIZE];
+        for (int i = 0; i < BATCH_SIZE; i++)
+        {
+            int value = random.nextInt(distinctValues);
+            Node node = new Node();
+            node.setId(i);
+            node.setTxnId(i / 100);
+            node.setAclId(random.nextInt(1_000_000));
+            node.setStatus(Node.SolrApiNodeStatus.UPDATED);
+            node.setShardPropertyValue(shardPropertyValue(shardMethod, value));
+            node.setExplicitShardId(value % shardCount);
+            nodes[i] = node;
+        }
+        nextId = BATCH_SIZE;
+    }
+
+    private String shardPropertyValue(ShardMethodEnum shardMethod, int value)
+    {
+        switch (shardMethod)
+        {
+            case DATE:
+                int month = value % 12;
+                int year = 2000 + value / 12 % 20;
+                int day = 1 + value / 240 % 28;
+                return String.format(Locale.ROOT, "%04d-%02d-%02dT%02d:%02d:%02d.000Z",
+                        year, month + 1, day, value % 24, value % 60, value / 60 % 60);
+            case PROPERTY:
+                return "user" + value;
+            default:
+                return String.valueOf(value % shardCount);
+        }
+    }
+
+    @Benchmark
+    public int sameNodes()
+    {
+        return route();
+    }
+
+    @Benchmark
+    public int newNodes()
+    {
+        for (Node node : nodes)
+        {
+            node.setId(nextId++);
+        }
+        return route();
+    }
+
+    private int route()
+    {
+        int routed = 0;
+        for (Node node : nodes)
+        {
+            if (Boolean.TRUE.equals(router.routeNode(shardCount, 0, node)))
+            {
+                routed++;
+            }
+        }
+        return routed;
+    }
+}
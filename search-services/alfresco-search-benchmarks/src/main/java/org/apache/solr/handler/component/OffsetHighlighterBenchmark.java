@@ -0,0 +1,165 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.apache.solr.handler.component;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.highlight.Highlighter;
+import org.apache.lucene.search.highlight.InvalidTokenOffsetsException;
+import org.apache.lucene.search.highlight.QueryScorer;
+import org.apache.lucene.search.highlight.SimpleHTMLFormatter;
+import org.apache.lucene.search.highlight.SimpleSpanFragmenter;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Highlights a stored content value using the indexed offsets ({@link OffsetHighlighter}) and by re-analysing the
+ * value (the Lucene {@link Highlighter} with a {@link QueryScorer}, as the default Solr highlighter does).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OffsetHighlighterBenchmark
+{
+    private static final String FIELD = "content@s_stored_lt@{http://www.alfresco.org/model/content/1.0}content";
+    private static final String[] WORDS = {
+            "lorem", "ipsum", "dolor", "sit", "amet", "consectetur", "adipiscing", "elit", "sed", "do", "eiusmod",
+            "tempor", "incididunt", "ut", "labore", "et", "dolore", "magna", "aliqua", "brown", "dog", "lazy" };
+    private static final int FRAGSIZE = 100;
+    private static final int SNIPPETS = 3;
+
+    @Param({"2000", "50000"})
+    public int textLength;
+
+    @Param({"0.001", "0.02"})
+    public double matchRate;
+
+    private Directory directory;
+    private DirectoryReader reader;
+    private LeafReader leaf;
+    private Analyzer analyzer;
+    private String value;
+
+    private OffsetHighlighter offsetHighlighter;
+    private OffsetHighlighter.FieldOptions options;
+    private Highlighter reAnalysingHighlighter;
+
+    @Setup(Level.Trial)
+    public void buildIndex() throws IOException
+    {
+        SplittableRandom random = new SplittableRandom(42);
+        StringBuilder text = new StringBuilder("\u0000en\u0000");
+        while (text.length() < textLength)
+        {
+            double draw = random.nextDouble();
+            text.append(draw < matchRate / 2 ? "quick" : draw < matchRate ? "fox" : WORDS[random.nextInt(WORDS.length)]);
+            text.append(random.nextInt(12) == 0 ? ". " : " ");
+        }
+        value = text.toString();
+
+        FieldType withOffsets = new FieldType(TextField.TYPE_STORED);
+        withOffsets.setIndexOptions(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS_AND_OFFSETS);
+        withOffsets.freeze();
+
+        analyzer = new StandardAnalyzer();
+        directory = new RAMDirectory();
+        try (IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(analyzer)))
+        {
+            Document document = new Document();
+            document.add(new Field(FIELD, value, withOffsets));
+            writer.addDocument(document);
+        }
+        reader = DirectoryReader.open(directory);
+        leaf = reader.leaves().get(0).reader();
+
+        offsetHighlighter = new OffsetHighlighter(Set.of("quick", "fox"));
+        options = new OffsetHighlighter.FieldOptions(FRAGSIZE, SNIPPETS, -1, "<em>", "</em>", false);
+
+        BooleanQuery query = new BooleanQuery.Builder()
+                .add(new TermQuery(new Term(FIELD, "quick")), Occur.SHOULD)
+                .add(new TermQuery(new Term(FIELD, "fox")), Occur.SHOULD)
+                .build();
+        QueryScorer scorer = new QueryScorer(query, FIELD);
+        reAnalysingHighlighter = new Highlighter(new SimpleHTMLFormatter("<em>", "</em>"), scorer);
+        reAnalysingHighlighter.setTextFragmenter(new SimpleSpanFragmenter(scorer, FRAGSIZE));
+        reAnalysingHighlighter.setMaxDocCharsToAnalyze(Integer.MAX_VALUE);
+    }
+
+    @TearDown(Level.Trial)
+    public void closeIndex() throws IOException
+    {
+        reader.close();
+        directory.close();
+        analyzer.close();
+    }
+
+    @Benchmark
+    public String[] offsets() throws IOException
+    {
+        return offsetHighlighter.highlight(leaf, 0, FIELD, value, options);
+    }
+
+    @Benchmark
+    public String[] reAnalysis() throws IOException, InvalidTokenOffsetsException
+    {
+        return reAnalysingHighlighter.getBestFragments(analyzer, FIELD, value, SNIPPETS);
+    }
+}
@@ -32,6 +32,7 @@ import org.alfresco.service.cmr.repository.StoreRef;
 import org.alfresco.solr.adapters.IOpenBitSet;
 import org.alfresco.solr.client.SOLRAPIClientFactory;
 import org.alfresco.solr.config.ConfigUtil;
+import org.alfresco.solr.lifecycle.CoreBootstrap;
 import org.alfresco.solr.tracker.AbstractTracker;
 import org.alfresco.solr.tracker.AclTracker;
 import org.alfresco.solr.tracker.ActivatableTracker;
@@ -102,6 +103,7 @@ import static org.alfresco.solr.HandlerReportHelper.addSlaveCoreSummary;
 import static org.alfresco.solr.HandlerReportHelper.buildAclReport;
 import static org.alfresco.solr.HandlerReportHelper.buildAclTxReport;
 import static org.alfresco.solr.HandlerReportHelper.buildNodeReport;
+import static org.alfresco.solr.HandlerReportHelper.buildQuarantineReport;
 import static org.alfresco.solr.HandlerReportHelper.buildTrackerReport;
 import static org.alfresco.solr.HandlerReportHelper.buildTxReport;
 import static org.alfresco.solr.InterceptorRegistry.registerSolrClientInterceptors;
@@ -200,6 +202,8 @@ public class AlfrescoCoreAdminHandler extends CoreAdminHandler
     private SolrTrackerScheduler scheduler;
     TrackerRegistry trackerRegistry;
     ConcurrentHashMap<String, InformationServer> informationServers;
+    final ConcurrentHashMap<String, CoreBootstrap> coreBootstraps = new ConcurrentHashMap<>();
+    final CoreStatisticsService coreStatistics = new CoreStatisticsService();
 
     final static List<String> CORE_PARAMETER_NAMES = asList(CoreAdminParams.CORE, "coreName", "index");
 
@@ -440,6 +444,10 @@ public class AlfrescoCoreAdminHandler extends CoreAdminHandler
                 case "TXREPORT":
                     rsp.add(REPORT, actionTXREPORT(params));
                     break;
+                // Get the transactions quarantined after repeated indexing failures (checkpointed rollback mode)
+                case "QUARANTINE":
+                    rsp.add(REPORT, actionQUARANTINE(params));
+                    break;
                 // Get a report from an aclTxId with detailed information related with nodes indexed
                 // for an ACL inside a Transaction
                 case "ACLTXREPORT":
@@ -473,7 +481,7 @@ public class AlfrescoCoreAdminHandler extends CoreAdminHandler
                 case "REINDEX":
                     rsp.add(ACTION_LABEL, actionREINDEX(params));
                     break;
-                // Reindex every node marked as ERROR in a core or in every core.
+                // Reindex every node marked as ERROR and every quarantined transaction in a core or in every core.
                 // Asynchronous.
                 case "RETRY":
                     rsp.add(ACTION_LABEL, actionRETRY(params));
@@ -1128,6 +1136,39 @@ public class AlfrescoCoreAdminHandler extends CoreAdminHandler
 
     }
 
+    /**
+     * Get the transactions which have been quarantined after repeated indexing failures, when the checkpointed
+     * rollback mode is enabled.
+     *
+     * Synchronous execution
+     *
+     * @param params Query Request with following parameters:
+     * - core, optional: The name of the SOLR Core
+     * @return Response including the quarantined transactions (failures count and last failure) by core. The
+     * quarantine is kept in memory only, so it is empty after a core reload or a server restart.
+     */
+    NamedList<Object> actionQUARANTINE(SolrParams params)
+    {
+        NamedList<Object> report = new SimpleOrderedMap<>();
+        String requestedCoreName = coreName(params);
+
+        coreNames().stream()
+                .filter(coreName -> requestedCoreName == null || coreName.equals(requestedCoreName))
+                .filter(this::isMasterOrStandalone)
+                .map(coreName -> new Pair<>(coreName, trackerRegistry.getTrackerForCore(coreName, MetadataTracker.class)))
+                .filter(coreNameAndMetadataTracker -> coreNameAndMetadataTracker.getSecond() != null)
+                .forEach(coreNameAndMetadataTracker ->
+                        report.add(
+                                coreNameAndMetadataTracker.getFirst(),
+                                buildQuarantineReport(coreNameAndMetadataTracker.getSecond())));
+
+        if (report.size() == 0)
+        {
+            addAlertMessage(report);
+        }
+        return report;
+    }
+
     /**
      * Get a report from an aclTxId with detailed information related with nodes indexed
      * for an ACL inside a Transaction
@@ -1401,6 +1442,8 @@ public class AlfrescoCoreAdminHandler extends CoreAdminHandler
      * - toTx, optional: to transaction Id time to filter report results
      * - fromAclTx, optional: from ACL transaction Id to filter report results
      * - toCalTx, optional: to ACL transaction Id to filter report results
+     * - fresh, optional: when true the index figures are computed on the current searcher instead of being taken from
+     *   the statistics of the last opened searcher (the repository figures and the tracker states are always read live)
      *
      * - report.core: multiple Objects with the details of the report ("core" is the name of the Core)
      */
@@ -1414,6 +1457,7 @@ public class AlfrescoCoreAdminHandler extends CoreAdminHandler
         Long toTx = getSafeLong(params, "toTx");
         Long fromAclTx = getSafeLong(params, "fromAclTx");
         Long toAclTx = getSafeLong(params, "toAclTx");
+        boolean fresh = getSafeBoolean(params, "fresh");
 
         String requestedCoreName = coreName(params);
 
@@ -1422,18 +1466,21 @@ public class AlfrescoCoreAdminHandler extends CoreAdminHandler
                 .filter(trackerRegistry::hasTrackersForCore)
                 .filter(this::isMasterOrStandalone)
                 .forEach(coreName ->
-                        report.add(
-                                coreName,
-                                buildTrackerReport(
-                                        trackerRegistry,
-                                        informationServers.get(coreName),
-                                        coreName,
-                                        fromTx,
-                                        toTx,
-                                        fromAclTx,
-                                        toAclTx,
-                                        fromTime,
-                                        toTime)));
+                {
+                    refreshStatistics(coreName, fresh);
+                    report.add(
+                            coreName,
+                            buildTrackerReport(
+                                    trackerRegistry,
+                                    informationServers.get(coreName),
+                                    coreName,
+                                    fromTx,
+                                    toTx,
+                                    fromAclTx,
+                                    toAclTx,
+                                    fromTime,
+                                    toTime));
+                });
 
         if (report.size() == 0)
         {
@@ -1442,6 +1489,24 @@ public class AlfrescoCoreAdminHandler extends CoreAdminHandler
         return report;
     }
 
+    /**
+     * Computes the index statistics of the given core on its current searcher, when requested.
+     */
+    private void refreshStatistics(String coreName, boolean fresh)
+    {
+        if (fresh)
+        {
+            try
+            {
+                coreStatistics.refresh(coreName);
+            }
+            catch (IOException exception)
+            {
+                throw new AlfrescoRuntimeException("", exception);
+            }
+        }
+    }
+
     /**
      * Add a nodeid, txid, acltxid or aclid to be purged on the next maintenance
      * operation performed by MetadataTracker and AclTracker.
@@ -1584,6 +1649,7 @@ public class AlfrescoCoreAdminHandler extends CoreAdminHandler
                         tracker.addNodeToReindex(nodeid);
                     }
                     coreResponse.add("Error Nodes", srv.getErrorDocIds());
+                    coreResponse.add("Quarantined Transactions", tracker.retryQuarantinedTransactions());
                     coreResponse.add(ACTION_STATUS_LABEL, ACTION_STATUS_SCHEDULED);
                 } catch (Exception exception)
                 {
@@ -2009,6 +2075,8 @@ public class AlfrescoCoreAdminHandler extends CoreAdminHandler
      * - hist, optional, when true adds historic details to the report
      * - values, optional, when true adds values detail to the report
      * - reset, optional, when true stats are reset
+     * - fresh, optional, when true the index figures are computed on the current searcher instead of being taken from
+     *   the statistics of the last opened searcher
      * @return report (Key, Value) list with the results of the report
      */
     private NamedList<Object> actionSUMMARY(SolrParams params)
@@ -2024,18 +2092,32 @@ public class AlfrescoCoreAdminHandler extends CoreAdminHandler
         return report;
     }
 
+    @SuppressWarnings("unchecked")
     private void coreSummary(SolrParams params, NamedList<Object> report, String coreName)
     {
         boolean detail = getSafeBoolean(params, "detail");
         boolean hist = getSafeBoolean(params, "hist");
         boolean values = getSafeBoolean(params, "values");
         boolean reset = getSafeBoolean(params, "reset");
+        boolean fresh = getSafeBoolean(params, "fresh");
+
+        // The trackers of the core are still starting: only the bootstrap phases can be reported
+        CoreBootstrap bootstrap = coreBootstraps.get(coreName);
+        if (bootstrap != null && !bootstrap.isCompleted())
+        {
+            NamedList<Object> coreSummary = new SimpleOrderedMap<>();
+            coreSummary.add("Tracker bootstrap", bootstrap.getReport());
+            report.add(coreName, coreSummary);
+            return;
+        }
 
         InformationServer srv = informationServers.get(coreName);
         if (srv != null)
         {
             try
             {
+                refreshStatistics(coreName, fresh);
+
                 if (isMasterOrStandalone(coreName))
                 {
                     addMasterOrStandaloneCoreSummary(trackerRegistry, coreName, detail, hist, values, srv, report);
@@ -2048,6 +2130,12 @@ public class AlfrescoCoreAdminHandler extends CoreAdminHandler
                     {
                     addSlaveCoreSummary(trackerRegistry, coreName, detail, hist, values, srv, report);
                 }
+
+                Object coreSummary = report.get(coreName);
+                if (bootstrap != null && coreSummary instanceof NamedList)
+                {
+                    ((NamedList<Object>) coreSummary).add("Tracker bootstrap", bootstrap.getReport());
+                }
             }
             catch(Exception exception)
             {
@@ -2072,11 +2160,27 @@ public class AlfrescoCoreAdminHandler extends CoreAdminHandler
         return this.informationServers;
     }
 
+    /**
+     * @return the tracking subsystem startup of each core.
+     */
+    public ConcurrentHashMap<String, CoreBootstrap> getCoreBootstraps()
+    {
+        return this.coreBootstraps;
+    }
+
     public TrackerRegistry getTrackerRegistry()
     {
         return trackerRegistry;
     }
 
+    /**
+     * @return the index figures reported by SUMMARY and REPORT, computed on every new searcher.
+     */
+    public CoreStatisticsService getCoreStatisticsService()
+    {
+        return coreStatistics;
+    }
+
     void setTrackerRegistry(TrackerRegistry trackerRegistry)
     {
         this.trackerRegistry = trackerRegistry;
@@ -45,6 +45,7 @@ import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -255,6 +256,9 @@ public class AlfrescoSolrDataModel implements QueryConstants
     private final Set<QName> identifierProperties = new HashSet<>();
     private final ThreadPoolExecutor threadPool;
 
+    /** Incremented on each model change: anything derived from the models (e.g. query plans) is keyed by it. */
+    private final AtomicLong modelVersion = new AtomicLong();
+
     public void close() {
         threadPool.shutdown();
     }
@@ -1392,6 +1396,7 @@ public class AlfrescoSolrDataModel implements QueryConstants
     {
         modelErrors.remove(model.getName());
         dictionaryDAO.putModelIgnoringConstraints(model);
+        modelVersion.incrementAndGet();
         return true;
     }
 
@@ -1399,6 +1404,7 @@ public class AlfrescoSolrDataModel implements QueryConstants
     {
         modelErrors.remove(getM2Model(modelQName).getName());
         dictionaryDAO.removeModel(modelQName);
+        modelVersion.incrementAndGet();
     }
 
     M2Model getM2Model(QName modelQName)
@@ -1412,6 +1418,15 @@ public class AlfrescoSolrDataModel implements QueryConstants
         {
             cds.afterDictionaryInit();
         }
+        modelVersion.incrementAndGet();
+    }
+
+    /**
+     * @return the current version of the data model, which changes every time a model is added, updated or removed.
+     */
+    public long getModelVersion()
+    {
+        return modelVersion.get();
     }
 
     public org.alfresco.repo.search.impl.querymodel.Query parseCMISQueryToAlfrescoAbstractQuery(CMISQueryMode mode, SearchParameters searchParameters,
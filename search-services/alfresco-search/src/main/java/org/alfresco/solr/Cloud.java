@@ -79,6 +79,35 @@ public class Cloud
         return query.toString();
     }
 
+    /**
+     * Creates a terms query (e.g. {!terms f=DBID}1,2,3) to select docs with any of the specified field values.
+     * Unlike {@link #getQuery(String, String, Collection...)} the resulting query is a single terms set query, so its
+     * size and parsing cost stay linear with the number of values.
+     *
+     * @param fieldName the name of the field in the condition
+     * @param valueLists a bunch of possible values for the field
+     * @return the resulting query string, null if there are no values
+     */
+    @SuppressWarnings("rawtypes")
+    String getTermsQuery(String fieldName, Collection... valueLists)
+    {
+        StringBuilder query = new StringBuilder("{!terms f=").append(fieldName).append("}");
+        int prefixLength = query.length();
+        for (Collection values : valueLists)
+        {
+            for (Object value : values)
+            {
+                if (query.length() > prefixLength)
+                {
+                    query.append(',');
+                }
+                query.append(value);
+            }
+        }
+
+        return query.length() > prefixLength ? query.toString() : null;
+    }
+
     /**
      * Returns whether or not a doc exists that satisfies the specified query
      * @param requestHandler the handler that handles the request
@@ -0,0 +1,259 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.solr;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.alfresco.solr.tracker.TrackerStats;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+
+/**
+ * Computes the MINHASH fingerprint values of a text content.
+ *
+ * The generation runs on a dedicated (JVM-wide) thread pool, so the caller can go on populating the other fields of
+ * the document in the meantime and collect the fingerprint values only when it really needs them.
+ *
+ * Each hash token produced by the min_hash analyzer is hex-encoded (one variable-length hex group per char, exactly
+ * like {@link Integer#toHexString(int)} does) in a reused per-thread char buffer, so the only allocation per token
+ * is the resulting {@link String} value.
+ * Texts longer than the configured limit (if any, by default there's no limit) are truncated before being analyzed:
+ * note that the truncation changes the fingerprint values of those texts.
+ *
+ * The text can be a region of a larger string (e.g. the stored content value, which starts with the locale marker):
+ * in that case the analyzer reads the region directly from the source string, without any intermediate copy.
+ */
+class ContentFingerprintGenerator
+{
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /** A char needs at most 4 hex digits. */
+    private static final int MAX_HEX_DIGITS_PER_CHAR = 4;
+
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    private static final ThreadFactory THREAD_FACTORY = runnable -> {
+        Thread thread = new Thread(runnable, "FingerprintGenerator-" + THREAD_COUNTER.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    };
+
+    private static final ExecutorService EXECUTOR =
+            Executors.newFixedThreadPool(
+                    Integer.getInteger("alfresco.fingerprint.maxParallelism", Runtime.getRuntime().availableProcessors()),
+                    THREAD_FACTORY);
+
+    private static final ThreadLocal<char[]> ENCODING_BUFFER = ThreadLocal.withInitial(() -> new char[256]);
+
+    private final int maxChars;
+    private final TrackerStats trackerStats;
+
+    /**
+     * Builds a new generator.
+     *
+     * @param maxChars the max number of text characters considered for computing the fingerprint (a value lesser
+     *                 than 1 means no limit).
+     * @param trackerStats the stats collector where the fingerprint generation time will be recorded.
+     */
+    ContentFingerprintGenerator(int maxChars, TrackerStats trackerStats)
+    {
+        this.maxChars = maxChars < 1 ? Integer.MAX_VALUE : maxChars;
+        this.trackerStats = trackerStats;
+    }
+
+    /**
+     * Asynchronously computes the fingerprint values of the given text.
+     *
+     * @param analyzer the min_hash index analyzer.
+     * @param text the text content.
+     * @return a future which will hold the fingerprint values.
+     */
+    CompletableFuture<List<String>> fingerprint(Analyzer analyzer, String text)
+    {
+        return fingerprint(analyzer, text, 0);
+    }
+
+    /**
+     * Asynchronously computes the fingerprint values of the text which starts at the given offset of the input string.
+     *
+     * @param analyzer the min_hash index analyzer.
+     * @param source the string which contains the text content.
+     * @param offset the start offset of the text content within the source string.
+     * @return a future which will hold the fingerprint values.
+     */
+    CompletableFuture<List<String>> fingerprint(Analyzer analyzer, String source, int offset)
+    {
+        if (isBlank(source, offset))
+        {
+            return CompletableFuture.completedFuture(Collections.emptyList());
+        }
+
+        return CompletableFuture.supplyAsync(() -> {
+            long start = System.nanoTime();
+            try
+            {
+                int end = (int) Math.min(source.length(), (long) offset + maxChars);
+                return hashes(analyzer, new StringRegionReader(source, offset, end));
+            }
+            catch (IOException exception)
+            {
+                throw new UncheckedIOException(exception);
+            }
+            finally
+            {
+                trackerStats.addFingerprintTime(System.nanoTime() - start);
+            }
+        }, EXECUTOR);
+    }
+
+    /**
+     * Checks if the text which starts at the given offset of the input string is empty or contains only white spaces.
+     *
+     * @param source the string which contains the text.
+     * @param offset the start offset of the text within the source string.
+     * @return true if the text is empty or contains only white spaces.
+     */
+    static boolean isBlank(String source, int offset)
+    {
+        if (source == null)
+        {
+            return true;
+        }
+
+        for (int i = offset; i < source.length(); i++)
+        {
+            if (!Character.isWhitespace(source.charAt(i)))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Runs the analyzer against the input text and collects the hex-encoded hash tokens.
+     *
+     * @param analyzer the min_hash index analyzer.
+     * @param text the (already truncated) text content.
+     * @return the fingerprint values.
+     * @throws IOException in case of analysis failure.
+     */
+    static List<String> hashes(Analyzer analyzer, Reader text) throws IOException
+    {
+        List<String> hashes = new ArrayList<>();
+        try (TokenStream ts = analyzer.tokenStream("dummy_field", text))
+        {
+            CharTermAttribute termAttribute = ts.getAttribute(CharTermAttribute.class);
+            ts.reset();
+            while (ts.incrementToken())
+            {
+                hashes.add(encode(termAttribute.buffer(), termAttribute.length()));
+            }
+            ts.end();
+        }
+        return hashes;
+    }
+
+    /**
+     * Hex-encodes the given chars (each char is encoded as {@link Integer#toHexString(int)} would do, that is without
+     * leading zeros) using the per-thread reusable buffer.
+     *
+     * @param chars the token chars.
+     * @param length the token length.
+     * @return the hex representation of the token.
+     */
+    static String encode(char[] chars, int length)
+    {
+        char[] buffer = ENCODING_BUFFER.get();
+        int required = length * MAX_HEX_DIGITS_PER_CHAR;
+        if (buffer.length < required)
+        {
+            buffer = new char[required];
+            ENCODING_BUFFER.set(buffer);
+        }
+
+        int position = 0;
+        for (int i = 0; i < length; i++)
+        {
+            int value = chars[i];
+            int shift = value == 0 ? 0 : ((31 - Integer.numberOfLeadingZeros(value)) / 4) * 4;
+            for (; shift >= 0; shift -= 4)
+            {
+                buffer[position++] = HEX_DIGITS[(value >>> shift) & 0xF];
+            }
+        }
+        return new String(buffer, 0, position);
+    }
+
+    /**
+     * A {@link Reader} over a region of a string.
+     */
+    static final class StringRegionReader extends Reader
+    {
+        private final String source;
+        private final int end;
+        private int position;
+
+        StringRegionReader(String source, int start, int end)
+        {
+            this.source = source;
+            this.position = start;
+            this.end = end;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length)
+        {
+            if (position >= end)
+            {
+                return -1;
+            }
+
+            int count = Math.min(length, end - position);
+            source.getChars(position, position + count, buffer, offset);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public void close()
+        {
+            // Nothing to be done here
+        }
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+
+package org.alfresco.solr;
+
+import static java.util.Optional.ofNullable;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.core.SolrCore;
+import org.apache.solr.core.SolrEventListener;
+import org.apache.solr.search.SolrIndexSearcher;
+import org.apache.solr.util.RefCounted;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the {@link IndexStatistics} of each core up to date, so that the SUMMARY and REPORT admin actions (which are
+ * polled by monitoring tools) don't run facet queries against the index on every call.
+ *
+ * The statistics are computed every time a new searcher is opened, against the new searcher (i.e. as part of its
+ * warming), so they always describe the index content visible to the queries. Until the first new searcher event (or
+ * a fresh request) no statistics are available and the callers compute the figures on the index directly.
+ * Only the index-side figures are kept here: the repository figures and the tracker states are read on every request.
+ *
+ * A request can ask for fresh figures (fresh=true), which are computed against the current searcher.
+ */
+public class CoreStatisticsService
+{
+    protected static final Logger LOGGER = LoggerFactory.getLogger(CoreStatisticsService.class);
+
+    /**
+     * Computes the statistics of a searcher.
+     */
+    @FunctionalInterface
+    public interface StatisticsComputer
+    {
+        IndexStatistics compute(SolrIndexSearcher searcher) throws IOException;
+    }
+
+    private final ConcurrentHashMap<String, CoreStatistics> cores = new ConcurrentHashMap<>();
+
+    /**
+     * Starts keeping the statistics of the given core, replacing a previous registration of a core with the same name
+     * (e.g. before a core reload).
+     *
+     * @param core the core.
+     * @param computer computes the statistics of a searcher of the core.
+     */
+    public void register(SolrCore core, StatisticsComputer computer)
+    {
+        CoreStatistics statistics = new CoreStatistics(core, computer);
+        cores.put(core.getName(), statistics);
+        core.registerNewSearcherListener(new NewSearcherListener(statistics));
+    }
+
+    /**
+     * Drops the statistics of the given core, unless the name has been registered again by another core instance.
+     *
+     * @param core the closed core.
+     */
+    public void remove(SolrCore core)
+    {
+        cores.computeIfPresent(core.getName(), (name, statistics) -> statistics.core == core ? null : statistics);
+    }
+
+    /**
+     * @param coreName the core name.
+     * @return the last statistics of the given core, null if the core is not registered or they are not available yet.
+     */
+    public IndexStatistics get(String coreName)
+    {
+        return ofNullable(cores.get(coreName)).map(statistics -> statistics.current).orElse(null);
+    }
+
+    /**
+     * Computes the statistics of the given core against its current searcher.
+     *
+     * @param coreName the core name.
+     * @return the fresh statistics, null if the core is not registered.
+     * @throws IOException in case of failure while computing the statistics.
+     */
+    public IndexStatistics refresh(String coreName) throws IOException
+    {
+        CoreStatistics statistics = cores.get(coreName);
+        return statistics == null ? null : statistics.refresh();
+    }
+
+    /**
+     * The statistics of a core.
+     */
+    static class CoreStatistics
+    {
+        private final SolrCore core;
+        private final StatisticsComputer computer;
+        private volatile IndexStatistics current;
+
+        CoreStatistics(SolrCore core, StatisticsComputer computer)
+        {
+            this.core = core;
+            this.computer = computer;
+        }
+
+        IndexStatistics refresh() throws IOException
+        {
+            RefCounted<SolrIndexSearcher> refCounted = null;
+            try
+            {
+                refCounted = core.getSearcher();
+                return refresh(refCounted.get());
+            }
+            finally
+            {
+                ofNullable(refCounted).ifPresent(RefCounted::decref);
+            }
+        }
+
+        IndexStatistics refresh(SolrIndexSearcher searcher) throws IOException
+        {
+            IndexStatistics statistics = computer.compute(searcher);
+            synchronized (this)
+            {
+                // A fresh request could run against the previous searcher while a new one is warming up
+                if (current == null || statistics.getIndexVersion() >= current.getIndexVersion())
+                {
+                    current = statistics;
+                }
+            }
+            return statistics;
+        }
+    }
+
+    /**
+     * Computes the statistics of every new searcher.
+     */
+    static class NewSearcherListener implements SolrEventListener
+    {
+        private final CoreStatistics statistics;
+
+        NewSearcherListener(CoreStatistics statistics)
+        {
+            this.statistics = statistics;
+        }
+
+        @Override
+        @SuppressWarnings("rawtypes")
+        public void init(NamedList args)
+        {
+            // Nothing to be done here
+        }
+
+        @Override
+        public void newSearcher(SolrIndexSearcher newSearcher, SolrIndexSearcher currentSearcher)
+        {
+            try
+            {
+                statistics.refresh(newSearcher);
+            }
+            catch (Exception exception)
+            {
+                // The previous statistics are kept: a failure here must not prevent the searcher registration
+                LOGGER.warn("Unable to compute the index statistics of the new searcher {}", newSearcher, exception);
+            }
+        }
+
+        @Override
+        public void postCommit()
+        {
+            // Nothing to be done here: a commit which doesn't open a new searcher doesn't change the statistics
+        }
+
+        @Override
+        public void postSoftCommit()
+        {
+            // Nothing to be done here
+        }
+    }
+}
@@ -105,6 +105,24 @@ class HandlerReportHelper
         }
     }
 
+    static NamedList<Object> buildQuarantineReport(MetadataTracker tracker)
+    {
+        NamedList<Object> report = new SimpleOrderedMap<>();
+        report.add("Note", "The quarantine is kept in memory only: it is lost when the core is reloaded or the server "
+                + "is restarted, then the transactions are retried until they fail again.");
+        for (Map.Entry<Long, TransactionQuarantine.Failure> entry : tracker.getQuarantinedTransactions().entrySet())
+        {
+            TransactionQuarantine.Failure failure = entry.getValue();
+            NamedList<Object> txReport = new SimpleOrderedMap<>();
+            txReport.add("TX commit time", failure.getTransaction().getCommitTimeMs());
+            txReport.add("Failures", failure.getCount());
+            txReport.add("Last failure", new Date(failure.getLastFailureTime()));
+            txReport.add("Last failure cause", String.valueOf(failure.getCause()));
+            report.add(String.valueOf(entry.getKey()), txReport);
+        }
+        return report;
+    }
+
     static NamedList<Object> buildNodeReport(AbstractTracker tracker, Node node) throws JSONException
     {
         return buildNodeReport(tracker, node.getId());
@@ -240,8 +258,13 @@ class HandlerReportHelper
         NamedList<Object> coreSummary = new SimpleOrderedMap<>();
         coreSummary.addAll((SimpleOrderedMap<Object>) srv.getCoreStats());
 
+        // The shard state observed by the publisher avoids a tracker state query against the index
+        ShardStateRegistry.Entry shardStateEntry = trackerRegistry.getShardStateRegistry().get(cname);
         ShardStatePublisher statePublisher = trackerRegistry.getTrackerForCore(cname, ShardStatePublisher.class);
-        TrackerState trackerState = statePublisher.getTrackerState();
+        TrackerState trackerState =
+                shardStateEntry != null
+                        ? shardStateEntry.toTrackerState()
+                        : statePublisher.getTrackerState();
         long lastIndexTxCommitTime = trackerState.getLastIndexedTxCommitTime();
 
         long lastIndexedTxId = trackerState.getLastIndexedTxId();
@@ -322,6 +345,12 @@ class HandlerReportHelper
         TrackerState modelTrkrState = modelTrkr.getTrackerState();
         coreSummary.add("ModelTracker Active", modelTrkrState.isRunning());
         coreSummary.add("NodeState Publisher Active", trackerState.isRunning());
+        if (shardStateEntry != null)
+        {
+            coreSummary.add("NodeState Last Published", new Date(shardStateEntry.getLastPublished()));
+            coreSummary.add("NodeState Last Changed", new Date(shardStateEntry.getLastChanged()));
+            coreSummary.add("NodeState Publish Interval", shardStateEntry.getPublishInterval() + " ms");
+        }
 
         // TX
 
@@ -491,6 +520,7 @@ class HandlerReportHelper
 
         coreSummary.add("ContentTracker Enabled", contentTrkr.isEnabled());
         coreSummary.add("MetadataTracker Enabled", metaTrkr.isEnabled());
+        coreSummary.add("Quarantined Transactions", metaTrkr.getQuarantinedTransactions().size());
         coreSummary.add("AclTracker Enabled", aclTrkr.isEnabled());
         if (cascadeTracker != null)
         {
@@ -538,6 +568,22 @@ class HandlerReportHelper
         coreSummary.add("Docs/Tx", srv.getTrackerStats().getTxDocs().getNamedList(detail, hist, values));
         coreSummary.add("Doc Transformation time (ms)", srv.getTrackerStats().getDocTransformationTimes()
                 .getNamedList(detail, hist, values));
+        coreSummary.add("Doc Fingerprint time (ms)", srv.getTrackerStats().getFingerprintTimes()
+                .getNamedList(detail, hist, values));
+        coreSummary.add("Doc Content builder capacity (UTF-16 chars)", srv.getTrackerStats().getContentBuilderCapacities()
+                .getNamedList(detail, hist, values));
+        coreSummary.add("Bulk delete throughput (ids/s)", srv.getTrackerStats().getBulkDeleteThroughputs()
+                .getNamedList(detail, hist, values));
+        for (Map.Entry<String, TrackerStats.IncrementalStats> setting : srv.getTrackerStats().getAdaptiveSettings().entrySet())
+        {
+            coreSummary.add("Adaptive " + setting.getKey(), setting.getValue().getNamedList(hist, values));
+        }
+        for (Map.Entry<String, TrackerStats.IncrementalStats> decision : srv.getTrackerStats().getCommitDecisions().entrySet())
+        {
+            coreSummary.add("Commit policy " + decision.getKey() + " (invisible docs)", decision.getValue().getNamedList(hist, values));
+        }
+        coreSummary.add("Searcher freshness lag (ms)", srv.getTrackerStats().getSearcherFreshnessLags()
+                .getNamedList(detail, hist, values));
 
         // Model
 
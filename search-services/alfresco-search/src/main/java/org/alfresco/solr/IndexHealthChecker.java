@@ -0,0 +1,152 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+
+package org.alfresco.solr;
+
+import java.io.IOException;
+import java.util.function.LongConsumer;
+
+import org.alfresco.solr.adapters.IOpenBitSet;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.util.Bits;
+
+/**
+ * Compares the transaction (or ACL change set) ids in the index with the ids in the repository, for the index
+ * health reports.
+ *
+ * The ids in the index are streamed from the doc values of the id field, segment by segment, in a single sequential
+ * pass: the cost doesn't depend on the width of the id range and there's no facet limit which could truncate the
+ * result. The comparison then walks the two id sets in order, so it takes time proportional to the number of ids,
+ * not to the size of the id space.
+ *
+ * Both steps work on {@link IOpenBitSet} instances: with a compressed implementation the memory needed by the check
+ * is proportional to the number of transactions, even on repositories with billion-range ids.
+ */
+final class IndexHealthChecker
+{
+    private IndexHealthChecker()
+    {
+        // Static methods only
+    }
+
+    /**
+     * Collects the values of the given (single valued, numeric doc values) id field within the given range.
+     *
+     * @param reader the index reader.
+     * @param field the id field (e.g. TXID, ACLTXID).
+     * @param minId the lower bound of the range (inclusive).
+     * @param maxId the upper bound of the range (inclusive).
+     * @param idsInIndex the set where the ids found in the index are collected.
+     * @param duplicates called for every id found more than once.
+     * @throws IOException in case of failure while reading the index.
+     */
+    static void collectIdsInIndex(IndexReader reader, String field, long minId, long maxId,
+                IOpenBitSet idsInIndex, LongConsumer duplicates) throws IOException
+    {
+        for (LeafReaderContext context : reader.leaves())
+        {
+            LeafReader leaf = context.reader();
+            NumericDocValues values = leaf.getNumericDocValues(field);
+            Bits docsWithField = leaf.getDocsWithField(field);
+            if (values == null || docsWithField == null)
+            {
+                continue;
+            }
+
+            Bits liveDocs = leaf.getLiveDocs();
+            for (int doc = 0, maxDoc = leaf.maxDoc(); doc < maxDoc; doc++)
+            {
+                if (!docsWithField.get(doc) || (liveDocs != null && !liveDocs.get(doc)))
+                {
+                    continue;
+                }
+
+                long id = values.get(doc);
+                if (id < minId || id > maxId)
+                {
+                    continue;
+                }
+
+                if (idsInIndex.get(id))
+                {
+                    duplicates.accept(id);
+                }
+                else
+                {
+                    idsInIndex.set(id);
+                }
+            }
+        }
+    }
+
+    /**
+     * Walks the ids within the given range in order and reports the differences between the index and the repository.
+     *
+     * @param idsInDb the ids in the repository.
+     * @param idsInIndex the ids in the index.
+     * @param minId the lower bound of the range (inclusive).
+     * @param maxId the upper bound of the range (inclusive).
+     * @param inIndexButNotInDb called for every id in the index which is not in the repository.
+     * @param inDbButNotInIndex called for every id in the repository which is not in the index.
+     */
+    static void compare(IOpenBitSet idsInDb, IOpenBitSet idsInIndex, long minId, long maxId,
+                LongConsumer inIndexButNotInDb, LongConsumer inDbButNotInIndex)
+    {
+        long inDb = next(idsInDb, minId, maxId);
+        long inIndex = next(idsInIndex, minId, maxId);
+        while (inDb != -1 || inIndex != -1)
+        {
+            if (inDb == inIndex)
+            {
+                inDb = next(idsInDb, inDb + 1, maxId);
+                inIndex = next(idsInIndex, inIndex + 1, maxId);
+            }
+            else if (inIndex == -1 || (inDb != -1 && inDb < inIndex))
+            {
+                inDbButNotInIndex.accept(inDb);
+                inDb = next(idsInDb, inDb + 1, maxId);
+            }
+            else
+            {
+                inIndexButNotInDb.accept(inIndex);
+                inIndex = next(idsInIndex, inIndex + 1, maxId);
+            }
+        }
+    }
+
+    /**
+     * @return the first id of the set within [from, maxId], -1 if there's no such id.
+     */
+    private static long next(IOpenBitSet ids, long from, long maxId)
+    {
+        long id = ids.nextSetBit(from);
+        return id > maxId ? -1 : id;
+    }
+}
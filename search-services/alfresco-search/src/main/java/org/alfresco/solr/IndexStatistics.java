@@ -0,0 +1,97 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+
+package org.alfresco.solr;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The figures of a searcher which are expensive to compute on every admin request (doc counts by doc type and
+ * content status counts), as computed by {@link SolrInformationServer#computeIndexStatistics}.
+ *
+ * Instances are immutable.
+ */
+public final class IndexStatistics
+{
+    private final Map<String, Long> docTypeCounts;
+    private final long contentNodes;
+    private final long outdatedContentNodes;
+    private final long indexVersion;
+    private final long time;
+
+    public IndexStatistics(Map<String, Long> docTypeCounts, long contentNodes, long outdatedContentNodes,
+                long indexVersion, long time)
+    {
+        this.docTypeCounts = Collections.unmodifiableMap(new LinkedHashMap<>(docTypeCounts));
+        this.contentNodes = contentNodes;
+        this.outdatedContentNodes = outdatedContentNodes;
+        this.indexVersion = indexVersion;
+        this.time = time;
+    }
+
+    /**
+     * @return the number of documents with the given doc type, 0 if the doc type is unknown.
+     */
+    public long getDocTypeCount(String docType)
+    {
+        return docTypeCounts.getOrDefault(docType, 0L);
+    }
+
+    /**
+     * @return the number of nodes of type cm:content.
+     */
+    public long getContentNodes()
+    {
+        return contentNodes;
+    }
+
+    /**
+     * @return the number of nodes of type cm:content whose content needs to be updated.
+     */
+    public long getOutdatedContentNodes()
+    {
+        return outdatedContentNodes;
+    }
+
+    /**
+     * @return the version of the index reader the figures have been computed on.
+     */
+    public long getIndexVersion()
+    {
+        return indexVersion;
+    }
+
+    /**
+     * @return the time the figures have been computed.
+     */
+    public long getTime()
+    {
+        return time;
+    }
+}
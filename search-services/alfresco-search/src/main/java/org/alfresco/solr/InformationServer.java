@@ -44,6 +44,7 @@ import org.alfresco.solr.client.AlfrescoModel;
 import org.alfresco.solr.client.Node;
 import org.alfresco.solr.client.NodeMetaData;
 import org.alfresco.solr.client.Transaction;
+import org.alfresco.solr.tracker.IndexActivity;
 import org.alfresco.solr.tracker.IndexHealthReport;
 import org.alfresco.solr.tracker.TrackerStats;
 import org.apache.solr.common.util.NamedList;
@@ -70,6 +71,16 @@ public interface InformationServer extends InformationServerCollectionProvider
 
     boolean commit(boolean openSearcher) throws IOException;
 
+    /**
+     * Makes the indexed changes visible (i.e. opens a new searcher) without flushing them to stable storage.
+     */
+    void softCommit() throws IOException;
+
+    /**
+     * @return a snapshot of the index writer and searcher state, used for choosing the commit strategy.
+     */
+    IndexActivity getIndexActivity() throws IOException;
+
     void indexAclTransaction(AclChangeSet changeSet, boolean overwrite) throws IOException;
 
     void indexTransaction(Transaction info, boolean overwrite) throws IOException;
@@ -29,6 +29,7 @@ package org.alfresco.solr;
 import static java.util.Arrays.asList;
 import static java.util.Arrays.stream;
 import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
 import static java.util.Optional.empty;
 import static java.util.Optional.ofNullable;
 import static java.util.stream.Collectors.toList;
@@ -91,8 +92,11 @@ import static org.alfresco.service.cmr.security.AuthorityType.GUEST;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.PrintWriter;
+import java.io.Reader;
 import java.io.StringWriter;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
 import java.text.DecimalFormat;
 import java.time.ZonedDateTime;
@@ -101,6 +105,7 @@ import java.time.temporal.IsoFields;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Date;
 import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -115,10 +120,13 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -146,12 +154,11 @@ import org.alfresco.service.namespace.QName;
 import org.alfresco.solr.AlfrescoSolrDataModel.FieldInstance;
 import org.alfresco.solr.AlfrescoSolrDataModel.IndexedField;
 import org.alfresco.solr.AlfrescoSolrDataModel.TenantDbId;
+import org.alfresco.solr.adapters.CompressedOpenBitSet;
 import org.alfresco.solr.adapters.IOpenBitSet;
 import org.alfresco.solr.adapters.ISimpleOrderedMap;
-import org.alfresco.solr.adapters.SolrOpenBitSetAdapter;
 import org.alfresco.solr.adapters.SolrSimpleOrderedMap;
 import org.alfresco.solr.client.AclChangeSet;
-import org.alfresco.solr.client.AclChangeSets;
 import org.alfresco.solr.client.AclReaders;
 import org.alfresco.solr.client.AlfrescoModel;
 import org.alfresco.solr.client.ContentPropertyValue;
@@ -168,17 +175,16 @@ import org.alfresco.solr.client.StringPropertyValue;
 import org.alfresco.solr.client.Transaction;
 import org.alfresco.solr.config.ConfigUtil;
 import org.alfresco.solr.logging.Log;
+import org.alfresco.solr.tracker.IndexActivity;
 import org.alfresco.solr.tracker.IndexHealthReport;
 import org.alfresco.solr.tracker.TrackerStats;
 import org.alfresco.solr.utils.Utils;
 import org.alfresco.util.ISO9075;
 import org.alfresco.util.Pair;
 import org.apache.commons.io.input.BoundedInputStream;
-import org.apache.lucene.analysis.Analyzer;
-import org.apache.lucene.analysis.TokenStream;
-import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.index.IndexCommit;
+import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexableField;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.NumericDocValues;
@@ -233,7 +239,6 @@ import org.apache.solr.util.ConcurrentLRUCache;
 import org.apache.solr.util.RefCounted;
 import org.json.JSONException;
 import org.springframework.extensions.surf.util.I18NUtil;
-import org.springframework.util.FileCopyUtils;
 
 /**
  * This is the Apache Solr implementation of the information server (index).
@@ -402,7 +407,6 @@ public class SolrInformationServer implements InformationServer
     /* 4096 is 2 to the power of (6*2), and we do this because the precision step for the long is 6,
      * and the transactions are long
      */
-    private static final int BATCH_FACET_TXS = 4096;
     private static final String FINGERPRINT_FIELD = "MINHASH";
     /** Shared property to determine if the cascade tracking is enabled. */
     public static final String CASCADE_TRACKER_ENABLED = "alfresco.cascade.tracker.enabled";
@@ -420,6 +424,8 @@ public class SolrInformationServer implements InformationServer
 
     private final static Function<String, List<Object>> LAZY_EMPTY_MUTABLE_LIST = key -> new ArrayList<>();
 
+    private static final ThreadLocal<char[]> CONTENT_READ_BUFFER = ThreadLocal.withInitial(() -> new char[8192]);
+
     private final AlfrescoCoreAdminHandler adminHandler;
     private final SolrCore core;
     private final SolrRequestHandler nativeRequestHandler;
@@ -431,6 +437,7 @@ public class SolrInformationServer implements InformationServer
     private final long lag;
     private final long holeRetention;
     private final boolean fingerprintHasBeenEnabledOnThisInstance;
+    private final ContentFingerprintGenerator fingerprintGenerator;
     private final int contentStreamLimit;
     private final int statsFacetLimit;
 
@@ -634,6 +641,10 @@ public class SolrInformationServer implements InformationServer
         LOGGER.info(
                 "Fingerprint has been {} on this instance.",
                 fingerprintHasBeenEnabledOnThisInstance ? "enabled" : "disabled");
+        fingerprintGenerator =
+                new ContentFingerprintGenerator(
+                        Integer.parseInt(coreConfiguration.getProperty("alfresco.fingerprint.maxChars", "0")),
+                        trackerStats);
 
         dataModel = AlfrescoSolrDataModel.getInstance();
 
@@ -721,6 +732,14 @@ public class SolrInformationServer implements InformationServer
     @Override
     public void addContentOutdatedAndUpdatedCounts(NamedList<Object> report)
     {
+        IndexStatistics statistics = cachedIndexStatistics();
+        if (statistics != null)
+        {
+            report.add("Node count whose content is in sync", statistics.getContentNodes() - statistics.getOutdatedContentNodes());
+            report.add("Node count whose content needs to be updated", statistics.getOutdatedContentNodes());
+            return;
+        }
+
         try (SolrQueryRequest request = newSolrQueryRequest())
         {
             ModifiableSolrParams params =
@@ -781,7 +800,7 @@ public class SolrInformationServer implements InformationServer
     {
         try (SolrQueryRequest request = newSolrQueryRequest())
         {
-            NamedList<Integer> docTypeCounts = this.getFacets(request, "*:*", FIELD_DOC_TYPE, 0);
+            ToLongFunction<String> docTypeCounts = docTypeCounts(request);
 
             // TX
             IndexHealthReport report = new IndexHealthReport(this);
@@ -811,24 +830,24 @@ public class SolrInformationServer implements InformationServer
                     report.setUniqueTransactionDocsInIndex(count);
                 }
             };
-            reportTransactionInfo(txReporter, minTxId, maxTxId, txIdsInDb, request, FIELD_TXID);
-            long transactionDocsInIndex = getSafeCount(docTypeCounts, DOC_TYPE_TX);
+            reportTransactionInfo(txReporter, minTxId, maxTxId, txIdsInDb, FIELD_TXID);
+            long transactionDocsInIndex = docTypeCounts.applyAsLong(DOC_TYPE_TX);
             report.setTransactionDocsInIndex(transactionDocsInIndex);
             report.setDbTransactionCount(txIdsInDb.cardinality());
 
             // NODE
             setDuplicates(report, request, DOC_TYPE_NODE, IndexHealthReport::setDuplicatedLeafInIndex);
-            long leafDocCountInIndex = getSafeCount(docTypeCounts, DOC_TYPE_NODE);
+            long leafDocCountInIndex = docTypeCounts.applyAsLong(DOC_TYPE_NODE);
             report.setLeafDocCountInIndex(leafDocCountInIndex);
 
             // ERROR
             setDuplicates(report, request, DOC_TYPE_ERROR_NODE, IndexHealthReport::setDuplicatedErrorInIndex);
-            long errorCount = getSafeCount(docTypeCounts, DOC_TYPE_ERROR_NODE);
+            long errorCount = docTypeCounts.applyAsLong(DOC_TYPE_ERROR_NODE);
             report.setErrorDocCountInIndex(errorCount);
 
             // UNINDEXED
             setDuplicates(report, request, DOC_TYPE_UNINDEXED_NODE, IndexHealthReport::setDuplicatedUnindexedInIndex);
-            long unindexedDocCountInIndex = getSafeCount(docTypeCounts, DOC_TYPE_UNINDEXED_NODE);
+            long unindexedDocCountInIndex = docTypeCounts.applyAsLong(DOC_TYPE_UNINDEXED_NODE);
             report.setUnindexedDocCountInIndex(unindexedDocCountInIndex);
             return report;
         }
@@ -839,7 +858,7 @@ public class SolrInformationServer implements InformationServer
     {
         try (SolrQueryRequest request = newSolrQueryRequest())
         {
-            NamedList<Integer> docTypeCounts = this.getFacets(request, "*:*", FIELD_DOC_TYPE, 0);
+            ToLongFunction<String> docTypeCounts = docTypeCounts(request);
             IndexHealthReport report = new IndexHealthReport(this);
             TransactionInfoReporter aclTxReporter = new TransactionInfoReporter(report)
             {
@@ -867,8 +886,8 @@ public class SolrInformationServer implements InformationServer
                     report.setUniqueAclTransactionDocsInIndex(count);
                 }
             };
-            reportTransactionInfo(aclTxReporter, minAclTxId, maxAclTxId, aclTxIdsInDb, request, FIELD_ACLTXID);
-            long aclTransactionDocsInIndex = getSafeCount(docTypeCounts, DOC_TYPE_ACL_TX);
+            reportTransactionInfo(aclTxReporter, minAclTxId, maxAclTxId, aclTxIdsInDb, FIELD_ACLTXID);
+            long aclTransactionDocsInIndex = docTypeCounts.applyAsLong(DOC_TYPE_ACL_TX);
             report.setAclTransactionDocsInIndex(aclTransactionDocsInIndex);
             report.setDbAclTransactionCount(aclTxIdsInDb.cardinality());
             return report;
@@ -1161,6 +1180,66 @@ public class SolrInformationServer implements InformationServer
         return searcherOpened;
     }
 
+    @Override
+    public void softCommit() throws IOException
+    {
+        // avoid multiple commits and warming searchers
+        commitAndRollbackLock.writeLock().lock();
+        try
+        {
+            canUpdate();
+            UpdateRequestProcessor processor = null;
+            try (SolrQueryRequest request = newSolrQueryRequest())
+            {
+                processor = this.core.getUpdateProcessingChain(null).createProcessor(request, newSolrQueryResponse());
+                CommitUpdateCommand command = new CommitUpdateCommand(request, false);
+                command.softCommit = true;
+                command.openSearcher = true;
+                command.waitSearcher = false;
+                processor.processCommit(command);
+            }
+            finally
+            {
+                if (processor != null)
+                {
+                    processor.finish();
+                }
+            }
+        }
+        finally
+        {
+            commitAndRollbackLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public IndexActivity getIndexActivity() throws IOException
+    {
+        RefCounted<IndexWriter> writer = null;
+        RefCounted<SolrIndexSearcher> searcher = null;
+        try
+        {
+            writer = core.getSolrCoreState().getIndexWriter(core);
+            searcher = core.getSearcher();
+
+            IndexWriter indexWriter = writer.get();
+            SolrIndexSearcher indexSearcher = searcher.get();
+            Object warmupTime = indexSearcher.getStatistics().get("warmupTime");
+            return new IndexActivity(
+                    indexWriter.maxDoc(),
+                    indexSearcher.maxDoc(),
+                    indexWriter.ramBytesUsed(),
+                    indexWriter.hasUncommittedChanges(),
+                    indexSearcher.getRawReader().isCurrent(),
+                    warmupTime instanceof Number ? ((Number) warmupTime).longValue() : 0);
+        }
+        finally
+        {
+            ofNullable(writer).ifPresent(RefCounted::decref);
+            ofNullable(searcher).ifPresent(RefCounted::decref);
+        }
+    }
+
     @Override
     public void deleteByAclChangeSetId(Long aclChangeSetId) throws IOException
     {
@@ -1204,21 +1283,23 @@ public class SolrInformationServer implements InformationServer
         RefCounted<SolrIndexSearcher> refCounted = null;
         try (SolrQueryRequest request = newSolrQueryRequest())
         {
-            NamedList docTypeCounts = this.getFacets(request, "*:*", FIELD_DOC_TYPE, 0);
-            long aclCount = getSafeCount(docTypeCounts, DOC_TYPE_ACL);
+            IndexStatistics statistics = cachedIndexStatistics();
+            ToLongFunction<String> docTypeCounts = docTypeCounts(request, statistics);
+            long aclCount = docTypeCounts.applyAsLong(DOC_TYPE_ACL);
             coreSummary.add("Alfresco Acls in Index", aclCount);
-            long nodeCount = getSafeCount(docTypeCounts, DOC_TYPE_NODE);
+            long nodeCount = docTypeCounts.applyAsLong(DOC_TYPE_NODE);
             coreSummary.add("Alfresco Nodes in Index", nodeCount);
-            long txCount = getSafeCount(docTypeCounts, DOC_TYPE_TX);
+            long txCount = docTypeCounts.applyAsLong(DOC_TYPE_TX);
             coreSummary.add("Alfresco Transactions in Index", txCount);
-            long aclTxCount = getSafeCount(docTypeCounts, DOC_TYPE_ACL_TX);
+            long aclTxCount = docTypeCounts.applyAsLong(DOC_TYPE_ACL_TX);
             coreSummary.add("Alfresco Acl Transactions in Index", aclTxCount);
-            long stateCount = getSafeCount(docTypeCounts, DOC_TYPE_STATE);
+            long stateCount = docTypeCounts.applyAsLong(DOC_TYPE_STATE);
             coreSummary.add("Alfresco States in Index", stateCount);
-            long unindexedNodeCount = getSafeCount(docTypeCounts, DOC_TYPE_UNINDEXED_NODE);
+            long unindexedNodeCount = docTypeCounts.applyAsLong(DOC_TYPE_UNINDEXED_NODE);
             coreSummary.add("Alfresco Unindexed Nodes", unindexedNodeCount);
-            long errorNodeCount = getSafeCount(docTypeCounts, DOC_TYPE_ERROR_NODE);
+            long errorNodeCount = docTypeCounts.applyAsLong(DOC_TYPE_ERROR_NODE);
             coreSummary.add("Alfresco Error Nodes in Index", errorNodeCount);
+            ofNullable(statistics).ifPresent(s -> coreSummary.add("Statistics Snapshot Date", new Date(s.getTime())));
 
             refCounted = core.getSearcher(false, true, null);
             SolrIndexSearcher solrIndexSearcher = refCounted.get();
@@ -1262,6 +1343,11 @@ public class SolrInformationServer implements InformationServer
                 {
                     coreSummary.add("/alfrescoPathCache", infoMBean.getStatistics());
                 }
+
+                if (key.equals("alfrescoQueryPlanCache"))
+                {
+                    coreSummary.add("/alfrescoQueryPlanCache", infoMBean.getStatistics());
+                }
             }
 
             // Adds detailed stats for each registered searcher
@@ -1398,7 +1484,7 @@ public class SolrInformationServer implements InformationServer
     @Override
     public IOpenBitSet getOpenBitSetInstance()
     {
-        return new SolrOpenBitSetAdapter();
+        return new CompressedOpenBitSet();
     }
 
     @Override
@@ -1950,10 +2036,10 @@ public class SolrInformationServer implements InformationServer
                             docRef.tenant,
                             docRef.dbId));
 
-            if (docRef.hasAtLeastOneContentProperty())
-            {
-                addContentToDoc(docRef, doc, docRef.dbId);
-            }
+            List<CompletableFuture<List<String>>> fingerprints =
+                    docRef.hasAtLeastOneContentProperty()
+                            ? addContentToDoc(docRef, doc, docRef.dbId)
+                            : Collections.emptyList();
 
             LOGGER.debug("Text content of Document DBID={} has been updated (not yet indexed)", docRef.dbId);
 
@@ -1965,6 +2051,12 @@ public class SolrInformationServer implements InformationServer
 
             markAsContentInSynch(doc, latestAppliedVersionId);
 
+            // The fingerprints have been computed in background while the content of the other properties was fetched
+            for (CompletableFuture<List<String>> fingerprint : fingerprints)
+            {
+                addFingerprint(doc, fingerprint);
+            }
+
             // Add to index
             AddUpdateCommand addDocCmd = new AddUpdateCommand(request);
             addDocCmd.overwrite = true;
@@ -2058,10 +2150,7 @@ public class SolrInformationServer implements InformationServer
                 }
 
                 LOGGER.debug("Deleting");
-                DeleteUpdateCommand delDocCmd = new DeleteUpdateCommand(request);
-                String query = this.cloud.getQuery(FIELD_DBID, OR, deletedNodeIds, shardDeletedNodeIds, shardUpdatedNodeIds, unknownNodeIds);
-                delDocCmd.setQuery(query);
-                processor.processDelete(delDocCmd);
+                deleteByIds(processor, request, FIELD_DBID, deletedNodeIds, shardDeletedNodeIds, shardUpdatedNodeIds, unknownNodeIds);
             }
 
             if (!updatedNodeIds.isEmpty() || !unknownNodeIds.isEmpty() || !shardUpdatedNodeIds.isEmpty())
@@ -2134,8 +2223,11 @@ public class SolrInformationServer implements InformationServer
                         }
                     }
 
-                    // Make sure any unindexed or error doc is removed.
-                    deleteErrorNode(processor, request, node);
+                    // Make sure any unindexed or error doc is removed: a delete by id is buffered by the index writer
+                    // (no searcher reopen) and it is a no-op when there's no such doc, so no existence check is needed
+                    DeleteUpdateCommand delErrorDocCmd = new DeleteUpdateCommand(request);
+                    delErrorDocCmd.setId(PREFIX_ERROR + node.getId());
+                    processor.processDelete(delErrorDocCmd);
 
                     addDocCmd.solrDoc =
                             populateWithMetadata(basicDocument(nodeMetaData, DOC_TYPE_NODE, PartialSolrInputDocument::new),
@@ -2728,17 +2820,24 @@ public class SolrInformationServer implements InformationServer
         }
     }
 
-    private void addContentToDoc(TenantDbId docRef, SolrInputDocument doc, long dbId)
+    /**
+     * Adds the text content of each content property to the input document.
+     *
+     * @return the (asynchronous) fingerprint generation of each content, to be added to the document before submitting it.
+     */
+    private List<CompletableFuture<List<String>>> addContentToDoc(TenantDbId docRef, SolrInputDocument doc, long dbId)
     {
-        docRef.contentPropertySpecsStream()
-                .forEach(propertySpecs -> {
+        return docRef.contentPropertySpecsStream()
+                .map(propertySpecs -> {
                     try {
                         var propertyQName = QName.createQName(propertySpecs.fieldName.substring(AlfrescoSolrDataModel.CONTENT_S_LOCALE_PREFIX.length()));
-                        addContentPropertyToDocUsingAlfrescoRepository(doc, propertyQName, dbId, propertySpecs.locale);
+                        return addContentPropertyToDocUsingAlfrescoRepository(doc, propertyQName, dbId, propertySpecs.locale);
                     } catch (AuthenticationException | IOException exception) {
                         throw new RuntimeException(exception);
                     }
-                });
+                })
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
     }
 
 
@@ -2746,22 +2845,36 @@ public class SolrInformationServer implements InformationServer
     /**
      * Extracts the text content from the given API response.
      *
+     * The (optionally gzipped) response stream is decoded incrementally, through a reusable per-thread char buffer,
+     * directly into the builder of the stored field value, which already starts with the given prefix (i.e. the
+     * locale marker). In this way the only copies of the text content are the builder and the resulting string.
+     *
      * @param response the API (GetTextContent) response.
-     * @return the text content from the given API response.
+     * @param prefix the prefix of the resulting value.
+     * @return the prefix followed by the text content from the given API response.
      * @throws IOException in case of I/O failure.
      */
-    private String textContentFrom(GetTextContentResponse response) throws IOException
+    private String textContentFrom(GetTextContentResponse response, String prefix) throws IOException
     {
         try (final InputStream ris = ofNullable(response.getContentEncoding())
                 .map(c -> c.equals("gzip")).orElse(false)?
                 new GZIPInputStream(response.getContent()) : response.getContent())
         {
+            StringBuilder textContent = new StringBuilder(prefix);
             if (ris != null)
             {
-                byte[] bytes = FileCopyUtils.copyToByteArray(new BoundedInputStream(ris, contentStreamLimit));
-                return new String(bytes, StandardCharsets.UTF_8);
+                Reader reader = new InputStreamReader(new BoundedInputStream(ris, contentStreamLimit), StandardCharsets.UTF_8);
+                char[] buffer = CONTENT_READ_BUFFER.get();
+                int read;
+                while ((read = reader.read(buffer)) != -1)
+                {
+                    textContent.append(buffer, 0, read);
+                }
             }
-            return "";
+
+            // Capacity of the builder which held the text content (UTF-16 code units, not the allocated bytes)
+            trackerStats.addContentBuilderCapacity(textContent.capacity());
+            return textContent.toString();
         }
         finally
         {
@@ -2769,7 +2882,12 @@ public class SolrInformationServer implements InformationServer
         }
     }
 
-    private void addContentPropertyToDocUsingAlfrescoRepository(
+    /**
+     * Adds the text content of the given property to the input document.
+     *
+     * @return the (asynchronous) fingerprint generation of the text content, or null if no fingerprint is needed.
+     */
+    private CompletableFuture<List<String>> addContentPropertyToDocUsingAlfrescoRepository(
             SolrInputDocument doc,
             QName propertyQName,
             long dbId,
@@ -2783,37 +2901,51 @@ public class SolrInformationServer implements InformationServer
             addContentPropertyMetadata(doc, propertyQName, AlfrescoSolrDataModel.SpecializedFieldType.TRANSFORMATION_EXCEPTION, response);
             addContentPropertyMetadata(doc, propertyQName, AlfrescoSolrDataModel.SpecializedFieldType.TRANSFORMATION_TIME, response);
 
-            final String textContent = textContentFrom(response);
-
-            if (fingerprintHasBeenEnabledOnThisInstance && !textContent.isBlank()) {
-                Analyzer analyzer = core.getLatestSchema().getFieldType("min_hash").getIndexAnalyzer();
-                TokenStream ts = analyzer.tokenStream("dummy_field", textContent);
-                CharTermAttribute termAttribute = ts.getAttribute(CharTermAttribute.class);
-                ts.reset();
-                doc.removeField(FINGERPRINT_FIELD);
-                while (ts.incrementToken())
-                {
-                    StringBuilder tokenBuff = new StringBuilder();
-                    char[] buff = termAttribute.buffer();
-
-                    for (int i = 0; i < termAttribute.length(); i++) {
-                        tokenBuff.append(Integer.toHexString(buff[i]));
-                    }
-                    doc.addField(FINGERPRINT_FIELD, tokenBuff.toString());
-
-                }
-                ts.end();
-                ts.close();
-            }
+            final String localeMarker = "\u0000" + languageFrom(locale) + "\u0000";
+            final String storedValue = textContentFrom(response, localeMarker);
 
             this.getTrackerStats().addDocTransformationTime(System.nanoTime() - start);
 
+            // Fingerprint is computed in background while the remaining content work is done: the caller collects it
+            // just before submitting the document
+            final CompletableFuture<List<String>> fingerprint =
+                    fingerprintHasBeenEnabledOnThisInstance && !ContentFingerprintGenerator.isBlank(storedValue, localeMarker.length())
+                            ? fingerprintGenerator.fingerprint(core.getLatestSchema().getFieldType("min_hash").getIndexAnalyzer(), storedValue, localeMarker.length())
+                            : null;
+
             String storedField = dataModel.getStoredContentField(propertyQName);
-            doc.setField(storedField, "\u0000" + languageFrom(locale) + "\u0000" + textContent);
+            doc.setField(storedField, storedValue);
 
             dataModel.getIndexedFieldNamesForProperty(propertyQName)
                     .getFields()
                     .forEach(field -> addFieldIfNotSet(doc, field.getField()));
+
+            return fingerprint;
+        }
+    }
+
+    /**
+     * Waits for the fingerprint generation and adds the resulting values to the input document.
+     *
+     * @param doc the target document.
+     * @param fingerprint the (asynchronous) fingerprint generation result.
+     * @throws IOException in case the fingerprint generation failed.
+     */
+    private void addFingerprint(SolrInputDocument doc, CompletableFuture<List<String>> fingerprint) throws IOException
+    {
+        try
+        {
+            List<String> hashes = fingerprint.join();
+            doc.removeField(FINGERPRINT_FIELD);
+            hashes.forEach(hash -> doc.addField(FINGERPRINT_FIELD, hash));
+        }
+        catch (CompletionException exception)
+        {
+            if (exception.getCause() instanceof UncheckedIOException)
+            {
+                throw ((UncheckedIOException) exception.getCause()).getCause();
+            }
+            throw exception;
         }
     }
 
@@ -3705,87 +3837,34 @@ public class SolrInformationServer implements InformationServer
         }
     }
 
+    /**
+     * Compares the ids of the given field (TXID or ACLTXID) in the index with the ids in the repository.
+     * The ids in the index are streamed from the doc values (see {@link IndexHealthChecker}).
+     */
     private void reportTransactionInfo(TransactionInfoReporter reporter, Long minId, long maxId, IOpenBitSet idsInDb,
-                                       SolrQueryRequest request, String field)
+                                       String field)
     {
         if (minId != null)
         {
-            IOpenBitSet idsInIndex = this.getOpenBitSetInstance();
-            long batchStartId = minId;
-            long batchEndId = Math.min(batchStartId + BATCH_FACET_TXS, maxId);
-            long idInIndex = 0L;
-
-            // Continues as long as the batch does not pass the maximum
-            while (batchStartId <= maxId)
+            RefCounted<SolrIndexSearcher> refCounted = null;
+            try
             {
-                long iterationStart = batchStartId;
-                NamedList<Integer> idCounts = this.getFacets(request,
-                        field + ":[" + batchStartId + " TO " + batchEndId + "]",
-                        field, 1); // Min count of 1 ensures that the id returned is in the index
-                for (Map.Entry<String, Integer> idCount : idCounts)
-                {
-                    idInIndex = Long.parseLong(idCount.getKey());
-
-                    // Only looks at facet values that fit the query
-                    if (batchStartId <= idInIndex && idInIndex <= batchEndId)
-                    {
-                        idsInIndex.set(idInIndex);
-
-                        // The sequence of ids in the index could look like this: 1, 2, 5, 7...
-                        for (long id = iterationStart; id <= idInIndex; id++)
-                        {
-                            if (id == idInIndex)
-                            {
-                                iterationStart = idInIndex + 1;
-
-                                if (!idsInDb.get(id))
-                                {
-                                    reporter.reportIdInIndexButNotInDb(id);
-                                }
-                            }
-                            else if (idsInDb.get(id))
-                            {
-                                reporter.reportIdInDbButNotInIndex(id);
-                            }
-                        }
-
-                        if (idCount.getValue() > 1)
-                        {
-                            reporter.reportDuplicatedIdInIndex(idInIndex);
-                        }
-                    }
-                    else
-                    {
-                        break;
-                    }
-                }
-
-                batchStartId = batchEndId + 1;
-                batchEndId = Math.min(batchStartId + BATCH_FACET_TXS, maxId);
+                refCounted = this.core.getSearcher();
+                IOpenBitSet idsInIndex = this.getOpenBitSetInstance();
+                IndexHealthChecker.collectIdsInIndex(refCounted.get().getIndexReader(), field, minId, maxId,
+                        idsInIndex, reporter::reportDuplicatedIdInIndex);
+                IndexHealthChecker.compare(idsInDb, idsInIndex, minId, maxId,
+                        reporter::reportIdInIndexButNotInDb, reporter::reportIdInDbButNotInIndex);
+                reporter.reportUniqueIdsInIndex(idsInIndex.cardinality());
             }
-
-            // Verify we processed all items from request params, if not, send a warning
-            if (idInIndex != 0L && idInIndex < batchEndId)
+            catch (IOException exception)
             {
-                try
-                {
-                    AclChangeSets changesets = repositoryClient.getAclChangeSets(null, idInIndex, null, idInIndex + 1,
-                            1);
-                    Long changeSetCommitTimeMs = changesets.getAclChangeSets().size() > 0
-                            ? changesets.getAclChangeSets().get(0).getCommitTimeMs()
-                            : 0L;
-
-                    LOGGER.warning("Not all items processed. Last acl changeset (id {} ) with commit time evaluated: {}",
-                            idInIndex, changeSetCommitTimeMs);
-                }
-                catch (JSONException | AuthenticationException | IOException e)
-                {
-                    LOGGER.warning("Not all items processed. Last acl changeset evaluated: {}", idInIndex);
-                }
-
+                throw new UncheckedIOException(exception);
+            }
+            finally
+            {
+                ofNullable(refCounted).ifPresent(RefCounted::decref);
             }
-
-            reporter.reportUniqueIdsInIndex(idsInIndex.cardinality());
         }
     }
 
@@ -3867,8 +3946,39 @@ public class SolrInformationServer implements InformationServer
 
     private void deleteById(String field, Long id) throws IOException
     {
-        String query = field + ":" + id;
-        deleteByQuery(query);
+        UpdateRequestProcessor processor = null;
+        try (SolrQueryRequest request = newSolrQueryRequest())
+        {
+            processor = this.core.getUpdateProcessingChain(null).createProcessor(request, newSolrQueryResponse());
+            deleteByIds(processor, request, field, singletonList(id));
+        }
+        finally
+        {
+            if (processor != null)
+            {
+                processor.finish();
+            }
+        }
+    }
+
+    /**
+     * Deletes all the docs having one of the given values in the given field, using a single terms query instead of
+     * a boolean query with a clause for each value.
+     */
+    @SuppressWarnings("rawtypes")
+    private void deleteByIds(UpdateRequestProcessor processor, SolrQueryRequest request, String field, Collection... idLists) throws IOException
+    {
+        String query = this.cloud.getTermsQuery(field, idLists);
+        if (query == null)
+        {
+            return;
+        }
+
+        long start = System.nanoTime();
+        DeleteUpdateCommand delDocCmd = new DeleteUpdateCommand(request);
+        delDocCmd.setQuery(query);
+        processor.processDelete(delDocCmd);
+        this.trackerStats.addBulkDelete(stream(idLists).mapToLong(Collection::size).sum(), System.nanoTime() - start);
     }
 
     private void deleteByQuery(String query) throws IOException
@@ -4070,6 +4180,70 @@ public class SolrInformationServer implements InformationServer
                 .anyMatch(associations -> !associations.isEmpty());
     }
 
+    /**
+     * Computes the index figures which are cached by the {@link CoreStatisticsService} on the given searcher.
+     *
+     * @param searcher the (possibly not yet registered) searcher.
+     * @return the statistics of the searcher.
+     * @throws IOException in case of failure while querying the searcher.
+     */
+    public IndexStatistics computeIndexStatistics(SolrIndexSearcher searcher) throws IOException
+    {
+        Map<String, Long> docTypeCounts = new LinkedHashMap<>();
+        for (String docType : asList(DOC_TYPE_ACL, DOC_TYPE_NODE, DOC_TYPE_TX, DOC_TYPE_ACL_TX, DOC_TYPE_STATE, DOC_TYPE_UNINDEXED_NODE, DOC_TYPE_ERROR_NODE))
+        {
+            docTypeCounts.put(docType, (long) searcher.count(new TermQuery(new Term(FIELD_DOC_TYPE, docType))));
+        }
+
+        Query contentNodes =
+                new BooleanQuery.Builder()
+                    .add(new TermQuery(new Term(FIELD_DOC_TYPE, DOC_TYPE_NODE)), BooleanClause.Occur.FILTER)
+                    .add(new TermQuery(new Term(FIELD_TYPE, ContentModel.TYPE_CONTENT.toString())), BooleanClause.Occur.FILTER)
+                    .build();
+        Query outdatedContentNodes =
+                new BooleanQuery.Builder()
+                    .add(contentNodes, BooleanClause.Occur.FILTER)
+                    .add(documentsWithOutdatedContentQuery(), BooleanClause.Occur.FILTER)
+                    .build();
+
+        return new IndexStatistics(
+                docTypeCounts,
+                searcher.count(contentNodes),
+                searcher.count(outdatedContentNodes),
+                searcher.getIndexReader().getVersion(),
+                System.currentTimeMillis());
+    }
+
+    /**
+     * @return the index figures of the current searcher kept by the {@link CoreStatisticsService}, null if they are not available.
+     */
+    private IndexStatistics cachedIndexStatistics()
+    {
+        return ofNullable(adminHandler)
+                .map(AlfrescoCoreAdminHandler::getCoreStatisticsService)
+                .map(service -> service.get(core.getName()))
+                .orElse(null);
+    }
+
+    private ToLongFunction<String> docTypeCounts(SolrQueryRequest request)
+    {
+        return docTypeCounts(request, cachedIndexStatistics());
+    }
+
+    /**
+     * @return the doc type counts from the given statistics or, if they are not available, from a facet query.
+     */
+    private ToLongFunction<String> docTypeCounts(SolrQueryRequest request, IndexStatistics statistics)
+    {
+        if (statistics != null)
+        {
+            return statistics::getDocTypeCount;
+        }
+
+        NamedList<Integer> counts = this.getFacets(request, "*:*", FIELD_DOC_TYPE, 0);
+        return docType -> getSafeCount(counts, docType);
+    }
+
     private long getSafeCount(NamedList<Integer> counts, String countType)
     {
         return ofNullable(counts)
@@ -58,6 +58,11 @@ public class SolrOpenBitSetAdapter implements IOpenBitSet
 	@Override
 	public long nextSetBit(long index) 
 	{
+		// LongBitSet doesn't accept indexes beyond its length
+		if (index >= delegate.length())
+		{
+			return -1;
+		}
 		return delegate.nextSetBit(index);
 	}
 
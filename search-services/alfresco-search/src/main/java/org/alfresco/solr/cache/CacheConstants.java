@@ -45,4 +45,5 @@ public class CacheConstants
     public final static String ALFRESCO_READER_CACHE = "alfrescoReaderCache";
     public final static String ALFRESCO_DENIED_CACHE = "alfrescoDeniedCache";
     public final static String ALFRESCO_PATH_CACHE = "alfrescoPathCache";
+    public final static String ALFRESCO_QUERY_PLAN_CACHE = "alfrescoQueryPlanCache";
 }
@@ -44,6 +44,7 @@ import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.alfresco.util.cache.AbstractAsynchronouslyRefreshedCache;
 import org.alfresco.util.cache.DefaultAsynchronouslyRefreshedCacheRegistry;
@@ -109,6 +110,9 @@ public class AsyncBuildSuggestComponent extends SearchComponent implements SolrC
 
   /** SolrConfig label to identify boolean value describing whether suggesters should be built at all. */
   private static final String ENABLED_LABEL = "enabled";
+
+  /** SolrConfig label to identify boolean value describing whether suggesters should be built per segment. */
+  private static final String INCREMENTAL_LABEL = "incremental";
   
   private static final String ASYNC_CACHE_KEY = "suggester";
 
@@ -196,8 +200,9 @@ public class AsyncBuildSuggestComponent extends SearchComponent implements SolrC
           boolean buildOnCommit = Boolean.parseBoolean((String) suggesterParams.get(BUILD_ON_COMMIT_LABEL));
           boolean buildOnOptimize = Boolean.parseBoolean((String) suggesterParams.get(BUILD_ON_OPTIMIZE_LABEL));
           boolean enabled = Boolean.parseBoolean((String) suggesterParams.get(ENABLED_LABEL));
+          boolean incremental = Boolean.parseBoolean((String) suggesterParams.get(INCREMENTAL_LABEL));
           long minSecsBetweenBuilds = Long.parseLong(core.getCoreDescriptor().getCoreProperty(MIN_SECS_BETWEEN_BUILDS, "-1")); 
-          SuggesterCache suggesterCache = new SuggesterCache(core, suggesterParams, enabled, buildOnCommit, buildOnOptimize, buildOnStartup);
+          SuggesterCache suggesterCache = new SuggesterCache(core, suggesterParams, enabled, buildOnCommit, buildOnOptimize, buildOnStartup, incremental);
           
           String dictionary = suggester.init(suggesterParams, core);
           if (dictionary != null) {
@@ -457,8 +462,20 @@ public class AsyncBuildSuggestComponent extends SearchComponent implements SolrC
     NamedList<String> stats = new SimpleOrderedMap<>();
     stats.add("totalSizeInBytes", String.valueOf(ramBytesUsed()));
     for (Map.Entry<String, SuggesterCache> entry : suggesters.entrySet()) {
-      SolrSuggester suggester = entry.getValue().get(entry.getKey());
-      stats.add(entry.getKey(), suggester.toString());
+      String name = entry.getKey();
+      SuggesterCache cache = entry.getValue();
+      SolrSuggester suggester = cache.get(ASYNC_CACHE_KEY);
+      stats.add(name, suggester.toString());
+      stats.add(name + ".incremental", String.valueOf(suggester instanceof IncrementalSolrSuggester
+              && ((IncrementalSolrSuggester) suggester).isIncremental()));
+      stats.add(name + ".sizeInBytes", String.valueOf(suggester.ramBytesUsed()));
+      stats.add(name + ".lastBuildTimeMs", String.valueOf(cache.getLastBuildTimeMillis()));
+      stats.add(name + ".stalenessMs", String.valueOf(cache.getStalenessMillis()));
+      if (suggester instanceof IncrementalSolrSuggester) {
+        IncrementalSolrSuggester incrementalSuggester = (IncrementalSolrSuggester) suggester;
+        stats.add(name + ".segments", String.valueOf(incrementalSuggester.getSegmentCount()));
+        stats.add(name + ".lastBuildSegments", String.valueOf(incrementalSuggester.getLastBuildSegments()));
+      }
     }
     return stats;
   }
@@ -579,6 +596,7 @@ public class AsyncBuildSuggestComponent extends SearchComponent implements SolrC
     @Override
     public void newSearcher(SolrIndexSearcher newSearcher,
                             SolrIndexSearcher currentSearcher) {
+        suggesterCache.searcherOpened();
         if (currentSearcher == null)
         {
             // firstSearcher event - always queue a suggester build.
@@ -595,7 +613,8 @@ public class AsyncBuildSuggestComponent extends SearchComponent implements SolrC
             long lastBuild = suggesterCache.getLastBuild();
             long elapsedTimeMillis = (lastBuild == 0) ? 0 : (now - lastBuild);
             long elapsedTimeSecs = (lastBuild == 0) ? 0 : (elapsedTimeMillis / 1000);
-            if (elapsedTimeSecs > minSecsBetweenBuilds)
+            // incremental builds only cover the new segments, so they are not throttled.
+            if (suggesterCache.isIncremental() || elapsedTimeSecs > minSecsBetweenBuilds)
             {
                 if (LOG.isDebugEnabled())
                 {
@@ -648,9 +667,13 @@ public class AsyncBuildSuggestComponent extends SearchComponent implements SolrC
     private final boolean buildOnStartup;
     private final boolean enabled;
     private final SolrSuggester initialSuggester;
-    private long lastBuild = 0;
+    private final IncrementalSolrSuggester incrementalSuggester;
+    private volatile long lastBuild = 0;
+    private volatile long lastBuildTimeMillis = 0;
+    /** Opening time of the oldest searcher not covered by a build yet, zero if the suggester is up to date. */
+    private final AtomicLong firstUncoveredSearcher = new AtomicLong();
     
-    public SuggesterCache(SolrCore core, NamedList suggesterParams, boolean enabled, boolean buildOnCommit, boolean buildOnOptimize, boolean buildOnStartup)
+    public SuggesterCache(SolrCore core, NamedList suggesterParams, boolean enabled, boolean buildOnCommit, boolean buildOnOptimize, boolean buildOnStartup, boolean incremental)
     {
         this.core = core;
         this.suggesterParams = suggesterParams;
@@ -680,6 +703,17 @@ public class AsyncBuildSuggestComponent extends SearchComponent implements SolrC
         // Create and configure the initial empty suggester
         initialSuggester = new SolrSuggester();
         initialSuggester.init(suggesterParams, core);
+
+        // The incremental suggester is built once and then kept up to date segment by segment
+        if (incremental)
+        {
+            incrementalSuggester = new IncrementalSolrSuggester();
+            incrementalSuggester.init(suggesterParams, core);
+        }
+        else
+        {
+            incrementalSuggester = null;
+        }
     }
     
     /**
@@ -743,10 +777,19 @@ public class AsyncBuildSuggestComponent extends SearchComponent implements SolrC
             tempFileWarningLogger.removeFiles();
         }
 
+        final long buildStartMillis = System.currentTimeMillis();
         RefCounted<SolrIndexSearcher> refCountedSearcher = core.getSearcher();
         try
         {
             SolrIndexSearcher searcher = refCountedSearcher.get();
+
+            if (incrementalSuggester != null)
+            {
+                // Only the segments which are not covered yet are built
+                buildSuggesterIndex(incrementalSuggester, searcher);
+                buildCompleted(buildStartMillis);
+                return incrementalSuggester;
+            }
             
             // Create and configure the suggester
             SolrSuggester suggester = new SolrSuggester();
@@ -783,7 +826,7 @@ public class AsyncBuildSuggestComponent extends SearchComponent implements SolrC
               }
             }
           }
-          lastBuild = System.currentTimeMillis();
+          buildCompleted(buildStartMillis);
           return suggester;
         }
         finally
@@ -802,6 +845,55 @@ public class AsyncBuildSuggestComponent extends SearchComponent implements SolrC
     {
         return lastBuild;
     }
+
+    /**
+     * @return the duration (ms) of the last completed suggester build.
+     */
+    public long getLastBuildTimeMillis()
+    {
+        return lastBuildTimeMillis;
+    }
+
+    /**
+     * Returns how long (ms) the suggester has been lagging behind the index, that is the time elapsed since the
+     * oldest searcher which is not covered by a build yet has been opened.
+     *
+     * @return the staleness of the suggester, zero if it is up to date.
+     */
+    public long getStalenessMillis()
+    {
+        long since = firstUncoveredSearcher.get();
+        return since == 0 ? 0 : System.currentTimeMillis() - since;
+    }
+
+    /**
+     * @return true if the suggester is built per segment.
+     */
+    public boolean isIncremental()
+    {
+        return incrementalSuggester != null;
+    }
+
+    /**
+     * Records that a new searcher has been opened, so the suggester is stale until the next build.
+     */
+    void searcherOpened()
+    {
+        firstUncoveredSearcher.compareAndSet(0, System.currentTimeMillis());
+    }
+
+    private void buildCompleted(long startMillis)
+    {
+        lastBuild = System.currentTimeMillis();
+        lastBuildTimeMillis = lastBuild - startMillis;
+
+        // The build used the searcher which was current at start time: searchers opened later are still uncovered.
+        long since = firstUncoveredSearcher.get();
+        if (since != 0 && since <= startMillis)
+        {
+            firstUncoveredSearcher.compareAndSet(since, 0);
+        }
+    }
     
     private void buildSuggesterIndex(SolrSuggester suggester, SolrIndexSearcher newSearcher) {
       try {
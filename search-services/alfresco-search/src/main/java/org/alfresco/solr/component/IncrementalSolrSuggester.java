@@ -0,0 +1,387 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+
+package org.alfresco.solr.component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.spell.Dictionary;
+import org.apache.lucene.search.spell.HighFrequencyDictionary;
+import org.apache.lucene.search.suggest.InputIterator;
+import org.apache.lucene.search.suggest.Lookup;
+import org.apache.lucene.search.suggest.Lookup.LookupResult;
+import org.apache.lucene.util.BytesRef;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.core.SolrCore;
+import org.apache.solr.search.SolrIndexSearcher;
+import org.apache.solr.spelling.suggest.LookupFactory;
+import org.apache.solr.spelling.suggest.SolrSuggester;
+import org.apache.solr.spelling.suggest.SuggesterOptions;
+import org.apache.solr.spelling.suggest.SuggesterResult;
+import org.apache.solr.spelling.suggest.jaspell.JaspellLookupFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link SolrSuggester} which keeps a lookup for each index segment instead of a single lookup built over the
+ * whole index.
+ *
+ * Segments are immutable, so a (re)build only needs to create the lookups of the segments which appeared since the
+ * previous build and to drop the lookups of the segments which have been merged away. The per-segment suggestions
+ * are merged at query time: the weights (i.e. the segment document frequencies) of the same suggestion are summed,
+ * so the resulting weight is the same a full build would compute.
+ * The {@link HighFrequencyDictionary} threshold is turned into a minimum document frequency once per build, using
+ * the document count of the whole index as a full build does, and each new segment keeps the terms whose segment
+ * document frequency reaches it. Segments built by a previous build keep the minimum computed at that time.
+ * Each segment contributes {@link #CANDIDATES_FACTOR} times the requested suggestions to the merge, therefore a
+ * suggestion which is frequent overall but never among the top ones of a single segment can be missed.
+ *
+ * Only the field based (high frequency) dictionary and lookups without context filtering are supported: the
+ * suggester falls back to the regular full build when a different dictionary is configured.
+ */
+public class IncrementalSolrSuggester extends SolrSuggester
+{
+    private static final Logger LOG = LoggerFactory.getLogger(IncrementalSolrSuggester.class);
+
+    /** Number of candidates (as multiple of the requested count) collected from each segment. */
+    static final int CANDIDATES_FACTOR = 2;
+
+    private static final String FIELD = "field";
+    private static final String LOOKUP_IMPL = "lookupImpl";
+    private static final String DICTIONARY_IMPL = "dictionaryImpl";
+    private static final String SOURCE_LOCATION = "sourceLocation";
+    private static final String THRESHOLD = "threshold";
+
+    private NamedList<?> config;
+    private LookupFactory lookupFactory;
+    private String field;
+    private float threshold;
+    private boolean incremental;
+
+    /** The lookups of the current segments, keyed by segment core key. Replaced (never modified) at each build. */
+    private volatile Map<Object, SegmentLookup> segments = Collections.emptyMap();
+
+    private volatile int lastBuildSegments;
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public String init(NamedList config, SolrCore core)
+    {
+        String name = super.init(config, core);
+        this.config = config;
+        this.field = (String) config.get(FIELD);
+        this.incremental = field != null
+                && config.get(DICTIONARY_IMPL) == null
+                && config.get(SOURCE_LOCATION) == null;
+
+        Object thresholdValue = config.get(THRESHOLD);
+        this.threshold = thresholdValue == null ? 0 : Float.parseFloat(thresholdValue.toString());
+
+        String lookupImpl = (String) config.get(LOOKUP_IMPL);
+        this.lookupFactory = core.getResourceLoader().newInstance(
+                lookupImpl == null ? JaspellLookupFactory.class.getName() : lookupImpl, LookupFactory.class);
+
+        if (!incremental)
+        {
+            LOG.warn("Suggester " + name + " doesn't use a field based dictionary: incremental build is disabled.");
+        }
+        return name;
+    }
+
+    /**
+     * Builds the lookups of the segments which are not covered yet and drops the lookups of the segments which are
+     * no longer part of the index.
+     */
+    @Override
+    public synchronized void build(SolrCore core, SolrIndexSearcher searcher) throws IOException
+    {
+        if (!incremental)
+        {
+            super.build(core, searcher);
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        long minDocFreq = (long) (threshold * searcher.getIndexReader().numDocs());
+        Map<Object, SegmentLookup> current = segments;
+        Map<Object, SegmentLookup> updated = new HashMap<>();
+        int built = 0;
+        for (LeafReaderContext context : searcher.getIndexReader().leaves())
+        {
+            LeafReader reader = context.reader();
+            Object key = reader.getCoreCacheKey();
+            SegmentLookup segment = current.get(key);
+            if (segment == null)
+            {
+                segment = buildSegment(core, reader, minDocFreq);
+                built++;
+            }
+            updated.put(key, segment);
+        }
+
+        segments = Collections.unmodifiableMap(updated);
+        lastBuildSegments = built;
+
+        if (LOG.isDebugEnabled())
+        {
+            LOG.debug("Suggester " + getName() + " built " + built + " new segments out of " + updated.size()
+                    + " in " + (System.currentTimeMillis() - start) + " ms, dropped " + (current.size() - (updated.size() - built))
+                    + " merged away segments.");
+        }
+    }
+
+    /**
+     * Per-segment lookups are kept in memory only, so a reload is a build.
+     */
+    @Override
+    public void reload(SolrCore core, SolrIndexSearcher searcher) throws IOException
+    {
+        if (incremental)
+        {
+            build(core, searcher);
+        }
+        else
+        {
+            super.reload(core, searcher);
+        }
+    }
+
+    @Override
+    public SuggesterResult getSuggestions(SuggesterOptions options) throws IOException
+    {
+        if (!incremental)
+        {
+            return super.getSuggestions(options);
+        }
+
+        int candidates = options.count * CANDIDATES_FACTOR;
+        List<List<LookupResult>> segmentResults = new ArrayList<>();
+        for (SegmentLookup segment : segments.values())
+        {
+            if (segment.lookup != null)
+            {
+                segmentResults.add(segment.lookup.lookup(options.token, false, candidates));
+            }
+        }
+
+        SuggesterResult result = new SuggesterResult();
+        result.add(getName(), options.token.toString(), merge(segmentResults, options.count));
+        return result;
+    }
+
+    /**
+     * Merges the suggestions of the segments, summing the weights of the same suggestion.
+     *
+     * @param segmentResults the suggestions of each segment.
+     * @param count the max number of suggestions to return.
+     * @return the top suggestions, sorted by descending weight.
+     */
+    static List<LookupResult> merge(List<List<LookupResult>> segmentResults, int count)
+    {
+        if (segmentResults.size() == 1 && segmentResults.get(0).size() <= count)
+        {
+            return segmentResults.get(0);
+        }
+
+        Map<String, LookupResult> merged = new HashMap<>();
+        for (List<LookupResult> results : segmentResults)
+        {
+            for (LookupResult result : results)
+            {
+                merged.merge(result.key.toString(), result,
+                        (a, b) -> new LookupResult(a.key, a.value + b.value, a.payload));
+            }
+        }
+
+        Lookup.LookupPriorityQueue queue = new Lookup.LookupPriorityQueue(Math.max(1, count));
+        for (LookupResult result : merged.values())
+        {
+            queue.insertWithOverflow(result);
+        }
+
+        List<LookupResult> results = new ArrayList<>(queue.size());
+        Collections.addAll(results, queue.getResults());
+        return results;
+    }
+
+    @Override
+    public long ramBytesUsed()
+    {
+        if (!incremental)
+        {
+            return super.ramBytesUsed();
+        }
+        return segments.values().stream().mapToLong(segment -> segment.ramBytesUsed).sum();
+    }
+
+    /**
+     * @return true if the suggester is built per segment, false if it falls back to the regular full build.
+     */
+    public boolean isIncremental()
+    {
+        return incremental;
+    }
+
+    /**
+     * @return the number of segments covered by the suggester.
+     */
+    public int getSegmentCount()
+    {
+        return segments.size();
+    }
+
+    /**
+     * @return the number of segments built by the last build.
+     */
+    public int getLastBuildSegments()
+    {
+        return lastBuildSegments;
+    }
+
+    @Override
+    public String toString()
+    {
+        if (!incremental)
+        {
+            return super.toString();
+        }
+        return "IncrementalSolrSuggester [ name=" + getName() + ", field=" + field
+                + ", segments=" + segments.size() + ", sizeInBytes=" + ramBytesUsed() + "]";
+    }
+
+    private SegmentLookup buildSegment(SolrCore core, LeafReader reader, long minDocFreq) throws IOException
+    {
+        if (reader.terms(field) == null)
+        {
+            return SegmentLookup.EMPTY;
+        }
+
+        Lookup lookup = lookupFactory.create(config, core);
+        lookup.build(new SegmentDictionary(reader, field, minDocFreq));
+        return new SegmentLookup(lookup);
+    }
+
+    /**
+     * The terms of a segment field whose document frequency is at least the given minimum, weighted by document
+     * frequency like the {@link HighFrequencyDictionary} terms.
+     */
+    private static class SegmentDictionary implements Dictionary
+    {
+        private final LeafReader reader;
+        private final String field;
+        private final long minDocFreq;
+
+        SegmentDictionary(LeafReader reader, String field, long minDocFreq)
+        {
+            this.reader = reader;
+            this.field = field;
+            this.minDocFreq = minDocFreq;
+        }
+
+        @Override
+        public InputIterator getEntryIterator() throws IOException
+        {
+            Terms terms = reader.terms(field);
+            TermsEnum termsEnum = terms == null ? TermsEnum.EMPTY : terms.iterator();
+            return new InputIterator()
+            {
+                private long weight;
+
+                @Override
+                public BytesRef next() throws IOException
+                {
+                    for (BytesRef term = termsEnum.next(); term != null; term = termsEnum.next())
+                    {
+                        if (termsEnum.docFreq() >= minDocFreq)
+                        {
+                            weight = termsEnum.docFreq();
+                            return term;
+                        }
+                    }
+                    return null;
+                }
+
+                @Override
+                public long weight()
+                {
+                    return weight;
+                }
+
+                @Override
+                public BytesRef payload()
+                {
+                    return null;
+                }
+
+                @Override
+                public boolean hasPayloads()
+                {
+                    return false;
+                }
+
+                @Override
+                public Set<BytesRef> contexts()
+                {
+                    return null;
+                }
+
+                @Override
+                public boolean hasContexts()
+                {
+                    return false;
+                }
+            };
+        }
+    }
+
+    /**
+     * The lookup of a single segment (null if the segment doesn't contain the suggestion field).
+     */
+    private static class SegmentLookup
+    {
+        static final SegmentLookup EMPTY = new SegmentLookup(null);
+
+        final Lookup lookup;
+        final long ramBytesUsed;
+
+        SegmentLookup(Lookup lookup)
+        {
+            this.lookup = lookup;
+            this.ramBytesUsed = lookup == null ? 0 : lookup.ramBytesUsed();
+        }
+    }
+}
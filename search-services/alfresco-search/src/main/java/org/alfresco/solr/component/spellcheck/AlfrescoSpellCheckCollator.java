@@ -27,15 +27,25 @@
 package org.alfresco.solr.component.spellcheck;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.alfresco.solr.query.AbstractQParser;
 import org.apache.lucene.analysis.Token;
-import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.Query;
 import org.apache.solr.common.params.CommonParams;
 import org.apache.solr.common.params.DisMaxParams;
 import org.apache.solr.common.params.GroupParams;
@@ -47,8 +57,11 @@ import org.apache.solr.handler.component.QueryComponent;
 import org.apache.solr.handler.component.ResponseBuilder;
 import org.apache.solr.handler.component.SearchComponent;
 import org.apache.solr.request.SolrQueryRequest;
-import org.apache.solr.response.SolrQueryResponse;
-import org.apache.solr.search.EarlyTerminatingCollectorException;
+import org.apache.solr.search.DelegatingCollector;
+import org.apache.solr.search.PostFilter;
+import org.apache.solr.search.QParser;
+import org.apache.solr.search.QParserPlugin;
+import org.apache.solr.search.QueryParsing;
 import org.apache.solr.search.SolrIndexSearcher;
 import org.apache.solr.spelling.PossibilityIterator;
 import org.apache.solr.spelling.QueryConverter;
@@ -66,6 +79,13 @@ import org.slf4j.LoggerFactory;
  * method to pass the suggested term to the original alfresco JSON request rather
  * than via 'q' parameter.
  *
+ * The candidate collations are verified concurrently (on a bounded, JVM-wide thread pool) by counting their hits
+ * within the filters of the original request, rather than running a search for each of them: the cached filters are
+ * resolved once, the post filters (e.g. the authority filter) are chained in front of the counting collector, so they
+ * only check the docs matching the candidate, and each count stops as soon as the configured number of docs has been
+ * collected. Candidates are confirmed in rank order, and the verification stops
+ * once {@link #setMaxCollations(int) maxCollations} have been confirmed.
+ *
  * @author Jamal Kaabi-Mofrad
  * @since 5.0
  */
@@ -73,6 +93,24 @@ public class AlfrescoSpellCheckCollator
 {
     private final static Logger LOG = LoggerFactory.getLogger(AlfrescoSpellCheckCollator.class);
 
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    private static final ThreadFactory THREAD_FACTORY = runnable -> {
+        Thread thread = new Thread(runnable, "CollationVerifier-" + THREAD_COUNTER.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    };
+
+    private static final int MAX_PARALLELISM =
+            Integer.getInteger("alfresco.spellcheck.collation.maxParallelism",
+                    Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    /** When all the threads are busy and the queue is full, the candidate is verified on the request thread. */
+    private static final ExecutorService EXECUTOR =
+            new ThreadPoolExecutor(MAX_PARALLELISM, MAX_PARALLELISM, 0L, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(MAX_PARALLELISM * 16), THREAD_FACTORY,
+                    new ThreadPoolExecutor.CallerRunsPolicy());
+
     private int maxCollations = 1;
     private int maxCollationTries = 0;
     private int maxCollationEvaluations = 10000;
@@ -113,162 +151,282 @@ public class AlfrescoSpellCheckCollator
             verifyCandidateWithQuery = false;
         }
         docCollectionLimit = docCollectionLimit > 0 ? docCollectionLimit : 0;
-        int maxDocId = -1;
-        if (verifyCandidateWithQuery && docCollectionLimit > 0)
-        {
-            IndexReader reader = ultimateResponse.req.getSearcher().getIndexReader();
-            maxDocId = reader.maxDoc();
-        }
 
         JSONObject alfrescoJSON = (JSONObject) ultimateResponse.req.getContext().get(AbstractQParser.ALFRESCO_JSON);
         String originalAftsQuery = alfrescoJSON != null? alfrescoJSON.getString("query") : ultimateResponse.getQueryString();
 
-
-        int tryNo = 0;
-        int collNo = 0;
+        // Candidates are collected in rank order: each one consumes a try when it has to be verified.
+        List<Candidate> candidates = new ArrayList<>();
+        int maxCandidates = verifyCandidateWithQuery ? maxTries : maxCollations;
         PossibilityIterator possibilityIter = new PossibilityIterator(result.getSuggestions(), maxNumberToIterate,
                     maxCollationEvaluations, suggestionsMayOverlap);
-        while (tryNo < maxTries && collNo < maxCollations && possibilityIter.hasNext())
+        while (candidates.size() < maxCandidates && possibilityIter.hasNext())
         {
             PossibilityIterator.RankedSpellPossibility possibility = possibilityIter.next();
             String collationQueryStr = getCollation(originalQuery, possibility.corrections);
-            int hits = 0;
             String aftsQuery = null;
-
             if (verifyCandidateWithQuery)
             {
-                tryNo++;
-                SolrQueryRequest req = ultimateResponse.req;
-                SolrParams origParams = req.getParams();
-                ModifiableSolrParams params = new ModifiableSolrParams(origParams);
-                Iterator<String> origParamIterator = origParams.getParameterNamesIterator();
-                int pl = SpellingParams.SPELLCHECK_COLLATE_PARAM_OVERRIDE.length();
-                while (origParamIterator.hasNext())
+                aftsQuery = alfrescoJSON != null
+                        ? originalAftsQuery.replaceAll(Pattern.quote(originalQuery), Matcher.quoteReplacement(collationQueryStr))
+                        : collationQueryStr;
+            }
+            candidates.add(new Candidate(possibility, collationQueryStr, aftsQuery));
+        }
+
+        if (verifyCandidateWithQuery)
+        {
+            verify(candidates, ultimateResponse, alfrescoJSON, originalAftsQuery);
+        }
+
+        int collNo = 0;
+        for (Candidate candidate : candidates)
+        {
+            if (collNo >= maxCollations)
+            {
+                break;
+            }
+
+            if (candidate.hits > 0 || !verifyCandidateWithQuery)
+            {
+                collNo++;
+                PossibilityIterator.RankedSpellPossibility possibility = candidate.possibility;
+                AlfrescoSpellCheckCollation collation = new AlfrescoSpellCheckCollation();
+                collation.setCollationQuery(candidate.aftsQuery);
+                collation.setCollationQueryString(candidate.collationQueryStr);
+                collation.setHits(candidate.hits);
+                collation.setInternalRank(suggestionsMayOverlap ? ((possibility.rank * 1000) + possibility.index)
+                            : possibility.rank);
+
+                NamedList<String> misspellingsAndCorrections = new NamedList<>();
+                for (SpellCheckCorrection corr : possibility.corrections)
+                {
+                    misspellingsAndCorrections.add(corr.getOriginal().toString(), corr.getCorrection());
+                }
+                collation.setMisspellingsAndCorrections(misspellingsAndCorrections);
+                collations.add(collation);
+            }
+            if (LOG.isDebugEnabled())
+            {
+                LOG.debug("Collation: " + candidate.aftsQuery + (verifyCandidateWithQuery ? (" will return " + candidate.hits + " hits.") : ""));
+            }
+        }
+        return collations;
+    }
+
+    /**
+     * Verifies the candidate collations against the index, setting their hits.
+     *
+     * The candidate queries are parsed on the request thread (parsing reads the query from the request), then their
+     * hits are counted concurrently. The counts are collected in rank order: once maxCollations candidates have been
+     * confirmed, the pending counts are cancelled.
+     */
+    private void verify(List<Candidate> candidates, ResponseBuilder ultimateResponse, JSONObject alfrescoJSON,
+                String originalAftsQuery)
+    {
+        SolrQueryRequest req = ultimateResponse.req;
+        SolrParams origParams = req.getParams();
+        SolrIndexSearcher searcher = req.getSearcher();
+        int maxDocId = searcher.getIndexReader().maxDoc();
+
+        try
+        {
+            ModifiableSolrParams params = getCollationParams(origParams);
+            req.setParams(params);
+            String defType = params.get(QueryParsing.DEFTYPE, QParserPlugin.DEFAULT_QTYPE);
+
+            // The filters are the same for all the candidates: resolve them once.
+            List<Query> filters = ultimateResponse.getFilters();
+            SolrIndexSearcher.ProcessedFilter filter =
+                    filters == null || filters.isEmpty() ? null : searcher.getProcessedFilter(null, filters);
+
+            for (Candidate candidate : candidates)
+            {
+                try
                 {
-                    String origParamName = origParamIterator.next();
-                    if (origParamName.startsWith(SpellingParams.SPELLCHECK_COLLATE_PARAM_OVERRIDE)
-                                && origParamName.length() > pl)
+                    String queryString = candidate.collationQueryStr;
+                    if (alfrescoJSON != null)
                     {
-                        String[] val = origParams.getParams(origParamName);
-                        if (val.length == 1 && val[0].length() == 0)
+                        try
                         {
-                            params.set(origParamName.substring(pl), (String[]) null);
+                            // we don't set the 'q' param, as we pass the query via JSON.
+                            alfrescoJSON.put("query", candidate.aftsQuery);
+                            queryString = params.get(CommonParams.Q);
                         }
-                        else
+                        catch (JSONException e)
                         {
-                            params.set(origParamName.substring(pl), val);
+                            LOG.warn("Exception trying to get/set the query from/to ALFRESCO_JSON.]" + e);
                         }
                     }
-                }
-                // we don't set the 'q' param, as we'll pass the query via JSON.
-                // params.set(CommonParams.Q, collationQueryStr);
-                params.remove(CommonParams.START);
-                params.set(CommonParams.ROWS, "" + docCollectionLimit);
-                // we don't want any stored fields
-                params.set(CommonParams.FL, "id");
-                // we'll sort by doc id to ensure no scoring is done.
-                params.set(CommonParams.SORT, "_docid_ asc");
-                // If a dismax query, don't add unnecessary clauses for scoring
-                params.remove(DisMaxParams.TIE);
-                params.remove(DisMaxParams.PF);
-                params.remove(DisMaxParams.PF2);
-                params.remove(DisMaxParams.PF3);
-                params.remove(DisMaxParams.BQ);
-                params.remove(DisMaxParams.BF);
-                // Collate testing does not support Grouping (see SOLR-2577)
-                params.remove(GroupParams.GROUP);
-
-                boolean useQStr = true;
-
-                if (alfrescoJSON != null)
-                {
-                    try
-                    {
-                        aftsQuery = originalAftsQuery.replaceAll(Pattern.quote(originalQuery), Matcher.quoteReplacement(collationQueryStr));
-                        alfrescoJSON.put("query", aftsQuery);
-                        req.getContext().put(AbstractQParser.ALFRESCO_JSON, alfrescoJSON);
-                        useQStr = false;
-                    }
-                    catch (JSONException e)
-                    {
-                        LOG.warn("Exception trying to get/set the query from/to ALFRESCO_JSON.]" + e);
-                    }
-                }
-                else
-                {
-                    aftsQuery = collationQueryStr;
-                }
-                req.setParams(params);
-                // creating a request here... make sure to close it!
-                ResponseBuilder checkResponse = new ResponseBuilder(req, new SolrQueryResponse(),
-                            Arrays.<SearchComponent> asList(queryComponent));
-                checkResponse.setQparser(ultimateResponse.getQparser());
-                checkResponse.setFilters(ultimateResponse.getFilters());
-                checkResponse.components = Arrays.<SearchComponent> asList(queryComponent);
-                if (useQStr)
-                {
-                    checkResponse.setQueryString(collationQueryStr);
-                }
-                try
-                {
-                    queryComponent.prepare(checkResponse);
-                    if (docCollectionLimit > 0)
-                    {
-                        int f = checkResponse.getFieldFlags();
-                        checkResponse.setFieldFlags(f |= SolrIndexSearcher.TERMINATE_EARLY);
-                    }
-                    queryComponent.process(checkResponse);
-                    hits = (Integer) checkResponse.rsp.getToLog().get("hits");
-                }
-                catch (EarlyTerminatingCollectorException etce)
-                {
-                    assert (docCollectionLimit > 0);
-                    assert 0 < etce.getNumberScanned();
-                    assert 0 < etce.getNumberCollected();
 
-                    if (etce.getNumberScanned() == maxDocId)
+                    Query query = QParser.getParser(queryString, defType, req).getQuery();
+                    if (query == null)
                     {
-                        hits = etce.getNumberCollected();
-                    }
-                    else
-                    {
-                        hits = (int) (((float) (maxDocId * etce.getNumberCollected())) / (float) etce
-                                    .getNumberScanned());
+                        continue;
                     }
+
+                    candidate.counter = new CollationHitCounter(docCollectionLimit, maxDocId);
+                    candidate.verification = EXECUTOR.submit(() -> count(searcher, query, filters, filter, candidate.counter));
                 }
                 catch (Exception e)
                 {
                     LOG.warn("Exception trying to re-query to check if a spell check possibility would return any hits." + e);
                 }
-                finally
-                {
-                    checkResponse.req.close();
-                }
             }
-            if (hits > 0 || !verifyCandidateWithQuery)
+        }
+        catch (Exception e)
+        {
+            LOG.warn("Exception trying to resolve the filters of the spell check possibilities." + e);
+        }
+        finally
+        {
+            req.setParams(origParams);
+            if (alfrescoJSON != null)
             {
-                collNo++;
-                AlfrescoSpellCheckCollation collation = new AlfrescoSpellCheckCollation();
-                collation.setCollationQuery(aftsQuery);
-                collation.setCollationQueryString(collationQueryStr);
-                collation.setHits(hits);
-                collation.setInternalRank(suggestionsMayOverlap ? ((possibility.rank * 1000) + possibility.index)
-                            : possibility.rank);
+                alfrescoJSON.put("query", originalAftsQuery);
+            }
+        }
 
-                NamedList<String> misspellingsAndCorrections = new NamedList<>();
-                for (SpellCheckCorrection corr : possibility.corrections)
-                {
-                    misspellingsAndCorrections.add(corr.getOriginal().toString(), corr.getCorrection());
-                }
-                collation.setMisspellingsAndCorrections(misspellingsAndCorrections);
-                collations.add(collation);
+        int confirmed = 0;
+        for (Candidate candidate : candidates)
+        {
+            if (candidate.verification == null)
+            {
+                continue;
             }
-            if (LOG.isDebugEnabled())
+
+            try
+            {
+                // Always wait for the count, even if cancelled: it uses the searcher of this request.
+                candidate.hits = candidate.verification.get();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+            catch (ExecutionException e)
+            {
+                LOG.warn("Exception trying to re-query to check if a spell check possibility would return any hits." + e.getCause());
+            }
+
+            if (candidate.hits > 0 && ++confirmed >= maxCollations)
             {
-                LOG.debug("Collation: " + aftsQuery + (verifyCandidateWithQuery ? (" will return " + hits + " hits.") : ""));
+                candidates.stream()
+                        .filter(pending -> pending.counter != null)
+                        .filter(pending -> pending.verification != null && !pending.verification.isDone())
+                        .forEach(pending -> pending.counter.cancel());
             }
         }
-        return collations;
+    }
+
+    /**
+     * Counts the hits of a candidate query within the given filters.
+     */
+    private static int count(SolrIndexSearcher searcher, Query query, List<Query> filters,
+                SolrIndexSearcher.ProcessedFilter filter, CollationHitCounter counter) throws Exception
+    {
+        if (counter.isCancelled())
+        {
+            return 0;
+        }
+
+        if (query instanceof PostFilter)
+        {
+            // Post filters can only be applied on top of a filter: no early termination here.
+            List<Query> queries = new ArrayList<>();
+            if (filters != null)
+            {
+                queries.addAll(filters);
+            }
+            queries.add(query);
+            return searcher.getDocSet(queries).size();
+        }
+
+        SolrIndexSearcher.ProcessedFilter processedFilter = filter;
+        if (processedFilter != null && processedFilter.postFilter != null)
+        {
+            // The post filter collectors keep the state of a search: each count needs its own chain
+            processedFilter = searcher.getProcessedFilter(null, filters);
+        }
+
+        Query filtered = query;
+        Collector collector = counter;
+        if (processedFilter != null)
+        {
+            if (processedFilter.filter != null)
+            {
+                filtered = new BooleanQuery.Builder()
+                        .add(query, BooleanClause.Occur.MUST)
+                        .add(processedFilter.filter, BooleanClause.Occur.FILTER)
+                        .build();
+            }
+            if (processedFilter.postFilter != null)
+            {
+                processedFilter.postFilter.setLastDelegate(counter);
+                collector = processedFilter.postFilter;
+            }
+        }
+
+        searcher.search(filtered, collector);
+        if (collector instanceof DelegatingCollector)
+        {
+            ((DelegatingCollector) collector).finish();
+        }
+        return counter.getHits();
+    }
+
+    private ModifiableSolrParams getCollationParams(SolrParams origParams)
+    {
+        ModifiableSolrParams params = new ModifiableSolrParams(origParams);
+        Iterator<String> origParamIterator = origParams.getParameterNamesIterator();
+        int pl = SpellingParams.SPELLCHECK_COLLATE_PARAM_OVERRIDE.length();
+        while (origParamIterator.hasNext())
+        {
+            String origParamName = origParamIterator.next();
+            if (origParamName.startsWith(SpellingParams.SPELLCHECK_COLLATE_PARAM_OVERRIDE)
+                        && origParamName.length() > pl)
+            {
+                String[] val = origParams.getParams(origParamName);
+                if (val.length == 1 && val[0].length() == 0)
+                {
+                    params.set(origParamName.substring(pl), (String[]) null);
+                }
+                else
+                {
+                    params.set(origParamName.substring(pl), val);
+                }
+            }
+        }
+        // If a dismax query, don't add unnecessary clauses for scoring
+        params.remove(DisMaxParams.TIE);
+        params.remove(DisMaxParams.PF);
+        params.remove(DisMaxParams.PF2);
+        params.remove(DisMaxParams.PF3);
+        params.remove(DisMaxParams.BQ);
+        params.remove(DisMaxParams.BF);
+        // Collate testing does not support Grouping (see SOLR-2577)
+        params.remove(GroupParams.GROUP);
+        return params;
+    }
+
+    /**
+     * A candidate collation and the state of its verification.
+     */
+    private static class Candidate
+    {
+        final PossibilityIterator.RankedSpellPossibility possibility;
+        final String collationQueryStr;
+        final String aftsQuery;
+        CollationHitCounter counter;
+        Future<Integer> verification;
+        int hits;
+
+        Candidate(PossibilityIterator.RankedSpellPossibility possibility, String collationQueryStr, String aftsQuery)
+        {
+            this.possibility = possibility;
+            this.collationQueryStr = collationQueryStr;
+            this.aftsQuery = aftsQuery;
+        }
     }
 
     @SuppressWarnings("deprecation")
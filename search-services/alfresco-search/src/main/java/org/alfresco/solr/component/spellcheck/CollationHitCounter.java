@@ -0,0 +1,127 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+
+package org.alfresco.solr.component.spellcheck;
+
+import java.io.IOException;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.CollectionTerminatedException;
+import org.apache.lucene.search.SimpleCollector;
+
+/**
+ * Counts the hits of a candidate collation, without scoring and without collecting any doc.
+ *
+ * When a collection limit is set, the count stops as soon as that number of hits has been collected: in that case
+ * the total hits are estimated from the fraction of the index which has been scanned (the same estimation done
+ * by the Solr collator).
+ * The count can be cancelled (from a different thread) once the candidate is no longer needed.
+ */
+class CollationHitCounter extends SimpleCollector
+{
+    private final int limit;
+    private final int maxDoc;
+
+    private volatile boolean cancelled;
+    private int docBase;
+    private int collected;
+    private int scanned;
+    private boolean terminated;
+
+    /**
+     * @param limit the number of hits after which the count stops (zero or less means no limit).
+     * @param maxDoc the max doc of the index, used for estimating the total hits.
+     */
+    CollationHitCounter(int limit, int maxDoc)
+    {
+        this.limit = limit;
+        this.maxDoc = maxDoc;
+    }
+
+    @Override
+    protected void doSetNextReader(LeafReaderContext context) throws IOException
+    {
+        if (terminated || cancelled)
+        {
+            // Skip the remaining segments
+            throw new CollectionTerminatedException();
+        }
+        this.docBase = context.docBase;
+    }
+
+    @Override
+    public void collect(int doc) throws IOException
+    {
+        if (cancelled)
+        {
+            throw new CollectionTerminatedException();
+        }
+
+        collected++;
+        if (limit > 0 && collected >= limit)
+        {
+            terminated = true;
+            scanned = docBase + doc + 1;
+            throw new CollectionTerminatedException();
+        }
+    }
+
+    @Override
+    public boolean needsScores()
+    {
+        return false;
+    }
+
+    /**
+     * Stops the count: the result of a cancelled count is meaningless.
+     */
+    void cancel()
+    {
+        cancelled = true;
+    }
+
+    boolean isCancelled()
+    {
+        return cancelled;
+    }
+
+    /**
+     * @return the number of hits, estimated if the count stopped before scanning the whole index.
+     */
+    int getHits()
+    {
+        if (cancelled)
+        {
+            return 0;
+        }
+        if (!terminated || scanned >= maxDoc)
+        {
+            return collected;
+        }
+        return (int) (((float) maxDoc * collected) / scanned);
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+
+package org.alfresco.solr.lifecycle;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.SimpleOrderedMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The startup of the tracking subsystem of a core.
+ *
+ * The startup is made of a registration, which always runs on the calling thread (i.e. what the requests of the core
+ * depend on, like the information server and the persisted models), followed by the bootstrap of the trackers.
+ * When the async mode is enabled the bootstrap runs on a (JVM-wide) thread pool, so the cores of a node start their
+ * trackers concurrently, and each core is searchable as soon as its first searcher has been registered, while its
+ * trackers are still being created.
+ * The duration of each phase is recorded and reported in the core SUMMARY.
+ */
+public class CoreBootstrap
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(CoreBootstrap.class);
+
+    public enum State
+    {
+        QUEUED, RUNNING, COMPLETED, FAILED, CANCELLED
+    }
+
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    private static final ThreadFactory THREAD_FACTORY = runnable -> {
+        Thread thread = new Thread(runnable, "TrackerBootstrap-" + THREAD_COUNTER.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    };
+
+    private static final ExecutorService EXECUTOR =
+            Executors.newFixedThreadPool(
+                    Integer.getInteger("alfresco.trackers.bootstrap.maxParallelism",
+                            Math.max(2, Runtime.getRuntime().availableProcessors())),
+                    THREAD_FACTORY);
+
+    private final String coreName;
+    private final long creationTime = System.currentTimeMillis();
+    private volatile long queueTime = creationTime;
+    private final Map<String, Long> phases = new LinkedHashMap<>();
+
+    private volatile State state = State.QUEUED;
+    private volatile Throwable failure;
+
+    CoreBootstrap(String coreName)
+    {
+        this.coreName = coreName;
+    }
+
+    /**
+     * Runs the bootstrap, in background or on the calling thread.
+     *
+     * @param bootstrap the startup procedure of the tracking subsystem.
+     * @param async true if the bootstrap must be executed in background.
+     */
+    void start(Runnable bootstrap, boolean async)
+    {
+        start(() -> {}, bootstrap, async);
+    }
+
+    /**
+     * Runs the registration on the calling thread and then the bootstrap, in background or on the calling thread.
+     * The bootstrap is not executed if the registration fails.
+     *
+     * @param registration the part of the startup which the requests of the core depend on.
+     * @param bootstrap the remaining (slow) part of the startup of the tracking subsystem.
+     * @param async true if the bootstrap must be executed in background.
+     */
+    void start(Runnable registration, Runnable bootstrap, boolean async)
+    {
+        if (isCancelled())
+        {
+            return;
+        }
+
+        try
+        {
+            registration.run();
+        }
+        catch (RuntimeException | Error exception)
+        {
+            failure = exception;
+            state = State.FAILED;
+            record("Total", System.currentTimeMillis() - creationTime);
+            LOGGER.error("Tracking subsystem registration failed on core {}", coreName, exception);
+            return;
+        }
+
+        queueTime = System.currentTimeMillis();
+        Runnable task = () -> run(bootstrap);
+        if (async)
+        {
+            EXECUTOR.execute(task);
+        }
+        else
+        {
+            task.run();
+        }
+    }
+
+    private void run(Runnable bootstrap)
+    {
+        long start = System.currentTimeMillis();
+        record("Queued", start - queueTime);
+        synchronized (this)
+        {
+            if (state == State.CANCELLED)
+            {
+                return;
+            }
+            state = State.RUNNING;
+        }
+
+        try
+        {
+            bootstrap.run();
+            synchronized (this)
+            {
+                if (state == State.RUNNING)
+                {
+                    state = State.COMPLETED;
+                }
+            }
+        }
+        catch (RuntimeException | Error exception)
+        {
+            failure = exception;
+            state = State.FAILED;
+            LOGGER.error("Tracking subsystem startup failed on core {}", coreName, exception);
+        }
+        finally
+        {
+            record("Total", System.currentTimeMillis() - creationTime);
+            LOGGER.info("Tracking subsystem startup on core {}: {} {}", coreName, state, getPhases());
+        }
+    }
+
+    /**
+     * Runs a bootstrap phase, recording its duration.
+     *
+     * @param name the phase name.
+     * @param phase the phase.
+     * @return the phase result.
+     */
+    <T> T phase(String name, Supplier<T> phase)
+    {
+        long start = System.currentTimeMillis();
+        try
+        {
+            return phase.get();
+        }
+        finally
+        {
+            record(name, System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * Runs a bootstrap phase, recording its duration.
+     *
+     * @param name the phase name.
+     * @param phase the phase.
+     */
+    void phase(String name, Runnable phase)
+    {
+        phase(name, () -> {
+            phase.run();
+            return null;
+        });
+    }
+
+    /**
+     * Stops the bootstrap (e.g. because the core is closing): the phases in progress are completed, but no trackers
+     * are registered afterwards.
+     */
+    synchronized void cancel()
+    {
+        state = State.CANCELLED;
+    }
+
+    boolean isCancelled()
+    {
+        return state == State.CANCELLED;
+    }
+
+    /**
+     * @return true if the bootstrap has been completed and the tracking subsystem of the core is running.
+     */
+    public boolean isCompleted()
+    {
+        return state == State.COMPLETED;
+    }
+
+    public State getState()
+    {
+        return state;
+    }
+
+    /**
+     * @return the bootstrap state, the failure (if any) and the duration (ms) of each phase.
+     */
+    public NamedList<Object> getReport()
+    {
+        NamedList<Object> report = new SimpleOrderedMap<>();
+        report.add("State", state.name());
+        if (failure != null)
+        {
+            report.add("Failure", failure.toString());
+        }
+        getPhases().forEach((phase, millis) -> report.add(phase + " (ms)", millis));
+        return report;
+    }
+
+    private synchronized void record(String phase, long millis)
+    {
+        phases.put(phase, millis);
+    }
+
+    private synchronized Map<String, Long> getPhases()
+    {
+        return new LinkedHashMap<>(phases);
+    }
+}
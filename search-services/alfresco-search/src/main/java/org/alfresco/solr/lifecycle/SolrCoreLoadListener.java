@@ -33,8 +33,12 @@ import static org.alfresco.solr.SolrInformationServer.CASCADE_TRACKER_ENABLED;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Function;
 import java.util.function.Predicate;
 
@@ -74,6 +78,12 @@ import org.slf4j.LoggerFactory;
 /**
  * Listeners for *FIRST SEARCHER* events in order to prepare and register the SolrContentStore and the Tracking Subsystem.
  *
+ * The information server of the core is registered and the persisted models are loaded before the first searcher is
+ * used. When the alfresco.trackers.bootstrap.async core property is true (it is false by default) the remaining part
+ * of the startup (the first model sync and the trackers) runs in background (see {@link CoreBootstrap}), so the cores
+ * of a node start their trackers concurrently. The (node-wide) model tracker is created by the first core and then
+ * shared by the others.
+ *
  * @author Gethin James
  * @author Andrea Gazzarini
  */
@@ -81,6 +91,10 @@ public class SolrCoreLoadListener extends AbstractSolrEventListener
 {
     private static final Logger LOGGER = LoggerFactory.getLogger(SolrCoreLoadListener.class);
 
+    /** The first model sync of each model tracker, completed once it has been done. */
+    private static final Map<ModelTracker, CompletableFuture<Void>> FIRST_MODEL_SYNCS =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
     /**
      * Builds a new listener instance with the given {@link SolrCore} (event source).
      *
@@ -118,32 +132,9 @@ public class SolrCoreLoadListener extends AbstractSolrEventListener
         // Add secret shared properties if required, as they are passed as Java Environment Variables
         coreProperties = SecretSharedPropertyCollector.completeCoreProperties(coreProperties);
 
-        SolrResourceLoader loader = core.getLatestSchema().getResourceLoader();
-        SolrKeyResourceLoader keyResourceLoader = new SolrKeyResourceLoader(loader);
-        SOLRAPIClientFactory clientFactory = new SOLRAPIClientFactory();
-        SOLRAPIClient repositoryClient =
-                clientFactory.getSOLRAPIClient(coreProperties, keyResourceLoader,
-                    AlfrescoSolrDataModel.getInstance().getDictionaryService(CMISStrictDictionaryService.DEFAULT),
-                    AlfrescoSolrDataModel.getInstance().getNamespaceDAO());
-
-        SolrInformationServer informationServer = new SolrInformationServer(admin, core, repositoryClient);
-        coreProperties.putAll(informationServer.getProps());
-        admin.getInformationServers().put(core.getName(), informationServer);
-
         final SolrTrackerScheduler scheduler = admin.getScheduler();
-
-        // Prevents other threads from registering the ModelTracker at the same time
-        // Create model tracker and load all the persisted models
-        synchronized(SolrCoreLoadListener.class)
-        {
-            createModelTracker(core.getName(),
-                    trackerRegistry,
-                    coreProperties,
-                    coreContainer.getSolrHome(),
-                    repositoryClient,
-                    informationServer,
-                    scheduler);
-        }
+        final CoreBootstrap bootstrap = new CoreBootstrap(core.getName());
+        admin.getCoreBootstraps().put(core.getName(), bootstrap);
 
         /*
          * The shutdown hook needs to be registered regardless we are slave or masters.
@@ -162,7 +153,13 @@ public class SolrCoreLoadListener extends AbstractSolrEventListener
                 LOGGER.info("Solr Core instance {} with name {} is going to be closed. Tracking Subsystem shutdown callback procedure has been started.", core.hashCode(), core.getName());
 
                 // IMPORTANT: the closure needs to be created with the trackers created in this method
-                shutdownTrackers(core, trackers, scheduler, false);
+                // The bootstrap could be still in progress: stop it before shutting down the trackers it registered
+                synchronized (trackers)
+                {
+                    bootstrap.cancel();
+                    shutdownTrackers(core, trackers, scheduler, false);
+                    admin.getCoreStatisticsService().remove(core);
+                }
             }
 
             @Override
@@ -172,6 +169,104 @@ public class SolrCoreLoadListener extends AbstractSolrEventListener
             }
         });
 
+        boolean async = Boolean.parseBoolean(coreProperties.getProperty("alfresco.trackers.bootstrap.async", "false"));
+        Properties properties = coreProperties;
+        TrackingSubsystem subsystem = new TrackingSubsystem();
+        bootstrap.start(
+                () -> registerTrackingSubsystem(core, admin, trackerRegistry, properties, bootstrap, subsystem),
+                () -> startTrackingSubsystem(core, admin, trackerRegistry, properties, scheduler, trackers, bootstrap, subsystem),
+                async);
+    }
+
+    /**
+     * The components of the tracking subsystem created by the registration and used by the (deferred) bootstrap.
+     */
+    private static final class TrackingSubsystem
+    {
+        SOLRAPIClient repositoryClient;
+        SolrInformationServer informationServer;
+        ModelTracker modelTracker;
+    }
+
+    /**
+     * Registers what the requests of the given core depend on: creates the repository client, registers the
+     * information server and loads the persisted models (or gets the model tracker which already loaded them).
+     */
+    private void registerTrackingSubsystem(SolrCore core,
+                                           AlfrescoCoreAdminHandler admin,
+                                           TrackerRegistry trackerRegistry,
+                                           Properties coreProperties,
+                                           CoreBootstrap bootstrap,
+                                           TrackingSubsystem subsystem)
+    {
+        SOLRAPIClient repositoryClient = bootstrap.phase("Repository client", () -> {
+            SolrResourceLoader loader = core.getLatestSchema().getResourceLoader();
+            SolrKeyResourceLoader keyResourceLoader = new SolrKeyResourceLoader(loader);
+            SOLRAPIClientFactory clientFactory = new SOLRAPIClientFactory();
+            return clientFactory.getSOLRAPIClient(coreProperties, keyResourceLoader,
+                    AlfrescoSolrDataModel.getInstance().getDictionaryService(CMISStrictDictionaryService.DEFAULT),
+                    AlfrescoSolrDataModel.getInstance().getNamespaceDAO());
+        });
+
+        SolrInformationServer informationServer = bootstrap.phase("Information server", () -> {
+            SolrInformationServer srv = new SolrInformationServer(admin, core, repositoryClient);
+            coreProperties.putAll(srv.getProps());
+            admin.getInformationServers().put(core.getName(), srv);
+            admin.getCoreStatisticsService().register(core, srv::computeIndexStatistics);
+            return srv;
+        });
+
+        // Create model tracker and load all the persisted models (or get the one created by another core)
+        subsystem.modelTracker = bootstrap.phase("Persisted models", () -> getOrCreateModelTracker(core.getName(),
+                trackerRegistry,
+                coreProperties,
+                core.getCoreContainer().getSolrHome(),
+                repositoryClient,
+                informationServer));
+        subsystem.repositoryClient = repositoryClient;
+        subsystem.informationServer = informationServer;
+    }
+
+    /**
+     * Starts the trackers of the given core: waits for the first sync of the (shared) model tracker and then
+     * registers and schedules the core trackers.
+     */
+    private void startTrackingSubsystem(SolrCore core,
+                                        AlfrescoCoreAdminHandler admin,
+                                        TrackerRegistry trackerRegistry,
+                                        Properties coreProperties,
+                                        SolrTrackerScheduler scheduler,
+                                        List<Tracker> trackers,
+                                        CoreBootstrap bootstrap,
+                                        TrackingSubsystem subsystem)
+    {
+        SOLRAPIClient repositoryClient = subsystem.repositoryClient;
+        SolrInformationServer informationServer = subsystem.informationServer;
+
+        // Sync the models with the repository (or wait for the core which is doing that)
+        bootstrap.phase("Model tracker", () -> ensureFirstModelSync(core.getName(), subsystem.modelTracker, coreProperties, scheduler));
+
+        // The trackers registration and the core close hook are mutually exclusive
+        synchronized (trackers)
+        {
+            if (bootstrap.isCancelled())
+            {
+                LOGGER.info("Solr Core instance {} with name {} has been closed while starting its Tracking Subsystem.", core.hashCode(), core.getName());
+                return;
+            }
+            bootstrap.phase("Trackers", () -> registerTrackers(core, admin, trackerRegistry, coreProperties, scheduler, repositoryClient, informationServer, trackers));
+        }
+    }
+
+    private void registerTrackers(SolrCore core,
+                                  AlfrescoCoreAdminHandler admin,
+                                  TrackerRegistry trackerRegistry,
+                                  Properties coreProperties,
+                                  SolrTrackerScheduler scheduler,
+                                  SOLRAPIClient repositoryClient,
+                                  SolrInformationServer informationServer,
+                                  List<Tracker> trackers)
+    {
         boolean trackersHaveBeenEnabled = Boolean.parseBoolean(coreProperties.getProperty("enable.alfresco.tracking", "true"));
         boolean owningCoreIsSlave = isSlaveModeEnabledFor(core);
 
@@ -326,28 +421,71 @@ public class SolrCoreLoadListener extends AbstractSolrEventListener
         return tracker;
     }
 
-    private void createModelTracker(String coreName,
-                                    TrackerRegistry trackerRegistry,
-                                    Properties props,
-                                    String solrHome,
-                                    SOLRAPIClient repositoryClient,
-                                    SolrInformationServer srv,
-                                    SolrTrackerScheduler scheduler)
+    /**
+     * Returns the model tracker of the given registry, creating it (and then loading the persisted models) if this is
+     * the first core which needs it.
+     */
+    private ModelTracker getOrCreateModelTracker(String coreName,
+                                                 TrackerRegistry trackerRegistry,
+                                                 Properties props,
+                                                 String solrHome,
+                                                 SOLRAPIClient repositoryClient,
+                                                 SolrInformationServer srv)
     {
-        ModelTracker mTracker = trackerRegistry.getModelTracker();
-        if (mTracker == null)
+        synchronized (FIRST_MODEL_SYNCS)
         {
-            LOGGER.debug("Creating a new Model Tracker instance.");
-            mTracker = new ModelTracker(solrHome, props, repositoryClient, coreName, srv);
-            trackerRegistry.setModelTracker(mTracker);
+            ModelTracker mTracker = trackerRegistry.getModelTracker();
+            if (mTracker == null)
+            {
+                LOGGER.debug("Creating a new Model Tracker instance.");
+                mTracker = new ModelTracker(solrHome, props, repositoryClient, coreName, srv);
+                trackerRegistry.setModelTracker(mTracker);
+            }
+            return mTracker;
+        }
+    }
+
+    /**
+     * Runs the first model sync of the given model tracker and schedules it, if this is the first core which needs it.
+     * The other cores wait until the first model sync has been completed.
+     */
+    private void ensureFirstModelSync(String coreName,
+                                      ModelTracker mTracker,
+                                      Properties props,
+                                      SolrTrackerScheduler scheduler)
+    {
+        CompletableFuture<Void> firstModelSync;
+        boolean creator = false;
+        synchronized (FIRST_MODEL_SYNCS)
+        {
+            firstModelSync = FIRST_MODEL_SYNCS.get(mTracker);
+            if (firstModelSync == null || firstModelSync.isCompletedExceptionally())
+            {
+                firstModelSync = new CompletableFuture<>();
+                FIRST_MODEL_SYNCS.put(mTracker, firstModelSync);
+                creator = true;
+            }
+        }
 
-            LOGGER.info("Model Tracker: ensuring first model sync.");
-            mTracker.ensureFirstModelSync();
+        if (creator)
+        {
+            try
+            {
+                LOGGER.info("Model Tracker: ensuring first model sync.");
+                mTracker.ensureFirstModelSync();
 
-            scheduler.schedule(mTracker, coreName, props);
+                scheduler.schedule(mTracker, coreName, props);
 
-            LOGGER.info("Model Tracker has been correctly initialised, registered and scheduled.");
+                LOGGER.info("Model Tracker has been correctly initialised, registered and scheduled.");
+                firstModelSync.complete(null);
+            }
+            catch (RuntimeException exception)
+            {
+                firstModelSync.completeExceptionally(exception);
+                throw exception;
+            }
         }
+        firstModelSync.join();
     }
 
     /**
@@ -166,14 +166,16 @@ public abstract class AbstractAuthoritySetQuery extends Query
     {
         HybridBitSet aclBits = getACLSet(auths, field, searcher);
         List<LeafReaderContext> leaves = searcher.getTopReaderContext().leaves();
-        List<FixedBitSet> bitSets = new ArrayList<FixedBitSet>(leaves.size());
 
-        for(LeafReaderContext readerContext :  leaves)
-        {
-        	LeafReader reader = readerContext.reader();
+        /*
+        * Each segment is scanned on its own, so the segments can be processed in parallel
+        * (see SegmentParallelSearch): the ACL id set is only read here.
+        */
+
+        List<FixedBitSet> bitSets = SegmentParallelSearch.mapLeaves(leaves, readerContext -> {
+            LeafReader reader = readerContext.reader();
             int maxDoc = reader.maxDoc();
             FixedBitSet bits = new FixedBitSet(maxDoc);
-            bitSets.add(bits);
 
             NumericDocValues fieldValues = DocValuesCache.getNumericDocValues(QueryConstants.FIELD_ACLID, reader);
             if (fieldValues != null) {
@@ -184,7 +186,8 @@ public abstract class AbstractAuthoritySetQuery extends Query
                     }
                 }
             }
-        }
+            return bits;
+        });
 
         return new BitsFilter(bitSets);
     }
@@ -26,7 +26,7 @@
 
 package org.alfresco.solr.query;
 
-public abstract class AbstractStructuredFieldPosition implements StructuredFieldPosition
+public abstract class AbstractStructuredFieldPosition implements StructuredFieldPosition, Cloneable
 {
     private String termText;
 
@@ -128,6 +128,20 @@ public abstract class AbstractStructuredFieldPosition implements StructuredField
         return getCachingTermPositions() == null;
     }
 
+    public StructuredFieldPosition copy()
+    {
+        try
+        {
+            AbstractStructuredFieldPosition copy = (AbstractStructuredFieldPosition) super.clone();
+            copy.tps = null;
+            return copy;
+        }
+        catch (CloneNotSupportedException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
     @Override
     public int hashCode()
     {
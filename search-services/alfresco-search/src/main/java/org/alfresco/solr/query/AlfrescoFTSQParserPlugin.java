@@ -110,7 +110,18 @@ public class AlfrescoFTSQParserPlugin extends QParserPlugin
             {
                 Pair<SearchParameters, Boolean> searchParametersAndFilter = getSearchParameters();
 
-                Query query = AlfrescoSolrDataModel.getInstance().getFTSQuery(searchParametersAndFilter, req, rerankPhase);
+                QueryPlanCache.Key planKey = QueryPlanCache.key("afts", req, searchParametersAndFilter, rerankPhase);
+                QueryPlanCache.Plan plan = QueryPlanCache.lookup(req, planKey);
+                Query query;
+                if (plan != null)
+                {
+                    query = plan.getQuery(searchParametersAndFilter);
+                }
+                else
+                {
+                    query = AlfrescoSolrDataModel.getInstance().getFTSQuery(searchParametersAndFilter, req, rerankPhase);
+                    QueryPlanCache.insert(req, planKey, new QueryPlanCache.Plan(query, null));
+                }
                 if(log.isDebugEnabled())
                 {
                     log.debug("AFTS QP query as lucene:\t    "+query);
@@ -89,6 +89,13 @@ public class AlfrescoLuceneQParserPlugin extends QParserPlugin
             Pair<SearchParameters, Boolean> searchParametersAndFilter = getSearchParameters();
             SearchParameters searchParameters = searchParametersAndFilter.getFirst();
             Boolean isFilter = searchParametersAndFilter.getSecond();
+
+            QueryPlanCache.Key planKey = QueryPlanCache.key("lucene", req, searchParametersAndFilter);
+            QueryPlanCache.Plan plan = QueryPlanCache.lookup(req, planKey);
+            if (plan != null)
+            {
+                return plan.getQuery(searchParametersAndFilter);
+            }
             
             Solr4QueryParser qp = AlfrescoSolrDataModel.getInstance().getLuceneQueryParser(searchParameters, req, FTSQueryParser.RerankPhase.SINGLE_PASS_WITH_AUTO_PHRASE);
             Query query;
@@ -107,6 +114,7 @@ public class AlfrescoLuceneQParserPlugin extends QParserPlugin
             {
                 log.debug("Lucene QP query as lucene:\t    "+contextAwareQuery);
             }
+            QueryPlanCache.insert(req, planKey, new QueryPlanCache.Plan(contextAwareQuery, null));
             return contextAwareQuery;
         }
         
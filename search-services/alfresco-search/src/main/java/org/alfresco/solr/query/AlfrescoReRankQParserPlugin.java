@@ -29,7 +29,6 @@ package org.alfresco.solr.query;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 
@@ -233,11 +232,7 @@ public class AlfrescoReRankQParserPlugin extends QParserPlugin {
             return new QueryRescorer(getQuery()) {
                 @Override
                 protected float combine(float firstPassScore, boolean secondPassMatches, float secondPassScore) {
-                    float score = firstPassScore;
-                    if (secondPassMatches) {
-                        score += reRankWeight * secondPassScore;
-                    }
-                    return score;
+                    return ReRankRescorer.combine(firstPassScore, secondPassMatches, secondPassScore, reRankWeight);
                 }
             }.explain(searcher, mainExplain, context.docBase+doc);
         }
@@ -247,6 +242,7 @@ public class AlfrescoReRankQParserPlugin extends QParserPlugin {
     private class ReRankCollector extends TopDocsCollector  {
 
         private Query reRankQuery;
+        private ReRankRescorer rescorer;
         private TopDocsCollector  mainCollector;
         private IndexSearcher searcher;
         private int reRankDocs;
@@ -281,6 +277,7 @@ public class AlfrescoReRankQParserPlugin extends QParserPlugin {
             }
             this.searcher = searcher;
             this.reRankWeight = reRankWeight;
+            this.rescorer = new ReRankRescorer(reRankQuery, reRankWeight);
         }
 
         public int getTotalHits() {
@@ -298,7 +295,7 @@ public class AlfrescoReRankQParserPlugin extends QParserPlugin {
                 }
 
                 if(reRankDocs == 0) {
-                    scaleScores(mainDocs, new HashMap());
+                    scaleScores(mainDocs, new IntFloatHashMap());
                     return mainDocs;
                 }
 
@@ -317,18 +314,9 @@ public class AlfrescoReRankQParserPlugin extends QParserPlugin {
 
                     mainDocs.scoreDocs = reRankScoreDocs;
 
-                    Map<Integer, Float> scoreMap = getScoreMap(mainDocs.scoreDocs, mainDocs.scoreDocs.length);
+                    IntFloatHashMap scoreMap = getScoreMap(mainDocs.scoreDocs, mainDocs.scoreDocs.length);
 
-                    TopDocs rescoredDocs = new QueryRescorer(reRankQuery) {
-                        @Override
-                        protected float combine(float firstPassScore, boolean secondPassMatches, float secondPassScore) {
-                            float score = firstPassScore;
-                            if (secondPassMatches) {
-                                score += reRankWeight * secondPassScore;
-                            }
-                            return score;
-                        }
-                    }.rescore(searcher, mainDocs, mainDocs.scoreDocs.length);
+                    TopDocs rescoredDocs = rescorer.rescore(searcher, mainDocs, mainDocs.scoreDocs.length);
 
                     Arrays.sort(rescoredDocs.scoreDocs, new BoostedComp(boostedDocs, mainDocs.scoreDocs, rescoredDocs.getMaxScore()));
 
@@ -377,18 +365,9 @@ public class AlfrescoReRankQParserPlugin extends QParserPlugin {
 
                     mainDocs.scoreDocs = reRankScoreDocs;
 
-                    Map<Integer, Float> scoreMap = getScoreMap(mainDocs.scoreDocs, mainDocs.scoreDocs.length);
+                    IntFloatHashMap scoreMap = getScoreMap(mainDocs.scoreDocs, mainDocs.scoreDocs.length);
 
-                    TopDocs rescoredDocs = new QueryRescorer(reRankQuery) {
-                        @Override
-                        protected float combine(float firstPassScore, boolean secondPassMatches, float secondPassScore) {
-                            float score = firstPassScore;
-                            if (secondPassMatches) {
-                                score += reRankWeight * secondPassScore;
-                            }
-                            return score;
-                        }
-                    }.rescore(searcher, mainDocs, mainDocs.scoreDocs.length);
+                    TopDocs rescoredDocs = rescorer.rescore(searcher, mainDocs, mainDocs.scoreDocs.length);
 
                     //Lower howMany to return if we've collected fewer documents.
                     howMany = Math.min(howMany, mainScoreDocs.length);
@@ -440,7 +419,7 @@ public class AlfrescoReRankQParserPlugin extends QParserPlugin {
 		}
     }
 
-    private void scaleScores(TopDocs topDocs, Map<Integer, Float> scoreMap)
+    private void scaleScores(TopDocs topDocs, IntFloatHashMap scoreMap)
     {
         float maxScore = topDocs.getMaxScore();
         float newMax = -Float.MAX_VALUE;
@@ -448,10 +427,9 @@ public class AlfrescoReRankQParserPlugin extends QParserPlugin {
         for(ScoreDoc scoreDoc : topDocs.scoreDocs) {
             float score = scoreDoc.score;
 
-            Float oldScore = scoreMap.get(scoreDoc.doc);
-
             // check if the score has been changed after rescoring
-            boolean rescored = oldScore != null && score != oldScore;
+            int index = scoreMap.indexOf(scoreDoc.doc);
+            boolean rescored = scoreMap.indexExists(index) && score != scoreMap.indexGet(index);
 
             // If maxScore is different from 0, the score is divided by maxscore
             scoreDoc.score = score / (maxScore != 0? maxScore : 1);
@@ -473,8 +451,8 @@ public class AlfrescoReRankQParserPlugin extends QParserPlugin {
         topDocs.setMaxScore(newMax);
     }
 
-    private Map<Integer, Float> getScoreMap(ScoreDoc[] scoreDocs, int num) {
-        Map<Integer, Float> scoreMap = new HashMap();
+    private IntFloatHashMap getScoreMap(ScoreDoc[] scoreDocs, int num) {
+        IntFloatHashMap scoreMap = new IntFloatHashMap(num);
         for(int i=0; i<num; i++) {
             ScoreDoc doc = scoreDocs[i];
             scoreMap.put(doc.doc, doc.score);
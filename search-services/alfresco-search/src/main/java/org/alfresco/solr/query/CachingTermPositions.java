@@ -29,6 +29,7 @@ package org.alfresco.solr.query;
 import java.io.IOException;
 
 import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.util.ArrayUtil;
 import org.apache.lucene.util.AttributeSource;
 import org.apache.lucene.util.BytesRef;
 
@@ -36,12 +37,17 @@ import org.apache.lucene.util.BytesRef;
 /**
  * @author andyh
  * 
- * TODO To change the template for this generated type comment go to Window -
- * Preferences - Java - Code Style - Code Templates
+ * Caches the positions of the current document, so they can be read again (after a {@link #reset()}) by all the
+ * structured field positions which share the same term.
+ *
+ * The positions buffer is allocated once and grown only when a document has more positions than any previous one:
+ * moving to another document just invalidates its content.
  */
 public class CachingTermPositions extends PostingsEnum
 {
-    int[] results;
+    private static final int INITIAL_CAPACITY = 8;
+
+    int[] results = new int[INITIAL_CAPACITY];
 
     int position = -1;
 
@@ -61,13 +67,13 @@ public class CachingTermPositions extends PostingsEnum
      */
     public int nextPosition() throws IOException
     {
-        if (results == null)
-        {
-            results = new int[freq()];
-        }
         position++;
         if (last < position)
         {
+            if (position == results.length)
+            {
+                results = ArrayUtil.grow(results, position + 1);
+            }
             results[position] = delegate.nextPosition();
             last = position;
         }
@@ -84,7 +90,6 @@ public class CachingTermPositions extends PostingsEnum
     {
         position = -1;
         last = -1;
-        results = null;
     }
 
     /**
@@ -101,6 +101,19 @@ public class CmisQParserPlugin extends QParserPlugin
                 CmisVersion cmisVersion = (cmisVersionString == null ? CmisVersion.CMIS_1_0 : CmisVersion.valueOf(cmisVersionString));
 
                 String altDic = this.params.get(SearchParameters.ALTERNATIVE_DICTIONARY);
+
+                QueryPlanCache.Key planKey = QueryPlanCache.key("cmis", req, searchParametersAndFilter, cmisVersion, altDic);
+                QueryPlanCache.Plan plan = QueryPlanCache.lookup(req, planKey);
+                if (plan != null)
+                {
+                    if (plan.getSort() != null)
+                    {
+                        setSort(plan.getSort());
+                    }
+                    return plan.getQuery(searchParametersAndFilter);
+                }
+
+                String sort = null;
                 org.alfresco.repo.search.impl.querymodel.Query queryModelQuery
                 = AlfrescoSolrDataModel.getInstance().parseCMISQueryToAlfrescoAbstractQuery(CMISQueryMode.CMS_WITH_ALFRESCO_EXTENSIONS, searchParameters, req, altDic, cmisVersion);
 
@@ -182,10 +195,8 @@ public class CmisQParserPlugin extends QParserPlugin
 
                     // update request params
 
-                    ModifiableSolrParams newParams = new ModifiableSolrParams(req.getParams());
-                    newParams.set("sort", sortParameter.toString());
-                    req.setParams(newParams);
-                    this.params = newParams;
+                    sort = sortParameter.toString();
+                    setSort(sort);
                 }
 
                 Query query = AlfrescoSolrDataModel.getInstance().getCMISQuery(CMISQueryMode.CMS_WITH_ALFRESCO_EXTENSIONS, searchParametersAndFilter, req, queryModelQuery, cmisVersion, altDic);
@@ -193,6 +204,7 @@ public class CmisQParserPlugin extends QParserPlugin
                 {
                     log.debug("AFTS QP query as lucene:\t    "+query);
                 }
+                QueryPlanCache.insert(req, planKey, new QueryPlanCache.Plan(query, sort));
                 return query;
             }
             catch(ParseException e)
@@ -201,7 +213,16 @@ public class CmisQParserPlugin extends QParserPlugin
             }
         }
 
-        
+        /**
+         * Sets the sort derived from the CMIS ORDER BY clause on the request.
+         */
+        private void setSort(String sort)
+        {
+            ModifiableSolrParams newParams = new ModifiableSolrParams(req.getParams());
+            newParams.set("sort", sort);
+            req.setParams(newParams);
+            this.params = newParams;
+        }
     }
 
 }
@@ -27,31 +27,48 @@
 package org.alfresco.solr.query;
 
 import java.io.IOException;
-import java.math.BigDecimal;
-import java.math.MathContext;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 
 import org.alfresco.solr.AlfrescoSolrDataModel;
 import org.alfresco.solr.AlfrescoSolrDataModel.FieldUse;
-import org.alfresco.solr.tracker.TrackerStats.Bucket;
-import org.alfresco.solr.tracker.TrackerStats.IncrementalStats;
+import org.alfresco.solr.query.ContentSizeHistogram.Range;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.util.BitSet;
+import org.apache.lucene.util.BitSetIterator;
+import org.apache.lucene.util.SparseFixedBitSet;
 import org.apache.solr.common.util.NamedList;
 import org.apache.solr.handler.component.ResponseBuilder;
 import org.apache.solr.schema.SchemaField;
 import org.apache.solr.search.DelegatingCollector;
 
 /**
+ * Groups the hits by content size, using a {@link ContentSizeHistogram}.
+ *
+ * When the request runs in segment-parallel mode (see {@link SegmentParallelSearch}) the hits are only marked in a
+ * per-segment bit set while collecting: each segment then fills its own histogram in parallel and the histograms are
+ * merged in {@link #finish()}.
+ *
  * @author Andy
  *
  */
 public class ContentSizeGroupingCollector extends DelegatingCollector
 {
     ResponseBuilder rb;
-    IncrementalStats stats;
+    ContentSizeHistogram histogram;
+    int buckets;
     String schemaFieldName;
     SchemaField schemaField;
     NumericDocValues numericDocValues;    
+    private final int threads;
+    private final Long deadline;
+    // Only the segments with hits get a bitset, which is sparse: its size depends on the hits rather than on maxDoc
+    private final LinkedHashMap<LeafReaderContext, BitSet> collectedDocs = new LinkedHashMap<>();
+    private LeafReaderContext segment;
+    private BitSet segmentDocs;
     /**
      * @param rb
      * @param buckets 
@@ -59,9 +76,12 @@ public class ContentSizeGroupingCollector extends DelegatingCollector
     public ContentSizeGroupingCollector(ResponseBuilder rb, int scale, int buckets)
     {
         this.rb = rb;
-        stats = new IncrementalStats(scale, buckets, null);
+        this.buckets = buckets;
+        histogram = new ContentSizeHistogram(scale);
         schemaFieldName = AlfrescoSolrDataModel.getInstance().mapProperty("content.size", FieldUse.FACET, rb.req);
         schemaField = rb.req.getSchema().getFieldOrNull(schemaFieldName);
+        threads = SegmentParallelSearch.getThreads();
+        deadline = SegmentParallelSearch.getDeadline();
     }
     
     
@@ -73,9 +93,15 @@ public class ContentSizeGroupingCollector extends DelegatingCollector
     public void doSetNextReader(LeafReaderContext context) throws IOException
     {
         super.doSetNextReader(context);
+        segment = null;
+        segmentDocs = null;
         if(schemaField != null)
         {
-            if(schemaField.getType().getNumericType() != null)
+            if(schemaField.getType().getNumericType() != null && threads > 1)
+            {
+                segment = context;
+            }
+            else if(schemaField.getType().getNumericType() != null)
             {
                 try
                 {
@@ -95,24 +121,67 @@ public class ContentSizeGroupingCollector extends DelegatingCollector
     public void collect(int doc) throws IOException 
     {
 
-        if(numericDocValues != null)
+        if(segment != null)
+        {
+            if(segmentDocs == null)
+            {
+                segmentDocs = new SparseFixedBitSet(segment.reader().maxDoc());
+                collectedDocs.put(segment, segmentDocs);
+            }
+            segmentDocs.set(doc);
+        }
+        else if(numericDocValues != null)
         {
             long value = numericDocValues.get(doc);
-            stats.add(value);
+            histogram.add(value);
         }
         leafDelegate.collect(doc);
     }
 
+    /**
+     * Fills a histogram for each segment collected in segment-parallel mode and merges them.
+     */
+    private void countCollectedSegments() throws IOException
+    {
+        if(collectedDocs.isEmpty())
+        {
+            return;
+        }
+
+        List<LeafReaderContext> leaves = new ArrayList<>(collectedDocs.keySet());
+        List<ContentSizeHistogram> segmentHistograms = SegmentParallelSearch.mapLeaves(leaves, threads, deadline, leaf -> {
+            ContentSizeHistogram segmentHistogram = new ContentSizeHistogram(histogram.getScale());
+            NumericDocValues values = leaf.reader().getNumericDocValues(schemaFieldName);
+            if(values != null)
+            {
+                DocIdSetIterator docs = new BitSetIterator(collectedDocs.get(leaf), 0);
+                for(int doc = docs.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = docs.nextDoc())
+                {
+                    segmentHistogram.add(values.get(doc));
+                }
+            }
+            return segmentHistogram;
+        });
+
+        for(ContentSizeHistogram segmentHistogram : segmentHistograms)
+        {
+            histogram.merge(segmentHistogram);
+        }
+        collectedDocs.clear();
+    }
+
     public void finish() throws IOException 
     {
+        countCollectedSegments();
+
         NamedList<Object> analytics = new NamedList<>();
         rb.rsp.add("analytics", analytics);
         NamedList<Object> fieldCounts = new NamedList<>(); 
         analytics.add("contentSize()", fieldCounts);
 
-        for(Bucket bucket :stats.getHistogram())
+        for(Range range : histogram.getRanges(buckets))
         {
-            fieldCounts.add("["+(long)Math.ceil(bucket.leftBoundary)+ " TO "+(long)Math.ceil(bucket.rightBoundary)+">", (long)roundEven(bucket.countLeft + bucket.countRight));
+            fieldCounts.add("["+range.lower+ " TO "+range.upper+">", range.count);
         }
 
 
@@ -120,12 +189,4 @@ public class ContentSizeGroupingCollector extends DelegatingCollector
             ((DelegatingCollector)this.delegate).finish();
         }
     }
-    
-  
-    private long roundEven(double value)
-    {
-        BigDecimal bd = new BigDecimal(value);
-        bd = bd.round(MathContext.DECIMAL64);
-        return bd.longValue();
-    }
 }
@@ -0,0 +1,179 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.solr.query;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A fixed layout histogram of (non negative) content sizes, backed by a primitive counts array.
+ *
+ * Values lesser than 16 have a bucket each; larger values fall in 16 equal width sub-buckets per power of two, so the
+ * width of a bucket is at most 1/16 of its lower boundary. Adding a value is a couple of bit operations and an array
+ * increment: no boxing, no locking and no rebalancing of the buckets.
+ *
+ * The fine grained buckets are merged into the requested number of ranges only when the histogram is read, trying to
+ * balance the number of values in each range.
+ */
+class ContentSizeHistogram
+{
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /** One group of sub-buckets for the small values and one for each power of two from 2^4 to 2^62. */
+    static final int BUCKET_COUNT = (Long.SIZE - 1 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final long[] counts = new long[BUCKET_COUNT];
+    private final int scale;
+    private long n;
+
+    /**
+     * @param scale the values are divided by this scale before being counted.
+     */
+    ContentSizeHistogram(int scale)
+    {
+        this.scale = Math.max(1, scale);
+    }
+
+    void add(long value)
+    {
+        counts[bucketOf(Math.max(0, value) / scale)]++;
+        n++;
+    }
+
+    long getN()
+    {
+        return n;
+    }
+
+    /**
+     * Adds the counts of another histogram with the same scale to this one.
+     *
+     * @param other the histogram to be merged.
+     */
+    void merge(ContentSizeHistogram other)
+    {
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++)
+        {
+            counts[bucket] += other.counts[bucket];
+        }
+        n += other.n;
+    }
+
+    int getScale()
+    {
+        return scale;
+    }
+
+    /**
+     * Merges the histogram buckets into (at most) the given number of contiguous ranges.
+     *
+     * @param ranges the number of ranges.
+     * @return the ranges which contain at least one value, in ascending order.
+     */
+    List<Range> getRanges(int ranges)
+    {
+        List<Range> result = new ArrayList<>(Math.max(0, ranges));
+        if (ranges < 1 || n == 0)
+        {
+            return result;
+        }
+
+        long remaining = n;
+        Range current = null;
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++)
+        {
+            long count = counts[bucket];
+            if (count == 0)
+            {
+                continue;
+            }
+
+            if (current == null)
+            {
+                // Ranges are contiguous: a new range starts where the previous one ends
+                long lower = result.isEmpty() ? lowerBoundary(bucket) : result.get(result.size() - 1).upper;
+                current = new Range(lower);
+            }
+            current.count += count;
+            current.upper = upperBoundary(bucket);
+            remaining -= count;
+
+            int rangesLeft = ranges - result.size();
+            if (remaining == 0 || (rangesLeft > 1 && current.count * rangesLeft >= remaining + current.count))
+            {
+                result.add(current);
+                current = null;
+            }
+        }
+        return result;
+    }
+
+    static int bucketOf(long value)
+    {
+        if (value < SUB_BUCKETS)
+        {
+            return (int) value;
+        }
+
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long lowerBoundary(int bucket)
+    {
+        if (bucket < SUB_BUCKETS)
+        {
+            return bucket;
+        }
+
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = bucket % SUB_BUCKETS;
+        return (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    static long upperBoundary(int bucket)
+    {
+        return bucket + 1 < BUCKET_COUNT ? lowerBoundary(bucket + 1) : Long.MAX_VALUE;
+    }
+
+    /**
+     * A [lower, upper) range of values with its count.
+     */
+    static class Range
+    {
+        final long lower;
+        long upper;
+        long count;
+
+        Range(long lower)
+        {
+            this.lower = lower;
+        }
+    }
+}
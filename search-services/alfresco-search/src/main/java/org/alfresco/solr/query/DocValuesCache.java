@@ -27,9 +27,9 @@
 package org.alfresco.solr.query;
 
 import java.io.IOException;
-import java.util.HashMap;
+import java.io.UncheckedIOException;
 import java.util.Map;
-import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.index.NumericDocValues;
@@ -40,58 +40,69 @@ import org.apache.lucene.index.NumericDocValues;
  * possible access to numeric docValues. The DocValuesCache can be used instead of the Direct DocValues format which also
  * provides uncompressed in-memory docValues. The DocValuesCache can be used in situations when it is not
  * practical to re-index to use Direct docValues.
+ *
+ * The values of a segment are loaded once per field (concurrent lookups of other segments or fields are not blocked)
+ * and they are dropped when the segment core is closed.
  **/
 
 public class DocValuesCache
 {
-    private static Map<String, WeakHashMap<Object, NumericDocValues>> cache = new HashMap<String, WeakHashMap<Object, NumericDocValues>>();
+    private static final Map<String, Map<Object, NumericDocValues>> cache = new ConcurrentHashMap<>();
 
-    public static synchronized NumericDocValues getNumericDocValues(String field, LeafReader reader) throws IOException
+    public static NumericDocValues getNumericDocValues(String field, LeafReader reader) throws IOException
     {
-        WeakHashMap<Object, NumericDocValues> fieldCache = cache.get(field);
+        Map<Object, NumericDocValues> fieldCache = cache.computeIfAbsent(field, name -> new ConcurrentHashMap<>());
 
-        if(fieldCache == null)
+        try
         {
-            fieldCache = new WeakHashMap<Object, NumericDocValues>();
-            cache.put(field, fieldCache);
+            // A field missing in the segment isn't cached (computeIfAbsent doesn't store null values)
+            return fieldCache.computeIfAbsent(reader.getCoreCacheKey(), cacheKey -> {
+                try
+                {
+                    NumericDocValues values = load(field, reader);
+                    if(values != null)
+                    {
+                        reader.addCoreClosedListener(fieldCache::remove);
+                    }
+                    return values;
+                }
+                catch (IOException e)
+                {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+        catch (UncheckedIOException e)
+        {
+            throw e.getCause();
+        }
+    }
+
+    private static NumericDocValues load(String field, LeafReader reader) throws IOException
+    {
+        NumericDocValues fieldValues = reader.getNumericDocValues(field);
+        if(fieldValues == null)
+        {
+            return null;
         }
 
-        Object cacheKey = reader.getCoreCacheKey();
-        NumericDocValues cachedValues = fieldCache.get(cacheKey);
+        int maxDoc = reader.maxDoc();
+        boolean longs = false;
+        int[] intValues = new int[maxDoc]; //Always start off with an int array.
+        SettableDocValues settableValues = new IntValues(intValues);
 
-        if(cachedValues == null)
+        for(int i=0; i<maxDoc; i++)
         {
-            NumericDocValues fieldValues = reader.getNumericDocValues(field);
-            if(fieldValues == null)
+            long value = fieldValues.get(i);
+            if(value > Integer.MAX_VALUE && !longs)
             {
-                return null;
+                longs = true;
+                settableValues = new LongValues(intValues);
             }
-            else
-            {
-                int maxDoc = reader.maxDoc();
-                boolean longs = false;
-                int[] intValues = new int[maxDoc]; //Always start off with an int array.
-                SettableDocValues settableValues = new IntValues(intValues);
 
-                for(int i=0; i<maxDoc; i++)
-                {
-                    long value = fieldValues.get(i);
-                    if(value > Integer.MAX_VALUE && !longs)
-                    {
-                        longs = true;
-                        settableValues = new LongValues(intValues);
-                    }
-
-                    settableValues.set(i, value);
-                }
-                fieldCache.put(cacheKey, settableValues);
-                return settableValues;
-            }
-        }
-        else
-        {
-            return cachedValues;
+            settableValues.set(i, value);
         }
+        return settableValues;
     }
 
     private static abstract class SettableDocValues extends NumericDocValues
@@ -27,20 +27,37 @@
 package org.alfresco.solr.query;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map.Entry;
 
 import org.alfresco.solr.AlfrescoSolrDataModel;
 import org.alfresco.solr.AlfrescoSolrDataModel.FieldUse;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BitSet;
+import org.apache.lucene.util.BitSetIterator;
 import org.apache.lucene.util.Counter;
+import org.apache.lucene.util.SparseFixedBitSet;
 import org.apache.solr.common.util.NamedList;
 import org.apache.solr.handler.component.ResponseBuilder;
 import org.apache.solr.schema.SchemaField;
 import org.apache.solr.search.DelegatingCollector;
 
 /**
+ * Counts the hits by mimetype (or mimetype group).
+ *
+ * Hits are counted by ordinal in a per-segment array (reused across segments): ordinals are resolved to mimetype
+ * groups only once per segment, when the collector moves to the next segment or finishes.
+ *
+ * When the request runs in segment-parallel mode (see {@link SegmentParallelSearch}) the hits are only marked in a
+ * per-segment bit set while collecting: the segments are then counted in parallel and merged in {@link #finish()}.
+ *
  * @author Andy
  *
  */
@@ -53,6 +70,13 @@ public class MimetypeGroupingCollector extends DelegatingCollector
     String schemaFieldName;
     SchemaField schemaField;
     SortedDocValues sortedDocValues;
+    int[] ordinalCounts = new int[0];
+    private final int threads;
+    private final Long deadline;
+    // Only the segments with hits get a bitset, which is sparse: its size depends on the hits rather than on maxDoc
+    private final LinkedHashMap<LeafReaderContext, BitSet> collectedDocs = new LinkedHashMap<>();
+    private LeafReaderContext segment;
+    private BitSet segmentDocs;
     /**
      * @param rb
      * @param mappings 
@@ -65,14 +89,23 @@ public class MimetypeGroupingCollector extends DelegatingCollector
         this.doGroup = doGroup;
         schemaFieldName = AlfrescoSolrDataModel.getInstance().mapProperty("content.mimetype", FieldUse.FACET, rb.req);
         schemaField = rb.req.getSchema().getFieldOrNull(schemaFieldName);
+        threads = SegmentParallelSearch.getThreads();
+        deadline = SegmentParallelSearch.getDeadline();
     }
     
     
     @Override
     public void doSetNextReader(LeafReaderContext context) throws IOException
     {
+        countSegment();
         super.doSetNextReader(context);
-        if(schemaField != null)
+        segment = null;
+        segmentDocs = null;
+        if(schemaField != null && threads > 1)
+        {
+            segment = context;
+        }
+        else if(schemaField != null)
         {
             try
             {
@@ -82,40 +115,133 @@ public class MimetypeGroupingCollector extends DelegatingCollector
             {
                
             }
+
+            if(sortedDocValues != null && ordinalCounts.length < sortedDocValues.getValueCount())
+            {
+                ordinalCounts = new int[ArrayUtil.oversize(sortedDocValues.getValueCount(), Integer.BYTES)];
+            }
         }
     }
 
     @Override
     public void collect(int doc) throws IOException 
     {
-        if(sortedDocValues != null)
+        if(segment != null)
+        {
+            if(segmentDocs == null)
+            {
+                segmentDocs = new SparseFixedBitSet(segment.reader().maxDoc());
+                collectedDocs.put(segment, segmentDocs);
+            }
+            segmentDocs.set(doc);
+        }
+        else if(sortedDocValues != null)
         {
             int ordinal = sortedDocValues.getOrd(doc);
             if(ordinal > -1)
             {
-                String value = (String)schemaField.getType().toObject(schemaField, sortedDocValues.lookupOrd(ordinal));
-                String group = doGroup ? mappings.get(value) : value;
-                if(group == null)
-                {
-                    group = value;
-                }
+                ordinalCounts[ordinal]++;
+            }
+        }
+
+
+        leafDelegate.collect(doc);
+    }
+
+    /**
+     * Resolves the ordinals counted in the current segment to mimetype groups, adds their counts to the overall
+     * counters and clears the per-segment counts.
+     */
+    private void countSegment()
+    {
+        if(sortedDocValues == null)
+        {
+            return;
+        }
+
+        addCounts(sortedDocValues, ordinalCounts, counters);
 
-                Counter counter = counters.get(group);
-                if(counter == null)
+        Arrays.fill(ordinalCounts, 0, sortedDocValues.getValueCount(), 0);
+        sortedDocValues = null;
+    }
+
+    /**
+     * Counts the segments collected in segment-parallel mode, each on its own, and merges their counts.
+     */
+    private void countCollectedSegments() throws IOException
+    {
+        if(collectedDocs.isEmpty())
+        {
+            return;
+        }
+
+        List<LeafReaderContext> leaves = new ArrayList<>(collectedDocs.keySet());
+        List<HashMap<String, Counter>> segmentCounters = SegmentParallelSearch.mapLeaves(leaves, threads, deadline, leaf -> {
+            HashMap<String, Counter> segmentCounts = new HashMap<>();
+            SortedDocValues values = leaf.reader().getSortedDocValues(schemaFieldName);
+            if(values != null)
+            {
+                int[] counts = new int[values.getValueCount()];
+                DocIdSetIterator docs = new BitSetIterator(collectedDocs.get(leaf), 0);
+                for(int doc = docs.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = docs.nextDoc())
                 {
-                    counter = Counter.newCounter();
-                    counters.put(group, counter);
+                    int ordinal = values.getOrd(doc);
+                    if(ordinal > -1)
+                    {
+                        counts[ordinal]++;
+                    }
                 }
-                counter.addAndGet(1);
+                addCounts(values, counts, segmentCounts);
+            }
+            return segmentCounts;
+        });
+
+        for(HashMap<String, Counter> segmentCounts : segmentCounters)
+        {
+            for(Entry<String, Counter> counter : segmentCounts.entrySet())
+            {
+                counters.computeIfAbsent(counter.getKey(), key -> Counter.newCounter()).addAndGet(counter.getValue().get());
             }
         }
+        collectedDocs.clear();
+    }
 
+    /**
+     * Resolves the counted ordinals of a segment to mimetype groups and adds their counts to the given counters.
+     */
+    private void addCounts(SortedDocValues values, int[] counts, HashMap<String, Counter> target)
+    {
+        int valueCount = values.getValueCount();
+        for(int ordinal = 0; ordinal < valueCount; ordinal++)
+        {
+            int count = counts[ordinal];
+            if(count == 0)
+            {
+                continue;
+            }
 
-        leafDelegate.collect(doc);
+            String value = (String)schemaField.getType().toObject(schemaField, values.lookupOrd(ordinal));
+            String group = doGroup ? mappings.get(value) : value;
+            if(group == null)
+            {
+                group = value;
+            }
+
+            Counter counter = target.get(group);
+            if(counter == null)
+            {
+                counter = Counter.newCounter();
+                target.put(group, counter);
+            }
+            counter.addAndGet(count);
+        }
     }
 
     public void finish() throws IOException 
     {
+        countSegment();
+        countCollectedSegments();
+
         NamedList<Object> analytics = new NamedList<>();
         rb.rsp.add("analytics", analytics);
         NamedList<Object> fieldCounts = new NamedList<>(); 
@@ -0,0 +1,236 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.solr.query;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.alfresco.service.cmr.search.SearchParameters;
+import org.alfresco.solr.AlfrescoSolrDataModel;
+import org.alfresco.solr.ContextAwareQuery;
+import org.alfresco.solr.cache.CacheConstants;
+import org.alfresco.util.Pair;
+import org.apache.lucene.search.Query;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.search.SolrIndexSearcher;
+
+/**
+ * Access to the alfrescoQueryPlanCache, which holds the Lucene queries translated by the AFTS, Lucene and CMIS
+ * query parsers.
+ *
+ * The key is made of everything the translation depends on: the parser, the (trimmed) query text, the locales,
+ * the default field, the templates, the attributes, the operators, any parser specific argument and the version of
+ * the data model, so a model change makes all the existing plans unreachable.
+ * A plan holds the Lucene query only: it is wrapped in a new {@link ContextAwareQuery} carrying the search
+ * parameters of the current request each time it is used, so the settings which are not part of the key (e.g. the
+ * tenants) are never taken from the request which built the plan.
+ *
+ * Authority and tenant filters are never cached (they are specific to the user running the query) and neither are
+ * the queries whose translation depends on the time (date math) or on the index content (fingerprints).
+ * The cache statistics (e.g. the hit ratio) are reported in the core SUMMARY.
+ */
+public final class QueryPlanCache
+{
+    /** Date math (e.g. [NOW/DAY-1DAY TO NOW]) and fingerprint queries. */
+    private static final Pattern NOT_CACHEABLE = Pattern.compile("\\bNOW\\b|(?i:\\bFINGERPRINT\\b)");
+
+    private QueryPlanCache()
+    {
+        // Static methods only
+    }
+
+    /**
+     * Builds the plan cache key of a query.
+     *
+     * @param parser the name of the parser.
+     * @param req the current request.
+     * @param searchParametersAndFilter the search parameters of the query and the filter flag.
+     * @param arguments any other parser argument which affects the translation.
+     * @return the key, or null if the query cannot be cached.
+     */
+    public static Key key(String parser, SolrQueryRequest req, Pair<SearchParameters, Boolean> searchParametersAndFilter, Object... arguments)
+    {
+        if (Boolean.TRUE.equals(searchParametersAndFilter.getSecond()))
+        {
+            return null;
+        }
+
+        SearchParameters searchParameters = searchParametersAndFilter.getFirst();
+        String query = searchParameters.getQuery();
+        if (query == null || !isCacheable(query))
+        {
+            return null;
+        }
+
+        Map<String, String> templates = searchParameters.getQueryTemplates();
+        for (String template : templates.values())
+        {
+            if (!isCacheable(template))
+            {
+                return null;
+            }
+        }
+
+        List<Object> components = new ArrayList<>(16 + arguments.length);
+        components.add(parser);
+        components.add(query.trim());
+        components.add(new ArrayList<>(searchParameters.getLocales()));
+        components.add(searchParameters.getDefaultFieldName());
+        components.add(templates);
+        components.add(new ArrayList<>(searchParameters.getAllAttributes()));
+        components.add(new ArrayList<>(searchParameters.getTextAttributes()));
+        components.add(searchParameters.getDefaultFTSOperator());
+        components.add(searchParameters.getDefaultFTSFieldOperator());
+        components.add(searchParameters.getMlAnalaysisMode());
+        components.add(searchParameters.getQueryConsistency());
+        components.add(searchParameters.getSearchTerm());
+        components.add(req.getParams().get(CommonParams.DEFTYPE));
+        components.addAll(Arrays.asList(arguments));
+        return new Key(components, AlfrescoSolrDataModel.getInstance().getModelVersion());
+    }
+
+    /**
+     * @return the cached plan or null (cache miss, key null or no plan cache configured for the core).
+     */
+    public static Plan lookup(SolrQueryRequest req, Key key)
+    {
+        if (key == null)
+        {
+            return null;
+        }
+        SolrIndexSearcher searcher = req.getSearcher();
+        return (Plan) searcher.cacheLookup(CacheConstants.ALFRESCO_QUERY_PLAN_CACHE, key);
+    }
+
+    /**
+     * Caches the given plan, if the key is not null and the core has a plan cache.
+     */
+    public static void insert(SolrQueryRequest req, Key key, Plan plan)
+    {
+        if (key != null)
+        {
+            req.getSearcher().cacheInsert(CacheConstants.ALFRESCO_QUERY_PLAN_CACHE, key, plan);
+        }
+    }
+
+    static boolean isCacheable(String text)
+    {
+        return text == null || !NOT_CACHEABLE.matcher(text).find();
+    }
+
+    /**
+     * The plan cache key.
+     */
+    public static final class Key
+    {
+        private final List<Object> components;
+        private final long modelVersion;
+        private final int hashCode;
+
+        Key(List<Object> components, long modelVersion)
+        {
+            this.components = components;
+            this.modelVersion = modelVersion;
+            this.hashCode = 31 * components.hashCode() + Long.hashCode(modelVersion);
+        }
+
+        /**
+         * @return the version of the data model the plan has been built with.
+         */
+        public long getModelVersion()
+        {
+            return modelVersion;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (this == obj)
+            {
+                return true;
+            }
+            if (!(obj instanceof Key))
+            {
+                return false;
+            }
+            Key other = (Key) obj;
+            return hashCode == other.hashCode && modelVersion == other.modelVersion && components.equals(other.components);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hashCode;
+        }
+
+        @Override
+        public String toString()
+        {
+            return components + "@" + modelVersion;
+        }
+    }
+
+    /**
+     * A cached plan: the translated Lucene query and, for the parsers which derive it from the query, the sort
+     * parameter.
+     */
+    public static final class Plan
+    {
+        final Query query;
+        final String sort;
+
+        /**
+         * @param query the translated query, a {@link ContextAwareQuery} is unwrapped so that its search parameters are
+         *        not cached.
+         * @param sort the sort parameter derived from the query, if any.
+         */
+        public Plan(Query query, String sort)
+        {
+            this.query = query instanceof ContextAwareQuery ? ((ContextAwareQuery) query).getLuceneQuery() : query;
+            this.sort = sort;
+        }
+
+        /**
+         * @param searchParametersAndFilter the search parameters of the current request and the filter flag.
+         * @return the cached Lucene query in a new {@link ContextAwareQuery} bound to the current search parameters.
+         */
+        public Query getQuery(Pair<SearchParameters, Boolean> searchParametersAndFilter)
+        {
+            return new ContextAwareQuery(query,
+                    Boolean.TRUE.equals(searchParametersAndFilter.getSecond()) ? null : searchParametersAndFilter.getFirst());
+        }
+
+        public String getSort()
+        {
+            return sort;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.solr.query;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.QueryRescorer;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.util.NumericUtils;
+
+/**
+ * Rescores the top documents of the first pass with the re-rank query. The result is the same as the one of a
+ * {@link QueryRescorer} whose combined score is: first pass score + reRankWeight * re-rank query score.
+ *
+ * The hits are rescored one segment at a time in docid order, so the re-rank query scorer only moves forward.
+ * Both sort passes (by docid, then by combined score) work on primitive keys in per-thread buffers which are reused
+ * across requests: apart from the resulting array, nothing is allocated per hit.
+ */
+final class ReRankRescorer
+{
+    private static final ThreadLocal<Buffers> BUFFERS = ThreadLocal.withInitial(Buffers::new);
+
+    private final Query reRankQuery;
+    private final double reRankWeight;
+
+    ReRankRescorer(Query reRankQuery, double reRankWeight)
+    {
+        this.reRankQuery = reRankQuery;
+        this.reRankWeight = reRankWeight;
+    }
+
+    static float combine(float firstPassScore, boolean secondPassMatches, float secondPassScore, double reRankWeight)
+    {
+        float score = firstPassScore;
+        if (secondPassMatches)
+        {
+            score += reRankWeight * secondPassScore;
+        }
+        return score;
+    }
+
+    /**
+     * Rescores the first pass hits. As it happens with the {@link QueryRescorer}, the scores of the input
+     * {@link ScoreDoc} instances are replaced by the combined scores.
+     *
+     * @param searcher the searcher used for the first pass.
+     * @param firstPass the first pass hits.
+     * @param topN the max number of hits to return.
+     * @return the hits sorted by combined score (then by docid).
+     * @throws IOException in case of failure while scoring the re-rank query.
+     */
+    TopDocs rescore(IndexSearcher searcher, TopDocs firstPass, int topN) throws IOException
+    {
+        ScoreDoc[] hits = firstPass.scoreDocs;
+        int size = hits.length;
+        Buffers buffers = BUFFERS.get().ensureCapacity(size);
+        long[] keys = buffers.keys;
+        int[] hitIndexes = buffers.hitIndexes;
+
+        // docid in the high bits, hit index in the low bits
+        for (int i = 0; i < size; i++)
+        {
+            keys[i] = ((long) hits[i].doc << 32) | i;
+        }
+        Arrays.sort(keys, 0, size);
+
+        Weight weight = searcher.createNormalizedWeight(reRankQuery, true);
+        List<LeafReaderContext> leaves = searcher.getIndexReader().leaves();
+        int leafIndex = -1;
+        int docBase = 0;
+        int leafEnd = 0;
+        Scorer scorer = null;
+        DocIdSetIterator iterator = null;
+
+        for (int i = 0; i < size; i++)
+        {
+            int hitIndex = (int) keys[i];
+            ScoreDoc hit = hits[hitIndex];
+            if (hit.doc >= leafEnd)
+            {
+                do
+                {
+                    LeafReaderContext leaf = leaves.get(++leafIndex);
+                    docBase = leaf.docBase;
+                    leafEnd = docBase + leaf.reader().maxDoc();
+                }
+                while (hit.doc >= leafEnd);
+
+                scorer = weight.scorer(leaves.get(leafIndex));
+                iterator = scorer == null ? null : scorer.iterator();
+            }
+
+            boolean matches = false;
+            float secondPassScore = 0;
+            if (iterator != null)
+            {
+                int target = hit.doc - docBase;
+                int current = iterator.docID();
+                if (current < target)
+                {
+                    current = iterator.advance(target);
+                }
+                if (current == target)
+                {
+                    matches = true;
+                    secondPassScore = scorer.score();
+                }
+            }
+            hit.score = combine(hit.score, matches, secondPassScore, reRankWeight);
+
+            // combined score descending in the high bits, docid rank in the low bits
+            hitIndexes[i] = hitIndex;
+            keys[i] = ((long) ~NumericUtils.floatToSortableInt(hit.score) << 32) | i;
+        }
+        Arrays.sort(keys, 0, size);
+
+        ScoreDoc[] rescored = new ScoreDoc[Math.min(Math.max(0, topN), size)];
+        for (int i = 0; i < rescored.length; i++)
+        {
+            rescored[i] = hits[hitIndexes[(int) keys[i]]];
+        }
+        return new TopDocs(firstPass.totalHits, rescored, rescored.length == 0 ? Float.NaN : rescored[0].score);
+    }
+
+    /**
+     * The per-thread sort buffers.
+     */
+    private static final class Buffers
+    {
+        long[] keys = new long[0];
+        int[] hitIndexes = new int[0];
+
+        Buffers ensureCapacity(int size)
+        {
+            if (keys.length < size)
+            {
+                int capacity = Math.max(size, keys.length + (keys.length >> 1));
+                keys = new long[capacity];
+                hitIndexes = new int[capacity];
+            }
+            return this;
+        }
+    }
+}
@@ -0,0 +1,492 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.solr.query;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.util.BitSetIterator;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.request.SolrRequestInfo;
+import org.apache.solr.search.BitDocSet;
+import org.apache.solr.search.DocSet;
+import org.apache.solr.search.SolrIndexSearcher;
+import org.apache.solr.search.SolrQueryTimeoutImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Segment-parallel execution of the per-segment work of a query.
+ *
+ * The leaves of the index are split in slices of (roughly) the same number of documents and each slice is processed
+ * on a dedicated (JVM-wide) thread pool, while the request thread works on the first slice. The per-segment results
+ * are then merged by the caller, in leaf order. This is used for the expensive per-segment steps Alfresco owns:
+ * the ACL and owner filters of the authority set queries, the uncached PATH DocSets and the counting of the
+ * mimetype/content size grouping analytics. The main collector chain is still run by Solr on the request thread.
+ *
+ * The mode is opt-in ("alfresco.segmentParallel.enabled", which a request parameter with the same name can only turn
+ * off) and bounded:
+ *
+ * <ul>
+ *     <li>each request uses at most "alfresco.segmentParallel.threads" threads (a request parameter can lower it)</li>
+ *     <li>at most "alfresco.segmentParallel.maxConcurrentRequests" requests of the same core run in this mode at the
+ *     same time: the others are executed sequentially, as the pool would be shared by too many queries anyway</li>
+ * </ul>
+ *
+ * Worker threads never fork again: nested calls made from a slice run sequentially. They honour the timeAllowed of the
+ * request: no leaf is started after the deadline (see {@link TimeExceededException}) and the reads made by the
+ * workers are bound to the same timeout of the request thread.
+ */
+public final class SegmentParallelSearch
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(SegmentParallelSearch.class);
+
+    public static final String ENABLED = "alfresco.segmentParallel.enabled";
+    public static final String THREADS = "alfresco.segmentParallel.threads";
+    public static final String MAX_CONCURRENT_REQUESTS = "alfresco.segmentParallel.maxConcurrentRequests";
+
+    private static final String CONTEXT_KEY = SegmentParallelSearch.class.getName() + ".threads";
+    private static final String ACTIVE_REQUESTS_KEY = SegmentParallelSearch.class.getName() + ".activeRequests";
+    private static final String DEADLINE_KEY = SegmentParallelSearch.class.getName() + ".deadline";
+
+    private static final int DEFAULT_THREADS = 4;
+    private static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 2;
+
+    static final int MAX_PARALLELISM =
+            Integer.getInteger("alfresco.segmentParallel.maxParallelism", Runtime.getRuntime().availableProcessors());
+
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    private static final ThreadFactory THREAD_FACTORY = runnable -> {
+        Thread thread = new Thread(runnable, "SegmentSearcher-" + THREAD_COUNTER.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    };
+
+    private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(MAX_PARALLELISM, THREAD_FACTORY);
+
+    /** The requests in segment-parallel mode, by core: the max concurrent requests is a core setting. */
+    private static final Map<String, AtomicInteger> ACTIVE_REQUESTS = new ConcurrentHashMap<>();
+
+    /**
+     * A per-segment step.
+     */
+    @FunctionalInterface
+    public interface LeafFunction<T>
+    {
+        T apply(LeafReaderContext leaf) throws IOException;
+    }
+
+    /**
+     * Thrown when the timeAllowed of a segment-parallel request expires: like the
+     * {@link org.apache.lucene.index.ExitableDirectoryReader.ExitingReaderException}, it ends the request with partial
+     * results.
+     */
+    public static final class TimeExceededException extends RuntimeException
+    {
+        private static final long serialVersionUID = 1L;
+
+        TimeExceededException()
+        {
+            super("The request took too long to process the segments (timeAllowed)");
+        }
+    }
+
+    private SegmentParallelSearch()
+    {
+        // Static methods only
+    }
+
+    /**
+     * Enables the segment-parallel mode for the given request, if the configuration and the current load allow it.
+     * Every successful call must be followed by an {@link #end(SolrQueryRequest)} call.
+     *
+     * @param req the search request.
+     * @return true if the request will be executed in segment-parallel mode.
+     */
+    public static boolean begin(SolrQueryRequest req)
+    {
+        Properties p = req.getCore().getResourceLoader().getCoreProperties();
+        SolrParams params = req.getParams();
+
+        // The request can only turn off the mode enabled in the core configuration
+        boolean enabled = Boolean.parseBoolean(p.getProperty(ENABLED, "false")) && params.getBool(ENABLED, true);
+        if (!enabled)
+        {
+            return false;
+        }
+
+        int maxThreads = Math.min(MAX_PARALLELISM,
+                    Integer.parseInt(p.getProperty(THREADS, String.valueOf(DEFAULT_THREADS))));
+        int threads = Math.min(maxThreads, params.getInt(THREADS, maxThreads));
+        if (threads < 2)
+        {
+            return false;
+        }
+
+        int maxConcurrentRequests = Integer.parseInt(
+                    p.getProperty(MAX_CONCURRENT_REQUESTS, String.valueOf(DEFAULT_MAX_CONCURRENT_REQUESTS)));
+        AtomicInteger activeRequests = ACTIVE_REQUESTS.computeIfAbsent(req.getCore().getName(), name -> new AtomicInteger());
+        if (activeRequests.incrementAndGet() > maxConcurrentRequests)
+        {
+            activeRequests.decrementAndGet();
+            LOGGER.debug("Too many concurrent segment-parallel requests, running {} sequentially", req.getParamString());
+            return false;
+        }
+
+        long timeAllowed = params.getLong(CommonParams.TIME_ALLOWED, -1L);
+        if (timeAllowed > 0L)
+        {
+            req.getContext().put(DEADLINE_KEY, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeAllowed));
+        }
+        req.getContext().put(ACTIVE_REQUESTS_KEY, activeRequests);
+        req.getContext().put(CONTEXT_KEY, threads);
+        return true;
+    }
+
+    /**
+     * Releases the thread budget of a request enabled by {@link #begin(SolrQueryRequest)}.
+     *
+     * @param req the search request.
+     */
+    public static void end(SolrQueryRequest req)
+    {
+        req.getContext().remove(CONTEXT_KEY);
+        req.getContext().remove(DEADLINE_KEY);
+        Object activeRequests = req.getContext().remove(ACTIVE_REQUESTS_KEY);
+        if (activeRequests != null)
+        {
+            ((AtomicInteger) activeRequests).decrementAndGet();
+        }
+    }
+
+    /**
+     * @return the thread budget of the request executed by the current thread (1 if the request is not in
+     *         segment-parallel mode or if the current thread is a worker thread).
+     */
+    public static int getThreads()
+    {
+        SolrRequestInfo info = SolrRequestInfo.getRequestInfo();
+        if (info == null || info.getReq() == null)
+        {
+            return 1;
+        }
+
+        Object threads = info.getReq().getContext().get(CONTEXT_KEY);
+        return threads instanceof Integer ? (Integer) threads : 1;
+    }
+
+    /**
+     * @return the deadline (in {@link System#nanoTime()} units) of the request executed by the current thread, or null
+     *         if the request is not in segment-parallel mode or has no timeAllowed.
+     */
+    static Long getDeadline()
+    {
+        SolrRequestInfo info = SolrRequestInfo.getRequestInfo();
+        if (info == null || info.getReq() == null)
+        {
+            return null;
+        }
+
+        Object deadline = info.getReq().getContext().get(DEADLINE_KEY);
+        return deadline instanceof Long ? (Long) deadline : null;
+    }
+
+    static int getActiveRequests(String coreName)
+    {
+        AtomicInteger activeRequests = ACTIVE_REQUESTS.get(coreName);
+        return activeRequests == null ? 0 : activeRequests.get();
+    }
+
+    /**
+     * Applies the function to each of the given leaves, using the thread budget of the current request.
+     *
+     * @param leaves the leaves.
+     * @param function the per-segment step.
+     * @return the results, in the same order of the leaves.
+     * @throws IOException if the function fails on any leaf.
+     */
+    public static <T> List<T> mapLeaves(List<LeafReaderContext> leaves, LeafFunction<T> function) throws IOException
+    {
+        return mapLeaves(leaves, getThreads(), getDeadline(), function);
+    }
+
+    static <T> List<T> mapLeaves(List<LeafReaderContext> leaves, int threads, LeafFunction<T> function) throws IOException
+    {
+        return mapLeaves(leaves, threads, null, function);
+    }
+
+    /**
+     * Applies the function to each of the given leaves, using the given number of threads.
+     *
+     * @param deadline the {@link System#nanoTime()} after which no leaf is started, null if there's no time limit.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> List<T> mapLeaves(List<LeafReaderContext> leaves, int threads, Long deadline, LeafFunction<T> function) throws IOException
+    {
+        Object[] results = new Object[leaves.size()];
+        if (threads < 2 || leaves.size() < 2)
+        {
+            apply(leaves, range(leaves.size()), function, results, deadline, new AtomicBoolean());
+            return (List<T>) Arrays.asList(results);
+        }
+
+        List<int[]> slices = slices(leaves, threads);
+        List<Future<?>> futures = new ArrayList<>(slices.size() - 1);
+        AtomicBoolean stopped = new AtomicBoolean();
+        Throwable failure = null;
+        try
+        {
+            for (int[] slice : slices.subList(1, slices.size()))
+            {
+                futures.add(EXECUTOR.submit(() -> {
+                    // The reads of the worker are bound to the timeout of the request thread
+                    if (deadline != null)
+                    {
+                        SolrQueryTimeoutImpl.set(Math.max(1L, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+                    }
+                    try
+                    {
+                        apply(leaves, slice, function, results, deadline, stopped);
+                    }
+                    finally
+                    {
+                        SolrQueryTimeoutImpl.reset();
+                    }
+                    return null;
+                }));
+            }
+            apply(leaves, slices.get(0), function, results, deadline, stopped);
+        }
+        catch (IOException | RuntimeException | Error exception)
+        {
+            failure = exception;
+            stopped.set(true);
+        }
+
+        // All the slices must be done before returning, as they use the searcher of the request
+        for (Future<?> future : futures)
+        {
+            try
+            {
+                future.get();
+            }
+            catch (ExecutionException exception)
+            {
+                failure = failure == null ? exception.getCause() : failure;
+                stopped.set(true);
+            }
+            catch (InterruptedException exception)
+            {
+                Thread.currentThread().interrupt();
+                failure = failure == null ? exception : failure;
+            }
+        }
+
+        if (failure instanceof IOException)
+        {
+            throw (IOException) failure;
+        }
+        else if (failure instanceof RuntimeException)
+        {
+            throw (RuntimeException) failure;
+        }
+        else if (failure instanceof Error)
+        {
+            throw (Error) failure;
+        }
+        else if (failure != null)
+        {
+            throw new IOException(failure);
+        }
+        return (List<T>) Arrays.asList(results);
+    }
+
+    /**
+     * Computes the per-segment bit sets of the (live) documents matching the query.
+     *
+     * @param searcher the searcher.
+     * @param query the query.
+     * @return a bit set for each leaf of the searcher.
+     * @throws IOException in case of failure.
+     */
+    public static List<FixedBitSet> getLeafBitSets(SolrIndexSearcher searcher, Query query) throws IOException
+    {
+        Weight weight = searcher.createNormalizedWeight(query, false);
+        return mapLeaves(searcher.getTopReaderContext().leaves(), leaf -> matches(weight, leaf));
+    }
+
+    /**
+     * Returns the DocSet of the given query, computed segment by segment when the current request is in
+     * segment-parallel mode. The filter cache is not used.
+     *
+     * @param searcher the searcher.
+     * @param query the query.
+     * @return the documents matching the query.
+     * @throws IOException in case of failure.
+     */
+    public static DocSet getDocSet(SolrIndexSearcher searcher, Query query) throws IOException
+    {
+        List<LeafReaderContext> leaves = searcher.getTopReaderContext().leaves();
+        int threads = getThreads();
+        if (threads < 2 || leaves.size() < 2)
+        {
+            return searcher.getDocSet(query);
+        }
+
+        Weight weight = searcher.createNormalizedWeight(query, false);
+        List<FixedBitSet> leafBitSets = mapLeaves(leaves, threads, getDeadline(), leaf -> matches(weight, leaf));
+
+        FixedBitSet bits = new FixedBitSet(searcher.maxDoc());
+        int size = 0;
+        for (int i = 0; i < leaves.size(); i++)
+        {
+            int docBase = leaves.get(i).docBase;
+            DocIdSetIterator iterator = new BitSetIterator(leafBitSets.get(i), 0);
+            for (int doc = iterator.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = iterator.nextDoc())
+            {
+                bits.set(docBase + doc);
+                size++;
+            }
+        }
+        return new BitDocSet(bits, size);
+    }
+
+    private static FixedBitSet matches(Weight weight, LeafReaderContext leaf) throws IOException
+    {
+        FixedBitSet bits = new FixedBitSet(leaf.reader().maxDoc());
+        Scorer scorer = weight.scorer(leaf);
+        if (scorer != null)
+        {
+            Bits liveDocs = leaf.reader().getLiveDocs();
+            DocIdSetIterator iterator = scorer.iterator();
+            for (int doc = iterator.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = iterator.nextDoc())
+            {
+                if (liveDocs == null || liveDocs.get(doc))
+                {
+                    bits.set(doc);
+                }
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * Applies the function to the leaves of a slice, until the deadline expires or another slice fails.
+     */
+    private static <T> void apply(List<LeafReaderContext> leaves, int[] slice, LeafFunction<T> function,
+                Object[] results, Long deadline, AtomicBoolean stopped) throws IOException
+    {
+        for (int index : slice)
+        {
+            if (stopped.get())
+            {
+                return;
+            }
+            if (deadline != null && deadline - System.nanoTime() < 0)
+            {
+                stopped.set(true);
+                throw new TimeExceededException();
+            }
+            results[index] = function.apply(leaves.get(index));
+        }
+    }
+
+    private static int[] range(int size)
+    {
+        int[] range = new int[size];
+        for (int i = 0; i < size; i++)
+        {
+            range[i] = i;
+        }
+        return range;
+    }
+
+    /**
+     * Splits the leaves in (at most) the given number of slices with roughly the same number of documents: the
+     * largest leaves are assigned first, each to the lightest slice.
+     *
+     * @return the indexes of the leaves of each slice.
+     */
+    static List<int[]> slices(List<LeafReaderContext> leaves, int threads)
+    {
+        int count = Math.min(threads, leaves.size());
+        Integer[] bySize = new Integer[leaves.size()];
+        for (int i = 0; i < bySize.length; i++)
+        {
+            bySize[i] = i;
+        }
+        Arrays.sort(bySize, Comparator.comparingInt((Integer i) -> leaves.get(i).reader().maxDoc()).reversed());
+
+        long[] docs = new long[count];
+        int[] sizes = new int[count];
+        int[][] slices = new int[count][leaves.size()];
+        for (int index : bySize)
+        {
+            int lightest = 0;
+            for (int slice = 1; slice < count; slice++)
+            {
+                if (docs[slice] < docs[lightest])
+                {
+                    lightest = slice;
+                }
+            }
+            slices[lightest][sizes[lightest]++] = index;
+            docs[lightest] += leaves.get(index).reader().maxDoc();
+        }
+
+        List<int[]> result = new ArrayList<>(count);
+        for (int slice = 0; slice < count; slice++)
+        {
+            result.add(Arrays.copyOf(slices[slice], sizes[slice]));
+        }
+        return result;
+    }
+}
@@ -27,9 +27,7 @@
 package org.alfresco.solr.query;
 
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Properties;
 
 import org.alfresco.repo.search.adaptor.QueryConstants;
@@ -42,12 +40,9 @@ import org.apache.lucene.index.Term;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.BooleanQuery.Builder;
-import org.apache.lucene.search.Collector;
 import org.apache.lucene.search.ConstantScoreQuery;
 import org.apache.lucene.search.IndexSearcher;
-import org.apache.lucene.search.LeafCollector;
 import org.apache.lucene.search.MatchAllDocsQuery;
-import org.apache.lucene.search.Scorer;
 import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.Weight;
 import org.apache.lucene.util.FixedBitSet;
@@ -240,53 +235,9 @@ public class SolrAuthoritySetQuery extends AbstractAuthoritySetQuery implements
             }
         }
 
-        BitsFilterCollector collector = new BitsFilterCollector(searcher.getTopReaderContext().leaves().size());
-        searcher.search(builder.build(), collector);
-        return collector.getBitsFilter();
+        return new BitsFilter(SegmentParallelSearch.getLeafBitSets(searcher, builder.build()));
     }
 
-    class BitsFilterCollector implements Collector, LeafCollector
-    {
-        private List<FixedBitSet> sets;
-        private FixedBitSet set;
-
-        public BitsFilterCollector(int leafCount)
-        {
-            this.sets = new ArrayList<FixedBitSet>(leafCount);
-        }
-
-        public BitsFilter getBitsFilter() {
-            return new BitsFilter(sets);
-        }
-
-        public boolean acceptsDocsOutOfOrder() {
-            return false;
-        }
-
-        public void setScorer(Scorer scorer) {
-
-        }
-
-        public void collect(int doc) {
-            set.set(doc);
-        }
-
-		@Override
-		public LeafCollector getLeafCollector(LeafReaderContext context)
-				throws IOException {
-			   set = new FixedBitSet(context.reader().maxDoc());
-	            sets.add(set);
-			return this;
-		}
-
-		@Override
-		public boolean needsScores() {
-			// TODO Auto-generated method stub
-			return false;
-		}
-    }
-
-
     /*
     *  The AccessControlCollector applies that ACL logic given aclIds and ownerFilter
     */
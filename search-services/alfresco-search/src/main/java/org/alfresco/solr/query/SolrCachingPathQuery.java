@@ -28,14 +28,12 @@ package org.alfresco.solr.query;
 
 import java.io.IOException;
 
-import org.alfresco.solr.cache.CacheConstants;
 import org.apache.lucene.search.ConstantScoreQuery;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.Weight;
 import org.apache.solr.search.DocSet;
 import org.apache.solr.search.SolrIndexSearcher;
-import org.apache.solr.search.WrappedQuery;
 
 /**
  * Decorator that executes a SolrPathQuery and returns cached results where possible.
@@ -67,16 +65,7 @@ public class SolrCachingPathQuery extends Query
             searcher = (SolrIndexSearcher)indexSearcher;
         }
 
-        DocSet results = (DocSet) searcher.cacheLookup(CacheConstants.ALFRESCO_PATH_CACHE, pathQuery);
-        if (results == null)
-        {
-            // Cache miss: get path query results and cache them
-            WrappedQuery wrapped = new WrappedQuery(pathQuery);
-            wrapped.setCache(false);
-            results = searcher.getDocSet(wrapped);
-            searcher.cacheInsert(CacheConstants.ALFRESCO_PATH_CACHE, pathQuery, results);
-        }
-
+        DocSet results = SolrPathResolver.getDocSet(searcher, pathQuery);
         return new ConstantScoreQuery(results.getTopFilter()).createWeight(searcher, false);
     }
 
@@ -28,12 +28,10 @@ package org.alfresco.solr.query;
 
 import java.io.IOException;
 
-import org.alfresco.solr.cache.CacheConstants;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.search.Weight;
 import org.apache.solr.search.DocSet;
 import org.apache.solr.search.SolrIndexSearcher;
-import org.apache.solr.search.WrappedQuery;
 
 /**
  * Caching wrapper for {@link SolrPathQuery}.
@@ -57,16 +55,7 @@ public class SolrCachingPathScorer extends AbstractSolrCachingScorer
                                                SolrIndexSearcher searcher,
                                                SolrPathQuery wrappedPathQuery) throws IOException
     {
-        DocSet results = (DocSet) searcher.cacheLookup(CacheConstants.ALFRESCO_PATH_CACHE, wrappedPathQuery);
-        if (results == null)
-        {
-            // Cache miss: get path query results and cache them
-            WrappedQuery wrapped = new WrappedQuery(wrappedPathQuery);
-            wrapped.setCache(false);
-            results = searcher.getDocSet(wrapped);
-            searcher.cacheInsert(CacheConstants.ALFRESCO_PATH_CACHE, wrappedPathQuery, results);
-        }
-        
+        DocSet results = SolrPathResolver.getDocSet(searcher, wrappedPathQuery);
         return new SolrCachingPathScorer(weight, results, context, searcher);
     }
 }
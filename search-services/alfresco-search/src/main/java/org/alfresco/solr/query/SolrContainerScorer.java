@@ -27,6 +27,8 @@
 package org.alfresco.solr.query;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.lucene.index.PostingsEnum;
 import org.apache.lucene.search.DocIdSetIterator;
@@ -111,6 +113,12 @@ public class SolrContainerScorer extends Scorer
     	// The Field positions that describe the structure we are trying to match
     	StructuredFieldPosition[] positions;
 
+        // The distinct term positions of the structure (positions with the same term share them)
+        CachingTermPositions[] termPositions;
+
+        // The last position which is not a self check, if any
+        StructuredFieldPosition lastPositionNotSelfCheck;
+
         // The minium document found so far
         int min = -1;
 
@@ -128,7 +136,35 @@ public class SolrContainerScorer extends Scorer
     	{
     		this.positions = positions;
     		this.root = root;
+            this.termPositions = distinctTermPositions(positions);
+            this.lastPositionNotSelfCheck = getLastPositionNotSelfCheck();
     	}
+
+        private static CachingTermPositions[] distinctTermPositions(StructuredFieldPosition[] positions)
+        {
+            List<CachingTermPositions> distinct = new ArrayList<>(positions.length);
+            for (StructuredFieldPosition position : positions)
+            {
+                CachingTermPositions tps = position.getCachingTermPositions();
+                if (tps != null && !containsSame(distinct, tps))
+                {
+                    distinct.add(tps);
+                }
+            }
+            return distinct.toArray(new CachingTermPositions[0]);
+        }
+
+        private static boolean containsSame(List<CachingTermPositions> list, CachingTermPositions tps)
+        {
+            for (CachingTermPositions candidate : list)
+            {
+                if (candidate == tps)
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
     	
     	   /*
          * (non-Javadoc)
@@ -291,7 +327,7 @@ public class SolrContainerScorer extends Scorer
             {
                 if(end-start > 1)
                 {
-                    StructuredFieldPosition last = getLastPositionNotSelfCheck();
+                    StructuredFieldPosition last = lastPositionNotSelfCheck;
                     if(last != null)
                     {
                         if(last.matches(start, end, end-start-2) == -1)
@@ -387,31 +423,27 @@ public class SolrContainerScorer extends Scorer
                 return;
             }
             // Do the terms
-            int current;
+            // Each one must move on, but no match can be found before the max of the terms already moved:
+            // so the following terms skip straight to it
             boolean first = true;
-            for (int i = 0, l = positions.length; i < l; i++)
+            for (CachingTermPositions tps : termPositions)
             {
-                if (positions[i].getCachingTermPositions() != null)
+                if (tps.advance(Math.max(tps.docID() + 1, max)) != NO_MORE_DOCS)
                 {
-                    if (positions[i].getCachingTermPositions().nextDoc() != NO_MORE_DOCS)
-
-                    {
-                        current = positions[i].getCachingTermPositions().docID();
-                        adjustMinMax(current, first);
-                        first = false;
-                    }
-                    else
-                    {
-                        more = false;
-                        max = NO_MORE_DOCS;
-                        return;
-                    }
+                    adjustMinMax(tps.docID(), first);
+                    first = false;
+                }
+                else
+                {
+                    more = false;
+                    max = NO_MORE_DOCS;
+                    return;
                 }
             }
 
             // Do the root term - it must always exists as the path could well have multiple entries
             // If an entry in the index does not have a root terminal it is broken
-            if (root.nextDoc() != NO_MORE_DOCS)
+            if (root.advance(Math.max(root.docID() + 1, max)) != NO_MORE_DOCS)
             {
                 rootDoc = root.docID();
                 if(first)
@@ -423,20 +455,6 @@ public class SolrContainerScorer extends Scorer
             {
                 more = false;
                 max = NO_MORE_DOCS;
-                return;
-            }
-            if (root.docID() < max)
-            {
-                if (root.advance(max) != NO_MORE_DOCS)
-                {
-                    rootDoc = root.docID();
-                }
-                else
-                {
-                    more = false;
-                    max = NO_MORE_DOCS;
-                    return;
-                }
             }
         }
 
@@ -451,28 +469,23 @@ public class SolrContainerScorer extends Scorer
         private void skipToMax() throws IOException
         {
             // Do the terms
-            int current;
-            for (int i = 0, l = positions.length; i < l; i++)
+            if (positions.length > 0)
             {
-                if (i == 0)
-                {
-                    min = max;
-                }
-                if (positions[i].getCachingTermPositions() != null)
+                min = max;
+            }
+            for (CachingTermPositions tps : termPositions)
+            {
+                if (tps.docID() < max)
                 {
-                    if (positions[i].getCachingTermPositions().docID() < max)
+                    if (tps.advance(max) != NO_MORE_DOCS)
                     {
-                        if (positions[i].getCachingTermPositions().advance(max) != NO_MORE_DOCS)
-                        {
-                            current = positions[i].getCachingTermPositions().docID();
-                            adjustMinMax(current, false);
-                        }
-                        else
-                        {
-                            more = false;
-                            max = NO_MORE_DOCS;
-                            return;
-                        }
+                        adjustMinMax(tps.docID(), false);
+                    }
+                    else
+                    {
+                        more = false;
+                        max = NO_MORE_DOCS;
+                        return;
                     }
                 }
             }
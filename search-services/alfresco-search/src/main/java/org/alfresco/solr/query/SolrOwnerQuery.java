@@ -27,21 +27,14 @@
 package org.alfresco.solr.query;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
 
 import org.alfresco.repo.search.adaptor.QueryConstants;
-import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.Term;
-import org.apache.lucene.search.Collector;
 import org.apache.lucene.search.ConstantScoreQuery;
 import org.apache.lucene.search.IndexSearcher;
-import org.apache.lucene.search.LeafCollector;
 import org.apache.lucene.search.Query;
-import org.apache.lucene.search.Scorer;
 import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.Weight;
-import org.apache.lucene.util.FixedBitSet;
 import org.apache.solr.search.SolrIndexSearcher;
 
 /**
@@ -79,49 +72,6 @@ public class SolrOwnerQuery extends AbstractAuthorityQuery
     private BitsFilter getOwnerFilter(String owner, SolrIndexSearcher searcher) throws IOException
     {
         Query query =  new TermQuery(new Term(QueryConstants.FIELD_OWNER, owner));
-        BitsFilterCollector collector = new BitsFilterCollector(searcher.getTopReaderContext().leaves().size());
-        searcher.search(query, collector);
-        return collector.getBitsFilter();
-    }
-
-    class BitsFilterCollector implements Collector, LeafCollector
-    {
-        private List<FixedBitSet> sets;
-        private FixedBitSet set;
-
-        public BitsFilterCollector(int leafCount)
-        {
-            this.sets = new ArrayList<FixedBitSet>(leafCount);
-        }
-
-        public BitsFilter getBitsFilter() {
-            return new BitsFilter(sets);
-        }
-
-        public boolean acceptsDocsOutOfOrder() {
-            return false;
-        }
-
-        public void setScorer(Scorer scorer) {
-
-        }
-
-        public void collect(int doc) {
-            set.set(doc);
-        }
-
-        @Override
-        public LeafCollector getLeafCollector(LeafReaderContext context)
-                throws IOException {
-            set = new FixedBitSet(context.reader().maxDoc());
-            sets.add(set);
-            return this;
-        }
-
-        @Override
-        public boolean needsScores() {
-            // TODO Auto-generated method stub
-            return false;
-        }
+        return new BitsFilter(SegmentParallelSearch.getLeafBitSets(searcher, query));
     }
 }
@@ -293,6 +293,16 @@ public class SolrPathQuery extends Query
         this.repeats = repeats;
     }
 
+    public boolean hasRepeats()
+    {
+        return repeats;
+    }
+
+    public DictionaryService getDictionaryService()
+    {
+        return dictionaryService;
+    }
+
     @Override
     public int hashCode() {
         int result = pathField != null ? pathField.hashCode() : 0;
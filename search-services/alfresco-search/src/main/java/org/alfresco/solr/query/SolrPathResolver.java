@@ -0,0 +1,281 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.solr.query;
+
+import static org.alfresco.repo.search.adaptor.QueryConstants.FIELD_ANCESTOR;
+import static org.alfresco.repo.search.adaptor.QueryConstants.FIELD_LID;
+import static org.alfresco.repo.search.adaptor.QueryConstants.FIELD_PARENT;
+import static org.alfresco.repo.search.adaptor.QueryConstants.FIELD_PATH;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+import org.alfresco.model.ContentModel;
+import org.alfresco.solr.cache.CacheConstants;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.ReaderUtil;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.search.TermInSetQuery;
+import org.apache.lucene.util.BytesRef;
+import org.apache.solr.schema.SchemaField;
+import org.apache.solr.search.DocIterator;
+import org.apache.solr.search.DocSet;
+import org.apache.solr.search.SolrIndexSearcher;
+import org.apache.solr.search.WrappedQuery;
+
+/**
+ * Resolves the {@link DocSet} of a {@link SolrPathQuery}, using the alfrescoPathCache where possible.
+ *
+ * Common path shapes are resolved without positional matching:
+ *
+ * <ul>
+ *     <li>child-of (e.g. /app:company_home/st:sites/cm:x/*): PARENT lookup</li>
+ *     <li>descendant-of (e.g. /app:company_home/st:sites/cm:x//*): ANCESTOR lookup</li>
+ * </ul>
+ *
+ * In both cases the container prefix (i.e. the fully qualified steps before the trailing wildcard) is resolved as
+ * a path query on its own: it is cached too, so its DocSet is shared by all the queries with the same prefix.
+ * Then the node references of the matching containers are used for building a PARENT/ANCESTOR terms query.
+ *
+ * The lookup is disabled by default ("alfresco.path.hierarchyFieldsResolution"): it needs the node references of the
+ * containers, so it is used only when the LID field is stored or has docValues (this isn't the case of the noRerank
+ * schema). Otherwise the positional matching is used.
+ *
+ * Everything else (wildcard steps in the middle of the path, category and tag paths, path queries on other fields)
+ * goes through the positional matching of the {@link SolrPathQuery}, segment by segment in parallel when the request
+ * allows it (see {@link SegmentParallelSearch}).
+ */
+public class SolrPathResolver
+{
+    /** Max number of containers matching a prefix for using the PARENT/ANCESTOR lookup. */
+    static final int MAX_CONTAINERS = 1024;
+
+    static final String HIERARCHY_FIELDS_RESOLUTION = "alfresco.path.hierarchyFieldsResolution";
+
+    private static final Set<String> LID_FIELD = Collections.singleton(FIELD_LID);
+
+    /** Category and tag membership paths are not reflected by the PARENT/ANCESTOR fields. */
+    private static final Set<String> EXCLUDED_ROOTS =
+            Set.of(ContentModel.TYPE_CATEGORYROOT.getLocalName(), ContentModel.ASPECT_TAGGABLE.getLocalName());
+
+    private SolrPathResolver()
+    {
+        // Static methods only
+    }
+
+    /**
+     * Returns the DocSet of the given path query, looking it up in the alfrescoPathCache first.
+     *
+     * @param searcher the current searcher.
+     * @param pathQuery the path query.
+     * @return the documents matching the path query.
+     * @throws IOException in case of failure.
+     */
+    public static DocSet getDocSet(SolrIndexSearcher searcher, SolrPathQuery pathQuery) throws IOException
+    {
+        DocSet results = (DocSet) searcher.cacheLookup(CacheConstants.ALFRESCO_PATH_CACHE, pathQuery);
+        if (results == null)
+        {
+            // Cache miss: get path query results and cache them
+            results = resolveUsingHierarchyFields(searcher, pathQuery);
+            if (results == null)
+            {
+                WrappedQuery wrapped = new WrappedQuery(pathQuery);
+                wrapped.setCache(false);
+                results = SegmentParallelSearch.getDocSet(searcher, wrapped);
+            }
+            searcher.cacheInsert(CacheConstants.ALFRESCO_PATH_CACHE, pathQuery, results);
+        }
+        return results;
+    }
+
+    /**
+     * Resolves the child-of and descendant-of path shapes using the PARENT and ANCESTOR fields.
+     *
+     * @return the matching docs or null if the path query cannot be resolved in that way.
+     */
+    static DocSet resolveUsingHierarchyFields(SolrIndexSearcher searcher, SolrPathQuery pathQuery) throws IOException
+    {
+        Properties p = searcher.getSchema().getResourceLoader().getCoreProperties();
+        if (!Boolean.parseBoolean(p.getProperty(HIERARCHY_FIELDS_RESOLUTION, "false")))
+        {
+            return null;
+        }
+
+        // The node references of the containers can't be read from an indexed only LID field
+        SchemaField lid = searcher.getSchema().getFieldOrNull(FIELD_LID);
+        if (lid == null || !(lid.stored() || lid.hasDocValues()))
+        {
+            return null;
+        }
+
+        PathShape shape = PathShape.of(pathQuery);
+        if (shape == null)
+        {
+            return null;
+        }
+
+        DocSet containers = getDocSet(searcher, shape.containerQuery);
+        if (containers.size() > MAX_CONTAINERS)
+        {
+            return null;
+        }
+
+        List<BytesRef> nodeRefs = lid.hasDocValues() ? nodeRefsFromDocValues(searcher, containers) : nodeRefsFromStoredFields(searcher, containers);
+
+        WrappedQuery wrapped = new WrappedQuery(new TermInSetQuery(shape.hierarchyField, nodeRefs));
+        wrapped.setCache(false);
+        return searcher.getDocSet(wrapped);
+    }
+
+    private static List<BytesRef> nodeRefsFromStoredFields(SolrIndexSearcher searcher, DocSet containers) throws IOException
+    {
+        List<BytesRef> nodeRefs = new ArrayList<>(containers.size());
+        for (DocIterator it = containers.iterator(); it.hasNext(); )
+        {
+            Document document = searcher.doc(it.nextDoc(), LID_FIELD);
+            String nodeRef = document.get(FIELD_LID);
+            if (nodeRef != null)
+            {
+                nodeRefs.add(new BytesRef(nodeRef));
+            }
+        }
+        return nodeRefs;
+    }
+
+    private static List<BytesRef> nodeRefsFromDocValues(SolrIndexSearcher searcher, DocSet containers) throws IOException
+    {
+        List<LeafReaderContext> leaves = searcher.getTopReaderContext().leaves();
+        List<BytesRef> nodeRefs = new ArrayList<>(containers.size());
+        LeafReaderContext leaf = null;
+        SortedDocValues values = null;
+        for (DocIterator it = containers.iterator(); it.hasNext(); )
+        {
+            int doc = it.nextDoc();
+            if (leaf == null || doc < leaf.docBase || doc >= leaf.docBase + leaf.reader().maxDoc())
+            {
+                leaf = leaves.get(ReaderUtil.subIndex(doc, leaves));
+                values = DocValues.getSorted(leaf.reader(), FIELD_LID);
+            }
+            int ord = values.getOrd(doc - leaf.docBase);
+            if (ord != -1)
+            {
+                nodeRefs.add(BytesRef.deepCopyOf(values.lookupOrd(ord)));
+            }
+        }
+        return nodeRefs;
+    }
+
+    /**
+     * The recognised path shapes: a prefix of fully qualified steps followed by a child (/*) or descendant (//*)
+     * wildcard step.
+     */
+    static class PathShape
+    {
+        final SolrPathQuery containerQuery;
+        final String hierarchyField;
+
+        private PathShape(SolrPathQuery containerQuery, String hierarchyField)
+        {
+            this.containerQuery = containerQuery;
+            this.hierarchyField = hierarchyField;
+        }
+
+        /**
+         * Recognises the shape of the given path query.
+         *
+         * @return the shape of the path query or null if the query doesn't match any of the supported shapes.
+         */
+        static PathShape of(SolrPathQuery pathQuery)
+        {
+            List<StructuredFieldPosition> positions = pathQuery.getPathStructuredFieldPositions();
+            if (!FIELD_PATH.equals(pathQuery.getPathField()) || pathQuery.hasRepeats() || positions.size() < 4)
+            {
+                return null;
+            }
+
+            int size = positions.size();
+            if (!isWildcardStep(positions.get(size - 2), positions.get(size - 1)))
+            {
+                return null;
+            }
+
+            boolean descendants = positions.get(size - 3) instanceof DescendantAndSelfStructuredFieldPosition
+                    && positions.get(size - 4) instanceof DescendantAndSelfStructuredFieldPosition;
+            int prefixSize = descendants ? size - 4 : size - 2;
+            if (prefixSize < 2)
+            {
+                return null;
+            }
+
+            List<StructuredFieldPosition> prefix = new ArrayList<>(prefixSize);
+            for (int i = 0; i < prefixSize; i += 2)
+            {
+                StructuredFieldPosition namespace = positions.get(i);
+                StructuredFieldPosition localName = positions.get(i + 1);
+                if (!isNamedStep(namespace, localName))
+                {
+                    return null;
+                }
+                prefix.add(new RelativeStructuredFieldPosition(namespace.getTermText()));
+                prefix.add(new RelativeStructuredFieldPosition(localName.getTermText()));
+            }
+
+            if (EXCLUDED_ROOTS.contains(prefix.get(1).getTermText()))
+            {
+                return null;
+            }
+
+            SolrPathQuery containerQuery = new SolrPathQuery(pathQuery.getDictionaryService());
+            containerQuery.setPathField(pathQuery.getPathField());
+            containerQuery.setQuery(prefix);
+            return new PathShape(containerQuery, descendants ? FIELD_ANCESTOR : FIELD_PARENT);
+        }
+
+        private static boolean isNamedStep(StructuredFieldPosition namespace, StructuredFieldPosition localName)
+        {
+            return namespace.getClass() == RelativeStructuredFieldPosition.class
+                    && localName.getClass() == RelativeStructuredFieldPosition.class
+                    && namespace.getTermText() != null
+                    && localName.getTermText() != null;
+        }
+
+        private static boolean isWildcardStep(StructuredFieldPosition namespace, StructuredFieldPosition localName)
+        {
+            return namespace.getClass() == RelativeStructuredFieldPosition.class
+                    && localName.getClass() == RelativeStructuredFieldPosition.class
+                    && namespace.getTermText() == null
+                    && localName.getTermText() == null;
+        }
+    }
+}
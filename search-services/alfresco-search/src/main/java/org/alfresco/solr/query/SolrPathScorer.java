@@ -28,6 +28,8 @@ package org.alfresco.solr.query;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.alfresco.service.cmr.dictionary.DictionaryService;
 import org.apache.lucene.index.LeafReaderContext;
@@ -57,25 +59,34 @@ public class SolrPathScorer extends Scorer
 //           last = solrPathQuery.getPathStructuredFieldPositions().get(solrPathQuery.getPathStructuredFieldPositions().size() - 1);
 //        }
    
-        
-        if (solrPathQuery.getPathStructuredFieldPositions().size() == 0) 
+        // The query may be shared (e.g. by the query plan cache) so the positions bound to this segment are copies
+        ArrayList<StructuredFieldPosition> positions = new ArrayList<StructuredFieldPosition>(solrPathQuery.getPathStructuredFieldPositions().size());
+        for (StructuredFieldPosition sfp : solrPathQuery.getPathStructuredFieldPositions())
         {
-                ArrayList<StructuredFieldPosition> answer = new ArrayList<StructuredFieldPosition>(2);
-                answer.add(new SelfAxisStructuredFieldPosition());
-                answer.add(new SelfAxisStructuredFieldPosition());
-                
-                solrPathQuery.appendQuery(answer);
+            positions.add(sfp.copy());
         }
 
-        
-        for (StructuredFieldPosition sfp : solrPathQuery.getPathStructuredFieldPositions())
+        if (positions.size() == 0) 
+        {
+                positions.add(new SelfAxisStructuredFieldPosition());
+                positions.add(new SelfAxisStructuredFieldPosition());
+        }
+
+        // Positions with the same term (e.g. the namespace of each step) share the same postings and positions cache
+        Map<String, CachingTermPositions> termPositions = new HashMap<>();
+        for (StructuredFieldPosition sfp : positions)
         {
             if (sfp.getTermText() != null)
             {
-                PostingsEnum p = context.reader().postings(new Term(solrPathQuery.getPathField(), sfp.getTermText()), PostingsEnum.POSITIONS);
-                if (p == null)
-                    return null;
-                CachingTermPositions ctp = new CachingTermPositions(p);
+                CachingTermPositions ctp = termPositions.get(sfp.getTermText());
+                if (ctp == null)
+                {
+                    PostingsEnum p = context.reader().postings(new Term(solrPathQuery.getPathField(), sfp.getTermText()), PostingsEnum.POSITIONS);
+                    if (p == null)
+                        return null;
+                    ctp = new CachingTermPositions(p);
+                    termPositions.put(sfp.getTermText(), ctp);
+                }
                 sfp.setCachingTermPositions(ctp);
             }
         }
@@ -88,10 +99,7 @@ public class SolrPathScorer extends Scorer
             rootContainerPositions = context.reader().postings(solrPathQuery.getPathRootTerm(), PostingsEnum.POSITIONS);
         }
        
-        if (solrPathQuery.getPathStructuredFieldPositions().size() > 0)
-        {
-            cs = new SolrContainerScorer(weight, rootContainerPositions, (StructuredFieldPosition[]) solrPathQuery.getPathStructuredFieldPositions().toArray(new StructuredFieldPosition[] {}));
-        }
+        cs = new SolrContainerScorer(weight, rootContainerPositions, positions.toArray(new StructuredFieldPosition[0]));
        
        
         return new SolrPathScorer(weight, cs);
@@ -121,4 +121,12 @@ public interface StructuredFieldPosition
     public boolean isDescendant();
     
     public boolean matchesAll();
+
+    /**
+     * A copy of this element, which can be bound to its own caching term
+     * positions without affecting the (possibly shared) query it belongs to.
+     * 
+     * @return StructuredFieldPosition
+     */
+    public StructuredFieldPosition copy();
 }
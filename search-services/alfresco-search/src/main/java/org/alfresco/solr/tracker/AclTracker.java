@@ -35,6 +35,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
@@ -75,6 +76,7 @@ public class AclTracker extends ActivatableTracker
     private static final int DEFAULT_ACL_BATCH_SIZE = 100;
     private static final int DEFAULT_ACL_TRACKER_MAX_PARALLELISM = 32;
     private static final long DEFAULT_ACL_TRACKER_TIMESTEP = TIME_STEP_1_HR_IN_MS;
+    private static final int DEFAULT_ACL_TRACKER_PIPELINE_DEPTH = 0;
 
     protected static final long INITIAL_MAX_ACL_CHANGE_SET_ID = 2000L;
     private static final int MAX_NUMBER_OF_ACL_CHANGE_SETS = 2000;
@@ -88,8 +90,11 @@ public class AclTracker extends ActivatableTracker
 
     private int changeSetAclsBatchSize;
     private int aclBatchSize;
+    private AdaptiveBatchController changeSetAclsBatchController;
+    private AdaptiveBatchController aclBatchController;
     private long timeStep;
     private int maxNumberOfAclChangeSets;
+    private int pipelineDepth;
 
     private ConcurrentLinkedQueue<Long> aclChangeSetsToReindex = new ConcurrentLinkedQueue<>();
     private ConcurrentLinkedQueue<Long> aclChangeSetsToIndex = new ConcurrentLinkedQueue<>();
@@ -143,6 +148,10 @@ public class AclTracker extends ActivatableTracker
         aclTrackerParallelism = Integer.parseInt(p.getProperty("alfresco.acl.tracker.maxParallelism",
                 String.valueOf(DEFAULT_ACL_TRACKER_MAX_PARALLELISM)));
         forkJoinPool = new ForkJoinPool(aclTrackerParallelism);
+        changeSetAclsBatchController = AdaptiveBatchController.create(p, "ACL change set batch",
+                changeSetAclsBatchSize, MAX_ACL_CHANGE_SET_BATCH_SIZE, 1, trackerStats);
+        aclBatchController = AdaptiveBatchController.create(p, "ACL batch",
+                aclBatchSize, Integer.MAX_VALUE, aclTrackerParallelism, trackerStats);
 
         timeStep = Long.parseLong(p.getProperty("alfresco.acl.tracker.timestep",
                 String.valueOf(DEFAULT_ACL_TRACKER_TIMESTEP)));
@@ -150,6 +159,10 @@ public class AclTracker extends ActivatableTracker
         maxNumberOfAclChangeSets = Integer.parseInt(p.getProperty("alfresco.acl.tracker.maxNumberOfAclChangeSets",
                 String.valueOf(MAX_NUMBER_OF_ACL_CHANGE_SETS)));
 
+        // Number of ACL change set batches fetched ahead of the indexing (0 disables the prefetching)
+        pipelineDepth = Integer.parseInt(p.getProperty("alfresco.acl.tracker.pipelineDepth",
+                String.valueOf(DEFAULT_ACL_TRACKER_PIPELINE_DEPTH)));
+
         RUN_LOCK_BY_CORE.put(coreName, new Semaphore(1, true));
         WRITE_LOCK_BY_CORE.put(coreName, new Semaphore(1, true));
     }
@@ -696,109 +709,177 @@ public class AclTracker extends ActivatableTracker
      * 
      * Tracker Status contains the Commit Time from the latest ACL Change Set indexed,
      * so new operations can be retrieved from Repository starting with that time.
+     *
+     * The repository calls run ahead of the indexing (see {@link PrefetchingPipeline}): while a batch of change sets
+     * is indexed, the ACLs and readers of the next batches (and the next window of change sets) are being fetched.
+     * The batches are indexed, and the Tracker Status updated, in commit time order.
      */
     protected void trackAclChangeSets() throws AuthenticationException, IOException, JSONException
     {
 
         long startElapsed = System.nanoTime();
 
-        AclChangeSets aclChangeSets;
-        BoundedDeque<AclChangeSet> changeSetsFound = new BoundedDeque<>(ACL_CHANGE_SETS_FOUND_QUEUE_SIZE);
         long totalAclCount = 0;
-        int aclCount;
         
         LOGGER.info("{}-[CORE {}] <init> Tracking ACLs", Thread.currentThread().getId(), coreName);
-        
-        do
+
+        TrackerState trackingState = getTrackerState();
+        this.state = trackingState;
+
+        try (PrefetchingPipeline<List<AclChangeSet>, FetchedChangeSets> pipeline =
+                     new PrefetchingPipeline<>(new ChangeSetWindows(trackingState), this::fetchAclReaders, pipelineDepth))
         {
-            try
+            FetchedChangeSets changeSetBatch;
+            while ((changeSetBatch = pipeline.take()) != null)
             {
-                getWriteLock().acquire();
-
-                /*
-                * We acquire the tracker state again here and set it globally. This is because the
-                * tracker state could have been invalidated due to a rollback by the CommitTracker.
-                * In this case the state will revert to the last transaction state record in the index.
-                */
-
-                this.state = getTrackerState();
-                
-                Long fromCommitTime = getChangeSetFromCommitTime(changeSetsFound, state.getLastGoodChangeSetCommitTimeInIndex());
-                aclChangeSets = getSomeAclChangeSets(changeSetsFound, fromCommitTime, timeStep, maxNumberOfAclChangeSets,
-                        state.getTimeToStopIndexing());
-                
-                if (aclChangeSets.getAclChangeSets().size() > 0) 
-                {
-                    LOGGER.info("{}-[CORE {}] Found {} ACL change sets after lastTxCommitTime {}, ACL Change Sets from {} to {}", 
-                            Thread.currentThread().getId(),
-                            coreName, 
-                            aclChangeSets.getAclChangeSets().size(),
-                            fromCommitTime,
-                            aclChangeSets.getAclChangeSets().get(0),
-                            aclChangeSets.getAclChangeSets().get(aclChangeSets.getAclChangeSets().size() - 1));
-                } 
-                else 
+                try
                 {
-                    LOGGER.info("{}-[CORE {}] No ACL change set found after lastTxCommitTime {}",
-                            Thread.currentThread().getId(), coreName, fromCommitTime);
-                }
-
+                    getWriteLock().acquire();
 
-                // Make sure we do not go ahead of where we started - we will check the holes here
-                // correctly next time
-                if (aclChangeSets.getAclChangeSets()
-                        .stream()
-                        .anyMatch(changeSet -> changeSet.getCommitTimeMs() > state.getTimeToStopIndexing()))
-                {
-                    break;
-                }
+                    /*
+                    * We acquire the tracker state again here and set it globally. This is because the
+                    * tracker state could have been invalidated due to a rollback by the CommitTracker.
+                    * In this case the state will revert to the last transaction state record in the index,
+                    * and the change sets fetched ahead are discarded: the next run starts again from there.
+                    */
 
-                final AtomicInteger counter = new AtomicInteger();
-                Collection<List<AclChangeSet>> changeSetBatches = aclChangeSets.getAclChangeSets().stream()
-                        .peek(changeSetsFound::add)
-                        .filter(this::isAclChangeSetAlreadyIndexed)
-                        .collect(Collectors.groupingBy(it -> counter.getAndAdd(1) / changeSetAclsBatchSize))
-                        .values();
+                    this.state = getTrackerState();
+                    if (state != trackingState)
+                    {
+                        LOGGER.info("{}-[CORE {}] Tracker state invalidated, discarding the ACL change sets fetched ahead",
+                                Thread.currentThread().getId(), coreName);
+                        break;
+                    }
 
+                    if (indexBatchOfChangeSets(changeSetBatch) > 0)
+                    {
+                        // A worker failed: the batch will be rolled back, so the tracker state is not moved on
+                        break;
+                    }
+                    int aclCount = changeSetBatch.aclCount;
 
-                for (List<AclChangeSet> changeSetBatch : changeSetBatches)
-                {
-                    aclCount = indexBatchOfChangeSets(changeSetBatch);
                     // Update last committed transactions
-                    setLastChangeSetIdAndCommitTimeInTrackerState(changeSetBatch, state);
-                    indexAclChangeSetAfterWorker(changeSetBatch, state);
+                    setLastChangeSetIdAndCommitTimeInTrackerState(changeSetBatch.changeSets, state);
+                    indexAclChangeSetAfterWorker(changeSetBatch.changeSets, state);
 
                     long endElapsed = System.nanoTime();
                     trackerStats.addElapsedAclTime(aclCount, endElapsed-startElapsed);
                     startElapsed = endElapsed;
                     totalAclCount += aclCount;
                 }
+                finally
+                {
+                    getWriteLock().release();
+                }
+            }
+        }
+        catch(InterruptedException | ExecutionException e)
+        {
+            throw new IOException(e);
+        }
+        
+        LOGGER.info("{}-[CORE {}] <end> Tracked {} ACLs", Thread.currentThread().getId(), coreName, totalAclCount);
+        
+    }
 
+    /**
+     * The source stage of the ACL tracking pipeline: gets the windows of ACL Change Sets after the last one indexed,
+     * stepping forward in time, and splits them into batches of the ACL Change Sets which are not in the index yet.
+     *
+     * The source may run on the prefetching thread while the tracker thread updates the tracker state, so it works on
+     * its own copy of the state values taken at the pipeline start, moved forward only by the source itself.
+     */
+    class ChangeSetWindows implements PrefetchingPipeline.Source<List<AclChangeSet>>
+    {
+        private final long lastGoodChangeSetCommitTimeInIndex;
+        private final long lastIndexedChangeSetCommitTime;
+        private final long timeToStopIndexing;
+        private final BoundedDeque<AclChangeSet> changeSetsFound = new BoundedDeque<>(ACL_CHANGE_SETS_FOUND_QUEUE_SIZE);
+
+        // The last ACL Change Set (by commit time, then id) handed to the pipeline
+        private long lastQueuedChangeSetCommitTime = Long.MIN_VALUE;
+        private long lastQueuedChangeSetId = Long.MIN_VALUE;
+
+        ChangeSetWindows(TrackerState trackingState)
+        {
+            this.lastGoodChangeSetCommitTimeInIndex = trackingState.getLastGoodChangeSetCommitTimeInIndex();
+            this.lastIndexedChangeSetCommitTime = trackingState.getLastIndexedChangeSetCommitTime();
+            this.timeToStopIndexing = trackingState.getTimeToStopIndexing();
+        }
+
+        @Override
+        public List<List<AclChangeSet>> nextWindow() throws AuthenticationException, IOException, JSONException
+        {
+            Long fromCommitTime = getChangeSetFromCommitTime(changeSetsFound, lastGoodChangeSetCommitTimeInIndex);
+            AclChangeSets aclChangeSets = getSomeAclChangeSets(changeSetsFound, fromCommitTime, timeStep, maxNumberOfAclChangeSets,
+                    timeToStopIndexing);
+
+            if (aclChangeSets.getAclChangeSets().size() > 0) 
+            {
+                LOGGER.info("{}-[CORE {}] Found {} ACL change sets after lastTxCommitTime {}, ACL Change Sets from {} to {}", 
+                        Thread.currentThread().getId(),
+                        coreName, 
+                        aclChangeSets.getAclChangeSets().size(),
+                        fromCommitTime,
+                        aclChangeSets.getAclChangeSets().get(0),
+                        aclChangeSets.getAclChangeSets().get(aclChangeSets.getAclChangeSets().size() - 1));
+            } 
+            else 
+            {
+                LOGGER.info("{}-[CORE {}] No ACL change set found after lastTxCommitTime {}",
+                        Thread.currentThread().getId(), coreName, fromCommitTime);
+                return null;
             }
-            catch(InterruptedException | ExecutionException e)
+
+            // Make sure we do not go ahead of where we started - we will check the holes here
+            // correctly next time
+            if (aclChangeSets.getAclChangeSets()
+                    .stream()
+                    .anyMatch(changeSet -> changeSet.getCommitTimeMs() > timeToStopIndexing))
             {
-                throw new IOException(e);
+                return null;
             }
-            finally
+
+            final AtomicInteger counter = new AtomicInteger();
+            final int changeSetBatchSize = changeSetAclsBatchController.getBatchSize();
+            List<List<AclChangeSet>> batches = new ArrayList<>(aclChangeSets.getAclChangeSets().stream()
+                    .peek(changeSetsFound::add)
+                    .filter(changeSet -> !isQueued(changeSet) && isAclChangeSetNotIndexed(changeSet, lastIndexedChangeSetCommitTime))
+                    .collect(Collectors.groupingBy(it -> counter.getAndAdd(1) / changeSetBatchSize, TreeMap::new, Collectors.toList()))
+                    .values());
+            batches.stream().flatMap(Collection::stream).forEach(this::queued);
+            return batches;
+        }
+
+        /**
+         * The windows overlap on their boundary commit time: the change sets already handed to the pipeline are not
+         * in the index yet, but they are going to be indexed.
+         */
+        private boolean isQueued(AclChangeSet changeSet)
+        {
+            return changeSet.getCommitTimeMs() < lastQueuedChangeSetCommitTime
+                    || changeSet.getCommitTimeMs() == lastQueuedChangeSetCommitTime
+                    && changeSet.getId() <= lastQueuedChangeSetId;
+        }
+
+        private void queued(AclChangeSet changeSet)
+        {
+            if (!isQueued(changeSet))
             {
-                getWriteLock().release();
+                lastQueuedChangeSetCommitTime = changeSet.getCommitTimeMs();
+                lastQueuedChangeSetId = changeSet.getId();
             }
-            
         }
-        while ((aclChangeSets.getAclChangeSets().size() > 0));
-        
-        LOGGER.info("{}-[CORE {}] <end> Tracked {} ACLs", Thread.currentThread().getId(), coreName, totalAclCount);
-        
     }
 
-    private boolean isAclChangeSetAlreadyIndexed(AclChangeSet changeSet)
+    private boolean isAclChangeSetNotIndexed(AclChangeSet changeSet, long lastIndexedChangeSetCommitTime)
     {
 
         try
         {
-            boolean isInIndex = (changeSet.getCommitTimeMs() <= state.getLastIndexedChangeSetCommitTime() &&
+            boolean isInIndex = (changeSet.getCommitTimeMs() <= lastIndexedChangeSetCommitTime &&
                     infoSrv.aclChangeSetInIndex(changeSet.getId(), true));
-            if (LOGGER.isTraceEnabled())
+            if (isInIndex && LOGGER.isTraceEnabled())
             {
                 LOGGER.trace("{}-[CORE {}] Skipping change Set Id {} as it was already indexed",
                         Thread.currentThread().getId(), coreName, changeSet.getId());
@@ -851,60 +932,145 @@ public class AclTracker extends ActivatableTracker
         }
     }
 
-
     /**
-     * Index ACLs from ACL Change Sets contained in changeSetBatch
-     * When total ACL indexed count is greater than the specified for a single execution
-     * (maxAclsPerExecution), no more ACL Change Sets are processed.
-     * 
+     * The fetch stage of the ACL tracking pipeline: gets the ACLs of a batch of ACL Change Sets and the readers of
+     * the ACLs routed to this shard, in ACL batches fetched in parallel.
+     *
      * @param changeSetBatch List of ACL Change Sets to be indexed
-     * @return List of ACL Change Set indexed and Count of ACL indexed
+     * @return the ACL readers to be indexed, per ACL batch.
      */
-    private int indexBatchOfChangeSets(List<AclChangeSet> changeSetBatch)
-            throws AuthenticationException, IOException, JSONException, ExecutionException, InterruptedException {
+    FetchedChangeSets fetchAclReaders(List<AclChangeSet> changeSetBatch)
+            throws AuthenticationException, IOException, JSONException, ExecutionException, InterruptedException
+    {
         // Exclude ACL Change Set with no ACLs inside
         List<AclChangeSet> nonEmptyChangeSets = changeSetBatch.stream()
                 .filter(set -> set.getAclCount() > 0)
                 .collect(Collectors.toList());
 
-        List<Acl> acls = client.getAcls(nonEmptyChangeSets, null, Integer.MAX_VALUE);
+        long start = System.nanoTime();
+        List<Acl> acls = nonEmptyChangeSets.isEmpty()
+                ? Collections.emptyList()
+                : client.getAcls(nonEmptyChangeSets, null, Integer.MAX_VALUE);
+        changeSetAclsBatchController.record(changeSetBatch.size(), System.nanoTime() - start);
         
         if (LOGGER.isDebugEnabled())
         {
             LOGGER.debug("{}-[CORE {}] Found {} Acls from Acl Change Sets: {}", Thread.currentThread().getId(),
                     coreName, acls.size(), nonEmptyChangeSets);
         }
-        
-        List<List<Acl>> aclBatches = Lists.partition(acls, aclBatchSize);
 
-        return forkJoinPool.submit(() ->
+        List<Acl> routedAcls = filterAcls(acls);
+        List<List<Acl>> aclBatches = Lists.partition(routedAcls, aclBatchController.getBatchSize());
+
+        List<FetchedAcls> readers = forkJoinPool.submit(() ->
                 aclBatches.parallelStream().map(batch -> {
-                    new AclIndexWorker(batch).run();
-                    return batch.size();
+                    try
+                    {
+                        long batchStart = System.nanoTime();
+                        List<AclReaders> aclReaders = client.getAclReaders(batch);
+                        return new FetchedAcls(aclReaders, System.nanoTime() - batchStart);
+                    }
+                    catch (AuthenticationException | IOException | JSONException exception)
+                    {
+                        throw new AlfrescoRuntimeException("Unable to fetch the readers of the ACLs " + batch, exception);
+                    }
+                }).collect(Collectors.toList())
+        ).get();
+
+        return new FetchedChangeSets(changeSetBatch, readers, acls.size());
+    }
+
+    private List<Acl> filterAcls(List<Acl> acls)
+    {
+        ArrayList<Acl> filteredList = new ArrayList<>(acls.size());
+        for(Acl acl : acls)
+        {
+            if(docRouter.routeAcl(shardCount, shardInstance, acl))
+            {
+                filteredList.add(acl);
+            }
+        }
+        return filteredList;
+    }
+
+    /**
+     * Index the ACLs fetched for a batch of ACL Change Sets
+     * 
+     * @param changeSetBatch the ACL Change Sets and the fetched ACL readers
+     * @return the number of ACL batches whose indexing failed
+     */
+    private int indexBatchOfChangeSets(FetchedChangeSets changeSetBatch)
+            throws ExecutionException, InterruptedException {
+        return forkJoinPool.submit(() ->
+                changeSetBatch.readers.parallelStream().map(batch -> {
+                    aclBatchController.acquire();
+                    try
+                    {
+                        long batchStart = System.nanoTime();
+                        AclIndexWorker worker = new AclIndexWorker(batch.readers);
+                        worker.run();
+                        // The batch time includes the repository latency, as when the worker fetched the readers
+                        aclBatchController.record(batch.readers.size(), batch.fetchNanos + System.nanoTime() - batchStart);
+                        return worker.failed ? 1 : 0;
+                    }
+                    finally
+                    {
+                        aclBatchController.release();
+                    }
                 }).reduce(0, Integer::sum)
         ).get();
     }
 
+    /**
+     * A batch of ACL Change Sets, with the readers of its ACLs.
+     */
+    static class FetchedChangeSets
+    {
+        final List<AclChangeSet> changeSets;
+        final List<FetchedAcls> readers;
+        final int aclCount;
+
+        FetchedChangeSets(List<AclChangeSet> changeSets, List<FetchedAcls> readers, int aclCount)
+        {
+            this.changeSets = changeSets;
+            this.readers = readers;
+            this.aclCount = aclCount;
+        }
+    }
+
+    /**
+     * The readers of a batch of ACLs and the time spent for fetching them.
+     */
+    static class FetchedAcls
+    {
+        final List<AclReaders> readers;
+        final long fetchNanos;
+
+        FetchedAcls(List<AclReaders> readers, long fetchNanos)
+        {
+            this.readers = readers;
+            this.fetchNanos = fetchNanos;
+        }
+    }
 
     /**
      * ACL Indexer
      */
     class AclIndexWorker extends AbstractWorker
     {
-        List<Acl> acls;
+        List<AclReaders> readers;
+        volatile boolean failed;
 
-        AclIndexWorker(List<Acl> acls)
+        AclIndexWorker(List<AclReaders> readers)
         {
-            this.acls = acls;
+            this.readers = readers;
         }
 
         @Override
-        protected void doWork() throws IOException, AuthenticationException, JSONException
+        protected void doWork() throws IOException
         {
-            List<Acl> filteredAcls = filterAcls(acls);
-            if(filteredAcls.size() > 0)
+            if(readers.size() > 0)
             {
-                List<AclReaders> readers = client.getAclReaders(filteredAcls);
                 indexAcl(readers, true);
             }
         }
@@ -912,21 +1078,9 @@ public class AclTracker extends ActivatableTracker
         @Override
         protected void onFail(Throwable failCausedBy)
         {
+            failed = true;
         	setRollback(true, failCausedBy);
         }
-        
-        private List<Acl> filterAcls(List<Acl> acls)
-        {
-            ArrayList<Acl> filteredList = new ArrayList<>(acls.size());
-            for(Acl acl : acls)
-            {
-                if(docRouter.routeAcl(shardCount, shardInstance, acl))
-                {
-                    filteredList.add(acl);
-                }
-            }
-            return filteredList;
-        }
     }
 
 
@@ -0,0 +1,265 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.solr.tracker;
+
+import java.util.Properties;
+import java.util.concurrent.Semaphore;
+import java.util.function.DoubleSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tunes the size of a tracker batch (and the number of batches processed in parallel) from the observed batch
+ * execution times (i.e. repository latency plus indexing time) and the heap headroom.
+ *
+ * After each batch:
+ *
+ * <ul>
+ *     <li>if the free heap is below the configured headroom, both the batch size and the parallelism are halved</li>
+ *     <li>if the batch took more than 1.5 times the target time, the batch size is scaled down towards the target
+ *     (at most halved)</li>
+ *     <li>if a full batch took less than half the target time, the batch size grows by 25% and the parallelism by
+ *     one</li>
+ * </ul>
+ *
+ * The batch size stays within [configured size * minScale, configured size * maxScale] and the parallelism within
+ * [1, tracker max parallelism]. Every decision is recorded in the {@link TrackerStats}.
+ *
+ * Adaptive batching is disabled by default ("alfresco.adaptiveBatching.enabled"): in that case the controller always
+ * returns the configured values.
+ */
+public class AdaptiveBatchController
+{
+    protected final static Logger LOGGER = LoggerFactory.getLogger(AdaptiveBatchController.class);
+
+    static final String ENABLED = "alfresco.adaptiveBatching.enabled";
+    static final String TARGET_BATCH_MS = "alfresco.adaptiveBatching.targetBatchMs";
+    static final String MIN_SCALE = "alfresco.adaptiveBatching.minScale";
+    static final String MAX_SCALE = "alfresco.adaptiveBatching.maxScale";
+    static final String MIN_HEAP_HEADROOM = "alfresco.adaptiveBatching.minHeapHeadroom";
+
+    private static final long DEFAULT_TARGET_BATCH_MS = 2000;
+    private static final double DEFAULT_MIN_SCALE = 0.25;
+    private static final double DEFAULT_MAX_SCALE = 4;
+    private static final double DEFAULT_MIN_HEAP_HEADROOM = 0.2;
+
+    private final String name;
+    private final boolean enabled;
+    private final int minBatchSize;
+    private final int maxBatchSize;
+    private final int maxParallelism;
+    private final long targetBatchNanos;
+    private final double minHeapHeadroom;
+    private final DoubleSupplier heapHeadroom;
+    private final TrackerStats trackerStats;
+    private final ResizableSemaphore permits;
+
+    private volatile int batchSize;
+    private volatile int parallelism;
+
+    AdaptiveBatchController(String name, boolean enabled, int batchSize, int minBatchSize, int maxBatchSize,
+                int maxParallelism, long targetBatchNanos, double minHeapHeadroom, DoubleSupplier heapHeadroom,
+                TrackerStats trackerStats)
+    {
+        this.name = name;
+        this.enabled = enabled;
+        this.minBatchSize = Math.max(1, Math.min(minBatchSize, batchSize));
+        this.maxBatchSize = Math.max(batchSize, maxBatchSize);
+        this.maxParallelism = Math.max(1, maxParallelism);
+        this.targetBatchNanos = targetBatchNanos;
+        this.minHeapHeadroom = minHeapHeadroom;
+        this.heapHeadroom = heapHeadroom;
+        this.trackerStats = trackerStats;
+        this.batchSize = batchSize;
+        this.parallelism = this.maxParallelism;
+        this.permits = new ResizableSemaphore(this.maxParallelism);
+    }
+
+    /**
+     * Creates the controller of a tracker batch.
+     *
+     * @param p the core properties.
+     * @param name the name of the batch, as reported in the tracker stats (e.g. "Node batch").
+     * @param batchSize the configured batch size.
+     * @param maxBatchSize the hard limit of the batch size (e.g. a repository limit).
+     * @param maxParallelism the configured max parallelism of the tracker (1 for batches processed sequentially).
+     * @param trackerStats the stats where the decisions are recorded.
+     * @return the controller.
+     */
+    public static AdaptiveBatchController create(Properties p, String name, int batchSize, int maxBatchSize,
+                int maxParallelism, TrackerStats trackerStats)
+    {
+        boolean enabled = Boolean.parseBoolean(p.getProperty(ENABLED, "false"));
+        if (!enabled)
+        {
+            return new AdaptiveBatchController(name, false, batchSize, batchSize, batchSize, maxParallelism,
+                        0, 0, () -> 1, trackerStats);
+        }
+
+        long targetBatchMs = Long.parseLong(p.getProperty(TARGET_BATCH_MS, String.valueOf(DEFAULT_TARGET_BATCH_MS)));
+        double minScale = Double.parseDouble(p.getProperty(MIN_SCALE, String.valueOf(DEFAULT_MIN_SCALE)));
+        double maxScale = Double.parseDouble(p.getProperty(MAX_SCALE, String.valueOf(DEFAULT_MAX_SCALE)));
+        double minHeapHeadroom =
+                Double.parseDouble(p.getProperty(MIN_HEAP_HEADROOM, String.valueOf(DEFAULT_MIN_HEAP_HEADROOM)));
+
+        return new AdaptiveBatchController(name, true, batchSize,
+                    (int) Math.ceil(batchSize * minScale),
+                    (int) Math.min(maxBatchSize, (long) Math.ceil(batchSize * maxScale)),
+                    maxParallelism,
+                    targetBatchMs * 1_000_000L,
+                    minHeapHeadroom,
+                    AdaptiveBatchController::currentHeapHeadroom,
+                    trackerStats);
+    }
+
+    /**
+     * @return the fraction of the max heap which is not in use.
+     */
+    static double currentHeapHeadroom()
+    {
+        Runtime runtime = Runtime.getRuntime();
+        long used = runtime.totalMemory() - runtime.freeMemory();
+        return 1 - (double) used / runtime.maxMemory();
+    }
+
+    public int getBatchSize()
+    {
+        return batchSize;
+    }
+
+    public int getParallelism()
+    {
+        return parallelism;
+    }
+
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    /**
+     * Waits until the current parallelism allows another batch to be processed.
+     * Every call must be followed by a {@link #release()} call.
+     */
+    public void acquire()
+    {
+        if (enabled)
+        {
+            permits.acquireUninterruptibly();
+        }
+    }
+
+    public void release()
+    {
+        if (enabled)
+        {
+            permits.release();
+        }
+    }
+
+    /**
+     * Records the execution of a batch and adjusts the batch size and parallelism.
+     *
+     * @param items the number of items in the batch.
+     * @param elapsedNanos the time spent for processing the batch.
+     */
+    public void record(int items, long elapsedNanos)
+    {
+        if (!enabled || items < 1)
+        {
+            return;
+        }
+
+        synchronized (this)
+        {
+            int size = batchSize;
+            int threads = parallelism;
+
+            if (heapHeadroom.getAsDouble() < minHeapHeadroom)
+            {
+                size = size / 2;
+                threads = threads / 2;
+            }
+            else if (elapsedNanos > targetBatchNanos + targetBatchNanos / 2)
+            {
+                size = (int) Math.max(size / 2, size * targetBatchNanos / elapsedNanos);
+            }
+            else if (elapsedNanos < targetBatchNanos / 2 && items >= size)
+            {
+                size = size + Math.max(1, size / 4);
+                threads = threads + 1;
+            }
+
+            size = Math.max(minBatchSize, Math.min(maxBatchSize, size));
+            threads = Math.max(1, Math.min(maxParallelism, threads));
+
+            if (size != batchSize || threads != parallelism)
+            {
+                LOGGER.debug("{}: batch size {} -> {}, parallelism {} -> {} (last batch: {} items in {} ms)",
+                            name, batchSize, size, parallelism, threads, items, elapsedNanos / 1_000_000);
+            }
+
+            if (threads > parallelism)
+            {
+                permits.release(threads - parallelism);
+            }
+            else if (threads < parallelism)
+            {
+                permits.reducePermits(parallelism - threads);
+            }
+
+            batchSize = size;
+            parallelism = threads;
+        }
+
+        trackerStats.addAdaptiveSetting(name + " size", batchSize);
+        if (maxParallelism > 1)
+        {
+            trackerStats.addAdaptiveSetting(name + " parallelism", parallelism);
+        }
+    }
+
+    /**
+     * A semaphore whose number of permits can be reduced (the permits in use are not revoked).
+     */
+    private static class ResizableSemaphore extends Semaphore
+    {
+        private static final long serialVersionUID = 1L;
+
+        ResizableSemaphore(int permits)
+        {
+            super(permits);
+        }
+
+        @Override
+        protected void reducePermits(int reduction)
+        {
+            super.reducePermits(reduction);
+        }
+    }
+}
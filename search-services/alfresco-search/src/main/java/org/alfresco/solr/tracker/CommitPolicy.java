@@ -0,0 +1,303 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.solr.tracker;
+
+import java.util.Properties;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Decides, at each {@link CommitTracker} run, between a soft commit, a hard commit and a hard commit which also
+ * opens a new searcher.
+ *
+ * By default ("alfresco.commitPolicy.adaptive" = false) the decisions are time based only: a hard commit every
+ * "alfresco.commitInterval" ms, which also opens a new searcher every "alfresco.newSearcherInterval" ms.
+ *
+ * The adaptive policy looks at the {@link IndexActivity} instead:
+ *
+ * <ul>
+ *     <li>a hard commit is needed (for durability) when there's maintenance work, or when there are uncommitted
+ *     changes and the commit interval expired, the docs added since the last hard commit reached
+ *     "alfresco.commitPolicy.maxPendingDocs" or the writer RAM buffer reached "alfresco.commitPolicy.maxRamBufferMb"</li>
+ *     <li>a new searcher is needed when the current one doesn't see all the changes, it's older than the warm-up cost
+ *     of a searcher (and of "alfresco.commitPolicy.minSearcherIntervalMs") and either the ingest is quiet or the
+ *     freshness target ("alfresco.commitPolicy.targetFreshnessMs") would be missed by waiting the end of the burst
+ *     (an ingest rate above "alfresco.commitPolicy.burstDocsPerSecond")</li>
+ *     <li>a new searcher which isn't combined with a hard commit is opened through a soft commit</li>
+ * </ul>
+ *
+ * Every decision is recorded in the {@link TrackerStats}, together with the age of the replaced searchers.
+ * All the times are passed by the caller, so the policy can be replayed against simulated workloads.
+ */
+public class CommitPolicy
+{
+    protected final static Logger LOGGER = LoggerFactory.getLogger(CommitPolicy.class);
+
+    static final String COMMIT_INTERVAL = "alfresco.commitInterval";
+    static final String NEW_SEARCHER_INTERVAL = "alfresco.newSearcherInterval";
+    static final String ADAPTIVE = "alfresco.commitPolicy.adaptive";
+    static final String TARGET_FRESHNESS_MS = "alfresco.commitPolicy.targetFreshnessMs";
+    static final String MIN_SEARCHER_INTERVAL_MS = "alfresco.commitPolicy.minSearcherIntervalMs";
+    static final String MAX_PENDING_DOCS = "alfresco.commitPolicy.maxPendingDocs";
+    static final String MAX_RAM_BUFFER_MB = "alfresco.commitPolicy.maxRamBufferMb";
+    static final String BURST_DOCS_PER_SECOND = "alfresco.commitPolicy.burstDocsPerSecond";
+
+    private static final long DEFAULT_COMMIT_INTERVAL = 60000;
+    private static final long DEFAULT_NEW_SEARCHER_INTERVAL = 120000;
+    private static final long DEFAULT_TARGET_FRESHNESS_MS = 15000;
+    private static final long DEFAULT_MIN_SEARCHER_INTERVAL_MS = 1000;
+    private static final long DEFAULT_MAX_PENDING_DOCS = 50000;
+    private static final long DEFAULT_MAX_RAM_BUFFER_MB = 64;
+    private static final long DEFAULT_BURST_DOCS_PER_SECOND = 500;
+
+    /**
+     * The kind of commit chosen by the policy.
+     */
+    public enum Decision
+    {
+        NONE("No commit", false, false),
+        SOFT_COMMIT("Soft commit", false, true),
+        HARD_COMMIT("Hard commit", true, false),
+        HARD_COMMIT_AND_OPEN_SEARCHER("Hard commit and new searcher", true, true);
+
+        private final String label;
+        private final boolean hardCommit;
+        private final boolean openSearcher;
+
+        Decision(String label, boolean hardCommit, boolean openSearcher)
+        {
+            this.label = label;
+            this.hardCommit = hardCommit;
+            this.openSearcher = openSearcher;
+        }
+
+        public String getLabel()
+        {
+            return label;
+        }
+
+        public boolean isHardCommit()
+        {
+            return hardCommit;
+        }
+
+        public boolean isOpenSearcher()
+        {
+            return openSearcher;
+        }
+    }
+
+    private final boolean adaptive;
+    private final long commitInterval;
+    private final long newSearcherInterval;
+    private final long targetFreshness;
+    private final long minSearcherInterval;
+    private final long maxPendingDocs;
+    private final long maxRamBufferBytes;
+    private final long burstDocsPerSecond;
+    private final TrackerStats trackerStats;
+
+    private long lastHardCommit;
+    private long lastSearcherOpened;
+    private long maxDocAtLastHardCommit;
+    private long lastSampleTime;
+    private long lastSampleMaxDoc = -1;
+    private boolean softCommitted;
+
+    CommitPolicy(boolean adaptive, long commitInterval, long newSearcherInterval, long targetFreshness,
+                long minSearcherInterval, long maxPendingDocs, long maxRamBufferBytes, long burstDocsPerSecond,
+                TrackerStats trackerStats, long now)
+    {
+        this.adaptive = adaptive;
+        this.commitInterval = commitInterval;
+        this.newSearcherInterval = newSearcherInterval;
+        this.targetFreshness = targetFreshness;
+        this.minSearcherInterval = minSearcherInterval;
+        this.maxPendingDocs = maxPendingDocs;
+        this.maxRamBufferBytes = maxRamBufferBytes;
+        this.burstDocsPerSecond = burstDocsPerSecond;
+        this.trackerStats = trackerStats;
+        this.lastHardCommit = this.lastSearcherOpened = this.lastSampleTime = now;
+    }
+
+    /**
+     * Creates the commit policy of a core.
+     *
+     * @param p the core properties.
+     * @param trackerStats the stats where the decisions are recorded.
+     * @param now the current time, in millis.
+     * @return the commit policy.
+     */
+    public static CommitPolicy create(Properties p, TrackerStats trackerStats, long now)
+    {
+        return new CommitPolicy(
+                Boolean.parseBoolean(p.getProperty(ADAPTIVE, "false")),
+                Long.parseLong(p.getProperty(COMMIT_INTERVAL, String.valueOf(DEFAULT_COMMIT_INTERVAL))),
+                Long.parseLong(p.getProperty(NEW_SEARCHER_INTERVAL, String.valueOf(DEFAULT_NEW_SEARCHER_INTERVAL))),
+                Long.parseLong(p.getProperty(TARGET_FRESHNESS_MS, String.valueOf(DEFAULT_TARGET_FRESHNESS_MS))),
+                Long.parseLong(p.getProperty(MIN_SEARCHER_INTERVAL_MS, String.valueOf(DEFAULT_MIN_SEARCHER_INTERVAL_MS))),
+                Long.parseLong(p.getProperty(MAX_PENDING_DOCS, String.valueOf(DEFAULT_MAX_PENDING_DOCS))),
+                Long.parseLong(p.getProperty(MAX_RAM_BUFFER_MB, String.valueOf(DEFAULT_MAX_RAM_BUFFER_MB))) * 1024 * 1024,
+                Long.parseLong(p.getProperty(BURST_DOCS_PER_SECOND, String.valueOf(DEFAULT_BURST_DOCS_PER_SECOND))),
+                trackerStats,
+                now);
+    }
+
+    /**
+     * @return true if the decisions depend on the {@link IndexActivity}.
+     */
+    public boolean isAdaptive()
+    {
+        return adaptive;
+    }
+
+    /**
+     * @return true if a searcher has been opened by a soft commit after the last hard commit (i.e. the current
+     * searcher could see changes which would be lost by a rollback).
+     */
+    public boolean hasSoftCommitsSinceHardCommit()
+    {
+        return softCommitted;
+    }
+
+    /**
+     * Decides which kind of commit is needed.
+     *
+     * @param now the current time, in millis.
+     * @param maintenance true if there's maintenance work which must be committed.
+     * @param activity the current index activity (it can be null if the policy is not adaptive).
+     * @return the decision.
+     */
+    public Decision decide(long now, boolean maintenance, IndexActivity activity)
+    {
+        Decision decision = adaptive ? decideOnActivity(now, maintenance, activity) : decideOnTime(now, maintenance);
+
+        if (trackerStats != null)
+        {
+            trackerStats.addCommitDecision(decision.getLabel(), activity != null ? activity.getInvisibleDocs() : 0);
+        }
+        return decision;
+    }
+
+    private Decision decideOnTime(long now, boolean maintenance)
+    {
+        if ((now - lastHardCommit) <= commitInterval && !maintenance)
+        {
+            return Decision.NONE;
+        }
+
+        return (now - lastSearcherOpened) > newSearcherInterval
+                ? Decision.HARD_COMMIT_AND_OPEN_SEARCHER
+                : Decision.HARD_COMMIT;
+    }
+
+    private Decision decideOnActivity(long now, boolean maintenance, IndexActivity activity)
+    {
+        if (lastSampleMaxDoc < 0)
+        {
+            // First run: the docs already in the index don't count as ingest
+            lastSampleMaxDoc = maxDocAtLastHardCommit = activity.getWriterMaxDoc();
+        }
+
+        long elapsed = Math.max(1, now - lastSampleTime);
+        long ingestRate = Math.max(0, activity.getWriterMaxDoc() - lastSampleMaxDoc) * 1000 / elapsed;
+        lastSampleTime = now;
+        lastSampleMaxDoc = activity.getWriterMaxDoc();
+
+        long docsSinceHardCommit = Math.max(0, activity.getWriterMaxDoc() - maxDocAtLastHardCommit);
+        boolean hardCommitNeeded =
+                maintenance
+                || (activity.hasUncommittedChanges()
+                        && ((now - lastHardCommit) > commitInterval
+                            || docsSinceHardCommit >= maxPendingDocs
+                            || activity.getRamBytesUsed() >= maxRamBufferBytes));
+
+        long searcherAge = now - lastSearcherOpened;
+        boolean burst = ingestRate >= burstDocsPerSecond;
+        boolean openSearcherNeeded =
+                !activity.isSearcherCurrent()
+                && searcherAge >= Math.max(minSearcherInterval, activity.getWarmupMillis())
+                && (!burst || searcherAge + activity.getWarmupMillis() >= targetFreshness);
+
+        if (LOGGER.isDebugEnabled())
+        {
+            LOGGER.debug("Commit policy: {}, ingest rate {} docs/s, searcher age {} ms, docs since hard commit {}",
+                    activity, ingestRate, searcherAge, docsSinceHardCommit);
+        }
+
+        if (hardCommitNeeded)
+        {
+            return openSearcherNeeded ? Decision.HARD_COMMIT_AND_OPEN_SEARCHER : Decision.HARD_COMMIT;
+        }
+        return openSearcherNeeded ? Decision.SOFT_COMMIT : Decision.NONE;
+    }
+
+    /**
+     * Records the execution of a decision.
+     *
+     * @param decision the executed decision.
+     * @param now the time of the decision, in millis.
+     * @param activity the index activity the decision was based on (it can be null if the policy is not adaptive).
+     * @param searcherOpened true if a new searcher has actually been opened.
+     */
+    public void committed(Decision decision, long now, IndexActivity activity, boolean searcherOpened)
+    {
+        if (decision.isHardCommit())
+        {
+            lastHardCommit = now;
+            maxDocAtLastHardCommit = activity != null ? activity.getWriterMaxDoc() : 0;
+            softCommitted = false;
+        }
+
+        if (searcherOpened)
+        {
+            if (trackerStats != null)
+            {
+                trackerStats.addSearcherFreshnessLag(now - lastSearcherOpened);
+            }
+            lastSearcherOpened = now;
+            softCommitted |= !decision.isHardCommit();
+        }
+    }
+
+    /**
+     * Records a rollback: the changes after the last hard commit are gone, but a searcher opened by a soft commit
+     * still sees them until a new searcher is opened.
+     *
+     * @param now the time of the rollback, in millis.
+     * @param searcherOpened true if a new searcher has been opened after the rollback.
+     */
+    public void rolledBack(long now, boolean searcherOpened)
+    {
+        if (searcherOpened)
+        {
+            softCommitted = false;
+            lastSearcherOpened = now;
+        }
+    }
+}
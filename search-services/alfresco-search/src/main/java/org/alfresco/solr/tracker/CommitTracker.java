@@ -48,10 +48,7 @@ import org.slf4j.LoggerFactory;
 
 public class CommitTracker extends AbstractTracker
 {
-    private long lastCommit;
-    private long lastSearcherOpened;
-    private long commitInterval;
-    private long newSearcherInterval;
+    private CommitPolicy commitPolicy;
     private MetadataTracker metadataTracker;
     private AclTracker aclTracker;
     private ContentTracker contentTracker;
@@ -81,6 +78,7 @@ public class CommitTracker extends AbstractTracker
     CommitTracker()
     {
         super(Tracker.Type.COMMIT);
+        commitPolicy = CommitPolicy.create(new Properties(), null, System.currentTimeMillis());
     }
 
     public CommitTracker(Properties p,
@@ -104,9 +102,8 @@ public class CommitTracker extends AbstractTracker
             }
         }
 
-        commitInterval = Long.parseLong(p.getProperty("alfresco.commitInterval", "60000")); // Default: commit once per minute
-        newSearcherInterval = Integer.parseInt(p.getProperty("alfresco.newSearcherInterval", "120000")); // Default: Open searchers every two minutes
-        lastSearcherOpened = lastCommit = System.currentTimeMillis();
+        // Default: commit once per minute, open searchers every two minutes (see CommitPolicy)
+        commitPolicy = CommitPolicy.create(p, trackerStats, System.currentTimeMillis());
         
         RUN_LOCK_BY_CORE.put(coreName, new Semaphore(1, true));
         WRITE_LOCK_BY_CORE.put(coreName, new Semaphore(1, true));
@@ -132,25 +129,15 @@ public class CommitTracker extends AbstractTracker
     protected void doTrack(String iterationId) throws Throwable
     {
         long currentTime = System.currentTimeMillis();
-        boolean commitNeeded = false;
-        boolean openSearcherNeeded = false;
         boolean hasMaintenance = hasMaintenance();
+        IndexActivity activity = commitPolicy.isAdaptive() ? infoSrv.getIndexActivity() : null;
 
-        if((currentTime - lastCommit) > commitInterval || hasMaintenance)
-        {
-            commitNeeded = true;
-        }
-
-        if(!commitNeeded)
+        CommitPolicy.Decision decision = commitPolicy.decide(currentTime, hasMaintenance, activity);
+        if(decision == CommitPolicy.Decision.NONE)
         {
             return;
         }
 
-        if((currentTime - lastSearcherOpened) > newSearcherInterval)
-        {
-           openSearcherNeeded = true;
-        }
-
         try
         {
             metadataTracker.getWriteLock().acquire();
@@ -163,6 +150,8 @@ public class CommitTracker extends AbstractTracker
             {
                 /*
                 * The metadataTracker and aclTracker will return true if an unhandled exception has occurred during indexing.
+                * (In the checkpointed rollback mode a failed batch of nodes is not a rollback condition: the metadataTracker
+                * retries its transactions and quarantines them after repeated failures, see TransactionQuarantine).
                 *
                 * The doRollback method rolls the index back to the state that it was in at the last commit. This will undo
                 * all the work that has been done by other trackers after the last commit.
@@ -186,11 +175,15 @@ public class CommitTracker extends AbstractTracker
 
             if (metadataTracker.isEnabled() && aclTracker.isEnabled())
             {
-                boolean searcherOpened = infoSrv.commit(openSearcherNeeded);
-                lastCommit = currentTime;
-                if(searcherOpened)
+                if (decision.isHardCommit())
                 {
-                    lastSearcherOpened = currentTime;
+                    boolean searcherOpened = infoSrv.commit(decision.isOpenSearcher());
+                    commitPolicy.committed(decision, currentTime, activity, searcherOpened);
+                }
+                else
+                {
+                    infoSrv.softCommit();
+                    commitPolicy.committed(decision, currentTime, activity, true);
                 }
             }
             else
@@ -220,6 +213,12 @@ public class CommitTracker extends AbstractTracker
             }
 
             infoSrv.rollback();
+
+            // A searcher opened by a soft commit still sees the rolled back changes
+            if (commitPolicy.hasSoftCommitsSinceHardCommit())
+            {
+                commitPolicy.rolledBack(System.currentTimeMillis(), infoSrv.commit(true));
+            }
             
             // Log reasons why the rollback is performed
             if (aclTracker.getRollbackCausedBy() != null)
@@ -26,7 +26,6 @@
 
 package org.alfresco.solr.tracker;
 
-import com.google.common.collect.Lists;
 import org.alfresco.solr.AlfrescoSolrDataModel.TenantDbId;
 import org.alfresco.solr.InformationServer;
 import org.alfresco.solr.client.SOLRAPIClient;
@@ -58,6 +57,7 @@ public class ContentTracker extends ActivatableTracker
 
     private int contentTrackerParallelism;
     private int contentUpdateBatchSize;
+    private AdaptiveBatchController contentBatchController;
     
     // Share run and write locks across all ContentTracker threads
     private static final Map<String, Semaphore> RUN_LOCK_BY_CORE = new ConcurrentHashMap<>();
@@ -88,6 +88,8 @@ public class ContentTracker extends ActivatableTracker
                 String.valueOf(DEFAULT_CONTENT_TRACKER_MAX_PARALLELISM)));
 
         forkJoinPool = new ForkJoinPool(contentTrackerParallelism);
+        contentBatchController = AdaptiveBatchController.create(p, "Content batch",
+                contentUpdateBatchSize, Integer.MAX_VALUE, contentTrackerParallelism, trackerStats);
 
         RUN_LOCK_BY_CORE.put(coreName, new Semaphore(1, true));
         WRITE_LOCK_BY_CORE.put(coreName, new Semaphore(1, true));
@@ -121,19 +123,33 @@ public class ContentTracker extends ActivatableTracker
                         break;
                     }
 
-                    List<List<TenantDbId>> docBatches = Lists.partition(docs, contentUpdateBatchSize);
-                    for (List<TenantDbId> batch : docBatches)
+                    // The batch size is read again for each batch, as it's adjusted at runtime when adaptive batching is enabled
+                    int from = 0;
+                    while (from < docs.size())
                     {
+                        List<TenantDbId> batch = docs.subList(from, Math.min(docs.size(), from + contentBatchController.getBatchSize()));
+                        from += batch.size();
+
+                        long batchStart = System.nanoTime();
                         Integer processedDocuments = forkJoinPool.submit(() ->
                                 // Parallel task here, for example
                                 batch.parallelStream().map(doc -> {
-                                    ContentIndexWorkerRunnable ciwr = new ContentIndexWorkerRunnable(doc, infoSrv);
-                                    ciwr.run();
+                                    contentBatchController.acquire();
+                                    try
+                                    {
+                                        ContentIndexWorkerRunnable ciwr = new ContentIndexWorkerRunnable(doc, infoSrv);
+                                        ciwr.run();
+                                    }
+                                    finally
+                                    {
+                                        contentBatchController.release();
+                                    }
                                     return 1;
                                 }).reduce(0, Integer::sum)
                         ).get();
 
                         long endElapsed = System.nanoTime();
+                        contentBatchController.record(processedDocuments, endElapsed - batchStart);
                         trackerStats.addElapsedContentTime(processedDocuments, endElapsed - startElapsed);
                         startElapsed = endElapsed;
 
@@ -38,6 +38,7 @@ import java.util.Date;
 import java.util.GregorianCalendar;
 import java.util.Map;
 import java.util.Optional;
+import java.util.TimeZone;
 
 import static java.util.Collections.emptyMap;
 
@@ -68,6 +69,9 @@ import static java.util.Collections.emptyMap;
  *     <li>shard.date.grouping=3</li>
  * </ul>
  *
+ * The month of the dates in the canonical ISO 8601 form is computed by the {@link EpochMonthScanner} (the other forms
+ * go through the full parser) and the routing decisions are memoized per node in a {@link RoutingCache}.
+ *
  * @see <a href="https://docs.alfresco.com/search-enterprise/concepts/solr-shard-approaches.html">Search Services sharding methods</a>
  */
 public class DateMonthRouter implements DocRouter
@@ -76,6 +80,8 @@ public class DateMonthRouter implements DocRouter
 
     DBIDRouter dbidRouter = new DBIDRouter();
     private final int grouping;
+    private final TimeZone timeZone = TimeZone.getDefault();
+    private final RoutingCache routingCache = new RoutingCache();
 
     /**
      * Creates a date month router
@@ -115,19 +121,33 @@ public class DateMonthRouter implements DocRouter
             return dbidRouter.routeNode(numShards, shardInstance, node);
         }
 
-        try
+        Boolean cached = routingCache.get(node.getId(), ISO8601Date, numShards, shardInstance);
+        if (cached != null)
         {
-            Date date = ISO8601DateFormat.parse(ISO8601Date);
-            GregorianCalendar cal = new GregorianCalendar();
-            cal.setTime(date);
-            int month = cal.get(Calendar.MONTH);
-            int year = cal.get(Calendar.YEAR);
-            return ((((year * 12) + month) / grouping) % numShards) == shardInstance;
+            return cached;
         }
-        catch (Exception exception)
+
+        int epochMonth = EpochMonthScanner.scan(ISO8601Date, timeZone);
+        if (epochMonth == EpochMonthScanner.UNPARSABLE)
         {
-            return dbidRouter.routeNode(numShards, shardInstance, node);
+            try
+            {
+                Date date = ISO8601DateFormat.parse(ISO8601Date);
+                GregorianCalendar cal = new GregorianCalendar(timeZone);
+                cal.setTime(date);
+                int month = cal.get(Calendar.MONTH);
+                int year = cal.get(Calendar.YEAR);
+                epochMonth = (year * 12) + month;
+            }
+            catch (Exception exception)
+            {
+                return dbidRouter.routeNode(numShards, shardInstance, node);
+            }
         }
+
+        boolean routed = ((epochMonth / grouping) % numShards) == shardInstance;
+        routingCache.put(node.getId(), ISO8601Date, numShards, shardInstance, routed);
+        return routed;
     }
     
     @Override
@@ -0,0 +1,194 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.solr.tracker;
+
+import java.util.TimeZone;
+
+/**
+ * Computes the epoch month (year * 12 + zero-based month, as used by the date based routing) of an ISO 8601 date
+ * without building any {@link java.util.Date} or {@link java.util.Calendar} instance.
+ *
+ * Only the form produced by the repository is scanned: yyyy-MM-dd'T'HH:mm:ss[.SSS] followed by Z or by a +HH:mm /
+ * -HH:mm offset. The month is the one of that instant in the given time zone, exactly as a
+ * {@link java.util.GregorianCalendar} in that zone would report it.
+ * Any other form, out of range fields and years before 1600 are reported as {@link #UNPARSABLE}, so the caller can
+ * go through the full ISO 8601 parser.
+ */
+final class EpochMonthScanner
+{
+    static final int UNPARSABLE = Integer.MIN_VALUE;
+
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+
+    /** Days from 0000-03-01 to 1970-01-01 (proleptic Gregorian calendar). */
+    private static final long DAYS_0000_TO_1970 = 719_468;
+    private static final long DAYS_PER_ERA = 146_097;
+
+    private EpochMonthScanner()
+    {
+        // Static methods only
+    }
+
+    /**
+     * Scans the given ISO 8601 date.
+     *
+     * @param value the ISO 8601 date.
+     * @param timeZone the time zone where the month is computed.
+     * @return the epoch month of the date or {@link #UNPARSABLE} if the value is not in the expected form.
+     */
+    static int scan(String value, TimeZone timeZone)
+    {
+        int length = value.length();
+        if (length < 20
+                || value.charAt(4) != '-'
+                || value.charAt(7) != '-'
+                || value.charAt(10) != 'T'
+                || value.charAt(13) != ':'
+                || value.charAt(16) != ':')
+        {
+            return UNPARSABLE;
+        }
+
+        int year = digits(value, 0, 4);
+        int month = digits(value, 5, 2);
+        int day = digits(value, 8, 2);
+        int hour = digits(value, 11, 2);
+        int minute = digits(value, 14, 2);
+        int second = digits(value, 17, 2);
+        if (year < 1600
+                || month < 1 || month > 12
+                || day < 1 || day > daysInMonth(year, month)
+                || hour < 0 || hour > 23
+                || minute < 0 || minute > 59
+                || second < 0 || second > 59)
+        {
+            return UNPARSABLE;
+        }
+
+        int position = 19;
+        int millis = 0;
+        if (value.charAt(position) == '.')
+        {
+            millis = position + 4 <= length ? digits(value, position + 1, 3) : -1;
+            if (millis < 0)
+            {
+                return UNPARSABLE;
+            }
+            position += 4;
+        }
+
+        int offsetMinutes;
+        if (position == length - 1 && value.charAt(position) == 'Z')
+        {
+            offsetMinutes = 0;
+        }
+        else if (position == length - 6 && value.charAt(position + 3) == ':'
+                && (value.charAt(position) == '+' || value.charAt(position) == '-'))
+        {
+            int offsetHours = digits(value, position + 1, 2);
+            int offsetMinutesOfHour = digits(value, position + 4, 2);
+            if (offsetHours < 0 || offsetHours > 23 || offsetMinutesOfHour < 0 || offsetMinutesOfHour > 59)
+            {
+                return UNPARSABLE;
+            }
+            offsetMinutes = (offsetHours * 60 + offsetMinutesOfHour) * (value.charAt(position) == '-' ? -1 : 1);
+        }
+        else
+        {
+            return UNPARSABLE;
+        }
+
+        long epochMillis = daysFromCivil(year, month, day) * MILLIS_PER_DAY
+                + ((hour * 60L + minute - offsetMinutes) * 60 + second) * 1000
+                + millis;
+        long localDay = Math.floorDiv(epochMillis + timeZone.getOffset(epochMillis), MILLIS_PER_DAY);
+        return epochMonth(localDay);
+    }
+
+    /**
+     * @return the value of the decimal digits in the given range or -1 if the range contains any other char.
+     */
+    private static int digits(String value, int start, int count)
+    {
+        int result = 0;
+        for (int i = start; i < start + count; i++)
+        {
+            int digit = value.charAt(i) - '0';
+            if (digit < 0 || digit > 9)
+            {
+                return -1;
+            }
+            result = result * 10 + digit;
+        }
+        return result;
+    }
+
+    private static int daysInMonth(int year, int month)
+    {
+        switch (month)
+        {
+            case 2:
+                return (year % 4 == 0 && year % 100 != 0) || year % 400 == 0 ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    /**
+     * @return the number of days from 1970-01-01 to the given date (proleptic Gregorian calendar).
+     */
+    static long daysFromCivil(int year, int month, int day)
+    {
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * DAYS_PER_ERA + dayOfEra - DAYS_0000_TO_1970;
+    }
+
+    /**
+     * @return year * 12 + zero-based month of the given day since 1970-01-01.
+     */
+    static int epochMonth(long epochDay)
+    {
+        long days = epochDay + DAYS_0000_TO_1970;
+        long era = Math.floorDiv(days, DAYS_PER_ERA);
+        long dayOfEra = days - era * DAYS_PER_ERA;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long shiftedMonth = (5 * dayOfYear + 2) / 153;
+        long month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return (int) (year * 12 + month - 1);
+    }
+}
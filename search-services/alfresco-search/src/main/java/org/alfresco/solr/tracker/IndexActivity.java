@@ -0,0 +1,106 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.solr.tracker;
+
+/**
+ * A snapshot of the index writer and searcher state, used by the {@link CommitPolicy} for deciding what kind of
+ * commit is needed.
+ */
+public class IndexActivity
+{
+    private final long writerMaxDoc;
+    private final long searcherMaxDoc;
+    private final long ramBytesUsed;
+    private final boolean uncommittedChanges;
+    private final boolean searcherCurrent;
+    private final long warmupMillis;
+
+    /**
+     * @param writerMaxDoc the number of docs in the index writer, including the docs not yet flushed.
+     * @param searcherMaxDoc the number of docs visible to the current searcher.
+     * @param ramBytesUsed the size of the index writer RAM buffer.
+     * @param uncommittedChanges true if the index writer has changes which have not been hard committed.
+     * @param searcherCurrent true if the current searcher sees all the changes of the index writer.
+     * @param warmupMillis the time spent for warming up the current searcher (i.e. the cost of a searcher reopen).
+     */
+    public IndexActivity(long writerMaxDoc, long searcherMaxDoc, long ramBytesUsed, boolean uncommittedChanges,
+                boolean searcherCurrent, long warmupMillis)
+    {
+        this.writerMaxDoc = writerMaxDoc;
+        this.searcherMaxDoc = searcherMaxDoc;
+        this.ramBytesUsed = ramBytesUsed;
+        this.uncommittedChanges = uncommittedChanges;
+        this.searcherCurrent = searcherCurrent;
+        this.warmupMillis = warmupMillis;
+    }
+
+    public long getWriterMaxDoc()
+    {
+        return writerMaxDoc;
+    }
+
+    public long getSearcherMaxDoc()
+    {
+        return searcherMaxDoc;
+    }
+
+    /**
+     * @return an estimate of the docs which are not visible yet (merged away deletions are not taken into account).
+     */
+    public long getInvisibleDocs()
+    {
+        return Math.max(0, writerMaxDoc - searcherMaxDoc);
+    }
+
+    public long getRamBytesUsed()
+    {
+        return ramBytesUsed;
+    }
+
+    public boolean hasUncommittedChanges()
+    {
+        return uncommittedChanges;
+    }
+
+    public boolean isSearcherCurrent()
+    {
+        return searcherCurrent;
+    }
+
+    public long getWarmupMillis()
+    {
+        return warmupMillis;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "IndexActivity [writerMaxDoc=" + writerMaxDoc + ", searcherMaxDoc=" + searcherMaxDoc
+                + ", ramBytesUsed=" + ramBytesUsed + ", uncommittedChanges=" + uncommittedChanges
+                + ", searcherCurrent=" + searcherCurrent + ", warmupMillis=" + warmupMillis + "]";
+    }
+}
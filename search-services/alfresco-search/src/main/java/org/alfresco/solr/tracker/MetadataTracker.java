@@ -54,6 +54,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.SortedMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
@@ -84,6 +85,8 @@ public class MetadataTracker extends ActivatableTracker
     private int matadataTrackerParallelism;
     private int transactionDocsBatchSize;
     private int nodeBatchSize;
+    private AdaptiveBatchController transactionDocsBatchController;
+    private AdaptiveBatchController nodeBatchController;
     private int maxNumberOfTransactions;
     private long timeStep;
 
@@ -94,6 +97,9 @@ public class MetadataTracker extends ActivatableTracker
     private final ConcurrentLinkedQueue<Long> nodesToIndex = new ConcurrentLinkedQueue<>();
     private final ConcurrentLinkedQueue<Long> nodesToPurge = new ConcurrentLinkedQueue<>();
     private final ConcurrentLinkedQueue<String> queriesToReindex = new ConcurrentLinkedQueue<>();
+    /** Transactions of failed batches, retried one at a time at the next cycle (checkpointed rollback mode only). */
+    private final ConcurrentLinkedQueue<Transaction> transactionsToRetry = new ConcurrentLinkedQueue<>();
+    TransactionQuarantine transactionQuarantine;
     private ForkJoinPool forkJoinPool;
 
     // Share run and write locks across all MetadataTracker threads
@@ -176,6 +182,11 @@ public class MetadataTracker extends ActivatableTracker
         cascadeTrackerEnabled = informationServer.cascadeTrackingEnabled();
         minTxnIdRange = new Pair<>(Long.valueOf(minTxninitialRangeString[0]), Long.valueOf(minTxninitialRangeString[1]));
         forkJoinPool = new ForkJoinPool(matadataTrackerParallelism);
+        transactionDocsBatchController = AdaptiveBatchController.create(p, "Transaction docs batch",
+                transactionDocsBatchSize, Integer.MAX_VALUE, 1, trackerStats);
+        nodeBatchController = AdaptiveBatchController.create(p, "Node batch",
+                nodeBatchSize, Integer.MAX_VALUE, matadataTrackerParallelism, trackerStats);
+        transactionQuarantine = TransactionQuarantine.create(p);
 
         if (p.getProperty("solr.initial.transaction.id") != null)
         {
@@ -233,6 +244,7 @@ public class MetadataTracker extends ActivatableTracker
     MetadataTracker()
     {
         super(Tracker.Type.METADATA);
+        transactionQuarantine = new TransactionQuarantine(false, 1);
     }
 
     @Override
@@ -885,6 +897,15 @@ public class MetadataTracker extends ActivatableTracker
 
     boolean isTransactionToBeIndexed(Transaction transaction)
     {
+        // A quarantined transaction is skipped until it is released, even if the index doesn't contain it
+        // (e.g. the tracker state has been reloaded after a rollback)
+        if (transactionQuarantine.isQuarantined(transaction.getId()))
+        {
+            LOGGER.debug("{}-[CORE {}] Skipping Transaction Id {} as it is quarantined",
+                    Thread.currentThread().getId(), coreName, transaction.getId());
+            return false;
+        }
+
         try
         {
             boolean isInIndex = (transaction.getCommitTimeMs() <= state.getLastIndexedTxCommitTime() &&
@@ -991,21 +1012,29 @@ public class MetadataTracker extends ActivatableTracker
                 }
 
                 final AtomicInteger counterTransaction = new AtomicInteger();
+                final int txDocsBatchSize = transactionDocsBatchController.getBatchSize();
                 Collection<List<Transaction>> txBatches = transactions.getTransactions().stream()
                         .peek(txnsFound::add)
                         .filter(this::isTransactionToBeIndexed)
                         .collect(Collectors.groupingBy(transaction -> counterTransaction.getAndAdd(
-                                (int) (transaction.getDeletes() + transaction.getUpdates())) / transactionDocsBatchSize))
+                                (int) (transaction.getDeletes() + transaction.getUpdates())) / txDocsBatchSize))
                         .values();
 
                 // Index batches of transactions and the nodes updated or deleted within the transaction
-                List<List<Node>> nodeBatches = new ArrayList<>();
-                for (List<Transaction> batch : txBatches)
+                // (the transactions of the batches failed in the previous cycles come first, one per batch)
+                List<TransactionBatch> transactionBatches = new ArrayList<>();
+                List<Pair<TransactionBatch, List<Node>>> nodeBatches = new ArrayList<>();
+                for (List<Transaction> batch : withTransactionsToRetry(txBatches))
                 {
 
                     // Index nodes contained in the transactions
                     long idTxBatch = System.currentTimeMillis();
-                    nodeBatches.addAll(buildBatchOfTransactions(batch, idTrackerCycle, idTxBatch));
+                    TransactionBatch transactionBatch = new TransactionBatch(batch);
+                    transactionBatches.add(transactionBatch);
+                    for (List<Node> nodes : buildBatchOfTransactions(batch, idTrackerCycle, idTxBatch))
+                    {
+                        nodeBatches.add(new Pair<>(transactionBatch, nodes));
+                    }
                 }
                 
                 // Counter used to identify the worker inside the parallel stream processing
@@ -1018,19 +1047,37 @@ public class MetadataTracker extends ActivatableTracker
                             {
                                 LOGGER.trace("{}:{}:{}-[CORE {}] indexing {} nodes ...",
                                         idThread, idTrackerCycle, count,
-                                        coreName, batch.size());
+                                        coreName, batch.getSecond().size());
+                            }
+                            nodeBatchController.acquire();
+                            try
+                            {
+                                long start = System.nanoTime();
+                                new NodeIndexWorker(batch.getSecond(), batch.getFirst(), infoSrv, idThread, idTrackerCycle, count).run();
+                                nodeBatchController.record(batch.getSecond().size(), System.nanoTime() - start);
+                            }
+                            finally
+                            {
+                                nodeBatchController.release();
                             }
-                            new NodeIndexWorker(batch, infoSrv, idThread, idTrackerCycle, count).run();
-                            return batch.size();
+                            return batch.getSecond().size();
                         }).reduce(0, Integer::sum)).get();
 
-                for (List<Transaction> batch : txBatches)
+                for (TransactionBatch batch : transactionBatches)
                 {
                     // Add the transactions as found to avoid processing them again in the next iteration
-                    batch.forEach(txnsFound::add);
-    
+                    batch.transactions.forEach(txnsFound::add);
+
+                    if (batch.failure != null)
+                    {
+                        // Checkpointed rollback: only the transactions of the failed batch are indexed again
+                        retryOrQuarantine(batch.transactions, batch.failure);
+                        continue;
+                    }
+
                     // Index the transactions
-                    indexTransactionsAfterWorker(batch);
+                    batch.transactions.forEach(transactionQuarantine::succeeded);
+                    indexTransactionsAfterWorker(batch.transactions);
                     long endElapsed = System.nanoTime();
                     trackerStats.addElapsedNodeTime(totalUpdatedDocs, endElapsed - startElapsed);
                     startElapsed = endElapsed;
@@ -1053,6 +1100,51 @@ public class MetadataTracker extends ActivatableTracker
         LOGGER.info("{}-[CORE {}] Tracked {} DOCs", Thread.currentThread().getId(), coreName, totalUpdatedDocs);
     }
 
+    /**
+     * Prepends the transactions to be retried to the given batches: each of them is retried in its own batch, so a
+     * poison transaction doesn't affect the others. The transactions quarantined in the meantime are dropped.
+     */
+    List<List<Transaction>> withTransactionsToRetry(Collection<List<Transaction>> txBatches)
+    {
+        List<List<Transaction>> batches = new ArrayList<>();
+        for (Transaction transaction = transactionsToRetry.poll(); transaction != null; transaction = transactionsToRetry.poll())
+        {
+            if (transactionQuarantine.isQuarantined(transaction.getId()))
+            {
+                continue;
+            }
+
+            List<Transaction> batch = new ArrayList<>(1);
+            batch.add(transaction);
+            batches.add(batch);
+        }
+        batches.addAll(txBatches);
+        return batches;
+    }
+
+    /**
+     * Schedules the transactions of a failed batch for a retry at the next cycle, unless they failed too many times:
+     * in that case they are quarantined.
+     */
+    private void retryOrQuarantine(List<Transaction> transactions, Throwable failure)
+    {
+        for (Transaction transaction : transactions)
+        {
+            if (transactionQuarantine.recordFailure(transaction, failure))
+            {
+                LOGGER.error("{}-[CORE {}] Transaction {} has been quarantined after repeated indexing failures: " +
+                                "it won't be retried until it is released by a REINDEX or RETRY action.",
+                        Thread.currentThread().getId(), coreName, transaction.getId(), failure);
+            }
+            else
+            {
+                LOGGER.warn("{}-[CORE {}] Indexing of transaction {} failed, it will be retried at the next cycle.",
+                        Thread.currentThread().getId(), coreName, transaction.getId());
+                transactionsToRetry.offer(transaction);
+            }
+        }
+    }
+
     /**
      * Update latest transaction indexed in MetadataTracker state
      * @param transactions List of transactions indexed
@@ -1115,11 +1207,13 @@ public class MetadataTracker extends ActivatableTracker
         
         // Skip transactions without modifications (updates, deletes)
         ArrayList<Long> txIds = new ArrayList<>();
+        int txDocs = 0;
         for (Transaction tx : txBatch)
         {
             if (tx.getUpdates() > 0 || tx.getDeletes() > 0)
             {
                 txIds.add(tx.getId());
+                txDocs += tx.getUpdates() + tx.getDeletes();
             }
         }
         
@@ -1138,7 +1232,9 @@ public class MetadataTracker extends ActivatableTracker
         shardProperty.ifPresent(gnp::setShardProperty);
 
         gnp.setCoreName(coreName);
+        long start = System.nanoTime();
         List<Node> nodes = client.getNodes(gnp, Integer.MAX_VALUE);
+        transactionDocsBatchController.record(txDocs, System.nanoTime() - start);
 
         if (LOGGER.isDebugEnabled())
         {
@@ -1147,8 +1243,10 @@ public class MetadataTracker extends ActivatableTracker
                     coreName, nodes.size(), txIds);
         }
 
-        // Group the nodes in batches of nodeBatchSize (or less)
-        return Lists.partition(nodes, nodeBatchSize);
+        // Route the whole set of nodes once, before any metadata is fetched: the batches only contain the nodes
+        // which belong to this shard (plus the cascade/delete markers of the others), so they are always full.
+        // Group the nodes in batches of nodeBatchSize (or less, adjusted at runtime when adaptive batching is enabled)
+        return Lists.partition(filterNodes(nodes), nodeBatchController.getBatchSize());
 
     }
 
@@ -1160,6 +1258,7 @@ public class MetadataTracker extends ActivatableTracker
     {
         InformationServer infoServer;
         List<Node> nodes;
+        TransactionBatch transactionBatch;
         // Unique Id for the worker > thread : trackerCycle : worker
         long idThread;
         long idTrackerCycle;
@@ -1169,9 +1268,16 @@ public class MetadataTracker extends ActivatableTracker
         protected Logger LOGGER = LoggerFactory.getLogger(MetadataTracker.class);
 
         NodeIndexWorker(List<Node> nodes, InformationServer infoServer, long idThread, long idTrackerCycle, int idWorker)
+        {
+            this(nodes, null, infoServer, idThread, idTrackerCycle, idWorker);
+        }
+
+        NodeIndexWorker(List<Node> nodes, TransactionBatch transactionBatch, InformationServer infoServer, long idThread,
+                    long idTrackerCycle, int idWorker)
         {
             this.infoServer = infoServer;
             this.nodes = nodes;
+            this.transactionBatch = transactionBatch;
             this.idThread = idThread;
             this.idTrackerCycle = idTrackerCycle;
             this.idWorker = idWorker;
@@ -1180,10 +1286,10 @@ public class MetadataTracker extends ActivatableTracker
         @Override
         protected void doWork() throws IOException, AuthenticationException, JSONException
         { 
-            List<Node> filteredNodes = filterNodes(nodes);
-            if(filteredNodes.size() > 0)
+            // The nodes have already been routed (see buildBatchOfTransactions)
+            if(nodes.size() > 0)
             {
-                this.infoServer.indexNodes(filteredNodes, true);
+                this.infoServer.indexNodes(nodes, true);
             }
             if (LOGGER.isTraceEnabled())
             {
@@ -1195,7 +1301,31 @@ public class MetadataTracker extends ActivatableTracker
         @Override
         protected void onFail(Throwable failCausedBy)
         {
-            setRollback(true, failCausedBy);
+            // Communication failures are not a property of the batch: they still roll back the whole index writer
+            if (transactionBatch != null
+                    && transactionQuarantine.isEnabled()
+                    && !TransactionQuarantine.isCommunicationFailure(failCausedBy))
+            {
+                transactionBatch.failure = failCausedBy;
+            }
+            else
+            {
+                setRollback(true, failCausedBy);
+            }
+        }
+    }
+
+    /**
+     * A batch of transactions whose nodes are indexed by one or more {@link NodeIndexWorker}s.
+     */
+    static class TransactionBatch
+    {
+        final List<Transaction> transactions;
+        volatile Throwable failure;
+
+        TransactionBatch(List<Transaction> transactions)
+        {
+            this.transactions = transactions;
         }
     }
 
@@ -1344,9 +1474,38 @@ public class MetadataTracker extends ActivatableTracker
 
     public void addTransactionToReindex(Long txId)
     {
+        transactionQuarantine.release(txId);
         this.transactionsToReindex.offer(txId);
     }
 
+    /**
+     * @return the transactions quarantined after repeated indexing failures (checkpointed rollback mode only).
+     */
+    public SortedMap<Long, TransactionQuarantine.Failure> getQuarantinedTransactions()
+    {
+        return transactionQuarantine.getQuarantinedTransactions();
+    }
+
+    /**
+     * Releases the quarantined transactions, which will be retried at the next cycle.
+     *
+     * @return the ids of the released transactions.
+     */
+    public List<Long> retryQuarantinedTransactions()
+    {
+        List<Long> released = new ArrayList<>();
+        for (Long txId : transactionQuarantine.getQuarantinedTransactions().keySet())
+        {
+            Transaction transaction = transactionQuarantine.release(txId);
+            if (transaction != null)
+            {
+                transactionsToRetry.offer(transaction);
+                released.add(txId);
+            }
+        }
+        return released;
+    }
+
     public void addNodeToReindex(Long nodeId)
     {
         nodesToReindex.offer(nodeId);
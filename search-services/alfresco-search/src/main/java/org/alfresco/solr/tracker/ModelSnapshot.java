@@ -0,0 +1,316 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+
+package org.alfresco.solr.tracker;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A snapshot of the models persisted in the Alfresco model directory, keyed on their content hash.
+ *
+ * The snapshot lists the model files in load order (i.e. every model comes after the models it imports) together
+ * with the SHA-256 hash of their content, so at startup the models can be put in the dictionary one after another,
+ * without pre-parsing the whole model directory for resolving the imports again. The model files are still read
+ * (for verifying their hash), parsed and compiled: the snapshot doesn't hold any parsed or compiled form. Its
+ * checksum identifies the content of the whole set of models, so the cores sharing a model directory whose models
+ * have already been loaded in the (JVM-wide) data model don't load them again.
+ *
+ * Layout (big endian):
+ *
+ * <pre>
+ * int magic, int format version, int model count
+ * model count x (int name length, name (UTF-8), byte loaded, SHA-256 of the file content (32 bytes))
+ * </pre>
+ *
+ * Model files which are not loaded (e.g. because another model file defines the same namespaces) are listed too, so
+ * that the snapshot matches the model directory, but they are skipped when loading the snapshot.
+ *
+ * The snapshot is used only if it matches the model directory, that is if it lists the same model files with the
+ * same content hash. A snapshot in an unknown format version is ignored (and then rewritten).
+ */
+final class ModelSnapshot
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(ModelSnapshot.class);
+
+    static final String FILE_NAME = "models.snapshot";
+
+    static final int FORMAT_VERSION = 2;
+
+    private static final int MAGIC = 0x414d5353;
+
+    private static final int HASH_LENGTH = 32;
+
+    static final FileFilter MODEL_FILES = pathname -> pathname.isFile() && pathname.getName().endsWith(".xml");
+
+    private final List<Entry> entries;
+    private final List<Entry> models = new ArrayList<>();
+    private final Map<String, byte[]> content;
+    private final long checksum;
+
+    private ModelSnapshot(List<Entry> entries, Map<String, byte[]> content)
+    {
+        this.entries = entries;
+        this.content = content;
+        for (Entry entry : entries)
+        {
+            if (entry.loaded)
+            {
+                models.add(entry);
+            }
+        }
+
+        MessageDigest digest = sha256();
+        for (Entry entry : entries)
+        {
+            digest.update(entry.name.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) (entry.loaded ? 1 : 0));
+            digest.update(entry.hash);
+        }
+        this.checksum = ByteBuffer.wrap(digest.digest()).getLong();
+    }
+
+    /**
+     * Opens the snapshot of the given model directory.
+     *
+     * @param modelDir the model directory.
+     * @return the snapshot or null if there's no snapshot or it doesn't match the content of the model directory.
+     */
+    static ModelSnapshot open(File modelDir)
+    {
+        File file = new File(modelDir, FILE_NAME);
+        if (!file.isFile())
+        {
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(file.toPath()))))
+        {
+            if (in.available() < 3 * Integer.BYTES || in.readInt() != MAGIC)
+            {
+                LOGGER.warn("Ignoring model snapshot {}: not a model snapshot.", file);
+                return null;
+            }
+            int version = in.readInt();
+            if (version != FORMAT_VERSION)
+            {
+                LOGGER.info("Ignoring model snapshot {}: format version {} (expected {}).", file, version, FORMAT_VERSION);
+                return null;
+            }
+
+            int count = in.readInt();
+            List<Entry> entries = new ArrayList<>(count);
+            for (int i = 0; i < count; i++)
+            {
+                byte[] name = new byte[in.readInt()];
+                in.readFully(name);
+                boolean loaded = in.readBoolean();
+                byte[] hash = new byte[HASH_LENGTH];
+                in.readFully(hash);
+                entries.add(new Entry(new String(name, StandardCharsets.UTF_8), loaded, hash));
+            }
+
+            Map<String, byte[]> content = read(modelDir, entries);
+            return content != null ? new ModelSnapshot(Collections.unmodifiableList(entries), content) : null;
+        }
+        catch (IOException | RuntimeException exception)
+        {
+            LOGGER.warn("Ignoring unreadable model snapshot {}.", file, exception);
+            return null;
+        }
+    }
+
+    /**
+     * Writes the snapshot of the given model files (replacing the existing one, if any).
+     *
+     * @param modelDir the model directory.
+     * @param modelFiles the model files to be loaded, in load order.
+     * @param otherFiles the model files which must not be loaded.
+     * @return the checksum of the written snapshot.
+     * @throws IOException in case of failure.
+     */
+    static long write(File modelDir, List<File> modelFiles, List<File> otherFiles) throws IOException
+    {
+        ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+        List<Entry> entries = new ArrayList<>(modelFiles.size() + otherFiles.size());
+        try (DataOutputStream out = new DataOutputStream(snapshot))
+        {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(modelFiles.size() + otherFiles.size());
+            for (int i = 0; i < modelFiles.size() + otherFiles.size(); i++)
+            {
+                boolean loaded = i < modelFiles.size();
+                File modelFile = loaded ? modelFiles.get(i) : otherFiles.get(i - modelFiles.size());
+                Entry entry = new Entry(modelFile.getName(), loaded, sha256().digest(Files.readAllBytes(modelFile.toPath())));
+                entries.add(entry);
+
+                byte[] name = entry.name.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(name.length);
+                out.write(name);
+                out.writeBoolean(entry.loaded);
+                out.write(entry.hash);
+            }
+        }
+
+        File tmp = File.createTempFile(FILE_NAME, ".tmp", modelDir);
+        try
+        {
+            Files.write(tmp.toPath(), snapshot.toByteArray());
+            Files.move(tmp.toPath(), new File(modelDir, FILE_NAME).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally
+        {
+            Files.deleteIfExists(tmp.toPath());
+        }
+
+        return new ModelSnapshot(entries, Collections.emptyMap()).checksum;
+    }
+
+    /**
+     * @return the number of models to be loaded.
+     */
+    int size()
+    {
+        return models.size();
+    }
+
+    /**
+     * @return the name of the file of the i-th model (in load order).
+     */
+    String getFileName(int i)
+    {
+        return models.get(i).name;
+    }
+
+    /**
+     * Opens the XML content of the i-th model (in load order), as read when the snapshot was matched against the
+     * model directory.
+     */
+    InputStream openModel(int i)
+    {
+        return new ByteArrayInputStream(content.get(models.get(i).name));
+    }
+
+    /**
+     * @return a checksum of the whole set of models (names, loaded flags and content hashes).
+     */
+    long getChecksum()
+    {
+        return checksum;
+    }
+
+    /**
+     * Reads the model files of the given directory, checking that they are the ones listed in the snapshot.
+     *
+     * @return the content of the model files to be loaded, by file name, or null if the model directory doesn't match
+     *         the snapshot entries.
+     */
+    private static Map<String, byte[]> read(File modelDir, List<Entry> entries) throws IOException
+    {
+        File[] files = modelDir.listFiles(MODEL_FILES);
+        if (files == null || files.length != entries.size())
+        {
+            return null;
+        }
+
+        Map<String, File> filesByName = new HashMap<>();
+        for (File file : files)
+        {
+            filesByName.put(file.getName(), file);
+        }
+
+        Map<String, byte[]> content = new HashMap<>();
+        for (Entry entry : entries)
+        {
+            File file = filesByName.get(entry.name);
+            if (file == null)
+            {
+                return null;
+            }
+
+            byte[] xml = Files.readAllBytes(file.toPath());
+            if (!Arrays.equals(sha256().digest(xml), entry.hash))
+            {
+                return null;
+            }
+            if (entry.loaded)
+            {
+                content.put(entry.name, xml);
+            }
+        }
+        return content;
+    }
+
+    private static MessageDigest sha256()
+    {
+        try
+        {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException exception)
+        {
+            // Every Java platform supports SHA-256
+            throw new IllegalStateException(exception);
+        }
+    }
+
+    private static final class Entry
+    {
+        final String name;
+        final boolean loaded;
+        final byte[] hash;
+
+        Entry(String name, boolean loaded, byte[] hash)
+        {
+            this.name = name;
+            this.loaded = loaded;
+            this.hash = hash;
+        }
+    }
+}
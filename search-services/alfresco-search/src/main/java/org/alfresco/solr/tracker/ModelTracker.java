@@ -27,13 +27,14 @@
 package org.alfresco.solr.tracker;
 
 import java.io.File;
-import java.io.FileFilter;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
@@ -113,6 +114,12 @@ public class ModelTracker extends AbstractTracker
     private volatile boolean hasModels = false;
     private File alfrescoModelDir;
 
+    /**
+     * Checksum of the model snapshot loaded in the (JVM-wide) data model, by model directory: the cores sharing a
+     * model directory load its models only once.
+     */
+    private static final Map<String, Long> LOADED_SNAPSHOTS = new HashMap<>();
+
     // Share run and write locks across all ModelTracker threads
     private static Map<String, Semaphore> RUN_LOCK_BY_CORE = new ConcurrentHashMap<>();
     private static Map<String, Semaphore> WRITE_LOCK_BY_CORE = new ConcurrentHashMap<>();
@@ -158,17 +165,93 @@ public class ModelTracker extends AbstractTracker
     }
 
     /**
-     *
+     * Loads the models persisted in the model directory, using the model snapshot when it matches the directory
+     * content. The models of a snapshot which has already been loaded in the data model (by another core) are not
+     * loaded again.
      */
     private void loadPersistedModels()
+    {
+        synchronized (LOADED_SNAPSHOTS)
+        {
+            String modelDirKey = alfrescoModelDir.getAbsolutePath();
+            ModelSnapshot snapshot = ModelSnapshot.open(alfrescoModelDir);
+            if (snapshot != null)
+            {
+                Long loadedChecksum = LOADED_SNAPSHOTS.get(modelDirKey);
+                if (loadedChecksum != null && loadedChecksum == snapshot.getChecksum())
+                {
+                    LOGGER.info("Models of {} already loaded, core {}", alfrescoModelDir, coreName);
+                    return;
+                }
+
+                try
+                {
+                    loadModelSnapshot(snapshot);
+                    LOADED_SNAPSHOTS.put(modelDirKey, snapshot.getChecksum());
+                    return;
+                }
+                catch (IOException | RuntimeException e)
+                {
+                    LOGGER.warn("Unable to load the model snapshot of {}, loading the model files.", alfrescoModelDir, e);
+                }
+            }
+
+            List<File> loadOrder = new ArrayList<>();
+            List<File> notLoaded = new ArrayList<>();
+            loadModelFiles(loadOrder, notLoaded);
+            try
+            {
+                long checksum = ModelSnapshot.write(alfrescoModelDir, loadOrder, notLoaded);
+                LOADED_SNAPSHOTS.put(modelDirKey, checksum);
+            }
+            catch (IOException e)
+            {
+                LOGGER.warn("Unable to write the model snapshot of {}.", alfrescoModelDir, e);
+                LOADED_SNAPSHOTS.remove(modelDirKey);
+            }
+        }
+    }
+
+    /**
+     * Puts the models of the snapshot in the data model, in the snapshot (i.e. load) order.
+     */
+    private void loadModelSnapshot(ModelSnapshot snapshot) throws IOException
+    {
+        long start = System.nanoTime();
+        for (int i = 0; i < snapshot.size(); i++)
+        {
+            M2Model model;
+            try (InputStream modelStream = snapshot.openModel(i))
+            {
+                model = M2Model.createModel(modelStream);
+            }
+            this.infoSrv.putModel(model);
+            LOGGER.info("Loading model {}", model.getName());
+        }
+
+        if (snapshot.size() > 0)
+        {
+            AlfrescoSolrDataModel.getInstance().afterInitModels();
+        }
+        LOGGER.info("Loaded {} models from the model snapshot of {} in {} ms", snapshot.size(), alfrescoModelDir,
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Parses and loads the model files of the model directory.
+     *
+     * @param loadOrder collects the loaded model files, in load order.
+     * @param notLoaded collects the model files which haven't been loaded (e.g. because another model file defines
+     *                  the same namespaces).
+     */
+    private void loadModelFiles(List<File> loadOrder, List<File> notLoaded)
     {
         HashMap<String, M2Model> modelMap = new HashMap<>();
+        Map<M2Model, File> filesByModel = new HashMap<>();
         if (alfrescoModelDir.exists() && alfrescoModelDir.isDirectory())
         {
-            // A filter for XML files
-            FileFilter filter = pathname -> pathname.isFile() && pathname.getName().endsWith(".xml");
             // List XML files
-            File[] files = alfrescoModelDir.listFiles(filter);
+            File[] files = alfrescoModelDir.listFiles(ModelSnapshot.MODEL_FILES);
             if (files != null)
             {
                 for (File file : files)
@@ -192,6 +275,7 @@ public class ModelTracker extends AbstractTracker
                         }
                     }
                     // Model successfully loaded
+                    filesByModel.put(model, file);
                     for (M2Namespace namespace : model.getNamespaces())
                     {
                         modelMap.put(namespace.getUri(), model);
@@ -200,7 +284,7 @@ public class ModelTracker extends AbstractTracker
             }
         }
         // Load the models ensuring that they are loaded in the correct order
-        HashSet<String> loadedModels = new HashSet<String>();
+        LinkedHashSet<String> loadedModels = new LinkedHashSet<>();
         for (M2Model model : modelMap.values())
         {
             loadModel(modelMap, loadedModels, model);
@@ -210,6 +294,17 @@ public class ModelTracker extends AbstractTracker
         {
             AlfrescoSolrDataModel.getInstance().afterInitModels();
         }
+
+        Map<String, File> filesByModelName = new HashMap<>();
+        for (M2Model model : new LinkedHashSet<>(modelMap.values()))
+        {
+            filesByModelName.put(model.getName(), filesByModel.remove(model));
+        }
+        for (String modelName : loadedModels)
+        {
+            loadOrder.add(filesByModelName.get(modelName));
+        }
+        notLoaded.addAll(filesByModel.values());
     }
 
     /**
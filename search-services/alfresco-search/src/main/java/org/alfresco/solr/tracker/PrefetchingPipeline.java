@@ -0,0 +1,277 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.solr.tracker;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A three stage pipeline which runs the repository fetches of a tracker ahead of the indexing.
+ *
+ * <ol>
+ *     <li>the source stage fetches windows of items (e.g. the ACL change sets after the last indexed commit time)</li>
+ *     <li>the fetch stage turns each item into the data to be indexed (e.g. the ACLs and their readers)</li>
+ *     <li>the caller takes the fetched data with {@link #take()} and indexes it</li>
+ * </ol>
+ *
+ * The first two stages run on their own threads, connected to the next stage by bounded queues of the given depth:
+ * while the caller indexes an item, the next ones (and the next window) are being fetched, and a slow indexer stops
+ * the fetches once the queues are full.
+ * The stages are single-threaded and the queues FIFO, so the items are taken in the order of the source windows.
+ *
+ * A failure of the source or fetch stage is rethrown by {@link #take()} after the items which preceded it.
+ * With a depth lesser than 1 everything runs synchronously in the caller thread.
+ *
+ * @param <S> the type of the source items.
+ * @param <T> the type of the fetched data.
+ */
+class PrefetchingPipeline<S, T> implements AutoCloseable
+{
+    /**
+     * The source stage.
+     */
+    interface Source<S>
+    {
+        /**
+         * @return the items of the next window (possibly empty, e.g. if all of them are already indexed) or null if
+         * there are no more windows.
+         */
+        List<S> nextWindow() throws Exception;
+    }
+
+    /**
+     * The fetch stage.
+     */
+    interface Stage<S, T>
+    {
+        T fetch(S item) throws Exception;
+    }
+
+    private static final Object END = new Object();
+
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    private static final ThreadFactory THREAD_FACTORY = runnable -> {
+        Thread thread = new Thread(runnable, "TrackerPipeline-" + THREAD_COUNTER.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    };
+
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(THREAD_FACTORY);
+
+    private final Source<S> source;
+    private final Stage<S, T> stage;
+    private final BlockingQueue<Object> items;
+    private final BlockingQueue<Object> fetched;
+    private final List<Future<?>> tasks;
+
+    /** The current window, in synchronous mode. */
+    private final Deque<S> window = new ArrayDeque<>();
+
+    private boolean ended;
+
+    PrefetchingPipeline(Source<S> source, Stage<S, T> stage, int depth)
+    {
+        this.source = source;
+        this.stage = stage;
+        if (depth > 0)
+        {
+            this.items = new ArrayBlockingQueue<>(depth);
+            this.fetched = new ArrayBlockingQueue<>(depth);
+            this.tasks = List.of(EXECUTOR.submit(this::runSource), EXECUTOR.submit(this::runStage));
+        }
+        else
+        {
+            this.items = null;
+            this.fetched = null;
+            this.tasks = Collections.emptyList();
+        }
+    }
+
+    /**
+     * Waits for the next fetched data.
+     *
+     * @return the fetched data of the next item or null if there are no more items.
+     * @throws IOException if the source or fetch stage failed (with the original failure as cause, unless it was
+     * already an IOException or unchecked).
+     * @throws InterruptedException if the caller thread is interrupted while waiting.
+     */
+    @SuppressWarnings("unchecked")
+    T take() throws IOException, InterruptedException
+    {
+        if (ended)
+        {
+            return null;
+        }
+
+        Object next = fetched != null ? fetched.take() : next();
+        if (next == END)
+        {
+            ended = true;
+            return null;
+        }
+        if (next instanceof Failure)
+        {
+            ended = true;
+            throw ((Failure) next).rethrow();
+        }
+        return (T) next;
+    }
+
+    /**
+     * Stops the source and fetch stages: the items which have not been taken yet are discarded.
+     */
+    @Override
+    public void close()
+    {
+        ended = true;
+        tasks.forEach(task -> task.cancel(true));
+    }
+
+    private Object next()
+    {
+        try
+        {
+            while (window.isEmpty())
+            {
+                List<S> nextWindow = source.nextWindow();
+                if (nextWindow == null)
+                {
+                    return END;
+                }
+                window.addAll(nextWindow);
+            }
+            return stage.fetch(window.poll());
+        }
+        catch (Throwable throwable)
+        {
+            return new Failure(throwable);
+        }
+    }
+
+    private void runSource()
+    {
+        try
+        {
+            List<S> nextWindow;
+            while ((nextWindow = source.nextWindow()) != null)
+            {
+                for (S item : nextWindow)
+                {
+                    items.put(item);
+                }
+            }
+            items.put(END);
+        }
+        catch (InterruptedException exception)
+        {
+            // Closed
+        }
+        catch (Throwable throwable)
+        {
+            putQuietly(items, new Failure(throwable));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void runStage()
+    {
+        try
+        {
+            while (true)
+            {
+                Object item = items.take();
+                if (item == END || item instanceof Failure)
+                {
+                    fetched.put(item);
+                    return;
+                }
+                fetched.put(stage.fetch((S) item));
+            }
+        }
+        catch (InterruptedException exception)
+        {
+            // Closed
+        }
+        catch (Throwable throwable)
+        {
+            putQuietly(fetched, new Failure(throwable));
+        }
+    }
+
+    private static void putQuietly(BlockingQueue<Object> queue, Object item)
+    {
+        try
+        {
+            queue.put(item);
+        }
+        catch (InterruptedException exception)
+        {
+            // Closed
+        }
+    }
+
+    /**
+     * The failure of a stage, passed downstream in place of an item.
+     */
+    private static final class Failure
+    {
+        private final Throwable cause;
+
+        Failure(Throwable cause)
+        {
+            this.cause = cause;
+        }
+
+        IOException rethrow()
+        {
+            if (cause instanceof IOException)
+            {
+                return (IOException) cause;
+            }
+            if (cause instanceof RuntimeException)
+            {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error)
+            {
+                throw (Error) cause;
+            }
+            return new IOException(cause);
+        }
+    }
+}
@@ -63,6 +63,8 @@ import static java.util.Collections.emptyMap;
  *     <li>shard.regex=^\d{4}</li>
  * </ul>
  *
+ * The routing decisions are memoized per node (and property value) in a {@link RoutingCache}.
+ *
  * @author Gethin James
  * @see <a href="https://docs.alfresco.com/search-enterprise/concepts/solr-shard-approaches.html">Search Services sharding methods</a>
  */
@@ -76,6 +78,8 @@ public class PropertyRouter implements DocRouter
     //Fallback to DB_ID routing
     DocRouter fallback = DocRouterFactory.getRouter(null, ShardMethodEnum.DB_ID);
 
+    private final RoutingCache routingCache = new RoutingCache();
+
     public PropertyRouter(String propertyRegEx)
     {
         if (propertyRegEx != null && propertyRegEx.trim().length() > 0)
@@ -103,7 +107,17 @@ public class PropertyRouter implements DocRouter
             return true;
         }
 
-        String shardBy = node.getShardPropertyValue();
+        String propertyValue = node.getShardPropertyValue();
+        if (propertyValue != null)
+        {
+            Boolean cached = routingCache.get(node.getId(), propertyValue, shardCount, shardInstance);
+            if (cached != null)
+            {
+                return cached;
+            }
+        }
+
+        String shardBy = propertyValue;
         if (shardBy !=null && pattern != null)
         {
             try
@@ -132,7 +146,9 @@ public class PropertyRouter implements DocRouter
             return fallback.routeNode(shardCount,shardInstance,node);
         }
 
-        return (Math.abs(Hash.murmurhash3_x86_32(shardBy, 0, shardBy.length(), 66)) % shardCount) == shardInstance;
+        boolean routed = (Math.abs(Hash.murmurhash3_x86_32(shardBy, 0, shardBy.length(), 66)) % shardCount) == shardInstance;
+        routingCache.put(node.getId(), propertyValue, shardCount, shardInstance, routed);
+        return routed;
     }
     
     @Override
@@ -0,0 +1,112 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.solr.tracker;
+
+/**
+ * Memoizes the routing decisions of the nodes routed by a property value, so a node which comes back with the same
+ * value (e.g. updated again by a later transaction, or reindexed) is not routed again.
+ *
+ * It's a fixed size, direct mapped cache: every node id has a single slot, which holds the last node mapped to it.
+ * The entries are immutable, so the cache is shared by the tracker workers without any locking.
+ * The size is set with the "alfresco.routing.cacheSize" system property (0 disables the cache).
+ */
+final class RoutingCache
+{
+    static final int DEFAULT_SIZE = Integer.getInteger("alfresco.routing.cacheSize", 65536);
+
+    private static final int MAX_SIZE = 1 << 24;
+
+    private final Entry[] entries;
+    private final int mask;
+
+    RoutingCache()
+    {
+        this(DEFAULT_SIZE);
+    }
+
+    /**
+     * @param size the number of slots, rounded up to a power of 2 (0 disables the cache).
+     */
+    RoutingCache(int size)
+    {
+        int capacity = size < 1 ? 0 : size == 1 ? 1 : Integer.highestOneBit(Math.min(size, MAX_SIZE) - 1) << 1;
+        this.entries = new Entry[capacity];
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * @return the routing decision of the node or null if it hasn't been cached for the given value and shard.
+     */
+    Boolean get(long nodeId, String value, int shardCount, int shardInstance)
+    {
+        if (entries.length == 0)
+        {
+            return null;
+        }
+
+        Entry entry = entries[slot(nodeId)];
+        return entry != null
+                && entry.nodeId == nodeId
+                && entry.shardCount == shardCount
+                && entry.shardInstance == shardInstance
+                && entry.value.equals(value)
+                    ? entry.routed
+                    : null;
+    }
+
+    void put(long nodeId, String value, int shardCount, int shardInstance, boolean routed)
+    {
+        if (entries.length > 0)
+        {
+            entries[slot(nodeId)] = new Entry(nodeId, value, shardCount, shardInstance, routed);
+        }
+    }
+
+    private int slot(long nodeId)
+    {
+        // Fibonacci hashing: consecutive ids are spread over the whole table
+        return (int) ((nodeId * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+    }
+
+    private static final class Entry
+    {
+        final long nodeId;
+        final String value;
+        final int shardCount;
+        final int shardInstance;
+        final boolean routed;
+
+        Entry(long nodeId, String value, int shardCount, int shardInstance, boolean routed)
+        {
+            this.nodeId = nodeId;
+            this.value = value;
+            this.shardCount = shardCount;
+            this.shardInstance = shardInstance;
+            this.routed = routed;
+        }
+    }
+}
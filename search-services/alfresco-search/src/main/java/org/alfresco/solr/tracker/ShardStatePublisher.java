@@ -40,11 +40,13 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Properties;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Semaphore;
 
 import static java.util.Optional.of;
+import static java.util.Optional.ofNullable;
 import static org.alfresco.solr.tracker.Tracker.Type.NODE_STATE_PUBLISHER;
 
 /**
@@ -55,6 +57,12 @@ import static org.alfresco.solr.tracker.Tracker.Type.NODE_STATE_PUBLISHER;
  * As consequence of that, this class contains only the members needed for obtaining a valid
  * {@link org.alfresco.repo.index.shard.ShardState} that can be periodically communicated to Alfresco.
  *
+ * The state is published only when it meaningfully changes (i.e. last indexed transaction/change set, their commit
+ * times, the shard properties or the master flag) or, while the core is idle, as a heartbeat whose interval doubles
+ * at each idle publication, from "alfresco.shardState.minPublishInterval" up to "alfresco.shardState.maxPublishInterval"
+ * (a max interval lesser than 1 publishes the state at every run). The last observed and published states are kept in
+ * the {@link ShardStateRegistry}.
+ *
  * @author Andrea Gazzarini
  * @since 1.5
  * @see <a href="https://issues.alfresco.com/jira/browse/SEARCH-1752">SEARCH-1752</a>
@@ -65,7 +73,18 @@ public class ShardStatePublisher extends AbstractTracker
     private static final Map<String, Semaphore> RUN_LOCK_BY_CORE = new ConcurrentHashMap<>();
     private static final Map<String, Semaphore> WRITE_LOCK_BY_CORE = new ConcurrentHashMap<>();
 
+    static final String MIN_PUBLISH_INTERVAL = "alfresco.shardState.minPublishInterval";
+    static final String MAX_PUBLISH_INTERVAL = "alfresco.shardState.maxPublishInterval";
+
+    private static final long DEFAULT_MIN_PUBLISH_INTERVAL = 10000;
+    private static final long DEFAULT_MAX_PUBLISH_INTERVAL = 60000;
+
     private final boolean isMaster;
+    private final long minPublishInterval;
+    private final long maxPublishInterval;
+
+    /** Used only if the core doesn't belong to an admin handler (e.g. in tests). */
+    private final ShardStateRegistry localRegistry = new ShardStateRegistry();
 
     public ShardStatePublisher(
             boolean isMaster,
@@ -77,6 +96,10 @@ public class ShardStatePublisher extends AbstractTracker
         super(p, client, coreName, informationServer, NODE_STATE_PUBLISHER);
 
         this.isMaster = isMaster;
+        this.minPublishInterval =
+                Math.max(0, Long.parseLong(p.getProperty(MIN_PUBLISH_INTERVAL, String.valueOf(DEFAULT_MIN_PUBLISH_INTERVAL))));
+        long maxInterval = Long.parseLong(p.getProperty(MAX_PUBLISH_INTERVAL, String.valueOf(DEFAULT_MAX_PUBLISH_INTERVAL)));
+        this.maxPublishInterval = maxInterval < 1 ? 0 : Math.max(minPublishInterval, maxInterval);
 
         RUN_LOCK_BY_CORE.put(coreName, new Semaphore(1, true));
         WRITE_LOCK_BY_CORE.put(coreName, new Semaphore(1, true));
@@ -85,19 +108,131 @@ public class ShardStatePublisher extends AbstractTracker
     @Override
     protected void doTrack(String iterationId)
     {
+        ShardStateRegistry registry = getShardStateRegistry();
+        ShardStateRegistry.Entry previous = registry.get(coreName);
+        ShardState shardstate = getShardState();
+        long now = System.currentTimeMillis();
+        long lastChanged =
+                (previous == null || hasChanged(previous.getShardState(), shardstate))
+                        ? now
+                        : previous.getLastChanged();
+
+        if (!shouldPublish(previous, shardstate, now))
+        {
+            LOGGER.debug("[{} / {}] Shard state unchanged, next publication in {} ms",
+                    coreName, iterationId, previous.getPublishInterval() - (now - previous.getLastPublished()));
+
+            registry.put(coreName,
+                    new ShardStateRegistry.Entry(
+                            shardstate,
+                            previous.getPublishedState(),
+                            lastChanged,
+                            previous.getLastPublished(),
+                            previous.getPublishInterval(),
+                            previous.getSkippedRuns() + 1));
+            return;
+        }
+
         try
         {
-            ShardState shardstate = getShardState();
             client.getTransactions(0L, null, 0L, null, 0, shardstate);
+            registry.put(coreName,
+                    new ShardStateRegistry.Entry(
+                            shardstate,
+                            shardstate,
+                            lastChanged,
+                            now,
+                            nextPublishInterval(previous, shardstate),
+                            0));
         }
         catch (EncoderException | IOException | AuthenticationException exception )
         {
             LOGGER.error("Unable to publish this node state. " +
                     "A failure condition has been met during the outbound subscription message encoding process. " +
                     "See the stacktrace below for further details.", exception);
+
+            // Keep the last published state, so the publication is retried at the next run
+            registry.put(coreName,
+                    new ShardStateRegistry.Entry(
+                            shardstate,
+                            previous != null ? previous.getPublishedState() : null,
+                            lastChanged,
+                            previous != null ? previous.getLastPublished() : 0,
+                            previous != null ? previous.getPublishInterval() : minPublishInterval,
+                            previous != null ? previous.getSkippedRuns() : 0));
         }
     }
 
+    /**
+     * Checks if the given state has to be published: that is if it changed since the last publication or if the
+     * current idle interval expired.
+     *
+     * @param previous the registry entry of the hosting core, null if no state has been observed yet.
+     * @param current the current state of the hosting core.
+     * @param now the current time, in millis.
+     * @return true if the current state has to be published.
+     */
+    boolean shouldPublish(ShardStateRegistry.Entry previous, ShardState current, long now)
+    {
+        if (maxPublishInterval < 1
+                || previous == null
+                || previous.getPublishedState() == null
+                || hasChanged(previous.getPublishedState(), current))
+        {
+            return true;
+        }
+
+        long elapsed = now - previous.getLastPublished();
+        return elapsed < 0 || elapsed >= previous.getPublishInterval();
+    }
+
+    /**
+     * Computes the idle interval after the publication of the given state: the interval restarts from the min value
+     * when the state changed and doubles (up to the max value) when the state didn't change.
+     *
+     * @param previous the registry entry of the hosting core, null if no state has been observed yet.
+     * @param published the state which has just been published.
+     * @return the interval, in millis, after which the state has to be published again if it doesn't change.
+     */
+    long nextPublishInterval(ShardStateRegistry.Entry previous, ShardState published)
+    {
+        if (previous == null
+                || previous.getPublishedState() == null
+                || hasChanged(previous.getPublishedState(), published))
+        {
+            return minPublishInterval;
+        }
+
+        return Math.min(maxPublishInterval, Math.max(minPublishInterval, previous.getPublishInterval() * 2));
+    }
+
+    /**
+     * Compares the parts of two states which are meaningful for Alfresco (the other members, excluding the last
+     * update time, don't change during the lifetime of the publisher).
+     *
+     * @return true if the two states are meaningfully different.
+     */
+    static boolean hasChanged(ShardState previous, ShardState current)
+    {
+        return previous.getLastIndexedTxId() != current.getLastIndexedTxId()
+                || previous.getLastIndexedTxCommitTime() != current.getLastIndexedTxCommitTime()
+                || previous.getLastIndexedChangeSetId() != current.getLastIndexedChangeSetId()
+                || previous.getLastIndexedChangeSetCommitTime() != current.getLastIndexedChangeSetCommitTime()
+                || previous.isMaster() != current.isMaster()
+                || !Objects.equals(previous.getPropertyBag(), current.getPropertyBag());
+    }
+
+    /**
+     * @return the registry of the admin handler which owns the hosting core, a local registry if there's no handler.
+     */
+    ShardStateRegistry getShardStateRegistry()
+    {
+        return ofNullable(infoSrv.getAdminHandler())
+                .map(AlfrescoCoreAdminHandler::getTrackerRegistry)
+                .map(TrackerRegistry::getShardStateRegistry)
+                .orElse(localRegistry);
+    }
+
     @Override
     public void maintenance()
     {
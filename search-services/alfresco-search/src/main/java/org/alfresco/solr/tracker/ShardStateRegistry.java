@@ -0,0 +1,158 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.solr.tracker;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.alfresco.repo.index.shard.ShardState;
+import org.alfresco.solr.TrackerState;
+
+/**
+ * In-process registry of the {@link ShardState} of each core, maintained by the {@link ShardStatePublisher}s.
+ *
+ * Each entry holds the last observed state of the core, the last state which has been published to Alfresco and
+ * the publishing schedule (see {@link ShardStatePublisher}), so the admin reports can read the shard state without
+ * querying the index or calling the repository.
+ */
+public class ShardStateRegistry
+{
+    private final Map<String, Entry> states = new ConcurrentHashMap<>();
+
+    /**
+     * @param coreName the core name.
+     * @return the registry entry of the given core, null if its state has not been observed yet.
+     */
+    public Entry get(String coreName)
+    {
+        return states.get(coreName);
+    }
+
+    /**
+     * @return a read-only view of the registry entries, keyed by core name.
+     */
+    public Map<String, Entry> getShardStates()
+    {
+        return Collections.unmodifiableMap(states);
+    }
+
+    void put(String coreName, Entry entry)
+    {
+        states.put(coreName, entry);
+    }
+
+    public void remove(String coreName)
+    {
+        states.remove(coreName);
+    }
+
+    /**
+     * An immutable snapshot of the state of a core.
+     */
+    public static class Entry
+    {
+        private final ShardState shardState;
+        private final ShardState publishedState;
+        private final long lastChanged;
+        private final long lastPublished;
+        private final long publishInterval;
+        private final long skippedRuns;
+
+        Entry(ShardState shardState, ShardState publishedState, long lastChanged, long lastPublished,
+                    long publishInterval, long skippedRuns)
+        {
+            this.shardState = shardState;
+            this.publishedState = publishedState;
+            this.lastChanged = lastChanged;
+            this.lastPublished = lastPublished;
+            this.publishInterval = publishInterval;
+            this.skippedRuns = skippedRuns;
+        }
+
+        /**
+         * @return the last observed state of the core.
+         */
+        public ShardState getShardState()
+        {
+            return shardState;
+        }
+
+        /**
+         * @return the last state successfully published to Alfresco, null if nothing has been published yet.
+         */
+        public ShardState getPublishedState()
+        {
+            return publishedState;
+        }
+
+        /**
+         * @return the time (in millis) of the last meaningful change of the core state.
+         */
+        public long getLastChanged()
+        {
+            return lastChanged;
+        }
+
+        /**
+         * @return the time (in millis) of the last successful publication, 0 if nothing has been published yet.
+         */
+        public long getLastPublished()
+        {
+            return lastPublished;
+        }
+
+        /**
+         * @return the (idle) interval, in millis, after which the unchanged state is published again.
+         */
+        public long getPublishInterval()
+        {
+            return publishInterval;
+        }
+
+        /**
+         * @return the number of publisher runs skipped since the last publication.
+         */
+        public long getSkippedRuns()
+        {
+            return skippedRuns;
+        }
+
+        /**
+         * @return a {@link TrackerState} holding the last indexed transaction and change set of the core.
+         */
+        public TrackerState toTrackerState()
+        {
+            TrackerState trackerState = new TrackerState();
+            trackerState.setLastIndexedTxId(shardState.getLastIndexedTxId());
+            trackerState.setLastIndexedTxCommitTime(shardState.getLastIndexedTxCommitTime());
+            trackerState.setLastIndexedChangeSetId(shardState.getLastIndexedChangeSetId());
+            trackerState.setLastIndexedChangeSetCommitTime(shardState.getLastIndexedChangeSetCommitTime());
+            return trackerState;
+        }
+    }
+}
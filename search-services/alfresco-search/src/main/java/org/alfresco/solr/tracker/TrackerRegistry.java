@@ -48,6 +48,11 @@ public class TrackerRegistry
      * There is one ModelTracker per Alfresco data schema/repository, and it has no dependency on cores.
      */
     private volatile ModelTracker modelTracker;
+
+    /*
+     * The last observed/published shard state of each core, maintained by the ShardStatePublishers.
+     */
+    private final ShardStateRegistry shardStateRegistry = new ShardStateRegistry();
     
     public Set<String> getCoreNames()
     {
@@ -91,6 +96,7 @@ public class TrackerRegistry
      */
     public boolean removeTrackersForCore(String coreName)
     {
+        shardStateRegistry.remove(coreName);
         return this.trackers.remove(coreName) != null;
     }
 
@@ -103,4 +109,9 @@ public class TrackerRegistry
     {
         this.modelTracker = modelTracker;
     }
+
+    public ShardStateRegistry getShardStateRegistry()
+    {
+        return shardStateRegistry;
+    }
 }
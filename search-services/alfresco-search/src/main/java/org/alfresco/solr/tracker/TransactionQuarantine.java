@@ -0,0 +1,207 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.solr.tracker;
+
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Properties;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.alfresco.solr.client.Transaction;
+
+/**
+ * Keeps track of the transactions whose nodes failed to be indexed when the checkpointed rollback mode is enabled
+ * ("alfresco.rollback.mode" = checkpoint).
+ *
+ * In that mode a failed transaction batch doesn't cause the rollback of the whole index writer: the transactions of
+ * the batch are not marked as indexed and they are retried, one at a time, at the next tracking cycle. A transaction
+ * which fails "alfresco.rollback.maxTransactionFailures" times is quarantined: it is no longer retried until it is
+ * released (e.g. by the REINDEX or RETRY admin actions).
+ *
+ * The quarantine is kept in memory only: it is lost when the core is reloaded or the server is restarted. After that
+ * a poison transaction which is not in the index is fetched again, and it is quarantined again once it has failed
+ * "alfresco.rollback.maxTransactionFailures" times.
+ */
+public class TransactionQuarantine
+{
+    static final String ROLLBACK_MODE = "alfresco.rollback.mode";
+    static final String MAX_TRANSACTION_FAILURES = "alfresco.rollback.maxTransactionFailures";
+
+    static final String FULL_ROLLBACK_MODE = "full";
+    static final String CHECKPOINT_ROLLBACK_MODE = "checkpoint";
+
+    private static final int DEFAULT_MAX_TRANSACTION_FAILURES = 3;
+
+    private final boolean enabled;
+    private final int maxFailures;
+    private final Map<Long, Failure> failures = new ConcurrentHashMap<>();
+
+    TransactionQuarantine(boolean enabled, int maxFailures)
+    {
+        this.enabled = enabled;
+        this.maxFailures = Math.max(1, maxFailures);
+    }
+
+    public static TransactionQuarantine create(Properties p)
+    {
+        return new TransactionQuarantine(
+                CHECKPOINT_ROLLBACK_MODE.equalsIgnoreCase(p.getProperty(ROLLBACK_MODE, FULL_ROLLBACK_MODE).trim()),
+                Integer.parseInt(p.getProperty(MAX_TRANSACTION_FAILURES, String.valueOf(DEFAULT_MAX_TRANSACTION_FAILURES))));
+    }
+
+    /**
+     * @return true if the checkpointed rollback mode is enabled.
+     */
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    /**
+     * Records a failed indexing attempt of the given transaction.
+     *
+     * @param transaction the transaction.
+     * @param cause the cause of the failure.
+     * @return true if the transaction has been quarantined (i.e. it must not be retried).
+     */
+    public boolean recordFailure(Transaction transaction, Throwable cause)
+    {
+        Failure failure = failures.compute(transaction.getId(), (id, previous) ->
+                new Failure(transaction, previous == null ? 1 : previous.getCount() + 1, cause, System.currentTimeMillis()));
+        return failure.getCount() >= maxFailures;
+    }
+
+    /**
+     * Forgets the failures of a transaction which has been successfully indexed.
+     */
+    public void succeeded(Transaction transaction)
+    {
+        if (!failures.isEmpty())
+        {
+            failures.remove(transaction.getId());
+        }
+    }
+
+    /**
+     * @return true if the given transaction has been quarantined.
+     */
+    public boolean isQuarantined(long transactionId)
+    {
+        Failure failure = failures.get(transactionId);
+        return failure != null && failure.getCount() >= maxFailures;
+    }
+
+    /**
+     * Releases a transaction from the quarantine, forgetting its failures.
+     *
+     * @param transactionId the transaction id.
+     * @return the released transaction, null if the transaction was not quarantined.
+     */
+    public Transaction release(long transactionId)
+    {
+        Failure failure = failures.remove(transactionId);
+        return failure != null && failure.getCount() >= maxFailures ? failure.getTransaction() : null;
+    }
+
+    /**
+     * @return the quarantined transactions, sorted by id.
+     */
+    public SortedMap<Long, Failure> getQuarantinedTransactions()
+    {
+        SortedMap<Long, Failure> quarantined = new TreeMap<>();
+        failures.forEach((id, failure) -> {
+            if (failure.getCount() >= maxFailures)
+            {
+                quarantined.put(id, failure);
+            }
+        });
+        return Collections.unmodifiableSortedMap(quarantined);
+    }
+
+    /**
+     * Checks if the given failure has been caused by the communication with the repository (i.e. it isn't related
+     * to the transactions which were being indexed).
+     */
+    static boolean isCommunicationFailure(Throwable failure)
+    {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause())
+        {
+            if (cause instanceof SocketTimeoutException || cause instanceof ConnectException)
+            {
+                return true;
+            }
+            if (cause.getCause() == cause)
+            {
+                break;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The failed indexing attempts of a transaction.
+     */
+    public static class Failure
+    {
+        private final Transaction transaction;
+        private final int count;
+        private final Throwable cause;
+        private final long lastFailureTime;
+
+        Failure(Transaction transaction, int count, Throwable cause, long lastFailureTime)
+        {
+            this.transaction = transaction;
+            this.count = count;
+            this.cause = cause;
+            this.lastFailureTime = lastFailureTime;
+        }
+
+        public Transaction getTransaction()
+        {
+            return transaction;
+        }
+
+        public int getCount()
+        {
+            return count;
+        }
+
+        public Throwable getCause()
+        {
+            return cause;
+        }
+
+        public long getLastFailureTime()
+        {
+            return lastFailureTime;
+        }
+    }
+}
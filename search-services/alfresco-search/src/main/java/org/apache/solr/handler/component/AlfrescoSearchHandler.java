@@ -48,6 +48,7 @@ import java.util.stream.Stream;
 import org.alfresco.error.AlfrescoRuntimeException;
 import org.alfresco.solr.AlfrescoSolrDataModel;
 import org.alfresco.solr.query.AbstractQParser;
+import org.alfresco.solr.query.SegmentParallelSearch;
 import org.apache.cxf.transport.http.auth.HttpAuthHeader;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.index.ExitableDirectoryReader;
@@ -366,6 +367,8 @@ public class AlfrescoSearchHandler extends RequestHandlerBase implements
 			if (timeAllowed > 0L) {
 				SolrQueryTimeoutImpl.set(timeAllowed);
 			}
+			// Opt-in: the per-segment work of the query can be split across a thread budget
+			boolean segmentParallel = SegmentParallelSearch.begin(req);
 			try {
 				// The semantics of debugging vs not debugging are different
 				// enough that
@@ -390,7 +393,7 @@ public class AlfrescoSearchHandler extends RequestHandlerBase implements
 						rb.addDebugInfo("timing", timer.asNamedList());
 					}
 				}
-			} catch (ExitableDirectoryReader.ExitingReaderException ex) {
+			} catch (ExitableDirectoryReader.ExitingReaderException | SegmentParallelSearch.TimeExceededException ex) {
 				log.warn("Query: " + req.getParamString() + "; "
 						+ ex.getMessage());
 				SolrDocumentList r = (SolrDocumentList) rb.rsp.getValues().get(
@@ -407,6 +410,9 @@ public class AlfrescoSearchHandler extends RequestHandlerBase implements
 				rb.rsp.getResponseHeader().add("partialResults", Boolean.TRUE);
 			} finally {
 				SolrQueryTimeoutImpl.reset();
+				if (segmentParallel) {
+					SegmentParallelSearch.end(req);
+				}
 			}
 
 			if (req.getParams().getBool("alfresco.getSolrDocumentList", false)) {
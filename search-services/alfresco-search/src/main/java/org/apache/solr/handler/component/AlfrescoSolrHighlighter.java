@@ -28,6 +28,7 @@ package org.apache.solr.handler.component;
 
 import static java.lang.String.join;
 import static java.util.Arrays.stream;
+import static java.util.function.Function.identity;
 import static java.util.Optional.ofNullable;
 import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toMap;
@@ -36,6 +37,8 @@ import org.alfresco.solr.AlfrescoSolrDataModel;
 import org.alfresco.solr.AlfrescoSolrDataModel.FieldUse;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.document.Document;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.ReaderUtil;
 import org.apache.lucene.index.Terms;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.highlight.Highlighter;
@@ -50,6 +53,7 @@ import org.apache.solr.common.util.SimpleOrderedMap;
 import org.apache.solr.core.SolrCore;
 import org.apache.solr.highlight.DefaultSolrHighlighter;
 import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.schema.SchemaField;
 import org.apache.solr.search.DocList;
 import org.apache.solr.search.SolrIndexSearcher;
 import org.apache.solr.util.plugin.PluginInfoInitialized;
@@ -57,13 +61,19 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.AbstractMap;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.function.Predicate;
 import java.util.stream.StreamSupport;
 
@@ -84,6 +94,10 @@ import java.util.stream.StreamSupport;
  * At the end of the highlighting process the same mappings are used for doing the reverse process (replace the Solr
  * fields with the original requested fields).
  *
+ * The stored fields whose type indexes the term offsets are highlighted by the {@link OffsetHighlighter}, which reads
+ * the offsets from the postings instead of analyzing the stored text again; the documents of the page are highlighted
+ * in parallel. All the other fields (and the queries whose terms cannot be listed) go through the Solr highlighter.
+ *
  * Additionally, since the Solr ID has no meaning outside Solr, the Highlighter adds the DBID to each highlighting
  * snippets:
  *
@@ -306,11 +320,37 @@ public class AlfrescoSolrHighlighter extends DefaultSolrHighlighter implements P
 				StreamSupport.stream(iterable.spliterator(), false)
 					.map(docid -> identifiersEntry(request.getSearcher(), docid, idFields, idFieldName))
 					.filter(Objects::nonNull)
-					.collect(toMap(AbstractMap.SimpleEntry::getKey, AbstractMap.SimpleEntry::getValue));
+					.collect(toMap(AbstractMap.SimpleEntry::getKey, AbstractMap.SimpleEntry::getValue, (prev, next) -> next, LinkedHashMap::new));
+
+		// Fields with indexed offsets are highlighted without analyzing their stored text again, using the query terms
+		// of their own search fields
+		Map<String, Set<String>> offsetFields = new HashMap<>();
+		if (isOffsetHighlightingEnabled(request))
+		{
+			List<LeafReaderContext> leaves = request.getSearcher().getTopReaderContext().leaves();
+			for (String solrFieldName : mappings.keySet())
+			{
+				Set<String> queryTerms =
+						hasIndexedOffsets(request, solrFieldName, leaves)
+								? OffsetHighlighter.extractTerms(query, solrFieldName)
+								: null;
+				if (queryTerms != null)
+				{
+					offsetFields.put(solrFieldName, queryTerms);
+				}
+			}
+		}
+		List<String> solrHighlighterFields =
+				mappings.keySet().stream().filter(solrFieldName -> !offsetFields.containsKey(solrFieldName)).collect(toList());
 
 		// First round: call the Solr highlighting procedure using the current fields mappings.
-		request.setParams(rewrite(originalRequestParameters, mappings, join(",", mappings.keySet())));
-		NamedList<Object> highlightingResponse = super.doHighlighting(docs, query, request, defaultFields);
+		request.setParams(rewrite(originalRequestParameters, mappings, join(",", solrHighlighterFields)));
+		NamedList<Object> highlightingResponse =
+				solrHighlighterFields.isEmpty()
+						? emptyHighlighting(identifiers.keySet())
+						: super.doHighlighting(docs, query, request, defaultFields);
+		Map<String, NamedList<Object>> offsetHighlightingResponse =
+				highlightWithOffsets(docs, request, offsetFields, idFieldName);
 
         // Final step: under each document section, highlight snippets are associated with Solr field names,
 		// so we need to replace them with fields actually requested
@@ -319,8 +359,9 @@ public class AlfrescoSolrHighlighter extends DefaultSolrHighlighter implements P
 		highlightingResponse.forEach( entry -> {
 					String id = entry.getKey();
 					NamedList<Object> documentHighlighting = (NamedList<Object>) entry.getValue();
+					NamedList<Object> offsetDocumentHighlighting = offsetHighlightingResponse.get(id);
 					NamedList<Object> renamedDocumentHighlighting = new SimpleOrderedMap<>();
-					if (notNullAndNotEmpty.test(documentHighlighting))
+					if (notNullAndNotEmpty.test(documentHighlighting) || notNullAndNotEmpty.test(offsetDocumentHighlighting))
 					{
 						ofNullable(identifiers.get(id))
 								.map(DocumentIdentifiers::dbid)
@@ -335,12 +376,123 @@ public class AlfrescoSolrHighlighter extends DefaultSolrHighlighter implements P
 						renamedDocumentHighlighting.add(requestFieldName, fieldEntry.getValue());
 					});
 
+					// Offset-based snippets never contain the locale marker
+					if (offsetDocumentHighlighting != null)
+					{
+						offsetDocumentHighlighting.forEach(fieldEntry ->
+								renamedDocumentHighlighting.add(mappings.get(fieldEntry.getKey()), fieldEntry.getValue()));
+					}
+
 					response.add(id, renamedDocumentHighlighting);
 				});
 
 		return response;
 	}
 
+	private NamedList<Object> emptyHighlighting(Set<String> ids)
+	{
+		NamedList<Object> highlighting = new SimpleOrderedMap<>();
+		ids.forEach(id -> highlighting.add(id, new SimpleOrderedMap<>()));
+		return highlighting;
+	}
+
+	private boolean isOffsetHighlightingEnabled(SolrQueryRequest request)
+	{
+		String enabled = request.getCore().getResourceLoader().getCoreProperties().getProperty(OffsetHighlighter.ENABLED, "true");
+		return request.getParams().getBool(OffsetHighlighter.ENABLED, Boolean.parseBoolean(enabled));
+	}
+
+	/**
+	 * Checks if the given (schema) field can be highlighted using the offsets indexed in its postings.
+	 *
+	 * @param request the current request.
+	 * @param solrFieldName the stored field used for highlighting.
+	 * @param leaves the leaves of the current searcher.
+	 * @return true if the field offsets are indexed in all the segments and no option requires the Solr highlighter.
+	 */
+	private boolean hasIndexedOffsets(SolrQueryRequest request, String solrFieldName, List<LeafReaderContext> leaves)
+	{
+		SchemaField schemaField = request.getSchema().getFieldOrNull(solrFieldName);
+		SolrParams params = request.getParams();
+		return schemaField != null
+				&& schemaField.indexed()
+				&& schemaField.stored()
+				&& !schemaField.multiValued()
+				&& schemaField.storeOffsetsWithPositions()
+				&& params.getFieldParam(solrFieldName, HighlightParams.ALTERNATE_FIELD) == null
+				&& !params.getFieldBool(solrFieldName, HighlightParams.FIELD_MATCH, false)
+				&& OffsetHighlighter.hasOffsets(leaves, solrFieldName);
+	}
+
+	/**
+	 * Highlights the given fields of each document using the {@link OffsetHighlighter}. The documents are highlighted in
+	 * parallel.
+	 *
+	 * @param fields the query terms of each field.
+	 *
+	 * @return the highlighting snippets (by schema field) of each document, by Solr id.
+	 */
+	private Map<String, NamedList<Object>> highlightWithOffsets(DocList docs, SolrQueryRequest request, Map<String, Set<String>> fields, String idFieldName) throws IOException
+	{
+		if (fields.isEmpty())
+		{
+			return Collections.emptyMap();
+		}
+
+		SolrIndexSearcher searcher = request.getSearcher();
+		List<LeafReaderContext> leaves = searcher.getTopReaderContext().leaves();
+		Map<String, OffsetHighlighter> highlighters =
+				fields.keySet().stream().collect(toMap(identity(), field -> new OffsetHighlighter(fields.get(field))));
+		Map<String, OffsetHighlighter.FieldOptions> options =
+				fields.keySet().stream().collect(toMap(identity(), field -> OffsetHighlighter.FieldOptions.of(request.getParams(), field)));
+		Set<String> storedFields = new HashSet<>(fields.keySet());
+		storedFields.add(idFieldName);
+
+		Iterable<Integer> iterable = docs::iterator;
+		List<CompletableFuture<AbstractMap.SimpleEntry<String, NamedList<Object>>>> documents =
+				StreamSupport.stream(iterable.spliterator(), false)
+					.map(docid -> CompletableFuture.supplyAsync(() -> {
+						try
+						{
+							Document document = searcher.doc(docid, storedFields);
+							LeafReaderContext leaf = leaves.get(ReaderUtil.subIndex(docid, leaves));
+							NamedList<Object> documentHighlighting = new SimpleOrderedMap<>();
+							for (String field : fields.keySet())
+							{
+								String[] snippets = highlighters.get(field).highlight(leaf.reader(), docid - leaf.docBase, field, document.get(field), options.get(field));
+								if (snippets.length > 0)
+								{
+									documentHighlighting.add(field, snippets);
+								}
+							}
+							return new AbstractMap.SimpleEntry<>(document.get(idFieldName), documentHighlighting);
+						}
+						catch (IOException exception)
+						{
+							throw new UncheckedIOException(exception);
+						}
+					}, OffsetHighlighter.EXECUTOR))
+					.collect(toList());
+
+		Map<String, NamedList<Object>> response = new HashMap<>();
+		try
+		{
+			documents.stream()
+					.map(CompletableFuture::join)
+					.filter(entry -> entry.getKey() != null)
+					.forEach(entry -> response.put(entry.getKey(), entry.getValue()));
+		}
+		catch (CompletionException exception)
+		{
+			if (exception.getCause() instanceof UncheckedIOException)
+			{
+				throw ((UncheckedIOException) exception.getCause()).getCause();
+			}
+			throw exception;
+		}
+		return response;
+	}
+
 	/**
 	 * Remember the stored field, used for highlighting, contains a locale marker prefix which has to be removed
 	 * before returning back the response.
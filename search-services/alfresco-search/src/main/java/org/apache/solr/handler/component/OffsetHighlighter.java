@@ -0,0 +1,585 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.apache.solr.handler.component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.alfresco.solr.ContextAwareQuery;
+import org.alfresco.solr.query.AbstractAuthorityQuery;
+import org.alfresco.solr.query.AbstractAuthoritySetQuery;
+import org.alfresco.solr.query.PostFilterQuery;
+import org.alfresco.solr.query.SolrCachingPathQuery;
+import org.alfresco.solr.query.SolrPathQuery;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.ConstantScoreQuery;
+import org.apache.lucene.search.DisjunctionMaxQuery;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.MatchNoDocsQuery;
+import org.apache.lucene.search.MultiPhraseQuery;
+import org.apache.lucene.search.PhraseQuery;
+import org.apache.lucene.search.PointRangeQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.SynonymQuery;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.highlight.SimpleHTMLEncoder;
+import org.apache.lucene.search.spans.SpanNearQuery;
+import org.apache.lucene.search.spans.SpanOrQuery;
+import org.apache.lucene.search.spans.SpanQuery;
+import org.apache.lucene.search.spans.SpanTermQuery;
+import org.apache.lucene.util.BytesRef;
+import org.apache.solr.common.params.HighlightParams;
+import org.apache.solr.common.params.SolrParams;
+
+/**
+ * Builds the highlighting snippets of a stored text field from the term offsets indexed in its postings, so the
+ * stored text is never analyzed again at query time.
+ *
+ * It works on the (single valued) stored fields whose type indexes the offsets (see the "localePrefixedField" type in
+ * the schema). The query terms are flattened (phrases and spans are highlighted term by term, like the Lucene
+ * postings highlighter does) and their locale marker is removed, as done by the query scorer of the
+ * {@link AlfrescoSolrHighlighter}. Queries with terms that cannot be listed (e.g. wildcards) are left to the default
+ * highlighter.
+ *
+ * Only the matches within the first hl.maxAnalyzedChars characters are considered. Each snippet is a window of
+ * hl.fragsize characters (the whole value if 0) over the densest groups of matches: the snippets with more distinct
+ * terms come first.
+ */
+final class OffsetHighlighter
+{
+    /** Core property which enables the offset-based highlighting on the fields that index the offsets. */
+    static final String ENABLED = "alfresco.highlighting.offsets";
+
+    static final int MAX_PARALLELISM =
+            Integer.getInteger("alfresco.highlighting.maxParallelism", Runtime.getRuntime().availableProcessors());
+
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    private static final ThreadFactory THREAD_FACTORY = runnable -> {
+        Thread thread = new Thread(runnable, "OffsetHighlighter-" + THREAD_COUNTER.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    };
+
+    /** Documents of the same page are highlighted in parallel on this (JVM-wide) pool. */
+    static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(MAX_PARALLELISM, THREAD_FACTORY);
+
+    private static final int DEFAULT_MAX_ANALYZED_CHARS = 51200;
+    private static final int MAX_BOUNDARY_SCAN = 32;
+
+    /** The locale marker added by the MLAnalyser at the beginning of each token (e.g. {en}, {en_GB}). */
+    private static final Pattern LOCALE_MARKER = Pattern.compile("\\{[a-zA-Z]*(_[a-zA-Z0-9]*)*}");
+
+    private final BytesRef[] terms;
+
+    /**
+     * @param terms the query terms, without the locale marker.
+     */
+    OffsetHighlighter(Set<String> terms)
+    {
+        this.terms = terms.stream().map(BytesRef::new).toArray(BytesRef[]::new);
+    }
+
+    /**
+     * The highlighting options of a field.
+     */
+    static final class FieldOptions
+    {
+        final int fragsize;
+        final int snippets;
+        final int maxAnalyzedChars;
+        final String pre;
+        final String post;
+        final boolean html;
+
+        FieldOptions(int fragsize, int snippets, int maxAnalyzedChars, String pre, String post, boolean html)
+        {
+            this.fragsize = Math.max(0, fragsize);
+            this.snippets = Math.max(1, snippets);
+            this.maxAnalyzedChars = maxAnalyzedChars < 0 ? Integer.MAX_VALUE : maxAnalyzedChars;
+            this.pre = pre;
+            this.post = post;
+            this.html = html;
+        }
+
+        static FieldOptions of(SolrParams params, String field)
+        {
+            return new FieldOptions(
+                    params.getFieldInt(field, HighlightParams.FRAGSIZE, 100),
+                    params.getFieldInt(field, HighlightParams.SNIPPETS, 1),
+                    params.getFieldInt(field, HighlightParams.MAX_CHARS, DEFAULT_MAX_ANALYZED_CHARS),
+                    params.getFieldParam(field, HighlightParams.TAG_PRE,
+                            params.getFieldParam(field, HighlightParams.SIMPLE_PRE, "<em>")),
+                    params.getFieldParam(field, HighlightParams.TAG_POST,
+                            params.getFieldParam(field, HighlightParams.SIMPLE_POST, "</em>")),
+                    "html".equals(params.getFieldParam(field, HighlightParams.ENCODER)));
+        }
+    }
+
+    /**
+     * Collects the terms of the given query which target the search fields fed by the given stored field, removing
+     * their locale marker. Terms of other fields (e.g. the QNames of TYPE or ASPECT clauses) are ignored.
+     *
+     * @param query the highlighting query.
+     * @param field the stored field being highlighted.
+     * @return the terms of the query or null if the query contains clauses whose terms cannot be listed.
+     */
+    static Set<String> extractTerms(Query query, String field)
+    {
+        String property = propertyOf(field);
+        Set<String> terms = new LinkedHashSet<>();
+        return collectTerms(query, term -> property != null && property.equals(propertyOf(term.field())), terms) ? terms : null;
+    }
+
+    /**
+     * The stored field and the search fields it is copied to share the same property suffix
+     * (e.g. text@s_stored_lt@{http://www.alfresco.org/model/content/1.0}name and text@s____@{http://www.alfresco.org/model/content/1.0}name).
+     *
+     * @return the property suffix of the given field or null if the field is not a property field.
+     */
+    private static String propertyOf(String field)
+    {
+        int startOfProperty = field.lastIndexOf("@{");
+        return startOfProperty == -1 ? null : field.substring(startOfProperty + 1);
+    }
+
+    private static boolean collectTerms(Query query, Predicate<Term> sourceField, Set<String> terms)
+    {
+        if (query instanceof TermQuery)
+        {
+            addTerm(((TermQuery) query).getTerm(), sourceField, terms);
+        }
+        else if (query instanceof BooleanQuery)
+        {
+            for (BooleanClause clause : ((BooleanQuery) query).clauses())
+            {
+                if (clause.getOccur() != BooleanClause.Occur.MUST_NOT && !collectTerms(clause.getQuery(), sourceField, terms))
+                {
+                    return false;
+                }
+            }
+        }
+        else if (query instanceof BoostQuery)
+        {
+            return collectTerms(((BoostQuery) query).getQuery(), sourceField, terms);
+        }
+        else if (query instanceof ConstantScoreQuery)
+        {
+            return collectTerms(((ConstantScoreQuery) query).getQuery(), sourceField, terms);
+        }
+        else if (query instanceof ContextAwareQuery)
+        {
+            return collectTerms(((ContextAwareQuery) query).getLuceneQuery(), sourceField, terms);
+        }
+        else if (query instanceof DisjunctionMaxQuery)
+        {
+            for (Query disjunct : ((DisjunctionMaxQuery) query).getDisjuncts())
+            {
+                if (!collectTerms(disjunct, sourceField, terms))
+                {
+                    return false;
+                }
+            }
+        }
+        else if (query instanceof PhraseQuery)
+        {
+            Arrays.stream(((PhraseQuery) query).getTerms()).forEach(term -> addTerm(term, sourceField, terms));
+        }
+        else if (query instanceof MultiPhraseQuery)
+        {
+            Arrays.stream(((MultiPhraseQuery) query).getTermArrays())
+                    .flatMap(Arrays::stream)
+                    .forEach(term -> addTerm(term, sourceField, terms));
+        }
+        else if (query instanceof SynonymQuery)
+        {
+            ((SynonymQuery) query).getTerms().forEach(term -> addTerm(term, sourceField, terms));
+        }
+        else if (query instanceof SpanTermQuery)
+        {
+            addTerm(((SpanTermQuery) query).getTerm(), sourceField, terms);
+        }
+        else if (query instanceof SpanNearQuery || query instanceof SpanOrQuery)
+        {
+            SpanQuery[] clauses = query instanceof SpanNearQuery
+                    ? ((SpanNearQuery) query).getClauses()
+                    : ((SpanOrQuery) query).getClauses();
+            for (SpanQuery clause : clauses)
+            {
+                if (!collectTerms(clause, sourceField, terms))
+                {
+                    return false;
+                }
+            }
+        }
+        else
+        {
+            // Queries which never contribute to the highlighting
+            return query == null
+                    || query instanceof MatchAllDocsQuery
+                    || query instanceof MatchNoDocsQuery
+                    || query instanceof PointRangeQuery
+                    || query instanceof AbstractAuthorityQuery
+                    || query instanceof AbstractAuthoritySetQuery
+                    || query instanceof PostFilterQuery
+                    || query instanceof SolrPathQuery
+                    || query instanceof SolrCachingPathQuery;
+        }
+        return true;
+    }
+
+    private static void addTerm(Term term, Predicate<Term> sourceField, Set<String> terms)
+    {
+        if (!sourceField.test(term))
+        {
+            return;
+        }
+
+        String text = term.text();
+        Matcher localeMarker = LOCALE_MARKER.matcher(text);
+        if (localeMarker.lookingAt() && text.length() > localeMarker.end())
+        {
+            text = text.substring(localeMarker.end());
+        }
+        terms.add(text);
+    }
+
+    /**
+     * Checks if all the segments which contain the given field index its offsets.
+     *
+     * @param leaves the index leaves.
+     * @param field the stored field.
+     * @return true if the field offsets can be read from the postings.
+     */
+    static boolean hasOffsets(List<LeafReaderContext> leaves, String field)
+    {
+        for (LeafReaderContext leaf : leaves)
+        {
+            FieldInfo info = leaf.reader().getFieldInfos().fieldInfo(field);
+            if (info != null && info.getIndexOptions().compareTo(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS_AND_OFFSETS) < 0)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Builds the snippets of a field of a document.
+     *
+     * @param reader the segment reader.
+     * @param doc the segment document id.
+     * @param field the stored field, whose offsets are indexed.
+     * @param value the stored value of the field.
+     * @param options the highlighting options of the field.
+     * @return the snippets or an empty array if there are no matches.
+     * @throws IOException in case of failure while reading the postings.
+     */
+    String[] highlight(LeafReader reader, int doc, String field, String value, FieldOptions options) throws IOException
+    {
+        if (value == null)
+        {
+            return new String[0];
+        }
+
+        int limit = Math.min(value.length(), options.maxAnalyzedChars);
+        Matches matches = matches(reader, doc, field, limit);
+        if (matches.size == 0)
+        {
+            return new String[0];
+        }
+
+        int markerLength = localeMarkerLength(value);
+        if (options.fragsize == 0)
+        {
+            return new String[] { snippet(value, markerLength, limit, matches, 0, options) };
+        }
+
+        List<int[]> passages = passages(matches, options);
+        String[] snippets = new String[passages.size()];
+        for (int i = 0; i < snippets.length; i++)
+        {
+            int[] passage = passages.get(i);
+            int first = matches.starts[passage[0]];
+            int last = matches.ends[passage[1] - 1];
+
+            int slack = Math.max(0, options.fragsize - (last - first));
+            int start = Math.max(markerLength, first - slack / 2);
+            int end = Math.min(limit, Math.max(last, start + options.fragsize));
+            start = Math.max(markerLength, Math.min(start, Math.max(0, end - options.fragsize)));
+
+            snippets[i] = snippet(value, wordStart(value, start, first, markerLength), wordEnd(value, end, last, limit),
+                        matches, passage[0], options);
+        }
+        return snippets;
+    }
+
+    /**
+     * The (sorted, non overlapping) offsets of the query terms in a field of a document.
+     */
+    static final class Matches
+    {
+        int[] starts = new int[16];
+        int[] ends = new int[16];
+        int[] termIds = new int[16];
+        int size;
+
+        void add(int start, int end, int termId)
+        {
+            if (size == starts.length)
+            {
+                starts = Arrays.copyOf(starts, size * 2);
+                ends = Arrays.copyOf(ends, size * 2);
+                termIds = Arrays.copyOf(termIds, size * 2);
+            }
+            starts[size] = start;
+            ends[size] = end;
+            termIds[size] = termId;
+            size++;
+        }
+
+        /**
+         * Sorts the matches by offset and merges the overlapping ones (e.g. stemmed and original tokens).
+         */
+        void sortAndMerge()
+        {
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++)
+            {
+                order[i] = i;
+            }
+            Arrays.sort(order, Comparator.<Integer>comparingInt(i -> starts[i]).thenComparingInt(i -> -ends[i]));
+
+            int[] sortedStarts = new int[Math.max(16, size)];
+            int[] sortedEnds = new int[sortedStarts.length];
+            int[] sortedTermIds = new int[sortedStarts.length];
+            int merged = 0;
+            for (int i : order)
+            {
+                if (merged > 0 && starts[i] < sortedEnds[merged - 1])
+                {
+                    sortedEnds[merged - 1] = Math.max(sortedEnds[merged - 1], ends[i]);
+                    continue;
+                }
+                sortedStarts[merged] = starts[i];
+                sortedEnds[merged] = ends[i];
+                sortedTermIds[merged] = termIds[i];
+                merged++;
+            }
+            starts = sortedStarts;
+            ends = sortedEnds;
+            termIds = sortedTermIds;
+            size = merged;
+        }
+    }
+
+    private Matches matches(LeafReader reader, int doc, String field, int limit) throws IOException
+    {
+        Matches matches = new Matches();
+        Terms fieldTerms = reader.terms(field);
+        if (fieldTerms == null)
+        {
+            return matches;
+        }
+
+        TermsEnum termsEnum = fieldTerms.iterator();
+        PostingsEnum postings = null;
+        for (int termId = 0; termId < terms.length; termId++)
+        {
+            if (!termsEnum.seekExact(terms[termId]))
+            {
+                continue;
+            }
+
+            postings = termsEnum.postings(postings, PostingsEnum.OFFSETS);
+            if (postings.advance(doc) != doc)
+            {
+                continue;
+            }
+
+            for (int i = postings.freq(); i > 0; i--)
+            {
+                postings.nextPosition();
+                int start = postings.startOffset();
+                int end = postings.endOffset();
+                if (start >= 0 && end <= limit && start < end)
+                {
+                    matches.add(start, end, termId);
+                }
+            }
+        }
+        matches.sortAndMerge();
+        return matches;
+    }
+
+    /**
+     * Selects the best (at most hl.snippets) non overlapping groups of matches which fit in hl.fragsize characters.
+     *
+     * @return the [first, last) match indexes of each passage, best first.
+     */
+    private List<int[]> passages(Matches matches, FieldOptions options)
+    {
+        List<int[]> candidates = new ArrayList<>();
+        BitSet distinct = new BitSet(terms.length);
+        for (int first = 0; first < matches.size; first++)
+        {
+            distinct.clear();
+            int last = first;
+            do
+            {
+                distinct.set(matches.termIds[last]);
+                last++;
+            }
+            while (last < matches.size && matches.ends[last] - matches.starts[first] <= options.fragsize);
+
+            // distinct terms first, then number of matches, then position
+            candidates.add(new int[] { first, last, distinct.cardinality(), last - first });
+        }
+        candidates.sort(Comparator.<int[]>comparingInt(c -> -c[2]).thenComparingInt(c -> -c[3]).thenComparingInt(c -> c[0]));
+
+        List<int[]> passages = new ArrayList<>(options.snippets);
+        for (int[] candidate : candidates)
+        {
+            boolean overlaps = passages.stream().anyMatch(p -> candidate[0] < p[1] && p[0] < candidate[1]);
+            if (!overlaps)
+            {
+                passages.add(candidate);
+                if (passages.size() == options.snippets)
+                {
+                    break;
+                }
+            }
+        }
+        return passages;
+    }
+
+    private static String snippet(String value, int start, int end, Matches matches, int from, FieldOptions options)
+    {
+        // Include the matches which precede the passage but fall in the snippet window
+        int match = from;
+        while (match > 0 && matches.starts[match - 1] >= start)
+        {
+            match--;
+        }
+
+        StringBuilder snippet = new StringBuilder(end - start + 16);
+        int position = start;
+        for (; match < matches.size && matches.starts[match] < end; match++)
+        {
+            if (matches.starts[match] < position || matches.ends[match] > end)
+            {
+                continue;
+            }
+            append(snippet, value.substring(position, matches.starts[match]), options);
+            snippet.append(options.pre);
+            append(snippet, value.substring(matches.starts[match], matches.ends[match]), options);
+            snippet.append(options.post);
+            position = matches.ends[match];
+        }
+        append(snippet, value.substring(position, end), options);
+        return snippet.toString().trim();
+    }
+
+    private static void append(StringBuilder snippet, String text, FieldOptions options)
+    {
+        snippet.append(options.html ? SimpleHTMLEncoder.htmlEncode(text) : text);
+    }
+
+    /**
+     * Moves the snippet start forward to the beginning of a word (without skipping the first match).
+     */
+    private static int wordStart(String value, int start, int firstMatch, int markerLength)
+    {
+        if (start <= markerLength || Character.isWhitespace(value.charAt(start - 1)))
+        {
+            return start;
+        }
+        for (int i = start; i < firstMatch && i < start + MAX_BOUNDARY_SCAN; i++)
+        {
+            if (Character.isWhitespace(value.charAt(i)))
+            {
+                return i + 1;
+            }
+        }
+        return start;
+    }
+
+    /**
+     * Moves the snippet end back to the end of a word (without cutting the last match).
+     */
+    private static int wordEnd(String value, int end, int lastMatch, int limit)
+    {
+        if (end >= limit || Character.isWhitespace(value.charAt(end)))
+        {
+            return end;
+        }
+        for (int i = end; i > lastMatch && i > end - MAX_BOUNDARY_SCAN; i--)
+        {
+            if (Character.isWhitespace(value.charAt(i - 1)))
+            {
+                return i - 1;
+            }
+        }
+        return end;
+    }
+
+    /**
+     * The stored values start with a locale marker (\u0000 + language + \u0000) which is not part of the snippets.
+     */
+    static int localeMarkerLength(String value)
+    {
+        if (value.isEmpty() || value.charAt(0) != '\u0000')
+        {
+            return 0;
+        }
+        int end = value.indexOf('\u0000', 1);
+        return end == -1 ? 0 : end + 1;
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.solr;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.util.List;
+
+import org.alfresco.solr.tracker.TrackerStats;
+import org.apache.lucene.analysis.core.WhitespaceAnalyzer;
+import org.junit.Test;
+
+/**
+ * Tests {@link ContentFingerprintGenerator}.
+ */
+public class ContentFingerprintGeneratorTest
+{
+    @Test
+    public void encodingIsTheSameOfIntegerToHexString()
+    {
+        char[] token = { 0, 1, 0xF, 0x10, 0xABC, 0xFFFF, 'a', '\u20ac' };
+
+        StringBuilder expected = new StringBuilder();
+        for (char c : token)
+        {
+            expected.append(Integer.toHexString(c));
+        }
+
+        assertEquals(expected.toString(), ContentFingerprintGenerator.encode(token, token.length));
+    }
+
+    @Test
+    public void onlyTheFirstLengthCharsAreEncoded()
+    {
+        char[] token = { 'a', 'b', 'c' };
+        assertEquals(Integer.toHexString('a'), ContentFingerprintGenerator.encode(token, 1));
+    }
+
+    @Test
+    public void textIsTruncatedBeforeBeingAnalyzed()
+    {
+        ContentFingerprintGenerator generator = new ContentFingerprintGenerator(5, new TrackerStats(mock(InformationServerCollectionProvider.class)));
+
+        List<String> hashes = generator.fingerprint(new WhitespaceAnalyzer(), "abc defgh").join();
+
+        assertEquals(asList(hex("abc"), hex("d")), hashes);
+    }
+
+    @Test
+    public void onlyTheTextRegionAfterTheOffsetIsAnalyzed()
+    {
+        ContentFingerprintGenerator generator = new ContentFingerprintGenerator(0, new TrackerStats(mock(InformationServerCollectionProvider.class)));
+
+        List<String> hashes = generator.fingerprint(new WhitespaceAnalyzer(), "\u0000en\u0000abc defgh", 4).join();
+
+        assertEquals(asList(hex("abc"), hex("defgh")), hashes);
+    }
+
+    @Test
+    public void blankTextHasNoFingerprint()
+    {
+        ContentFingerprintGenerator generator = new ContentFingerprintGenerator(0, new TrackerStats(mock(InformationServerCollectionProvider.class)));
+        assertTrue(generator.fingerprint(new WhitespaceAnalyzer(), "   ").join().isEmpty());
+        assertTrue(generator.fingerprint(new WhitespaceAnalyzer(), "\u0000en\u0000 ", 4).join().isEmpty());
+    }
+
+    private String hex(String value)
+    {
+        return ContentFingerprintGenerator.encode(value.toCharArray(), value.length());
+    }
+}
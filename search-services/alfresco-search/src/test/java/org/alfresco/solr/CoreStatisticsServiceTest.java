@@ -0,0 +1,168 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.solr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.Collections;
+
+import org.apache.solr.core.SolrCore;
+import org.apache.solr.core.SolrEventListener;
+import org.apache.solr.search.SolrIndexSearcher;
+import org.apache.solr.util.RefCounted;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+/**
+ * Tests the {@link CoreStatisticsService}.
+ */
+public class CoreStatisticsServiceTest
+{
+    private static final String CORE = "alfresco";
+
+    private SolrCore core;
+    private SolrIndexSearcher currentSearcher;
+    private CoreStatisticsService.StatisticsComputer computer;
+    private CoreStatisticsService statistics;
+    private SolrEventListener listener;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() throws Exception
+    {
+        core = mock(SolrCore.class);
+        when(core.getName()).thenReturn(CORE);
+        currentSearcher = mock(SolrIndexSearcher.class);
+        RefCounted<SolrIndexSearcher> refCounted = mock(RefCounted.class);
+        when(refCounted.get()).thenReturn(currentSearcher);
+        when(core.getSearcher()).thenReturn(refCounted);
+
+        computer = mock(CoreStatisticsService.StatisticsComputer.class);
+        statistics = new CoreStatisticsService();
+        statistics.register(core, computer);
+
+        ArgumentCaptor<SolrEventListener> captor = ArgumentCaptor.forClass(SolrEventListener.class);
+        verify(core).registerNewSearcherListener(captor.capture());
+        listener = captor.getValue();
+    }
+
+    @Test
+    public void statisticsAreNotAvailableBeforeTheFirstNewSearcher() throws Exception
+    {
+        assertNull(statistics.get(CORE));
+        verify(computer, never()).compute(any());
+    }
+
+    @Test
+    public void newSearcherRefreshesTheStatistics() throws Exception
+    {
+        SolrIndexSearcher first = mock(SolrIndexSearcher.class);
+        SolrIndexSearcher second = mock(SolrIndexSearcher.class);
+        when(computer.compute(first)).thenReturn(statistics(1, 10));
+        when(computer.compute(second)).thenReturn(statistics(2, 20));
+
+        listener.newSearcher(first, null);
+        assertEquals(10, statistics.get(CORE).getDocTypeCount("Node"));
+
+        listener.newSearcher(second, first);
+        assertEquals(20, statistics.get(CORE).getDocTypeCount("Node"));
+    }
+
+    @Test
+    public void olderIndexVersionDoesNotReplaceTheStatistics() throws Exception
+    {
+        SolrIndexSearcher newSearcher = mock(SolrIndexSearcher.class);
+        when(computer.compute(newSearcher)).thenReturn(statistics(2, 20));
+        when(computer.compute(currentSearcher)).thenReturn(statistics(1, 10));
+
+        listener.newSearcher(newSearcher, currentSearcher);
+        assertEquals(10, statistics.refresh(CORE).getDocTypeCount("Node"));
+
+        assertEquals(20, statistics.get(CORE).getDocTypeCount("Node"));
+    }
+
+    @Test
+    public void failureKeepsThePreviousStatistics() throws Exception
+    {
+        SolrIndexSearcher first = mock(SolrIndexSearcher.class);
+        SolrIndexSearcher second = mock(SolrIndexSearcher.class);
+        IndexStatistics previous = statistics(1, 10);
+        when(computer.compute(first)).thenReturn(previous);
+        when(computer.compute(second)).thenThrow(new IOException());
+
+        listener.newSearcher(first, null);
+        listener.newSearcher(second, first);
+
+        assertSame(previous, statistics.get(CORE));
+    }
+
+    @Test
+    public void freshRefreshUsesTheCurrentSearcher() throws Exception
+    {
+        when(computer.compute(currentSearcher)).thenReturn(statistics(3, 30));
+
+        assertEquals(30, statistics.refresh(CORE).getDocTypeCount("Node"));
+        assertEquals(30, statistics.get(CORE).getDocTypeCount("Node"));
+        verify(core.getSearcher()).decref();
+    }
+
+    @Test
+    public void unknownCoreHasNoStatistics() throws Exception
+    {
+        assertNull(statistics.get("unknown"));
+        assertNull(statistics.refresh("unknown"));
+    }
+
+    @Test
+    public void removeIgnoresAnotherCoreInstance() throws Exception
+    {
+        SolrIndexSearcher searcher = mock(SolrIndexSearcher.class);
+        when(computer.compute(searcher)).thenReturn(statistics(1, 10));
+        listener.newSearcher(searcher, null);
+
+        SolrCore reloaded = mock(SolrCore.class);
+        when(reloaded.getName()).thenReturn(CORE);
+        statistics.remove(reloaded);
+        assertEquals(10, statistics.get(CORE).getDocTypeCount("Node"));
+
+        statistics.remove(core);
+        assertNull(statistics.get(CORE));
+    }
+
+    private IndexStatistics statistics(long indexVersion, long nodes)
+    {
+        return new IndexStatistics(Collections.singletonMap("Node", nodes), 0, 0, indexVersion, System.currentTimeMillis());
+    }
+}
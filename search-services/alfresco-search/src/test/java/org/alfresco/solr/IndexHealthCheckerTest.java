@@ -0,0 +1,191 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+
+package org.alfresco.solr;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.alfresco.solr.adapters.CompressedOpenBitSet;
+import org.alfresco.solr.adapters.IOpenBitSet;
+import org.apache.lucene.analysis.core.WhitespaceAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.Test;
+
+/**
+ * Tests the {@link IndexHealthChecker}.
+ */
+public class IndexHealthCheckerTest
+{
+    private static final String FIELD = "TXID";
+    private static final long ONE_BILLION = 1_000_000_000L;
+
+    @Test
+    public void idsInIndex_shouldBeStreamedFromAllTheSegments() throws IOException
+    {
+        try (Directory directory = new RAMDirectory())
+        {
+            IndexWriterConfig config =
+                    new IndexWriterConfig(new WhitespaceAnalyzer()).setMergePolicy(NoMergePolicy.INSTANCE);
+            try (IndexWriter writer = new IndexWriter(directory, config))
+            {
+                addTransaction(writer, 5);
+                addTransaction(writer, ONE_BILLION);
+                addTransaction(writer, 3);
+                writer.commit();
+
+                // Second segment: a duplicate, a deleted transaction, a node and an id out of range
+                addTransaction(writer, 5);
+                addTransaction(writer, 7);
+                writer.addDocument(new Document());
+                addTransaction(writer, ONE_BILLION + 1);
+                writer.deleteDocuments(new Term("id", "7"));
+                writer.commit();
+            }
+
+            try (DirectoryReader reader = DirectoryReader.open(directory))
+            {
+                IOpenBitSet idsInIndex = new CompressedOpenBitSet();
+                List<Long> duplicates = new ArrayList<>();
+
+                IndexHealthChecker.collectIdsInIndex(reader, FIELD, 1, ONE_BILLION, idsInIndex, duplicates::add);
+
+                assertEquals(asList(3L, 5L, ONE_BILLION), toList(idsInIndex));
+                assertEquals(asList(5L), duplicates);
+            }
+        }
+    }
+
+    @Test
+    public void compare_shouldReportTheDifferencesWithinTheRange()
+    {
+        IOpenBitSet idsInDb = bitSet(2, 3, 4, 8, 10, ONE_BILLION);
+        IOpenBitSet idsInIndex = bitSet(1, 3, 4, 5, 10, ONE_BILLION - 1);
+        List<Long> inIndexButNotInDb = new ArrayList<>();
+        List<Long> inDbButNotInIndex = new ArrayList<>();
+
+        IndexHealthChecker.compare(idsInDb, idsInIndex, 2, ONE_BILLION - 1,
+                inIndexButNotInDb::add, inDbButNotInIndex::add);
+
+        assertEquals(asList(5L, ONE_BILLION - 1), inIndexButNotInDb);
+        assertEquals(asList(2L, 8L), inDbButNotInIndex);
+    }
+
+    @Test
+    public void compare_emptySets()
+    {
+        List<Long> differences = new ArrayList<>();
+
+        IndexHealthChecker.compare(bitSet(), bitSet(), 0, ONE_BILLION, differences::add, differences::add);
+
+        assertEquals(emptyList(), differences);
+    }
+
+    /**
+     * A million of sparse transactions in a billion-range id space, with a few holes on both sides.
+     */
+    @Test
+    public void compare_sparseIds_atBillionScale()
+    {
+        Random random = new Random(7);
+        IOpenBitSet idsInDb = new CompressedOpenBitSet();
+        IOpenBitSet idsInIndex = new CompressedOpenBitSet();
+        List<Long> expectedMissing = new ArrayList<>();
+        List<Long> expectedNotInDb = new ArrayList<>();
+        long id = 0;
+        for (int i = 0; i < 1_000_000; i++)
+        {
+            id += 1 + random.nextInt(1999);
+            if (i % 100_000 == 0)
+            {
+                idsInDb.set(id);
+                expectedMissing.add(id);
+            }
+            else if (i % 100_000 == 1)
+            {
+                idsInIndex.set(id);
+                expectedNotInDb.add(id);
+            }
+            else
+            {
+                idsInDb.set(id);
+                idsInIndex.set(id);
+            }
+        }
+        List<Long> inIndexButNotInDb = new ArrayList<>();
+        List<Long> inDbButNotInIndex = new ArrayList<>();
+
+        IndexHealthChecker.compare(idsInDb, idsInIndex, 0, id, inIndexButNotInDb::add, inDbButNotInIndex::add);
+
+        assertEquals(expectedNotInDb, inIndexButNotInDb);
+        assertEquals(expectedMissing, inDbButNotInIndex);
+    }
+
+    private void addTransaction(IndexWriter writer, long id) throws IOException
+    {
+        Document document = new Document();
+        document.add(new StringField("id", Long.toString(id), Field.Store.NO));
+        document.add(new NumericDocValuesField(FIELD, id));
+        writer.addDocument(document);
+    }
+
+    private IOpenBitSet bitSet(long... ids)
+    {
+        IOpenBitSet bitSet = new CompressedOpenBitSet();
+        for (long id : ids)
+        {
+            bitSet.set(id);
+        }
+        return bitSet;
+    }
+
+    private List<Long> toList(IOpenBitSet bitSet)
+    {
+        List<Long> ids = new ArrayList<>();
+        for (long id = bitSet.nextSetBit(0); id != -1; id = bitSet.nextSetBit(id + 1))
+        {
+            ids.add(id);
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+
+package org.alfresco.solr.component;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.lucene.search.suggest.Lookup.LookupResult;
+import org.junit.Test;
+
+public class IncrementalSolrSuggesterTest
+{
+    @Test
+    public void weightsOfTheSameSuggestionAreSummedAcrossSegments()
+    {
+        List<LookupResult> results = IncrementalSolrSuggester.merge(
+                asList(
+                        asList(result("alfresco", 5), result("alpha", 4)),
+                        asList(result("alpha", 3), result("alfa", 1))),
+                3);
+
+        assertEquals(3, results.size());
+        assertSuggestion("alpha", 7, results.get(0));
+        assertSuggestion("alfresco", 5, results.get(1));
+        assertSuggestion("alfa", 1, results.get(2));
+    }
+
+    @Test
+    public void onlyTheTopSuggestionsAreReturned()
+    {
+        List<LookupResult> results = IncrementalSolrSuggester.merge(
+                asList(
+                        asList(result("a", 1), result("b", 2)),
+                        asList(result("c", 3), result("d", 4))),
+                2);
+
+        assertEquals(2, results.size());
+        assertSuggestion("d", 4, results.get(0));
+        assertSuggestion("c", 3, results.get(1));
+    }
+
+    @Test
+    public void noSegmentsMeansNoSuggestions()
+    {
+        assertTrue(IncrementalSolrSuggester.merge(Collections.<List<LookupResult>>emptyList(), 10).isEmpty());
+    }
+
+    private static LookupResult result(String key, long weight)
+    {
+        return new LookupResult(key, weight);
+    }
+
+    private static void assertSuggestion(String key, long weight, LookupResult result)
+    {
+        assertEquals(key, result.key.toString());
+        assertEquals(weight, result.value);
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+
+package org.alfresco.solr.component.spellcheck;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+
+import org.apache.lucene.analysis.core.WhitespaceAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.solr.search.DelegatingCollector;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class CollationHitCounterTest
+{
+    private static final int DOCS = 100;
+
+    private static Directory directory;
+    private static DirectoryReader reader;
+    private static IndexSearcher searcher;
+
+    @BeforeClass
+    public static void buildIndex() throws IOException
+    {
+        directory = new RAMDirectory();
+        try (IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(new WhitespaceAnalyzer())))
+        {
+            for (int i = 0; i < DOCS; i++)
+            {
+                Document document = new Document();
+                document.add(new StringField("parity", i % 2 == 0 ? "even" : "odd", Field.Store.NO));
+                writer.addDocument(document);
+                if (i % 25 == 24)
+                {
+                    // A few segments
+                    writer.commit();
+                }
+            }
+        }
+        reader = DirectoryReader.open(directory);
+        searcher = new IndexSearcher(reader);
+    }
+
+    @AfterClass
+    public static void closeIndex() throws IOException
+    {
+        reader.close();
+        directory.close();
+    }
+
+    @Test
+    public void countsAllTheHitsWithoutLimit() throws IOException
+    {
+        CollationHitCounter counter = new CollationHitCounter(0, reader.maxDoc());
+        searcher.search(new TermQuery(new Term("parity", "even")), counter);
+        assertEquals(DOCS / 2, counter.getHits());
+    }
+
+    @Test
+    public void stopsAtTheLimitAndEstimatesTheHits() throws IOException
+    {
+        CollationHitCounter counter = new CollationHitCounter(5, reader.maxDoc());
+        searcher.search(new TermQuery(new Term("parity", "odd")), counter);
+
+        // The 5th odd doc is the 10th doc: half of the scanned docs match.
+        assertEquals(DOCS / 2, counter.getHits());
+    }
+
+    @Test
+    public void limitNotReachedMeansExactCount() throws IOException
+    {
+        CollationHitCounter counter = new CollationHitCounter(DOCS, reader.maxDoc());
+        searcher.search(new TermQuery(new Term("parity", "odd")), counter);
+        assertEquals(DOCS / 2, counter.getHits());
+    }
+
+    @Test
+    public void postFilterOnlyChecksTheHitsOfTheCandidate() throws IOException
+    {
+        // Accepts one doc out of four, like an authority post filter would do
+        int[] checked = new int[1];
+        DelegatingCollector postFilter = new DelegatingCollector()
+        {
+            @Override
+            public void collect(int doc) throws IOException
+            {
+                checked[0]++;
+                if ((docBase + doc) % 4 == 0)
+                {
+                    super.collect(doc);
+                }
+            }
+        };
+
+        CollationHitCounter counter = new CollationHitCounter(0, reader.maxDoc());
+        postFilter.setLastDelegate(counter);
+        searcher.search(new TermQuery(new Term("parity", "even")), postFilter);
+        postFilter.finish();
+
+        assertEquals(DOCS / 2, checked[0]);
+        assertEquals(DOCS / 4, counter.getHits());
+    }
+
+    @Test
+    public void cancelledCountHasNoHits() throws IOException
+    {
+        CollationHitCounter counter = new CollationHitCounter(0, reader.maxDoc());
+        counter.cancel();
+        searcher.search(new TermQuery(new Term("parity", "even")), counter);
+        assertEquals(0, counter.getHits());
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+
+package org.alfresco.solr.lifecycle;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.solr.common.util.NamedList;
+import org.junit.Test;
+
+public class CoreBootstrapTest
+{
+    @Test
+    public void phasesAreRecordedInExecutionOrder()
+    {
+        CoreBootstrap bootstrap = new CoreBootstrap("alfresco");
+        bootstrap.start(() -> {
+            String client = bootstrap.phase("Repository client", () -> "client");
+            assertEquals("client", client);
+            bootstrap.phase("Trackers", () -> {});
+        }, false);
+
+        assertTrue(bootstrap.isCompleted());
+        NamedList<Object> report = bootstrap.getReport();
+        assertEquals("COMPLETED", report.get("State"));
+        assertEquals("Queued (ms)", report.getName(1));
+        assertEquals("Repository client (ms)", report.getName(2));
+        assertEquals("Trackers (ms)", report.getName(3));
+        assertEquals("Total (ms)", report.getName(4));
+    }
+
+    @Test
+    public void cancelledBootstrapDoesNotRun()
+    {
+        AtomicBoolean executed = new AtomicBoolean();
+        CoreBootstrap bootstrap = new CoreBootstrap("alfresco");
+        bootstrap.cancel();
+        bootstrap.start(() -> executed.set(true), false);
+
+        assertFalse(executed.get());
+        assertFalse(bootstrap.isCompleted());
+        assertEquals(CoreBootstrap.State.CANCELLED, bootstrap.getState());
+    }
+
+    @Test
+    public void cancellationDuringTheBootstrapIsKept()
+    {
+        CoreBootstrap bootstrap = new CoreBootstrap("alfresco");
+        bootstrap.start(bootstrap::cancel, false);
+
+        assertTrue(bootstrap.isCancelled());
+        assertFalse(bootstrap.isCompleted());
+    }
+
+    @Test
+    public void registrationRunsOnTheCallingThreadBeforeTheBootstrap() throws InterruptedException
+    {
+        Thread caller = Thread.currentThread();
+        AtomicBoolean registered = new AtomicBoolean();
+        CountDownLatch bootstrapped = new CountDownLatch(1);
+        CoreBootstrap bootstrap = new CoreBootstrap("alfresco");
+        bootstrap.start(
+                () -> bootstrap.phase("Information server", () -> registered.set(Thread.currentThread() == caller)),
+                () -> {
+                    assertTrue(registered.get());
+                    bootstrapped.countDown();
+                },
+                true);
+
+        assertTrue(registered.get());
+        assertTrue(bootstrapped.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void failedRegistrationSkipsTheBootstrap()
+    {
+        AtomicBoolean executed = new AtomicBoolean();
+        CoreBootstrap bootstrap = new CoreBootstrap("alfresco");
+        bootstrap.start(
+                () -> {
+                    throw new IllegalStateException("Information server failure");
+                },
+                () -> executed.set(true),
+                false);
+
+        assertFalse(executed.get());
+        assertEquals(CoreBootstrap.State.FAILED, bootstrap.getState());
+    }
+
+    @Test
+    public void failureIsReported()
+    {
+        CoreBootstrap bootstrap = new CoreBootstrap("alfresco");
+        bootstrap.start(() -> {
+            throw new IllegalStateException("Repository unreachable");
+        }, false);
+
+        assertEquals(CoreBootstrap.State.FAILED, bootstrap.getState());
+        assertNotNull(bootstrap.getReport().get("Failure"));
+    }
+}
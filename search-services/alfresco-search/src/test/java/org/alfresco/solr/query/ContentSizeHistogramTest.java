@@ -0,0 +1,137 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.solr.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.alfresco.solr.query.ContentSizeHistogram.Range;
+import org.junit.Test;
+
+/**
+ * Tests the {@link ContentSizeHistogram} bucket layout and the merge of buckets into ranges.
+ */
+public class ContentSizeHistogramTest
+{
+    @Test
+    public void valuesFallInTheirBucket()
+    {
+        long[] values = { 0, 1, 15, 16, 17, 31, 32, 33, 1000, 1023, 1024, 123456789L, Long.MAX_VALUE };
+        for (long value : values)
+        {
+            int bucket = ContentSizeHistogram.bucketOf(value);
+            assertTrue(bucket < ContentSizeHistogram.BUCKET_COUNT);
+            assertTrue(value + " lower", ContentSizeHistogram.lowerBoundary(bucket) <= value);
+            assertTrue(value + " upper", value < ContentSizeHistogram.upperBoundary(bucket) || value == Long.MAX_VALUE);
+        }
+    }
+
+    @Test
+    public void bucketsAreContiguous()
+    {
+        for (int bucket = 0; bucket < ContentSizeHistogram.BUCKET_COUNT - 1; bucket++)
+        {
+            assertEquals(ContentSizeHistogram.upperBoundary(bucket), ContentSizeHistogram.lowerBoundary(bucket + 1));
+            assertEquals(bucket, ContentSizeHistogram.bucketOf(ContentSizeHistogram.lowerBoundary(bucket)));
+        }
+    }
+
+    @Test
+    public void rangesAreBalancedAndContiguous()
+    {
+        ContentSizeHistogram histogram = new ContentSizeHistogram(1);
+        for (long value = 0; value < 10000; value++)
+        {
+            histogram.add(value);
+        }
+
+        List<Range> ranges = histogram.getRanges(10);
+
+        assertEquals(10, ranges.size());
+        assertEquals(0, ranges.get(0).lower);
+        long total = 0;
+        for (int i = 0; i < ranges.size(); i++)
+        {
+            if (i > 0)
+            {
+                assertEquals(ranges.get(i - 1).upper, ranges.get(i).lower);
+            }
+            total += ranges.get(i).count;
+        }
+        assertEquals(10000, total);
+        assertEquals(10000, histogram.getN());
+    }
+
+    @Test
+    public void valuesAreScaled()
+    {
+        ContentSizeHistogram histogram = new ContentSizeHistogram(1024);
+        histogram.add(5 * 1024);
+        histogram.add(5 * 1024 + 1);
+
+        List<Range> ranges = histogram.getRanges(10);
+
+        assertEquals(1, ranges.size());
+        assertEquals(5, ranges.get(0).lower);
+        assertEquals(6, ranges.get(0).upper);
+        assertEquals(2, ranges.get(0).count);
+    }
+
+    @Test
+    public void mergedHistogramsMatchASingleHistogram()
+    {
+        ContentSizeHistogram single = new ContentSizeHistogram(10);
+        ContentSizeHistogram even = new ContentSizeHistogram(10);
+        ContentSizeHistogram odd = new ContentSizeHistogram(10);
+        for (long value = 0; value < 5000; value++)
+        {
+            single.add(value * 7);
+            (value % 2 == 0 ? even : odd).add(value * 7);
+        }
+
+        even.merge(odd);
+
+        assertEquals(single.getN(), even.getN());
+        List<Range> expected = single.getRanges(8);
+        List<Range> actual = even.getRanges(8);
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++)
+        {
+            assertEquals(expected.get(i).lower, actual.get(i).lower);
+            assertEquals(expected.get(i).upper, actual.get(i).upper);
+            assertEquals(expected.get(i).count, actual.get(i).count);
+        }
+    }
+
+    @Test
+    public void emptyHistogramHasNoRanges()
+    {
+        assertTrue(new ContentSizeHistogram(1).getRanges(10).isEmpty());
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.solr.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.lucene.analysis.core.WhitespaceAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.Test;
+
+/**
+ * Tests the {@link DocValuesCache}.
+ */
+public class DocValuesCacheTest
+{
+    private static final String FIELD = "DBID";
+
+    @Test
+    public void valuesAreLoadedOncePerSegment() throws Exception
+    {
+        try (Directory directory = index(3, 5L, Integer.MAX_VALUE + 1L))
+        {
+            try (DirectoryReader reader = DirectoryReader.open(directory))
+            {
+                LeafReader leaf = reader.leaves().get(0).reader();
+
+                ExecutorService executor = Executors.newFixedThreadPool(4);
+                try
+                {
+                    List<Callable<NumericDocValues>> lookups = new ArrayList<>();
+                    for (int i = 0; i < 8; i++)
+                    {
+                        lookups.add(() -> DocValuesCache.getNumericDocValues(FIELD, leaf));
+                    }
+
+                    NumericDocValues values = DocValuesCache.getNumericDocValues(FIELD, leaf);
+                    for (Future<NumericDocValues> lookup : executor.invokeAll(lookups))
+                    {
+                        assertSame(values, lookup.get());
+                    }
+
+                    assertEquals(3, values.get(0));
+                    assertEquals(5, values.get(1));
+                    assertEquals(Integer.MAX_VALUE + 1L, values.get(2));
+                }
+                finally
+                {
+                    executor.shutdown();
+                }
+            }
+        }
+    }
+
+    @Test
+    public void missingFieldIsNotCached() throws IOException
+    {
+        try (Directory directory = index(1))
+        {
+            try (DirectoryReader reader = DirectoryReader.open(directory))
+            {
+                LeafReader leaf = reader.leaves().get(0).reader();
+                assertNull(DocValuesCache.getNumericDocValues("missing", leaf));
+                assertNull(DocValuesCache.getNumericDocValues("missing", leaf));
+            }
+        }
+    }
+
+    @Test
+    public void anotherSegmentGetsItsOwnValues() throws IOException
+    {
+        try (Directory first = index(1); Directory second = index(1))
+        {
+            try (DirectoryReader firstReader = DirectoryReader.open(first);
+                 DirectoryReader secondReader = DirectoryReader.open(second))
+            {
+                assertNotSame(
+                        DocValuesCache.getNumericDocValues(FIELD, firstReader.leaves().get(0).reader()),
+                        DocValuesCache.getNumericDocValues(FIELD, secondReader.leaves().get(0).reader()));
+            }
+        }
+    }
+
+    private Directory index(long... values) throws IOException
+    {
+        Directory directory = new RAMDirectory();
+        try (IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(new WhitespaceAnalyzer())))
+        {
+            for (long value : values)
+            {
+                Document document = new Document();
+                document.add(new NumericDocValuesField(FIELD, value));
+                writer.addDocument(document);
+            }
+        }
+        return directory;
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.solr.query;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Locale;
+
+import org.alfresco.service.cmr.search.SearchParameters;
+import org.alfresco.solr.ContextAwareQuery;
+import org.alfresco.util.Pair;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.junit.Test;
+
+/**
+ * Tests the {@link QueryPlanCache} keys.
+ */
+public class QueryPlanCacheTest
+{
+    @Test
+    public void dateMathAndFingerprintQueriesAreNotCacheable()
+    {
+        assertFalse(QueryPlanCache.isCacheable("cm:modified:[NOW/DAY-1DAY TO NOW]"));
+        assertFalse(QueryPlanCache.isCacheable("FINGERPRINT:1234_70"));
+        assertFalse(QueryPlanCache.isCacheable("fingerprint:1234"));
+
+        assertTrue(QueryPlanCache.isCacheable("TYPE:\"cm:content\" AND cm:name:known"));
+        assertTrue(QueryPlanCache.isCacheable("snow AND now"));
+        assertTrue(QueryPlanCache.isCacheable(null));
+    }
+
+    @Test
+    public void keysAreEqualOnlyForTheSameComponentsAndModelVersion()
+    {
+        QueryPlanCache.Key key = new QueryPlanCache.Key(asList("afts", "cm:name:test"), 1);
+
+        assertEquals(key, new QueryPlanCache.Key(asList("afts", "cm:name:test"), 1));
+        assertEquals(key.hashCode(), new QueryPlanCache.Key(asList("afts", "cm:name:test"), 1).hashCode());
+
+        assertNotEquals(key, new QueryPlanCache.Key(asList("lucene", "cm:name:test"), 1));
+        assertNotEquals(key, new QueryPlanCache.Key(asList("afts", "cm:name:test"), 2));
+    }
+
+    @Test
+    public void cachedQueriesAreBoundToTheCurrentSearchParameters()
+    {
+        Query luceneQuery = new TermQuery(new Term("cm:name", "test"));
+        SearchParameters first = new SearchParameters();
+        first.addLocale(Locale.ENGLISH);
+        SearchParameters current = new SearchParameters();
+        current.addLocale(Locale.FRENCH);
+
+        QueryPlanCache.Plan plan = new QueryPlanCache.Plan(new ContextAwareQuery(luceneQuery, first), null);
+        Query query = plan.getQuery(new Pair<>(current, false));
+
+        assertSame(luceneQuery, ((ContextAwareQuery) query).getLuceneQuery());
+        assertEquals(new ContextAwareQuery(luceneQuery, current), query);
+        assertNotEquals(new ContextAwareQuery(luceneQuery, first), query);
+    }
+
+    @Test
+    public void boundPositionsAreCopies()
+    {
+        RelativeStructuredFieldPosition position = new RelativeStructuredFieldPosition("company_home");
+
+        StructuredFieldPosition copy = position.copy();
+        copy.setCachingTermPositions(new CachingTermPositions(null));
+
+        assertEquals(position, copy);
+        assertEquals(null, position.getCachingTermPositions());
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.solr.query;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+
+import org.apache.lucene.analysis.core.WhitespaceAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.QueryRescorer;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class ReRankRescorerTest
+{
+    private static final int[] SEGMENT_SIZES = { 40, 30, 20, 10 };
+    private static final double RERANK_WEIGHT = 3;
+
+    private static Directory directory;
+    private static DirectoryReader reader;
+    private static IndexSearcher searcher;
+
+    @BeforeClass
+    public static void buildIndex() throws IOException
+    {
+        directory = new RAMDirectory();
+        IndexWriterConfig config = new IndexWriterConfig(new WhitespaceAnalyzer()).setMergePolicy(NoMergePolicy.INSTANCE);
+        try (IndexWriter writer = new IndexWriter(directory, config))
+        {
+            int id = 0;
+            for (int size : SEGMENT_SIZES)
+            {
+                for (int i = 0; i < size; i++, id++)
+                {
+                    StringBuilder text = new StringBuilder("a");
+                    for (int j = 0; j < id % 4; j++)
+                    {
+                        text.append(" a");
+                    }
+                    if (id % 3 == 0)
+                    {
+                        text.append(" b");
+                    }
+                    for (int j = 0; j < id % 5; j++)
+                    {
+                        text.append(" c");
+                    }
+
+                    Document document = new Document();
+                    document.add(new TextField("text", text.toString(), Field.Store.NO));
+                    writer.addDocument(document);
+                }
+                writer.commit();
+            }
+        }
+        reader = DirectoryReader.open(directory);
+        searcher = new IndexSearcher(reader);
+    }
+
+    @AfterClass
+    public static void closeIndex() throws IOException
+    {
+        reader.close();
+        directory.close();
+    }
+
+    private static TopDocs queryRescorer(Query reRankQuery, int firstPassHits, int topN) throws IOException
+    {
+        TopDocs firstPass = searcher.search(new TermQuery(new Term("text", "a")), firstPassHits);
+        return new QueryRescorer(reRankQuery)
+        {
+            @Override
+            protected float combine(float firstPassScore, boolean secondPassMatches, float secondPassScore)
+            {
+                return ReRankRescorer.combine(firstPassScore, secondPassMatches, secondPassScore, RERANK_WEIGHT);
+            }
+        }.rescore(searcher, firstPass, topN);
+    }
+
+    private static TopDocs reRankRescorer(Query reRankQuery, int firstPassHits, int topN) throws IOException
+    {
+        TopDocs firstPass = searcher.search(new TermQuery(new Term("text", "a")), firstPassHits);
+        return new ReRankRescorer(reRankQuery, RERANK_WEIGHT).rescore(searcher, firstPass, topN);
+    }
+
+    private static void assertSameHits(TopDocs expected, TopDocs actual)
+    {
+        assertEquals(expected.totalHits, actual.totalHits);
+        assertEquals(expected.getMaxScore(), actual.getMaxScore(), 0);
+        assertEquals(expected.scoreDocs.length, actual.scoreDocs.length);
+        for (int i = 0; i < expected.scoreDocs.length; i++)
+        {
+            ScoreDoc expectedHit = expected.scoreDocs[i];
+            ScoreDoc actualHit = actual.scoreDocs[i];
+            assertEquals("Rank " + i, expectedHit.doc, actualHit.doc);
+            assertEquals("Rank " + i, expectedHit.score, actualHit.score, 0);
+        }
+    }
+
+    @Test
+    public void sameResultsAsQueryRescorer() throws IOException
+    {
+        Query reRankQuery = new TermQuery(new Term("text", "b"));
+
+        assertSameHits(queryRescorer(reRankQuery, 100, 100), reRankRescorer(reRankQuery, 100, 100));
+    }
+
+    @Test
+    public void topHitsOnly() throws IOException
+    {
+        Query reRankQuery = new BooleanQuery.Builder()
+                .add(new TermQuery(new Term("text", "b")), Occur.SHOULD)
+                .add(new TermQuery(new Term("text", "c")), Occur.SHOULD)
+                .build();
+
+        assertSameHits(queryRescorer(reRankQuery, 60, 10), reRankRescorer(reRankQuery, 60, 10));
+    }
+
+    @Test
+    public void buffersAreReused() throws IOException
+    {
+        Query reRankQuery = new TermQuery(new Term("text", "c"));
+
+        assertSameHits(queryRescorer(reRankQuery, 100, 100), reRankRescorer(reRankQuery, 100, 100));
+        assertSameHits(queryRescorer(reRankQuery, 7, 5), reRankRescorer(reRankQuery, 7, 5));
+        assertSameHits(queryRescorer(reRankQuery, 100, 30), reRankRescorer(reRankQuery, 100, 30));
+    }
+
+    @Test
+    public void noSecondPassMatches() throws IOException
+    {
+        Query reRankQuery = new TermQuery(new Term("text", "missing"));
+        TopDocs firstPass = searcher.search(new TermQuery(new Term("text", "a")), 20);
+        float[] firstPassScores = new float[firstPass.scoreDocs.length];
+        for (int i = 0; i < firstPassScores.length; i++)
+        {
+            firstPassScores[i] = firstPass.scoreDocs[i].score;
+        }
+
+        TopDocs rescored = new ReRankRescorer(reRankQuery, RERANK_WEIGHT).rescore(searcher, firstPass, 20);
+
+        assertEquals(20, rescored.scoreDocs.length);
+        for (int i = 0; i < firstPassScores.length; i++)
+        {
+            assertEquals(firstPassScores[i], rescored.scoreDocs[i].score, 0);
+        }
+    }
+}
@@ -0,0 +1,321 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.solr.query;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.analysis.core.WhitespaceAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.core.SolrCore;
+import org.apache.solr.core.SolrResourceLoader;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.request.SolrRequestInfo;
+import org.apache.solr.response.SolrQueryResponse;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class SegmentParallelSearchTest
+{
+    private static final int[] SEGMENT_SIZES = { 40, 30, 20, 10 };
+    private static final String CORE_NAME = "alfresco";
+
+    private static Directory directory;
+    private static DirectoryReader reader;
+    private static List<LeafReaderContext> leaves;
+
+    @BeforeClass
+    public static void buildIndex() throws IOException
+    {
+        directory = new RAMDirectory();
+        IndexWriterConfig config = new IndexWriterConfig(new WhitespaceAnalyzer()).setMergePolicy(NoMergePolicy.INSTANCE);
+        try (IndexWriter writer = new IndexWriter(directory, config))
+        {
+            for (int size : SEGMENT_SIZES)
+            {
+                for (int i = 0; i < size; i++)
+                {
+                    Document document = new Document();
+                    document.add(new StringField("id", size + "-" + i, Field.Store.NO));
+                    writer.addDocument(document);
+                }
+                writer.commit();
+            }
+        }
+        reader = DirectoryReader.open(directory);
+        leaves = reader.leaves();
+    }
+
+    @AfterClass
+    public static void closeIndex() throws IOException
+    {
+        reader.close();
+        directory.close();
+    }
+
+    @Test
+    public void slicesAreBalanced()
+    {
+        List<int[]> slices = SegmentParallelSearch.slices(leaves, 2);
+
+        assertEquals(2, slices.size());
+        int[] seen = new int[leaves.size()];
+        for (int[] slice : slices)
+        {
+            int docs = 0;
+            for (int index : slice)
+            {
+                docs += leaves.get(index).reader().maxDoc();
+                seen[index]++;
+            }
+            assertEquals(50, docs);
+        }
+        assertTrue(Arrays.stream(seen).allMatch(count -> count == 1));
+    }
+
+    @Test
+    public void slicesNeverExceedTheLeaves()
+    {
+        assertEquals(leaves.size(), SegmentParallelSearch.slices(leaves, 16).size());
+        assertEquals(1, SegmentParallelSearch.slices(leaves, 1).size());
+    }
+
+    @Test
+    public void mapLeavesKeepsTheLeafOrder() throws IOException
+    {
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        List<Integer> sizes = SegmentParallelSearch.mapLeaves(leaves, 4, leaf -> {
+            threads.add(Thread.currentThread().getName());
+            return leaf.reader().maxDoc();
+        });
+
+        assertEquals(asList(40, 30, 20, 10), sizes);
+        assertTrue(threads.size() > 1);
+    }
+
+    @Test
+    public void sequentialWithoutBudget() throws IOException
+    {
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        List<Integer> ords = SegmentParallelSearch.mapLeaves(leaves, leaf -> {
+            threads.add(Thread.currentThread().getName());
+            return leaf.ord;
+        });
+
+        assertEquals(asList(0, 1, 2, 3), ords);
+        assertEquals(Set.of(Thread.currentThread().getName()), threads);
+    }
+
+    @Test(expected = IOException.class)
+    public void failuresArePropagated() throws IOException
+    {
+        SegmentParallelSearch.mapLeaves(leaves, 4, leaf -> {
+            if (leaf.reader().maxDoc() == 10)
+            {
+                throw new IOException("Failure");
+            }
+            return leaf.ord;
+        });
+    }
+
+    @Test
+    public void disabledByDefault()
+    {
+        SolrQueryRequest req = request(new Properties(), new ModifiableSolrParams());
+
+        assertFalse(SegmentParallelSearch.begin(req));
+        assertTrue(req.getContext().isEmpty());
+    }
+
+    @Test
+    public void concurrentRequestsAreBounded()
+    {
+        assumeTrue(SegmentParallelSearch.MAX_PARALLELISM > 1);
+
+        Properties p = new Properties();
+        p.setProperty(SegmentParallelSearch.ENABLED, "true");
+        p.setProperty(SegmentParallelSearch.MAX_CONCURRENT_REQUESTS, "1");
+        SolrQueryRequest first = request(p, new ModifiableSolrParams());
+        SolrQueryRequest second = request(p, new ModifiableSolrParams());
+
+        assertTrue(SegmentParallelSearch.begin(first));
+        assertFalse(SegmentParallelSearch.begin(second));
+
+        SegmentParallelSearch.end(first);
+        assertTrue(SegmentParallelSearch.begin(second));
+        SegmentParallelSearch.end(second);
+        assertEquals(0, SegmentParallelSearch.getActiveRequests(CORE_NAME));
+    }
+
+    @Test
+    public void requestCannotEnableTheMode()
+    {
+        ModifiableSolrParams params = new ModifiableSolrParams();
+        params.set(SegmentParallelSearch.ENABLED, true);
+        SolrQueryRequest req = request(new Properties(), params);
+
+        assertFalse(SegmentParallelSearch.begin(req));
+        assertTrue(req.getContext().isEmpty());
+    }
+
+    @Test(expected = SegmentParallelSearch.TimeExceededException.class)
+    public void noLeafIsStartedAfterTheDeadline() throws IOException
+    {
+        SegmentParallelSearch.mapLeaves(leaves, 4, System.nanoTime() - 1, leaf -> leaf.ord);
+    }
+
+    @Test
+    public void slicesStopAfterTheDeadline() throws IOException
+    {
+        assumeTrue(SegmentParallelSearch.MAX_PARALLELISM > 1);
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(200);
+        Set<Integer> started = ConcurrentHashMap.newKeySet();
+        try
+        {
+            SegmentParallelSearch.mapLeaves(leaves, 2, deadline, leaf -> {
+                started.add(leaf.ord);
+                try
+                {
+                    Thread.sleep(500);
+                }
+                catch (InterruptedException exception)
+                {
+                    Thread.currentThread().interrupt();
+                }
+                return leaf.ord;
+            });
+            fail("The deadline should have stopped the slices");
+        }
+        catch (SegmentParallelSearch.TimeExceededException exception)
+        {
+            // Each of the two slices started its first leaf only
+            assertEquals(2, started.size());
+        }
+    }
+
+    @Test
+    public void requestCanLowerTheBudget()
+    {
+        assumeTrue(SegmentParallelSearch.MAX_PARALLELISM > 1);
+
+        Properties p = new Properties();
+        p.setProperty(SegmentParallelSearch.ENABLED, "true");
+        p.setProperty(SegmentParallelSearch.THREADS, "2");
+
+        ModifiableSolrParams params = new ModifiableSolrParams();
+        params.set(SegmentParallelSearch.THREADS, 64);
+        SolrQueryRequest req = request(p, params);
+        assertTrue(SegmentParallelSearch.begin(req));
+        SolrRequestInfo.setRequestInfo(new SolrRequestInfo(req, new SolrQueryResponse()));
+        try
+        {
+            assertEquals(2, SegmentParallelSearch.getThreads());
+        }
+        finally
+        {
+            SolrRequestInfo.clearRequestInfo();
+            SegmentParallelSearch.end(req);
+        }
+
+        params.set(SegmentParallelSearch.THREADS, 1);
+        assertFalse(SegmentParallelSearch.begin(request(p, params)));
+
+        params.set(SegmentParallelSearch.THREADS, 2);
+        params.set(SegmentParallelSearch.ENABLED, false);
+        assertFalse(SegmentParallelSearch.begin(request(p, params)));
+    }
+
+    @Test
+    public void workersDoNotForkAgain() throws IOException
+    {
+        assumeTrue(SegmentParallelSearch.MAX_PARALLELISM > 1);
+
+        Properties p = new Properties();
+        p.setProperty(SegmentParallelSearch.ENABLED, "true");
+        SolrQueryRequest req = request(p, new ModifiableSolrParams());
+        assertTrue(SegmentParallelSearch.begin(req));
+        SolrRequestInfo.setRequestInfo(new SolrRequestInfo(req, new SolrQueryResponse()));
+        try
+        {
+            String requestThread = Thread.currentThread().getName();
+            List<Boolean> budgets = SegmentParallelSearch.mapLeaves(leaves, leaf ->
+                    Thread.currentThread().getName().equals(requestThread)
+                            ? SegmentParallelSearch.getThreads() > 1
+                            : SegmentParallelSearch.getThreads() == 1);
+
+            assertTrue(budgets.stream().allMatch(Boolean::booleanValue));
+        }
+        finally
+        {
+            SolrRequestInfo.clearRequestInfo();
+            SegmentParallelSearch.end(req);
+        }
+    }
+
+    private static SolrQueryRequest request(Properties p, ModifiableSolrParams params)
+    {
+        SolrResourceLoader loader = mock(SolrResourceLoader.class);
+        when(loader.getCoreProperties()).thenReturn(p);
+        SolrCore core = mock(SolrCore.class);
+        when(core.getResourceLoader()).thenReturn(loader);
+        when(core.getName()).thenReturn(CORE_NAME);
+
+        SolrQueryRequest req = mock(SolrQueryRequest.class);
+        when(req.getCore()).thenReturn(core);
+        when(req.getParams()).thenReturn(params);
+        when(req.getContext()).thenReturn(new HashMap<>());
+        when(req.getParamString()).thenReturn(params.toString());
+        return req;
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.solr.query;
+
+import static java.util.Arrays.asList;
+import static org.alfresco.solr.query.SolrPathResolver.HIERARCHY_FIELDS_RESOLUTION;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.alfresco.repo.search.adaptor.QueryConstants;
+import org.alfresco.solr.dataload.TestDataProvider;
+import org.alfresco.solr.query.afts.qparser.AbstractQParserPluginIT;
+import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.search.DocSet;
+import org.apache.solr.search.SolrIndexSearcher;
+import org.apache.solr.util.RefCounted;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Runs child-of and descendant-of PATH queries against an index, resolved through the PARENT and ANCESTOR fields.
+ */
+@SolrTestCaseJ4.SuppressSSL
+public class SolrPathResolverIT extends AbstractQParserPluginIT implements QueryConstants
+{
+    private static final String CM = "http://www.alfresco.org/model/content/1.0";
+
+    @BeforeClass
+    public static void loadData() throws Exception
+    {
+        TestDataProvider dataProvider = new TestDataProvider(h);
+        dataProvider.loadTestDataset();
+
+        TEST_ROOT_NODEREF = dataProvider.getRootNode();
+        coreProperties().setProperty(HIERARCHY_FIELDS_RESOLUTION, "true");
+    }
+
+    @AfterClass
+    public static void resetResolution()
+    {
+        coreProperties().remove(HIERARCHY_FIELDS_RESOLUTION);
+    }
+
+    @Test
+    public void childOfIsResolvedWithParent() throws Exception
+    {
+        assertResolvedWithHierarchyFields(pathQuery(step(CM, "one"), wildcard()), 4);
+
+        assertAQuery("PATH:\"/cm:one/*\"", 4);
+        assertAQuery("PATH:\"/cm:one/cm:five/*\"", 5);
+    }
+
+    @Test
+    public void descendantOfIsResolvedWithAncestor() throws Exception
+    {
+        assertResolvedWithHierarchyFields(pathQuery(step(CM, "one"), step(CM, "five"), descendantOrSelf(), wildcard()), 7);
+
+        assertAQuery("PATH:\"/one/five//*\"", 7);
+        assertAQuery("PATH:\"/cm:one/cm:five//*\"", 7);
+    }
+
+    @Test
+    public void unknownContainerMatchesNothing() throws Exception
+    {
+        assertResolvedWithHierarchyFields(pathQuery(step(CM, "unknown"), wildcard()), 0);
+
+        assertAQuery("PATH:\"/cm:unknown/*\"", 0);
+        assertAQuery("PATH:\"/cm:unknown//*\"", 0);
+    }
+
+    private static void assertResolvedWithHierarchyFields(SolrPathQuery query, int expectedCount) throws Exception
+    {
+        RefCounted<SolrIndexSearcher> refCounted = getCore().getSearcher();
+        try
+        {
+            DocSet results = SolrPathResolver.resolveUsingHierarchyFields(refCounted.get(), query);
+            assertNotNull(results);
+            assertEquals(expectedCount, results.size());
+        }
+        finally
+        {
+            refCounted.decref();
+        }
+    }
+
+    private static Properties coreProperties()
+    {
+        return getCore().getResourceLoader().getCoreProperties();
+    }
+
+    @SafeVarargs
+    private static SolrPathQuery pathQuery(List<StructuredFieldPosition>... steps)
+    {
+        List<StructuredFieldPosition> positions = new ArrayList<>();
+        for (List<StructuredFieldPosition> step : steps)
+        {
+            positions.addAll(step);
+        }
+
+        SolrPathQuery query = new SolrPathQuery(null);
+        query.setPathField(FIELD_PATH);
+        query.setQuery(positions);
+        return query;
+    }
+
+    private static List<StructuredFieldPosition> step(String namespace, String localName)
+    {
+        return asList(new RelativeStructuredFieldPosition(namespace), new RelativeStructuredFieldPosition(localName));
+    }
+
+    private static List<StructuredFieldPosition> wildcard()
+    {
+        return asList(new RelativeStructuredFieldPosition("*"), new RelativeStructuredFieldPosition("*"));
+    }
+
+    private static List<StructuredFieldPosition> descendantOrSelf()
+    {
+        return asList(new DescendantAndSelfStructuredFieldPosition(), new DescendantAndSelfStructuredFieldPosition());
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.solr.query;
+
+import static java.util.Arrays.asList;
+import static org.alfresco.repo.search.adaptor.QueryConstants.FIELD_ANCESTOR;
+import static org.alfresco.repo.search.adaptor.QueryConstants.FIELD_LID;
+import static org.alfresco.repo.search.adaptor.QueryConstants.FIELD_PARENT;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.alfresco.solr.query.SolrPathResolver.PathShape;
+import org.apache.solr.core.SolrResourceLoader;
+import org.apache.solr.schema.IndexSchema;
+import org.apache.solr.schema.SchemaField;
+import org.apache.solr.search.SolrIndexSearcher;
+import org.junit.Test;
+
+/**
+ * Tests the path shapes recognised by {@link SolrPathResolver}.
+ */
+public class SolrPathResolverTest
+{
+    private static final String APP = "http://www.alfresco.org/model/application/1.0";
+    private static final String ST = "http://www.alfresco.org/model/site/1.0";
+    private static final String CM = "http://www.alfresco.org/model/content/1.0";
+
+    @Test
+    public void childOfIsResolvedWithParent()
+    {
+        SolrPathQuery query = pathQuery(step(APP, "company_home"), step(ST, "sites"), step(CM, "x"), wildcard());
+
+        PathShape shape = PathShape.of(query);
+
+        assertEquals(FIELD_PARENT, shape.hierarchyField);
+        assertEquals(pathQuery(step(APP, "company_home"), step(ST, "sites"), step(CM, "x")), shape.containerQuery);
+    }
+
+    @Test
+    public void descendantOfIsResolvedWithAncestor()
+    {
+        SolrPathQuery query = pathQuery(step(APP, "company_home"), step(ST, "sites"), step(CM, "x"), descendantOrSelf(), wildcard());
+
+        PathShape shape = PathShape.of(query);
+
+        assertEquals(FIELD_ANCESTOR, shape.hierarchyField);
+        assertEquals(pathQuery(step(APP, "company_home"), step(ST, "sites"), step(CM, "x")), shape.containerQuery);
+    }
+
+    @Test
+    public void wildcardStepsInTheMiddleRequirePositionalMatching()
+    {
+        assertNull(PathShape.of(pathQuery(step(APP, "company_home"), wildcard(), step(CM, "x"), wildcard())));
+        assertNull(PathShape.of(pathQuery(step(APP, "company_home"), descendantOrSelf(), step(CM, "x"), wildcard())));
+    }
+
+    @Test
+    public void namedLastStepRequiresPositionalMatching()
+    {
+        assertNull(PathShape.of(pathQuery(step(APP, "company_home"), step(ST, "sites"))));
+        assertNull(PathShape.of(pathQuery(step(APP, "company_home"), descendantOrSelf(), step(CM, "x"))));
+    }
+
+    @Test
+    public void categoryAndTagPathsRequirePositionalMatching()
+    {
+        assertNull(PathShape.of(pathQuery(step(CM, "categoryRoot"), step(CM, "generalclassifiable"), descendantOrSelf(), wildcard())));
+        assertNull(PathShape.of(pathQuery(step(CM, "taggable"), step(CM, "mytag"), wildcard())));
+    }
+
+    @Test
+    public void repeatsAndOtherFieldsRequirePositionalMatching()
+    {
+        SolrPathQuery withRepeats = pathQuery(step(APP, "company_home"), wildcard());
+        withRepeats.setRepeats(true);
+        assertNull(PathShape.of(withRepeats));
+
+        SolrPathQuery qname = pathQuery(step(APP, "company_home"), wildcard());
+        qname.setPathField("QNAME");
+        assertNull(PathShape.of(qname));
+    }
+
+    @Test
+    public void hierarchyFieldsResolutionIsDisabledByDefault() throws Exception
+    {
+        SolrPathQuery query = pathQuery(step(APP, "company_home"), step(ST, "sites"), wildcard());
+
+        assertNull(SolrPathResolver.resolveUsingHierarchyFields(searcher(new Properties(), true), query));
+    }
+
+    @Test
+    public void indexedOnlyNodeRefsRequirePositionalMatching() throws Exception
+    {
+        Properties p = new Properties();
+        p.setProperty(SolrPathResolver.HIERARCHY_FIELDS_RESOLUTION, "true");
+        SolrPathQuery query = pathQuery(step(APP, "company_home"), step(ST, "sites"), wildcard());
+
+        assertNull(SolrPathResolver.resolveUsingHierarchyFields(searcher(p, false), query));
+    }
+
+    private static SolrIndexSearcher searcher(Properties p, boolean storedNodeRefs)
+    {
+        SolrResourceLoader loader = mock(SolrResourceLoader.class);
+        when(loader.getCoreProperties()).thenReturn(p);
+        SchemaField lid = mock(SchemaField.class);
+        when(lid.stored()).thenReturn(storedNodeRefs);
+        IndexSchema schema = mock(IndexSchema.class);
+        when(schema.getResourceLoader()).thenReturn(loader);
+        when(schema.getFieldOrNull(FIELD_LID)).thenReturn(lid);
+
+        SolrIndexSearcher searcher = mock(SolrIndexSearcher.class);
+        when(searcher.getSchema()).thenReturn(schema);
+        return searcher;
+    }
+
+    @SafeVarargs
+    private static SolrPathQuery pathQuery(List<StructuredFieldPosition>... steps)
+    {
+        List<StructuredFieldPosition> positions = new ArrayList<>();
+        for (List<StructuredFieldPosition> step : steps)
+        {
+            positions.addAll(step);
+        }
+
+        SolrPathQuery query = new SolrPathQuery(null);
+        query.setQuery(positions);
+        return query;
+    }
+
+    private static List<StructuredFieldPosition> step(String namespace, String localName)
+    {
+        return asList(new RelativeStructuredFieldPosition(namespace), new RelativeStructuredFieldPosition(localName));
+    }
+
+    private static List<StructuredFieldPosition> wildcard()
+    {
+        return asList(new RelativeStructuredFieldPosition("*"), new RelativeStructuredFieldPosition("*"));
+    }
+
+    private static List<StructuredFieldPosition> descendantOrSelf()
+    {
+        return asList(new DescendantAndSelfStructuredFieldPosition(), new DescendantAndSelfStructuredFieldPosition());
+    }
+}
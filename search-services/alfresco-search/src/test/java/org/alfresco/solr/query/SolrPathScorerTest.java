@@ -0,0 +1,187 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.solr.query;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.alfresco.repo.search.impl.lucene.analysis.PathAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Runs the positional matching of {@link SolrPathScorer} against a synthetic hierarchy: a chain of nested folders,
+ * each one with a fixed number of leaf children.
+ */
+public class SolrPathScorerTest
+{
+    private static final String CM = "http://www.alfresco.org/model/content/1.0";
+    private static final String APP = "http://www.alfresco.org/model/application/1.0";
+
+    private static final int DEPTH = 8;
+    private static final int FAN_OUT = 25;
+
+    private static Directory directory;
+    private static DirectoryReader reader;
+    private static IndexSearcher searcher;
+
+    @BeforeClass
+    public static void buildHierarchy() throws IOException
+    {
+        directory = new RAMDirectory();
+        IndexWriterConfig config = new IndexWriterConfig(new PathAnalyzer());
+        try (IndexWriter writer = new IndexWriter(directory, config))
+        {
+            StringBuilder folder = new StringBuilder();
+            for (int level = 1; level <= DEPTH; level++)
+            {
+                folder.append("/{").append(CM).append("}folder").append(level);
+                writer.addDocument(pathDocument(folder.toString()));
+
+                for (int leaf = 0; leaf < FAN_OUT; leaf++)
+                {
+                    writer.addDocument(pathDocument(folder + "/{" + APP + "}leaf" + leaf));
+                }
+
+                // Spread the hierarchy across a few segments
+                if (level % 3 == 0)
+                {
+                    writer.commit();
+                }
+            }
+        }
+
+        reader = DirectoryReader.open(directory);
+        searcher = new IndexSearcher(reader);
+        searcher.setQueryCache(null);
+    }
+
+    @AfterClass
+    public static void closeIndex() throws IOException
+    {
+        reader.close();
+        directory.close();
+    }
+
+    @Test
+    public void childrenOfEachFolder() throws IOException
+    {
+        List<List<StructuredFieldPosition>> steps = new ArrayList<>();
+        for (int level = 1; level <= DEPTH; level++)
+        {
+            steps.add(step(CM, "folder" + level));
+
+            List<List<StructuredFieldPosition>> childrenSteps = new ArrayList<>(steps);
+            childrenSteps.add(wildcard());
+
+            int expected = level < DEPTH ? FAN_OUT + 1 : FAN_OUT;
+            assertEquals("Children of folder" + level, expected, count(childrenSteps));
+        }
+    }
+
+    @Test
+    public void descendantsOfTheTopFolder() throws IOException
+    {
+        assertEquals((DEPTH - 1) + DEPTH * FAN_OUT, count(asList(step(CM, "folder1"), descendantOrSelf(), wildcard())));
+    }
+
+    @Test
+    public void namedDescendantsOfTheTopFolder() throws IOException
+    {
+        assertEquals(DEPTH, count(asList(step(CM, "folder1"), descendantOrSelf(), step(APP, "leaf3"))));
+        assertEquals(0, count(asList(step(CM, "folder1"), descendantOrSelf(), step(CM, "leaf3"))));
+    }
+
+    @Test
+    public void deepestLeaf() throws IOException
+    {
+        List<List<StructuredFieldPosition>> steps = new ArrayList<>();
+        for (int level = 1; level <= DEPTH; level++)
+        {
+            steps.add(step(CM, "folder" + level));
+        }
+        steps.add(step(APP, "leaf" + (FAN_OUT - 1)));
+
+        assertEquals(1, count(steps));
+    }
+
+    @Test
+    public void missingSteps() throws IOException
+    {
+        assertEquals(0, count(asList(step(CM, "folder1"), step(CM, "folder3"), wildcard())));
+        assertEquals(0, count(asList(step(CM, "folder1"), step(CM, "unknown"))));
+    }
+
+    private static Document pathDocument(String path)
+    {
+        Document document = new Document();
+        document.add(new TextField("PATH", path, Field.Store.NO));
+        return document;
+    }
+
+    private static int count(List<List<StructuredFieldPosition>> steps) throws IOException
+    {
+        List<StructuredFieldPosition> positions = new ArrayList<>();
+        for (List<StructuredFieldPosition> step : steps)
+        {
+            positions.addAll(step);
+        }
+
+        SolrPathQuery query = new SolrPathQuery(null);
+        query.setQuery(positions);
+        return searcher.count(query);
+    }
+
+    private static List<StructuredFieldPosition> step(String namespace, String localName)
+    {
+        return asList(new RelativeStructuredFieldPosition(namespace), new RelativeStructuredFieldPosition(localName));
+    }
+
+    private static List<StructuredFieldPosition> wildcard()
+    {
+        return asList(new RelativeStructuredFieldPosition("*"), new RelativeStructuredFieldPosition("*"));
+    }
+
+    private static List<StructuredFieldPosition> descendantOrSelf()
+    {
+        return asList(new DescendantAndSelfStructuredFieldPosition(), new DescendantAndSelfStructuredFieldPosition());
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.solr.tracker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class AdaptiveBatchControllerTest
+{
+    private static final long TARGET_NANOS = TimeUnit.SECONDS.toNanos(2);
+
+    private TrackerStats trackerStats;
+    private double heapHeadroom;
+
+    @Before
+    public void setUp()
+    {
+        trackerStats = mock(TrackerStats.class);
+        heapHeadroom = 0.8;
+    }
+
+    private AdaptiveBatchController controller(int batchSize, int maxParallelism)
+    {
+        return new AdaptiveBatchController("Node batch", true, batchSize, batchSize / 4, batchSize * 4,
+                    maxParallelism, TARGET_NANOS, 0.2, () -> heapHeadroom, trackerStats);
+    }
+
+    @Test
+    public void disabledByDefault_shouldAlwaysReturnTheConfiguredValues()
+    {
+        AdaptiveBatchController controller =
+                AdaptiveBatchController.create(new Properties(), "Node batch", 100, 1000, 4, trackerStats);
+
+        controller.record(100, 1);
+        controller.record(100, TimeUnit.MINUTES.toNanos(1));
+
+        assertFalse(controller.isEnabled());
+        assertEquals(100, controller.getBatchSize());
+        assertEquals(4, controller.getParallelism());
+        verify(trackerStats, never()).addAdaptiveSetting(anyString(), anyInt());
+    }
+
+    @Test
+    public void create_shouldCapTheMaxBatchSize()
+    {
+        Properties p = new Properties();
+        p.setProperty(AdaptiveBatchController.ENABLED, "true");
+        AdaptiveBatchController controller =
+                AdaptiveBatchController.create(p, "Change set ACLs batch", 100, 150, 1, trackerStats);
+
+        for (int i = 0; i < 10; i++)
+        {
+            controller.record(controller.getBatchSize(), 1);
+        }
+
+        assertTrue(controller.isEnabled());
+        assertEquals(150, controller.getBatchSize());
+        assertEquals(1, controller.getParallelism());
+    }
+
+    @Test
+    public void fastFullBatches_shouldGrowSizeAndParallelismWithinBounds()
+    {
+        AdaptiveBatchController controller = controller(100, 4);
+        controller.record(100, 1);
+        controller.record(100, TimeUnit.MILLISECONDS.toNanos(10));
+
+        // Starts from the max parallelism: only the size grows
+        assertEquals(156, controller.getBatchSize());
+        assertEquals(4, controller.getParallelism());
+
+        for (int i = 0; i < 20; i++)
+        {
+            controller.record(controller.getBatchSize(), 1);
+        }
+        assertEquals(400, controller.getBatchSize());
+        verify(trackerStats, atLeastOnce()).addAdaptiveSetting("Node batch size", 400);
+    }
+
+    @Test
+    public void fastPartialBatch_shouldNotGrowTheSize()
+    {
+        AdaptiveBatchController controller = controller(100, 4);
+        controller.record(10, 1);
+
+        assertEquals(100, controller.getBatchSize());
+    }
+
+    @Test
+    public void slowBatch_shouldShrinkTheSizeTowardsTheTarget()
+    {
+        AdaptiveBatchController controller = controller(100, 4);
+
+        // 1.6 times the target: scaled to the target
+        controller.record(100, TARGET_NANOS * 8 / 5);
+        assertEquals(62, controller.getBatchSize());
+
+        // 10 times the target: halved
+        controller.record(62, TARGET_NANOS * 10);
+        assertEquals(31, controller.getBatchSize());
+
+        for (int i = 0; i < 10; i++)
+        {
+            controller.record(controller.getBatchSize(), TARGET_NANOS * 10);
+        }
+        assertEquals(25, controller.getBatchSize());
+        assertEquals(4, controller.getParallelism());
+    }
+
+    @Test
+    public void lowHeapHeadroom_shouldHalveSizeAndParallelism()
+    {
+        AdaptiveBatchController controller = controller(100, 4);
+        heapHeadroom = 0.1;
+
+        controller.record(100, 1);
+        assertEquals(50, controller.getBatchSize());
+        assertEquals(2, controller.getParallelism());
+        verify(trackerStats).addAdaptiveSetting("Node batch size", 50);
+        verify(trackerStats).addAdaptiveSetting("Node batch parallelism", 2);
+
+        controller.record(100, 1);
+        controller.record(100, 1);
+        assertEquals(25, controller.getBatchSize());
+        assertEquals(1, controller.getParallelism());
+
+        // Once the heap is back, parallelism grows one step at a time
+        heapHeadroom = 0.8;
+        controller.record(25, 1);
+        assertEquals(31, controller.getBatchSize());
+        assertEquals(2, controller.getParallelism());
+    }
+
+    @Test
+    public void sequentialBatch_shouldNotReportParallelism()
+    {
+        AdaptiveBatchController controller = controller(100, 1);
+        controller.record(100, 1);
+
+        verify(trackerStats).addAdaptiveSetting("Node batch size", 125);
+        verify(trackerStats, never()).addAdaptiveSetting("Node batch parallelism", 1);
+    }
+
+    @Test(timeout = 10000)
+    public void reducedParallelism_shouldGateTheWorkers() throws InterruptedException
+    {
+        AdaptiveBatchController controller = controller(100, 2);
+        heapHeadroom = 0.1;
+        controller.record(100, 1);
+        assertEquals(1, controller.getParallelism());
+
+        controller.acquire();
+        Thread worker = new Thread(() -> {
+            controller.acquire();
+            controller.release();
+        });
+        worker.start();
+        worker.join(200);
+        assertTrue(worker.isAlive());
+
+        controller.release();
+        worker.join();
+        assertFalse(worker.isAlive());
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.solr.tracker;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Replays a tracker workload against a {@link CommitPolicy}, without a live repository or a Solr core.
+ *
+ * The workload is the number of docs indexed by the trackers between two consecutive {@link CommitTracker} runs
+ * (ticks). The index is simulated as well: the searcher sees the docs indexed before the last searcher opening, a
+ * new searcher becomes visible after the configured warm-up time and the RAM buffer grows by a fixed size per doc
+ * until the next commit.
+ */
+public class CommitPolicySimulator
+{
+    private final long tickMillis;
+    private final long warmupMillis;
+    private final long bytesPerDoc;
+
+    /**
+     * @param tickMillis the interval between two runs of the commit tracker.
+     * @param warmupMillis the warm-up time of a new searcher.
+     * @param bytesPerDoc the RAM buffer size of an indexed doc.
+     */
+    public CommitPolicySimulator(long tickMillis, long warmupMillis, long bytesPerDoc)
+    {
+        this.tickMillis = tickMillis;
+        this.warmupMillis = warmupMillis;
+        this.bytesPerDoc = bytesPerDoc;
+    }
+
+    /**
+     * Parses a workload in the "docs*ticks, docs*ticks, ..." format (e.g. "100*60, 5000*10, 0*30" means 100 docs
+     * per tick for 60 ticks, then a burst of 5000 docs per tick for 10 ticks, then 30 idle ticks).
+     *
+     * @param workload the workload definition.
+     * @return the docs indexed at each tick.
+     */
+    public static long[] workload(String workload)
+    {
+        List<Long> ticks = new ArrayList<>();
+        for (String phase : workload.split(","))
+        {
+            String[] docsAndTicks = phase.trim().split("\\*");
+            long docs = Long.parseLong(docsAndTicks[0].trim());
+            int count = docsAndTicks.length > 1 ? Integer.parseInt(docsAndTicks[1].trim()) : 1;
+            for (int i = 0; i < count; i++)
+            {
+                ticks.add(docs);
+            }
+        }
+        return ticks.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    /**
+     * Replays the given workload.
+     *
+     * @param policy the policy under test (created with time 0).
+     * @param docsPerTick the docs indexed before each run of the commit tracker.
+     * @param burstDocsPerTick the docs per tick above which a tick is considered part of a burst (for the stats).
+     * @return the outcome of the simulation.
+     */
+    public Result replay(CommitPolicy policy, long[] docsPerTick, long burstDocsPerTick)
+    {
+        Result result = new Result();
+        Deque<long[]> invisibleBatches = new ArrayDeque<>();
+        long writerMaxDoc = 0;
+        long searcherMaxDoc = 0;
+        long ramBytes = 0;
+        boolean uncommitted = false;
+
+        for (int tick = 0; tick < docsPerTick.length; tick++)
+        {
+            long now = (tick + 1) * tickMillis;
+            long docs = docsPerTick[tick];
+            if (docs > 0)
+            {
+                writerMaxDoc += docs;
+                ramBytes += docs * bytesPerDoc;
+                uncommitted = true;
+                invisibleBatches.add(new long[] { now, docs });
+            }
+
+            IndexActivity activity =
+                    new IndexActivity(writerMaxDoc, searcherMaxDoc, ramBytes, uncommitted, invisibleBatches.isEmpty(), warmupMillis);
+            CommitPolicy.Decision decision = policy.decide(now, false, policy.isAdaptive() ? activity : null);
+            result.decisions.merge(decision, 1, Integer::sum);
+
+            if (decision.isHardCommit())
+            {
+                uncommitted = false;
+                ramBytes = 0;
+            }
+
+            if (decision.isOpenSearcher())
+            {
+                long visibleAt = now + warmupMillis;
+                for (long[] batch : invisibleBatches)
+                {
+                    long lag = visibleAt - batch[0];
+                    result.maxFreshnessLag = Math.max(result.maxFreshnessLag, lag);
+                    result.totalFreshnessLag += lag * batch[1];
+                    result.visibleDocs += batch[1];
+                }
+                invisibleBatches.clear();
+                searcherMaxDoc = writerMaxDoc;
+                ramBytes = 0;
+                result.searcherOpenings++;
+                if (docs >= burstDocsPerTick)
+                {
+                    result.searcherOpeningsDuringBursts++;
+                }
+            }
+
+            policy.committed(decision, now, activity, decision.isOpenSearcher());
+        }
+        return result;
+    }
+
+    /**
+     * The outcome of a simulation.
+     */
+    public static class Result
+    {
+        private final Map<CommitPolicy.Decision, Integer> decisions = new EnumMap<>(CommitPolicy.Decision.class);
+        private int searcherOpenings;
+        private int searcherOpeningsDuringBursts;
+        private long maxFreshnessLag;
+        private long totalFreshnessLag;
+        private long visibleDocs;
+
+        public int getCount(CommitPolicy.Decision decision)
+        {
+            return decisions.getOrDefault(decision, 0);
+        }
+
+        public int getHardCommits()
+        {
+            return getCount(CommitPolicy.Decision.HARD_COMMIT) + getCount(CommitPolicy.Decision.HARD_COMMIT_AND_OPEN_SEARCHER);
+        }
+
+        public int getSearcherOpenings()
+        {
+            return searcherOpenings;
+        }
+
+        public int getSearcherOpeningsDuringBursts()
+        {
+            return searcherOpeningsDuringBursts;
+        }
+
+        /**
+         * @return the max time, in millis, between the indexing of a doc and its visibility.
+         */
+        public long getMaxFreshnessLag()
+        {
+            return maxFreshnessLag;
+        }
+
+        /**
+         * @return the mean time, in millis, between the indexing of a doc and its visibility.
+         */
+        public double getMeanFreshnessLag()
+        {
+            return visibleDocs == 0 ? 0 : (double) totalFreshnessLag / visibleDocs;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "Result [decisions=" + decisions + ", searcherOpenings=" + searcherOpenings
+                    + ", searcherOpeningsDuringBursts=" + searcherOpeningsDuringBursts
+                    + ", maxFreshnessLag=" + maxFreshnessLag + ", meanFreshnessLag=" + getMeanFreshnessLag() + "]";
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.solr.tracker;
+
+import static org.alfresco.solr.tracker.CommitPolicy.Decision.HARD_COMMIT;
+import static org.alfresco.solr.tracker.CommitPolicy.Decision.HARD_COMMIT_AND_OPEN_SEARCHER;
+import static org.alfresco.solr.tracker.CommitPolicy.Decision.NONE;
+import static org.alfresco.solr.tracker.CommitPolicy.Decision.SOFT_COMMIT;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import org.junit.Test;
+
+/**
+ * Tests the {@link CommitPolicy} decisions, replaying simulated workloads through the {@link CommitPolicySimulator}.
+ */
+public class CommitPolicyTest
+{
+    private static final long SECOND = 1000;
+    private static final long TARGET_FRESHNESS = 15 * SECOND;
+
+    @Test
+    public void timeBasedPolicy_shouldHardCommitOnTheConfiguredIntervals()
+    {
+        CommitPolicy policy = timeBasedPolicy();
+        CommitPolicySimulator.Result result =
+                new CommitPolicySimulator(10 * SECOND, 500, 1024).replay(policy, CommitPolicySimulator.workload("100*60"), 100);
+
+        assertEquals(0, result.getCount(SOFT_COMMIT));
+        assertEquals(8, result.getHardCommits());
+        assertEquals(4, result.getSearcherOpenings());
+        assertTrue(result.toString(), result.getMaxFreshnessLag() > 120 * SECOND);
+    }
+
+    @Test
+    public void adaptivePolicy_shouldMeetTheFreshnessTarget_underSteadyIngest()
+    {
+        CommitPolicy policy = adaptivePolicy(50000, 500);
+        CommitPolicySimulator.Result result =
+                new CommitPolicySimulator(SECOND, 500, 1024).replay(policy, CommitPolicySimulator.workload("100*120"), 2000);
+
+        assertTrue(result.toString(), result.getMaxFreshnessLag() <= TARGET_FRESHNESS);
+        assertTrue(result.toString(), result.getCount(SOFT_COMMIT) > 100);
+
+        // The commit interval is still the max time between hard commits
+        assertEquals(result.toString(), 1, result.getHardCommits());
+    }
+
+    @Test
+    public void adaptivePolicy_shouldDeferSearcherOpenings_duringBursts()
+    {
+        long[] workload = CommitPolicySimulator.workload("100*30, 2000*30, 100*30");
+        CommitPolicySimulator simulator = new CommitPolicySimulator(SECOND, 500, 1024);
+
+        CommitPolicySimulator.Result burstAware = simulator.replay(adaptivePolicy(Long.MAX_VALUE, 500), workload, 2000);
+        CommitPolicySimulator.Result burstUnaware = simulator.replay(adaptivePolicy(Long.MAX_VALUE, Long.MAX_VALUE), workload, 2000);
+
+        assertEquals(burstUnaware.toString(), 30, burstUnaware.getSearcherOpeningsDuringBursts());
+        assertTrue(burstAware.toString(), burstAware.getSearcherOpeningsDuringBursts() <= 2);
+        assertTrue(burstAware.toString(), burstAware.getMaxFreshnessLag() <= TARGET_FRESHNESS);
+    }
+
+    @Test
+    public void adaptivePolicy_shouldHardCommit_whenTooManyDocsArePending()
+    {
+        CommitPolicy policy = new CommitPolicy(true, 60 * SECOND, 120 * SECOND, TARGET_FRESHNESS, Long.MAX_VALUE,
+                    1000, Long.MAX_VALUE, Long.MAX_VALUE, null, 0);
+        CommitPolicySimulator.Result result =
+                new CommitPolicySimulator(SECOND, 500, 1024).replay(policy, CommitPolicySimulator.workload("2000*10"), 2000);
+
+        assertEquals(result.toString(), 9, result.getCount(HARD_COMMIT));
+        assertEquals(result.toString(), 0, result.getSearcherOpenings());
+    }
+
+    @Test
+    public void adaptivePolicy_shouldHardCommit_whenTheRamBufferIsFull()
+    {
+        CommitPolicy policy = new CommitPolicy(true, 60 * SECOND, 120 * SECOND, TARGET_FRESHNESS, Long.MAX_VALUE,
+                    Long.MAX_VALUE, 1024 * 1024, Long.MAX_VALUE, null, 0);
+
+        assertEquals(NONE, policy.decide(SECOND, false, new IndexActivity(10, 10, 1024, true, true, 0)));
+        assertEquals(HARD_COMMIT, policy.decide(2 * SECOND, false, new IndexActivity(20, 10, 1024 * 1024, true, false, 0)));
+    }
+
+    @Test
+    public void maintenance_shouldAlwaysBeHardCommitted()
+    {
+        assertEquals(HARD_COMMIT, timeBasedPolicy().decide(SECOND, true, null));
+        assertEquals(HARD_COMMIT, adaptivePolicy(50000, 500).decide(SECOND, true, new IndexActivity(10, 10, 0, false, true, 0)));
+    }
+
+    @Test
+    public void softCommits_shouldBeTrackedUntilTheNextHardCommitOrReopenAfterRollback()
+    {
+        CommitPolicy policy = adaptivePolicy(50000, 500);
+        IndexActivity activity = new IndexActivity(20, 10, 1024, true, false, 0);
+
+        policy.committed(SOFT_COMMIT, SECOND, activity, true);
+        assertTrue(policy.hasSoftCommitsSinceHardCommit());
+
+        policy.committed(HARD_COMMIT, 2 * SECOND, activity, false);
+        assertFalse(policy.hasSoftCommitsSinceHardCommit());
+
+        policy.committed(SOFT_COMMIT, 3 * SECOND, activity, true);
+        policy.rolledBack(4 * SECOND, false);
+        assertTrue(policy.hasSoftCommitsSinceHardCommit());
+
+        policy.rolledBack(5 * SECOND, true);
+        assertFalse(policy.hasSoftCommitsSinceHardCommit());
+    }
+
+    @Test
+    public void decisions_shouldBeRecordedInTheTrackerStats()
+    {
+        TrackerStats trackerStats = mock(TrackerStats.class);
+        CommitPolicy policy = new CommitPolicy(true, 60 * SECOND, 120 * SECOND, TARGET_FRESHNESS, SECOND,
+                    50000, Long.MAX_VALUE, 500, trackerStats, 0);
+        IndexActivity activity = new IndexActivity(110, 10, 1024, true, false, 200);
+
+        CommitPolicy.Decision decision = policy.decide(2 * SECOND, false, activity);
+        policy.committed(decision, 2 * SECOND, activity, true);
+
+        assertEquals(SOFT_COMMIT, decision);
+        verify(trackerStats).addCommitDecision(SOFT_COMMIT.getLabel(), 100);
+        verify(trackerStats).addSearcherFreshnessLag(2 * SECOND);
+    }
+
+    @Test
+    public void timeBasedPolicy_shouldOpenSearcher_afterTheSearcherInterval()
+    {
+        CommitPolicy policy = timeBasedPolicy();
+
+        assertEquals(NONE, policy.decide(60 * SECOND, false, null));
+        assertEquals(HARD_COMMIT_AND_OPEN_SEARCHER, policy.decide(121 * SECOND, false, null));
+    }
+
+    private CommitPolicy timeBasedPolicy()
+    {
+        return new CommitPolicy(false, 60 * SECOND, 120 * SECOND, TARGET_FRESHNESS, SECOND,
+                    50000, 64 * 1024 * 1024, 500, null, 0);
+    }
+
+    private CommitPolicy adaptivePolicy(long maxPendingDocs, long burstDocsPerSecond)
+    {
+        return new CommitPolicy(true, 60 * SECOND, 120 * SECOND, TARGET_FRESHNESS, SECOND,
+                    maxPendingDocs, 64 * 1024 * 1024, burstDocsPerSecond, null, 0);
+    }
+}
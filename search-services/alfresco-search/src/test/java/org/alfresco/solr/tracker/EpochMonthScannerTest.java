@@ -0,0 +1,127 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.solr.tracker;
+
+import static org.junit.Assert.assertEquals;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.Random;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+public class EpochMonthScannerTest
+{
+    private static final DateTimeFormatter ISO_MILLIS = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSXXX");
+
+    private static int calendarEpochMonth(String value, TimeZone timeZone)
+    {
+        GregorianCalendar calendar = new GregorianCalendar(timeZone);
+        calendar.setTime(Date.from(OffsetDateTime.parse(value).toInstant()));
+        return calendar.get(Calendar.YEAR) * 12 + calendar.get(Calendar.MONTH);
+    }
+
+    @Test
+    public void canonicalForms()
+    {
+        TimeZone utc = TimeZone.getTimeZone("UTC");
+
+        assertEquals(2020 * 12, EpochMonthScanner.scan("2020-01-31T23:59:59.999Z", utc));
+        assertEquals(2020 * 12 + 1, EpochMonthScanner.scan("2020-02-01T00:00:00.000Z", utc));
+        assertEquals(2020 * 12 + 1, EpochMonthScanner.scan("2020-02-29T10:00:00Z", utc));
+        assertEquals(2020 * 12 + 1, EpochMonthScanner.scan("2020-01-31T23:30:00.000-01:00", utc));
+        assertEquals(2019 * 12 + 11, EpochMonthScanner.scan("2020-01-01T00:30:00.000+01:00", utc));
+    }
+
+    @Test
+    public void monthOfTheInstantInTheTimeZone()
+    {
+        assertEquals(2020 * 12 + 1, EpochMonthScanner.scan("2020-01-31T23:30:00.000Z", TimeZone.getTimeZone("Europe/Rome")));
+        assertEquals(2019 * 12 + 11, EpochMonthScanner.scan("2020-01-01T03:00:00.000Z", TimeZone.getTimeZone("America/New_York")));
+    }
+
+    @Test
+    public void otherFormsAreNotScanned()
+    {
+        TimeZone utc = TimeZone.getTimeZone("UTC");
+        String[] values = {
+                "2020-01-31",
+                "2020-01-31T10:00Z",
+                "2020-01-31T10:00:00",
+                "2020-01-31T10:00:00.000",
+                "2020-01-31T10:00:00.0Z",
+                "2020-01-31T10:00:00.000000Z",
+                "2020-01-31T10:00:00.000+0100",
+                "2020-01-31 10:00:00.000Z",
+                "2020-13-01T10:00:00.000Z",
+                "2019-02-29T10:00:00.000Z",
+                "2020-01-31T24:00:00.000Z",
+                "1500-01-31T10:00:00.000Z",
+                "-2020-01-31T10:00:00.000Z",
+                "2O20-01-31T10:00:00.000Z" };
+
+        for (String value : values)
+        {
+            assertEquals(value, EpochMonthScanner.UNPARSABLE, EpochMonthScanner.scan(value, utc));
+        }
+    }
+
+    @Test
+    public void sameMonthAsTheCalendar()
+    {
+        Random random = new Random(42);
+        String[] zones = { "UTC", "Europe/London", "Europe/Rome", "America/New_York", "Asia/Kolkata", "Pacific/Chatham" };
+        for (int i = 0; i < 20_000; i++)
+        {
+            long epochSecond = (long) (random.nextDouble() * 8_000_000_000L) - 2_000_000_000L;
+            ZoneOffset offset = ZoneOffset.ofTotalSeconds((random.nextInt(48) - 24) * 1800);
+            OffsetDateTime dateTime = OffsetDateTime.ofInstant(Instant.ofEpochSecond(epochSecond, random.nextInt(1000) * 1_000_000), offset);
+            String value = dateTime.format(ISO_MILLIS);
+            TimeZone timeZone = TimeZone.getTimeZone(zones[i % zones.length]);
+
+            assertEquals(value + " " + timeZone.getID(), calendarEpochMonth(value, timeZone), EpochMonthScanner.scan(value, timeZone));
+        }
+    }
+
+    @Test
+    public void civilDaysRoundTrip()
+    {
+        for (long day = EpochMonthScanner.daysFromCivil(1600, 1, 1); day < EpochMonthScanner.daysFromCivil(2400, 1, 1); day += 17)
+        {
+            LocalDate date = LocalDate.ofEpochDay(day);
+            assertEquals(day, EpochMonthScanner.daysFromCivil(date.getYear(), date.getMonthValue(), date.getDayOfMonth()));
+            assertEquals(date.getYear() * 12 + date.getMonthValue() - 1, EpochMonthScanner.epochMonth(day));
+        }
+    }
+}
@@ -28,6 +28,7 @@ package org.alfresco.solr.tracker;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Properties;
 
@@ -274,6 +275,44 @@ public class MetadataTrackerTest
         assertTrue(metadataTracker.isTransactionToBeIndexed(incomingTransaction));
     }
 
+    @Test
+    public void transactionIsQuarantined_transactionShouldBeSkippedAfterRollback()
+    {
+        var poisonTransaction = new Transaction();
+        poisonTransaction.setId(1);
+        poisonTransaction.setCommitTimeMs(10L);
+
+        metadataTracker.transactionQuarantine = new TransactionQuarantine(true, 1);
+        metadataTracker.transactionQuarantine.recordFailure(poisonTransaction, new RuntimeException("Poison transaction"));
+
+        // The rollback reloads the tracker state: the transaction is fetched again and it isn't in the index
+        metadataTracker.setRollback(true, new RuntimeException("Another failure"));
+        assertFalse(metadataTracker.isTransactionToBeIndexed(poisonTransaction));
+
+        metadataTracker.addTransactionToReindex(poisonTransaction.getId());
+        assertTrue(metadataTracker.isTransactionToBeIndexed(poisonTransaction));
+    }
+
+    @Test
+    public void transactionIsQuarantinedAgain_transactionShouldNotBeRetried()
+    {
+        var poisonTransaction = new Transaction();
+        poisonTransaction.setId(1);
+        var releasedTransaction = new Transaction();
+        releasedTransaction.setId(2);
+
+        metadataTracker.transactionQuarantine = new TransactionQuarantine(true, 1);
+        metadataTracker.transactionQuarantine.recordFailure(poisonTransaction, new RuntimeException("Poison transaction"));
+        metadataTracker.transactionQuarantine.recordFailure(releasedTransaction, new RuntimeException("Transient failure"));
+        assertEquals(List.of(1L, 2L), metadataTracker.retryQuarantinedTransactions());
+
+        metadataTracker.transactionQuarantine.recordFailure(poisonTransaction, new RuntimeException("Poison transaction"));
+
+        List<Transaction> batch = Collections.emptyList();
+        assertEquals(List.of(List.of(releasedTransaction), batch),
+                metadataTracker.withTransactionsToRetry(Collections.singletonList(batch)));
+    }
+
     private Node getNode()
     {
         Node node = new Node();
@@ -0,0 +1,169 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+
+package org.alfresco.solr.tracker;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ModelSnapshotTest
+{
+    private File modelDir;
+    private File content;
+    private File custom;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        modelDir = Files.createTempDirectory("alfrescoModels").toFile();
+        content = model("cm.xml", "<model name=\"cm:contentmodel\"/>");
+        custom = model("custom.xml", "<model name=\"my:custom\"><imports><import uri=\"cm\"/></imports></model>");
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        try (Stream<java.nio.file.Path> paths = Files.walk(modelDir.toPath()))
+        {
+            paths.sorted(Comparator.reverseOrder()).map(java.nio.file.Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    public void snapshotKeepsTheLoadOrderAndTheModelContent() throws IOException
+    {
+        ModelSnapshot.write(modelDir, asList(content, custom), emptyList());
+
+        ModelSnapshot snapshot = ModelSnapshot.open(modelDir);
+        assertNotNull(snapshot);
+        assertEquals(2, snapshot.size());
+        assertEquals("cm.xml", snapshot.getFileName(0));
+        assertEquals("custom.xml", snapshot.getFileName(1));
+        assertEquals(new String(Files.readAllBytes(custom.toPath()), StandardCharsets.UTF_8), read(snapshot, 1));
+    }
+
+    @Test
+    public void checksumOfTheOpenedSnapshotIsTheWrittenOne() throws IOException
+    {
+        long checksum = ModelSnapshot.write(modelDir, asList(content, custom), emptyList());
+        assertEquals(checksum, ModelSnapshot.open(modelDir).getChecksum());
+
+        assertNotEquals(checksum, ModelSnapshot.write(modelDir, singletonList(content), singletonList(custom)));
+    }
+
+    @Test
+    public void filesNotToBeLoadedAreSkipped() throws IOException
+    {
+        ModelSnapshot.write(modelDir, singletonList(content), singletonList(custom));
+
+        ModelSnapshot snapshot = ModelSnapshot.open(modelDir);
+        assertNotNull(snapshot);
+        assertEquals(1, snapshot.size());
+        assertEquals("cm.xml", snapshot.getFileName(0));
+    }
+
+    @Test
+    public void snapshotIsIgnoredWhenAModelFileChanges() throws IOException
+    {
+        ModelSnapshot.write(modelDir, asList(content, custom), emptyList());
+        Files.write(custom.toPath(), "<model name=\"my:custom\"/>".getBytes(StandardCharsets.UTF_8));
+
+        assertNull(ModelSnapshot.open(modelDir));
+    }
+
+    @Test
+    public void snapshotIsIgnoredWhenAModelFileIsAdded() throws IOException
+    {
+        ModelSnapshot.write(modelDir, asList(content, custom), emptyList());
+        model("other.xml", "<model name=\"my:other\"/>");
+
+        assertNull(ModelSnapshot.open(modelDir));
+    }
+
+    @Test
+    public void snapshotInAnotherFormatVersionIsIgnored() throws IOException
+    {
+        ModelSnapshot.write(modelDir, asList(content, custom), emptyList());
+        try (RandomAccessFile file = new RandomAccessFile(new File(modelDir, ModelSnapshot.FILE_NAME), "rw"))
+        {
+            file.seek(Integer.BYTES);
+            file.writeInt(ModelSnapshot.FORMAT_VERSION + 1);
+        }
+
+        assertNull(ModelSnapshot.open(modelDir));
+    }
+
+    @Test
+    public void snapshotIsIgnoredWhenAModelFileChangesWithTheSameLengthAndTime() throws IOException
+    {
+        ModelSnapshot.write(modelDir, asList(content, custom), emptyList());
+        long lastModified = custom.lastModified();
+        Files.write(custom.toPath(), "<model name=\"my:cust0m\"><imports><import uri=\"cm\"/></imports></model>".getBytes(StandardCharsets.UTF_8));
+        custom.setLastModified(lastModified);
+
+        assertNull(ModelSnapshot.open(modelDir));
+    }
+
+    @Test
+    public void missingSnapshotIsNull()
+    {
+        assertNull(ModelSnapshot.open(modelDir));
+    }
+
+    private File model(String name, String xml) throws IOException
+    {
+        File file = new File(modelDir, name);
+        Files.write(file.toPath(), xml.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static String read(ModelSnapshot snapshot, int i) throws IOException
+    {
+        try (InputStream stream = snapshot.openModel(i))
+        {
+            return new String(stream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.solr.tracker;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class PrefetchingPipelineTest
+{
+    /**
+     * A source which returns the given windows, then null.
+     */
+    private static PrefetchingPipeline.Source<Integer> windows(List<List<Integer>> windows, AtomicInteger fetchedWindows)
+    {
+        Iterator<List<Integer>> iterator = windows.iterator();
+        return () -> {
+            if (!iterator.hasNext())
+            {
+                return null;
+            }
+            fetchedWindows.incrementAndGet();
+            return iterator.next();
+        };
+    }
+
+    private static List<String> drain(PrefetchingPipeline<Integer, String> pipeline) throws Exception
+    {
+        List<String> taken = new ArrayList<>();
+        String next;
+        while ((next = pipeline.take()) != null)
+        {
+            taken.add(next);
+        }
+        return taken;
+    }
+
+    @Test
+    public void itemsAreTakenInSourceOrder() throws Exception
+    {
+        for (int depth = 0; depth <= 3; depth++)
+        {
+            List<List<Integer>> source = asList(asList(1, 2, 3), emptyList(), asList(4), asList(5, 6, 7, 8));
+            try (PrefetchingPipeline<Integer, String> pipeline =
+                         new PrefetchingPipeline<>(windows(source, new AtomicInteger()), item -> "#" + item, depth))
+            {
+                assertEquals("Depth " + depth, asList("#1", "#2", "#3", "#4", "#5", "#6", "#7", "#8"), drain(pipeline));
+                assertNull(pipeline.take());
+            }
+        }
+    }
+
+    @Test
+    public void noWindows() throws Exception
+    {
+        try (PrefetchingPipeline<Integer, String> pipeline =
+                     new PrefetchingPipeline<>(windows(emptyList(), new AtomicInteger()), item -> "#" + item, 2))
+        {
+            assertNull(pipeline.take());
+        }
+    }
+
+    @Test
+    public void fetchFailureIsRethrownAfterThePrecedingItems() throws Exception
+    {
+        IOException failure = new IOException("Repository unavailable");
+        for (int depth = 0; depth <= 2; depth++)
+        {
+            PrefetchingPipeline.Stage<Integer, String> stage = item -> {
+                if (item == 3)
+                {
+                    throw failure;
+                }
+                return "#" + item;
+            };
+
+            try (PrefetchingPipeline<Integer, String> pipeline =
+                         new PrefetchingPipeline<>(windows(asList(asList(1, 2), asList(3, 4)), new AtomicInteger()), stage, depth))
+            {
+                assertEquals("#1", pipeline.take());
+                assertEquals("#2", pipeline.take());
+                try
+                {
+                    pipeline.take();
+                    fail("Depth " + depth + ": the fetch failure should have been rethrown");
+                }
+                catch (IOException exception)
+                {
+                    assertSame(failure, exception);
+                }
+                assertNull(pipeline.take());
+            }
+        }
+    }
+
+    @Test
+    public void sourceFailureIsWrapped() throws Exception
+    {
+        Exception failure = new Exception("Bad window");
+        PrefetchingPipeline.Source<Integer> source = () -> {
+            throw failure;
+        };
+
+        try (PrefetchingPipeline<Integer, String> pipeline = new PrefetchingPipeline<>(source, item -> "#" + item, 1))
+        {
+            pipeline.take();
+            fail("The source failure should have been rethrown");
+        }
+        catch (IOException exception)
+        {
+            assertSame(failure, exception.getCause());
+        }
+    }
+
+    @Test
+    public void prefetchingIsBounded() throws Exception
+    {
+        List<List<Integer>> source = new ArrayList<>();
+        for (int i = 0; i < 100; i++)
+        {
+            source.add(asList(i));
+        }
+        AtomicInteger fetchedWindows = new AtomicInteger();
+        AtomicInteger fetchedItems = new AtomicInteger();
+
+        try (PrefetchingPipeline<Integer, String> pipeline = new PrefetchingPipeline<>(windows(source, fetchedWindows),
+                item -> {
+                    fetchedItems.incrementAndGet();
+                    return "#" + item;
+                }, 2))
+        {
+            assertEquals("#0", pipeline.take());
+            Thread.sleep(200);
+
+            // Two fetched items waiting to be taken, one blocked in the fetch stage, two in the source queue and
+            // one blocked in the source stage
+            assertTrue("Fetched " + fetchedItems.get(), fetchedItems.get() <= 4);
+            assertTrue("Fetched windows " + fetchedWindows.get(), fetchedWindows.get() <= 7);
+
+            assertEquals("#1", pipeline.take());
+        }
+    }
+}
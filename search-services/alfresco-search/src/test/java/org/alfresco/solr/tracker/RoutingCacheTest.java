@@ -0,0 +1,84 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.solr.tracker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class RoutingCacheTest
+{
+    @Test
+    public void decisionsAreBoundToTheValueAndTheShard()
+    {
+        RoutingCache cache = new RoutingCache(16);
+        cache.put(10, "2020-01-31T10:00:00.000Z", 4, 1, true);
+
+        assertEquals(Boolean.TRUE, cache.get(10, "2020-01-31T10:00:00.000Z", 4, 1));
+        assertNull(cache.get(10, "2020-02-01T10:00:00.000Z", 4, 1));
+        assertNull(cache.get(10, "2020-01-31T10:00:00.000Z", 8, 1));
+        assertNull(cache.get(10, "2020-01-31T10:00:00.000Z", 4, 2));
+        assertNull(cache.get(11, "2020-01-31T10:00:00.000Z", 4, 1));
+
+        cache.put(10, "2020-02-01T10:00:00.000Z", 4, 1, false);
+        assertEquals(Boolean.FALSE, cache.get(10, "2020-02-01T10:00:00.000Z", 4, 1));
+        assertNull(cache.get(10, "2020-01-31T10:00:00.000Z", 4, 1));
+    }
+
+    @Test
+    public void slotsAreOverwritten()
+    {
+        RoutingCache cache = new RoutingCache(4);
+        for (long nodeId = 0; nodeId < 100; nodeId++)
+        {
+            cache.put(nodeId, "creator", 2, 0, nodeId % 2 == 0);
+        }
+
+        int hits = 0;
+        for (long nodeId = 0; nodeId < 100; nodeId++)
+        {
+            Boolean routed = cache.get(nodeId, "creator", 2, 0);
+            if (routed != null)
+            {
+                assertEquals(nodeId % 2 == 0, routed);
+                hits++;
+            }
+        }
+        assertTrue(hits > 0 && hits <= 4);
+    }
+
+    @Test
+    public void disabled()
+    {
+        RoutingCache cache = new RoutingCache(0);
+        cache.put(10, "creator", 2, 0, true);
+
+        assertNull(cache.get(10, "creator", 2, 0));
+    }
+}
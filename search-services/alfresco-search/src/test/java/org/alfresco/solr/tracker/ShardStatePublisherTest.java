@@ -0,0 +1,191 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.solr.tracker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Properties;
+
+import org.alfresco.repo.index.shard.ShardState;
+import org.alfresco.repo.index.shard.ShardStateBuilder;
+import org.alfresco.solr.InformationServer;
+import org.alfresco.solr.client.SOLRAPIClient;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+/**
+ * Tests the delta-based publishing of the {@link ShardStatePublisher}.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class ShardStatePublisherTest
+{
+    private static final String CORE_NAME = "theCoreName";
+
+    @Mock
+    private SOLRAPIClient repositoryClient;
+
+    @Mock
+    private InformationServer srv;
+
+    private ShardStatePublisher publisher;
+
+    @Before
+    public void setUp()
+    {
+        Properties props = new Properties();
+        props.setProperty(ShardStatePublisher.MIN_PUBLISH_INTERVAL, "1000");
+        props.setProperty(ShardStatePublisher.MAX_PUBLISH_INTERVAL, "5000");
+        publisher = spy(new ShardStatePublisher(false, props, repositoryClient, CORE_NAME, srv));
+    }
+
+    @Test
+    public void unchangedState_shouldBePublishedOnlyOnce() throws Exception
+    {
+        ShardState state = shardState(10, 1000, "a");
+        doReturn(state).when(publisher).getShardState();
+
+        publisher.doTrack("1");
+        publisher.doTrack("2");
+        publisher.doTrack("3");
+
+        verify(repositoryClient, times(1)).getTransactions(any(), isNull(), any(), isNull(), anyInt(), any());
+
+        ShardStateRegistry.Entry entry = publisher.getShardStateRegistry().get(CORE_NAME);
+        assertSame(state, entry.getPublishedState());
+        assertEquals(2, entry.getSkippedRuns());
+        assertEquals(1000, entry.getPublishInterval());
+    }
+
+    @Test
+    public void changedState_shouldBePublished() throws Exception
+    {
+        ShardState first = shardState(10, 1000, "a");
+        ShardState second = shardState(11, 2000, "a");
+        doReturn(first).doReturn(second).when(publisher).getShardState();
+
+        publisher.doTrack("1");
+        publisher.doTrack("2");
+
+        verify(repositoryClient).getTransactions(any(), isNull(), any(), isNull(), anyInt(), same(first));
+        verify(repositoryClient).getTransactions(any(), isNull(), any(), isNull(), anyInt(), same(second));
+        assertSame(second, publisher.getShardStateRegistry().get(CORE_NAME).getPublishedState());
+    }
+
+    @Test
+    public void failedPublication_shouldBeRetriedAtNextRun() throws Exception
+    {
+        ShardState state = shardState(10, 1000, "a");
+        doReturn(state).when(publisher).getShardState();
+        doThrow(new IOException("unreachable"))
+                .doReturn(null)
+                .when(repositoryClient).getTransactions(any(), isNull(), any(), isNull(), anyInt(), any());
+
+        publisher.doTrack("1");
+
+        ShardStateRegistry.Entry entry = publisher.getShardStateRegistry().get(CORE_NAME);
+        assertSame(state, entry.getShardState());
+        assertNull(entry.getPublishedState());
+
+        publisher.doTrack("2");
+
+        verify(repositoryClient, times(2)).getTransactions(any(), isNull(), any(), isNull(), anyInt(), any());
+        assertSame(state, publisher.getShardStateRegistry().get(CORE_NAME).getPublishedState());
+    }
+
+    @Test
+    public void idleState_shouldBePublishedWithIncreasingIntervals()
+    {
+        ShardState state = shardState(10, 1000, "a");
+        ShardStateRegistry.Entry entry = new ShardStateRegistry.Entry(state, state, 0, 10000, 1000, 0);
+
+        assertFalse(publisher.shouldPublish(entry, shardState(10, 1000, "a"), 10999));
+        assertTrue(publisher.shouldPublish(entry, shardState(10, 1000, "a"), 11000));
+
+        assertEquals(2000, publisher.nextPublishInterval(entry, shardState(10, 1000, "a")));
+
+        ShardStateRegistry.Entry maxed = new ShardStateRegistry.Entry(state, state, 0, 10000, 4000, 0);
+        assertEquals(5000, publisher.nextPublishInterval(maxed, shardState(10, 1000, "a")));
+    }
+
+    @Test
+    public void meaningfulChange_shouldResetTheInterval()
+    {
+        ShardState state = shardState(10, 1000, "a");
+        ShardStateRegistry.Entry entry = new ShardStateRegistry.Entry(state, state, 0, 10000, 4000, 0);
+
+        assertTrue(publisher.shouldPublish(entry, shardState(11, 1000, "a"), 10001));
+        assertTrue(publisher.shouldPublish(entry, shardState(10, 1001, "a"), 10001));
+        assertTrue(publisher.shouldPublish(entry, shardState(10, 1000, "b"), 10001));
+        assertEquals(1000, publisher.nextPublishInterval(entry, shardState(11, 1000, "a")));
+    }
+
+    @Test
+    public void disabledBackoff_shouldPublishAtEveryRun()
+    {
+        Properties props = new Properties();
+        props.setProperty(ShardStatePublisher.MAX_PUBLISH_INTERVAL, "0");
+        ShardStatePublisher alwaysPublish = new ShardStatePublisher(false, props, repositoryClient, CORE_NAME, srv);
+
+        ShardState state = shardState(10, 1000, "a");
+        ShardStateRegistry.Entry entry = new ShardStateRegistry.Entry(state, state, 0, 10000, 1000, 0);
+
+        assertTrue(alwaysPublish.shouldPublish(entry, shardState(10, 1000, "a"), 10001));
+    }
+
+    private ShardState shardState(long lastIndexedTxId, long lastIndexedTxCommitTime, String shardProperty)
+    {
+        HashMap<String, String> propertyBag = new HashMap<>();
+        propertyBag.put("coreName", CORE_NAME);
+        propertyBag.put("shard.property", shardProperty);
+
+        return ShardStateBuilder.shardState()
+                .withMaster(false)
+                .withLastUpdated(System.currentTimeMillis())
+                .withLastIndexedTxId(lastIndexedTxId)
+                .withLastIndexedTxCommitTime(lastIndexedTxCommitTime)
+                .withPropertyBag(propertyBag)
+                .build();
+    }
+}
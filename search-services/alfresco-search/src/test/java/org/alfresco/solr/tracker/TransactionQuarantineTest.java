@@ -0,0 +1,123 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.solr.tracker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.Properties;
+
+import org.alfresco.solr.client.Transaction;
+import org.junit.Test;
+
+/**
+ * Tests the {@link TransactionQuarantine}.
+ */
+public class TransactionQuarantineTest
+{
+    @Test
+    public void transaction_shouldBeQuarantined_afterMaxFailures()
+    {
+        TransactionQuarantine quarantine = new TransactionQuarantine(true, 3);
+        Transaction transaction = transaction(10);
+        IOException failure = new IOException("poison");
+
+        assertFalse(quarantine.recordFailure(transaction, failure));
+        assertFalse(quarantine.recordFailure(transaction, failure));
+        assertFalse(quarantine.isQuarantined(10));
+        assertTrue(quarantine.getQuarantinedTransactions().isEmpty());
+
+        assertTrue(quarantine.recordFailure(transaction, failure));
+        assertTrue(quarantine.isQuarantined(10));
+
+        TransactionQuarantine.Failure quarantined = quarantine.getQuarantinedTransactions().get(10L);
+        assertEquals(3, quarantined.getCount());
+        assertSame(failure, quarantined.getCause());
+        assertSame(transaction, quarantined.getTransaction());
+    }
+
+    @Test
+    public void successfulRetry_shouldForgetThePreviousFailures()
+    {
+        TransactionQuarantine quarantine = new TransactionQuarantine(true, 2);
+        Transaction transaction = transaction(10);
+
+        assertFalse(quarantine.recordFailure(transaction, new IOException()));
+        quarantine.succeeded(transaction);
+
+        assertFalse(quarantine.recordFailure(transaction, new IOException()));
+        assertFalse(quarantine.isQuarantined(10));
+    }
+
+    @Test
+    public void release_shouldReturnOnlyQuarantinedTransactions()
+    {
+        TransactionQuarantine quarantine = new TransactionQuarantine(true, 2);
+        Transaction failedOnce = transaction(10);
+        Transaction poison = transaction(20);
+
+        quarantine.recordFailure(failedOnce, new IOException());
+        quarantine.recordFailure(poison, new IOException());
+        quarantine.recordFailure(poison, new IOException());
+
+        assertNull(quarantine.release(10));
+        assertSame(poison, quarantine.release(20));
+        assertFalse(quarantine.isQuarantined(20));
+        assertTrue(quarantine.getQuarantinedTransactions().isEmpty());
+    }
+
+    @Test
+    public void checkpointMode_shouldBeDisabledByDefault()
+    {
+        assertFalse(TransactionQuarantine.create(new Properties()).isEnabled());
+
+        Properties properties = new Properties();
+        properties.setProperty(TransactionQuarantine.ROLLBACK_MODE, "checkpoint");
+        assertTrue(TransactionQuarantine.create(properties).isEnabled());
+    }
+
+    @Test
+    public void communicationFailures_shouldBeRecognised()
+    {
+        assertTrue(TransactionQuarantine.isCommunicationFailure(new IOException(new SocketTimeoutException())));
+        assertFalse(TransactionQuarantine.isCommunicationFailure(new IOException(new IllegalArgumentException())));
+        assertFalse(TransactionQuarantine.isCommunicationFailure(null));
+    }
+
+    private Transaction transaction(long id)
+    {
+        Transaction transaction = new Transaction();
+        transaction.setId(id);
+        transaction.setCommitTimeMs(id * 1000);
+        return transaction;
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.apache.solr.handler.component;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Set;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.PhraseQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.WildcardQuery;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class OffsetHighlighterTest
+{
+    private static final String OFFSETS_FIELD = "content@s_stored_lt@{http://www.alfresco.org/model/content/1.0}content";
+    private static final String POSITIONS_FIELD = "text@s_stored_lt@{http://www.alfresco.org/model/content/1.0}name";
+    private static final String NAME_FIELD = POSITIONS_FIELD;
+
+    private static final String TEXT = "Lorem ipsum dolor sit amet. The quick brown fox jumps over the lazy dog. "
+            + "Consectetur adipiscing elit, sed do eiusmod. A brown dog & a <fox>.";
+    private static final String VALUE = "\u0000en\u0000" + TEXT;
+
+    private static Directory directory;
+    private static DirectoryReader reader;
+    private static LeafReader leaf;
+
+    @BeforeClass
+    public static void buildIndex() throws IOException
+    {
+        FieldType withOffsets = new FieldType(TextField.TYPE_STORED);
+        withOffsets.setIndexOptions(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS_AND_OFFSETS);
+        withOffsets.freeze();
+
+        directory = new RAMDirectory();
+        try (IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(new StandardAnalyzer())))
+        {
+            Document document = new Document();
+            document.add(new Field(OFFSETS_FIELD, VALUE, withOffsets));
+            document.add(new Field(POSITIONS_FIELD, VALUE, TextField.TYPE_STORED));
+            writer.addDocument(document);
+        }
+        reader = DirectoryReader.open(directory);
+        leaf = reader.leaves().get(0).reader();
+    }
+
+    @AfterClass
+    public static void closeIndex() throws IOException
+    {
+        reader.close();
+        directory.close();
+    }
+
+    private static OffsetHighlighter.FieldOptions options(int fragsize, int snippets, int maxAnalyzedChars, boolean html)
+    {
+        return new OffsetHighlighter.FieldOptions(fragsize, snippets, maxAnalyzedChars, "<em>", "</em>", html);
+    }
+
+    @Test
+    public void termsAreExtractedWithoutLocaleMarker()
+    {
+        BooleanQuery query = new BooleanQuery.Builder()
+                .add(new TermQuery(new Term("text@s__t@{http://www.alfresco.org/model/content/1.0}name", "{en_GB}quick")), Occur.SHOULD)
+                .add(new PhraseQuery("text@s____@{http://www.alfresco.org/model/content/1.0}name", "{en}brown", "{en}fox"), Occur.MUST)
+                .add(new TermQuery(new Term("TYPE", "{http://www.alfresco.org/model/content/1.0}folder")), Occur.MUST_NOT)
+                .add(new MatchAllDocsQuery(), Occur.FILTER)
+                .build();
+
+        assertEquals(Set.of("quick", "brown", "fox"), OffsetHighlighter.extractTerms(query, NAME_FIELD));
+    }
+
+    @Test
+    public void onlyTermsOfTheHighlightedFieldAreExtracted()
+    {
+        BooleanQuery query = new BooleanQuery.Builder()
+                .add(new TermQuery(new Term("text@s____@{http://www.alfresco.org/model/content/1.0}name", "{en}quick")), Occur.MUST)
+                .add(new TermQuery(new Term("mltext@m___t@{http://www.alfresco.org/model/content/1.0}title", "{en}brown")), Occur.SHOULD)
+                .add(new TermQuery(new Term("TYPE", "{http://www.alfresco.org/model/content/1.0}content")), Occur.MUST)
+                .add(new TermQuery(new Term("ASPECT", "{http://www.alfresco.org/model/content/1.0}titled")), Occur.SHOULD)
+                .build();
+
+        assertEquals(Set.of("quick"), OffsetHighlighter.extractTerms(query, NAME_FIELD));
+    }
+
+    @Test
+    public void namespacePrefixesAreNotLocaleMarkers()
+    {
+        Query query = new TermQuery(new Term("text@s____@{http://www.alfresco.org/model/content/1.0}name", "{http://www.alfresco.org/model/content/1.0}content"));
+
+        assertEquals(Set.of("{http://www.alfresco.org/model/content/1.0}content"), OffsetHighlighter.extractTerms(query, NAME_FIELD));
+    }
+
+    @Test
+    public void multiTermQueriesAreNotSupported()
+    {
+        BooleanQuery query = new BooleanQuery.Builder()
+                .add(new TermQuery(new Term("content", "{en}quick")), Occur.SHOULD)
+                .add(new WildcardQuery(new Term("content", "{en}fo*")), Occur.SHOULD)
+                .build();
+
+        assertNull(OffsetHighlighter.extractTerms(query, NAME_FIELD));
+    }
+
+    @Test
+    public void offsetsAreDetectedPerField()
+    {
+        assertTrue(OffsetHighlighter.hasOffsets(reader.leaves(), OFFSETS_FIELD));
+        assertFalse(OffsetHighlighter.hasOffsets(reader.leaves(), POSITIONS_FIELD));
+    }
+
+    @Test
+    public void zeroFragsizeHighlightsTheWholeValueWithoutLocaleMarker() throws IOException
+    {
+        String[] snippets = new OffsetHighlighter(Set.of("quick", "fox"))
+                .highlight(leaf, 0, OFFSETS_FIELD, VALUE, options(0, 1, -1, false));
+
+        assertArrayEquals(new String[] { TEXT.replace("quick", "<em>quick</em>").replace("fox", "<em>fox</em>") }, snippets);
+    }
+
+    @Test
+    public void snippetsAreTheDensestPassages() throws IOException
+    {
+        String[] snippets = new OffsetHighlighter(Set.of("quick", "fox", "lazy"))
+                .highlight(leaf, 0, OFFSETS_FIELD, VALUE, options(30, 2, -1, false));
+
+        assertEquals(2, snippets.length);
+        assertTrue(snippets[0], snippets[0].contains("<em>quick</em> brown <em>fox</em>"));
+        assertFalse(snippets[0], snippets[0].contains("\u0000"));
+        assertTrue(snippets[1], snippets[1].contains("<em>lazy</em>"));
+    }
+
+    @Test
+    public void htmlIsEncoded() throws IOException
+    {
+        String[] snippets = new OffsetHighlighter(Set.of("dog"))
+                .highlight(leaf, 0, OFFSETS_FIELD, VALUE, options(0, 1, -1, true));
+
+        assertTrue(snippets[0], snippets[0].endsWith("A brown <em>dog</em> &amp; a &lt;fox&gt;."));
+    }
+
+    @Test
+    public void matchesBeyondMaxAnalyzedCharsAreIgnored() throws IOException
+    {
+        OffsetHighlighter highlighter = new OffsetHighlighter(Set.of("quick", "fox"));
+        int beforeFox = VALUE.indexOf("fox");
+
+        String[] snippets = highlighter.highlight(leaf, 0, OFFSETS_FIELD, VALUE, options(0, 1, beforeFox, false));
+        assertArrayEquals(new String[] { "Lorem ipsum dolor sit amet. The <em>quick</em> brown" }, snippets);
+
+        assertEquals(0, highlighter.highlight(leaf, 0, OFFSETS_FIELD, VALUE, options(0, 1, 10, false)).length);
+    }
+
+    @Test
+    public void noMatchesMeansNoSnippets() throws IOException
+    {
+        assertEquals(0, new OffsetHighlighter(Set.of("cat")).highlight(leaf, 0, OFFSETS_FIELD, VALUE, options(100, 3, -1, false)).length);
+    }
+
+    @Test
+    public void localeMarkerLength()
+    {
+        assertEquals(4, OffsetHighlighter.localeMarkerLength(VALUE));
+        assertEquals(5, OffsetHighlighter.localeMarkerLength("\u0000kyr\u0000text"));
+        assertEquals(0, OffsetHighlighter.localeMarkerLength(TEXT));
+    }
+}
@@ -0,0 +1,295 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+
+package org.alfresco.solr.adapters;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A compressed {@link IOpenBitSet}, whose memory footprint depends on the number of set bits rather than on the
+ * highest set index.
+ *
+ * Like a roaring bitmap, the index space is split in chunks of 2^16 indexes: each chunk which contains at least one
+ * set bit is stored in a container which is either a sorted array of the low 16 bits of its indexes (sparse chunks,
+ * up to 4096 entries) or a plain bitmap of 1024 longs (dense chunks). The empty chunks don't take any space, so a few
+ * million of ids spread over a billion-range id space take a few megabytes instead of the hundred megabytes of a
+ * plain bitset.
+ *
+ * This class is not thread safe.
+ */
+public class CompressedOpenBitSet implements IOpenBitSet
+{
+    /** Max size of an array container: beyond this size the bitmap container takes less space. */
+    static final int MAX_ARRAY_SIZE = 4096;
+
+    private static final int CHUNK_BITS = 16;
+    private static final int LOW_MASK = 0xFFFF;
+
+    private final TreeMap<Long, Container> containers = new TreeMap<>();
+    private long cardinality;
+
+    @Override
+    public void set(long index)
+    {
+        checkIndex(index);
+        Long key = index >>> CHUNK_BITS;
+        int low = (int) (index & LOW_MASK);
+
+        Container container = containers.get(key);
+        if (container == null)
+        {
+            container = new ArrayContainer();
+            containers.put(key, container);
+        }
+
+        if (container.add(low))
+        {
+            cardinality++;
+            if (container.cardinality() > MAX_ARRAY_SIZE && container instanceof ArrayContainer)
+            {
+                containers.put(key, ((ArrayContainer) container).toBitmap());
+            }
+        }
+    }
+
+    @Override
+    public boolean get(long index)
+    {
+        if (index < 0)
+        {
+            return false;
+        }
+
+        Container container = containers.get(index >>> CHUNK_BITS);
+        return container != null && container.contains((int) (index & LOW_MASK));
+    }
+
+    @Override
+    public long nextSetBit(long index)
+    {
+        long from = Math.max(0, index);
+        long key = from >>> CHUNK_BITS;
+
+        Container first = containers.get(key);
+        if (first != null)
+        {
+            int low = first.next((int) (from & LOW_MASK));
+            if (low != -1)
+            {
+                return (key << CHUNK_BITS) | low;
+            }
+        }
+
+        // The containers are never empty, so the first index of the next container is the answer
+        Map.Entry<Long, Container> next = containers.higherEntry(key);
+        return next == null ? -1 : (next.getKey() << CHUNK_BITS) | next.getValue().next(0);
+    }
+
+    @Override
+    public long cardinality()
+    {
+        return cardinality;
+    }
+
+    @Override
+    public void or(IOpenBitSet other)
+    {
+        for (long index = other.nextSetBit(0); index != -1; index = other.nextSetBit(index + 1))
+        {
+            set(index);
+        }
+    }
+
+    /**
+     * @return the number of chunks containing at least one set bit.
+     */
+    int getContainerCount()
+    {
+        return containers.size();
+    }
+
+    /**
+     * @return an estimate of the memory taken by the set bits, in bytes.
+     */
+    public long ramBytesUsed()
+    {
+        // 64 bytes is a rough estimate of the tree entry, the boxed key and the container header
+        return containers.values().stream().mapToLong(container -> 64 + container.ramBytesUsed()).sum();
+    }
+
+    private static void checkIndex(long index)
+    {
+        if (index < 0)
+        {
+            throw new IndexOutOfBoundsException("Negative index: " + index);
+        }
+    }
+
+    private interface Container
+    {
+        /**
+         * @return true if the value has been added, false if it was already there.
+         */
+        boolean add(int value);
+
+        boolean contains(int value);
+
+        /**
+         * @return the first value greater than or equal to the given one, -1 if there's no such value.
+         */
+        int next(int from);
+
+        int cardinality();
+
+        long ramBytesUsed();
+    }
+
+    /**
+     * A sorted array of values: the sequential inserts (the usual case for transaction ids) are appended.
+     */
+    private static class ArrayContainer implements Container
+    {
+        private char[] values = new char[4];
+        private int size;
+
+        @Override
+        public boolean add(int value)
+        {
+            char c = (char) value;
+            int position = size > 0 && values[size - 1] < c ? -size - 1 : Arrays.binarySearch(values, 0, size, c);
+            if (position >= 0)
+            {
+                return false;
+            }
+
+            position = -position - 1;
+            if (size == values.length)
+            {
+                values = Arrays.copyOf(values, Math.min(values.length * 2, MAX_ARRAY_SIZE + 1));
+            }
+            System.arraycopy(values, position, values, position + 1, size - position);
+            values[position] = c;
+            size++;
+            return true;
+        }
+
+        @Override
+        public boolean contains(int value)
+        {
+            return Arrays.binarySearch(values, 0, size, (char) value) >= 0;
+        }
+
+        @Override
+        public int next(int from)
+        {
+            int position = Arrays.binarySearch(values, 0, size, (char) from);
+            if (position < 0)
+            {
+                position = -position - 1;
+            }
+            return position < size ? values[position] : -1;
+        }
+
+        @Override
+        public int cardinality()
+        {
+            return size;
+        }
+
+        @Override
+        public long ramBytesUsed()
+        {
+            return 2L * values.length;
+        }
+
+        BitmapContainer toBitmap()
+        {
+            BitmapContainer bitmap = new BitmapContainer();
+            for (int i = 0; i < size; i++)
+            {
+                bitmap.add(values[i]);
+            }
+            return bitmap;
+        }
+    }
+
+    private static class BitmapContainer implements Container
+    {
+        private final long[] words = new long[(LOW_MASK + 1) / Long.SIZE];
+        private int cardinality;
+
+        @Override
+        public boolean add(int value)
+        {
+            int word = value >>> 6;
+            long mask = 1L << value;
+            if ((words[word] & mask) != 0)
+            {
+                return false;
+            }
+            words[word] |= mask;
+            cardinality++;
+            return true;
+        }
+
+        @Override
+        public boolean contains(int value)
+        {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        public int next(int from)
+        {
+            int word = from >>> 6;
+            long bits = words[word] & (-1L << from);
+            while (bits == 0)
+            {
+                if (++word == words.length)
+                {
+                    return -1;
+                }
+                bits = words[word];
+            }
+            return (word << 6) + Long.numberOfTrailingZeros(bits);
+        }
+
+        @Override
+        public int cardinality()
+        {
+            return cardinality;
+        }
+
+        @Override
+        public long ramBytesUsed()
+        {
+            return 8L * words.length;
+        }
+    }
+}
@@ -0,0 +1,1162 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.solr.client;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.alfresco.service.cmr.repository.ChildAssociationRef;
+import org.alfresco.service.cmr.repository.NodeRef;
+import org.alfresco.service.cmr.repository.StoreRef;
+import org.alfresco.service.namespace.QName;
+import org.alfresco.util.Pair;
+
+/**
+ * Compact binary wire format of the tracking calls (transactions, nodes, node metadata, ACL change sets, ACLs and
+ * ACL readers), as an alternative to the JSON payloads.
+ *
+ * The client asks for it through the Accept header ({@link #ACCEPT}); a repository which doesn't support it simply
+ * answers with JSON, so the format is checked on the response content type.
+ *
+ * A payload is made of:
+ *
+ * <ul>
+ *     <li>the format version (varint)</li>
+ *     <li>the records, each one prefixed by its length in bytes (varint)</li>
+ *     <li>a zero length marker</li>
+ *     <li>the (length-prefixed) footer, which holds the summary values of the response (e.g. max transaction id)</li>
+ * </ul>
+ *
+ * Within a record:
+ *
+ * <ul>
+ *     <li>integers are zigzag varints, nullable integers are preceded by a presence flag</li>
+ *     <li>strings are references to a per-response dictionary: 0 is null, 1 defines a new entry (length-prefixed
+ *     UTF-8 bytes follow), 2 is a literal which is not added to the dictionary, n &gt; 2 is the entry n - 3</li>
+ *     <li>QNames and StoreRefs have their own dictionaries: 0 is null, 1 defines a new entry (namespace URI and local
+ *     name, protocol and identifier), n &gt; 1 is the entry n - 2</li>
+ *     <li>the optional fields of nodes and node metadata are tagged</li>
+ * </ul>
+ *
+ * Records are decoded straight into the client model objects. Fields appended to a record by a later format version
+ * are ignored: they must not define dictionary entries.
+ */
+public final class BinaryTrackingCodec
+{
+    /** The content type of the binary payloads. */
+    public static final String CONTENT_TYPE = "application/vnd.alfresco.solr-tracking";
+
+    /** The Accept header sent by the client: binary format preferred, JSON as fallback. */
+    static final String ACCEPT = CONTENT_TYPE + ", application/json;q=0.9";
+
+    static final int FORMAT_VERSION = 1;
+
+    private static final int NULL_REF = 0;
+    private static final int DEFINE_REF = 1;
+    private static final int LITERAL_REF = 2;
+    private static final int FIRST_STRING_REF = 3;
+    private static final int FIRST_REF = 2;
+
+    private static final int NODE_ID = 1;
+    private static final int NODE_REF = 2;
+    private static final int NODE_TXN_ID = 3;
+    private static final int NODE_ACL_ID = 4;
+    private static final int NODE_STATUS = 5;
+    private static final int NODE_TENANT = 6;
+    private static final int NODE_SHARD_PROPERTY_VALUE = 7;
+    private static final int NODE_EXPLICIT_SHARD_ID = 8;
+
+    private static final int METADATA_ID = 1;
+    private static final int METADATA_TENANT_DOMAIN = 2;
+    private static final int METADATA_TXN_ID = 3;
+    private static final int METADATA_ACL_ID = 4;
+    private static final int METADATA_NODE_REF = 5;
+    private static final int METADATA_TYPE = 6;
+    private static final int METADATA_ASPECTS = 7;
+    private static final int METADATA_PATHS = 8;
+    private static final int METADATA_ANCESTOR_PATHS = 9;
+    private static final int METADATA_NAME_PATHS = 10;
+    private static final int METADATA_ANCESTORS = 11;
+    private static final int METADATA_PROPERTIES = 12;
+    private static final int METADATA_PARENT_ASSOCS_CRC = 13;
+    private static final int METADATA_PARENT_ASSOCS = 14;
+    private static final int METADATA_CHILD_ASSOCS = 15;
+    private static final int METADATA_CHILD_IDS = 16;
+    private static final int METADATA_OWNER = 17;
+
+    private static final int VALUE_NULL = 0;
+    private static final int VALUE_STRING = 1;
+    private static final int VALUE_MLTEXT = 2;
+    private static final int VALUE_CONTENT = 3;
+    private static final int VALUE_MULTI = 4;
+
+    private static final Node.SolrApiNodeStatus[] NODE_STATUSES = {
+            Node.SolrApiNodeStatus.UNKNOWN, Node.SolrApiNodeStatus.UPDATED, Node.SolrApiNodeStatus.DELETED };
+
+    private BinaryTrackingCodec()
+    {
+        // Static methods only
+    }
+
+    /**
+     * Checks if a response content type denotes the binary format.
+     *
+     * @param contentType the response content type (may be null).
+     * @return true if the response payload is in binary format.
+     */
+    static boolean isBinary(String contentType)
+    {
+        if (contentType == null || !contentType.regionMatches(true, 0, CONTENT_TYPE, 0, CONTENT_TYPE.length()))
+        {
+            return false;
+        }
+        return contentType.length() == CONTENT_TYPE.length() || contentType.charAt(CONTENT_TYPE.length()) == ';';
+    }
+
+    static Transactions readTransactions(InputStream in) throws IOException
+    {
+        Decoder decoder = new Decoder(in, null, null);
+        List<Transaction> transactions = new ArrayList<>();
+        while (decoder.nextRecord())
+        {
+            Transaction txn = new Transaction();
+            txn.setId(decoder.readLong());
+            txn.setCommitTimeMs(decoder.readLong());
+            txn.setUpdates(decoder.readLong());
+            txn.setDeletes(decoder.readLong());
+            transactions.add(txn);
+        }
+        decoder.footer();
+        return new Transactions(transactions, decoder.readNullableLong(), decoder.readNullableLong());
+    }
+
+    public static void writeTransactions(OutputStream out, Transactions transactions) throws IOException
+    {
+        Encoder encoder = new Encoder(out);
+        for (Transaction txn : transactions.getTransactions())
+        {
+            encoder.writeLong(txn.getId());
+            encoder.writeLong(txn.getCommitTimeMs());
+            encoder.writeLong(txn.getUpdates());
+            encoder.writeLong(txn.getDeletes());
+            encoder.endRecord();
+        }
+        encoder.endRecords();
+        encoder.writeNullableLong(transactions.getMaxTxnCommitTime());
+        encoder.writeNullableLong(transactions.getMaxTxnId());
+        encoder.endRecord();
+    }
+
+    static AclChangeSets readAclChangeSets(InputStream in) throws IOException
+    {
+        Decoder decoder = new Decoder(in, null, null);
+        List<AclChangeSet> aclChangeSets = new ArrayList<>();
+        while (decoder.nextRecord())
+        {
+            aclChangeSets.add(new AclChangeSet(decoder.readLong(), decoder.readLong(), decoder.readInt()));
+        }
+        decoder.footer();
+        return new AclChangeSets(aclChangeSets, decoder.readNullableLong(), decoder.readNullableLong());
+    }
+
+    public static void writeAclChangeSets(OutputStream out, AclChangeSets aclChangeSets) throws IOException
+    {
+        Encoder encoder = new Encoder(out);
+        for (AclChangeSet aclChangeSet : aclChangeSets.getAclChangeSets())
+        {
+            encoder.writeLong(aclChangeSet.getId());
+            encoder.writeLong(aclChangeSet.getCommitTimeMs());
+            encoder.writeLong(aclChangeSet.getAclCount());
+            encoder.endRecord();
+        }
+        encoder.endRecords();
+        encoder.writeNullableLong(aclChangeSets.getMaxChangeSetCommitTime());
+        encoder.writeNullableLong(aclChangeSets.getMaxChangeSetId());
+        encoder.endRecord();
+    }
+
+    static List<Acl> readAcls(InputStream in) throws IOException
+    {
+        Decoder decoder = new Decoder(in, null, null);
+        List<Acl> acls = new ArrayList<>();
+        while (decoder.nextRecord())
+        {
+            acls.add(new Acl(decoder.readLong(), decoder.readLong()));
+        }
+        decoder.footer();
+        return acls;
+    }
+
+    public static void writeAcls(OutputStream out, List<Acl> acls) throws IOException
+    {
+        Encoder encoder = new Encoder(out);
+        for (Acl acl : acls)
+        {
+            encoder.writeLong(acl.getAclChangeSetId());
+            encoder.writeLong(acl.getId());
+            encoder.endRecord();
+        }
+        encoder.endRecords();
+        encoder.endRecord();
+    }
+
+    static List<AclReaders> readAclReaders(InputStream in, String defaultTenantDomain) throws IOException
+    {
+        Decoder decoder = new Decoder(in, null, null);
+        List<AclReaders> aclsReaders = new ArrayList<>();
+        while (decoder.nextRecord())
+        {
+            long aclId = decoder.readLong();
+            List<String> readers = decoder.readStrings();
+            List<String> denied = decoder.readStrings();
+            long aclChangeSetId = decoder.readLong();
+            String tenantDomain = decoder.readString();
+            aclsReaders.add(new AclReaders(aclId, readers, denied, aclChangeSetId,
+                    tenantDomain == null ? defaultTenantDomain : tenantDomain));
+        }
+        decoder.footer();
+        return aclsReaders;
+    }
+
+    public static void writeAclReaders(OutputStream out, List<AclReaders> aclsReaders) throws IOException
+    {
+        Encoder encoder = new Encoder(out);
+        for (AclReaders aclReaders : aclsReaders)
+        {
+            encoder.writeLong(aclReaders.getId());
+            encoder.writeStrings(aclReaders.getReaders());
+            encoder.writeStrings(aclReaders.getDenied());
+            encoder.writeLong(aclReaders.getAclChangeSetId());
+            encoder.writeString(aclReaders.getTenantDomain());
+            encoder.endRecord();
+        }
+        encoder.endRecords();
+        encoder.endRecord();
+    }
+
+    static List<Node> readNodes(InputStream in) throws IOException
+    {
+        Decoder decoder = new Decoder(in, null, null);
+        List<Node> nodes = new ArrayList<>();
+        while (decoder.nextRecord())
+        {
+            Node node = new Node();
+            while (decoder.hasRemaining())
+            {
+                int tag = decoder.readTag();
+                switch (tag)
+                {
+                    case NODE_ID:
+                        node.setId(decoder.readLong());
+                        break;
+                    case NODE_REF:
+                        NodeRef nodeRef = decoder.readNodeRef();
+                        node.setNodeRef(nodeRef == null ? null : nodeRef.toString());
+                        break;
+                    case NODE_TXN_ID:
+                        node.setTxnId(decoder.readLong());
+                        break;
+                    case NODE_ACL_ID:
+                        node.setAclId(decoder.readLong());
+                        break;
+                    case NODE_STATUS:
+                        int status = decoder.readInt();
+                        node.setStatus(status > 0 && status < NODE_STATUSES.length
+                                ? NODE_STATUSES[status]
+                                : Node.SolrApiNodeStatus.UNKNOWN);
+                        break;
+                    case NODE_TENANT:
+                        node.setTenant(decoder.readString());
+                        break;
+                    case NODE_SHARD_PROPERTY_VALUE:
+                        node.setShardPropertyValue(decoder.readString());
+                        break;
+                    case NODE_EXPLICIT_SHARD_ID:
+                        node.setExplicitShardId(decoder.readInt());
+                        break;
+                    default:
+                        decoder.skipRecord();
+                }
+            }
+            nodes.add(node);
+        }
+        decoder.footer();
+        return nodes;
+    }
+
+    public static void writeNodes(OutputStream out, List<Node> nodes) throws IOException
+    {
+        Encoder encoder = new Encoder(out);
+        for (Node node : nodes)
+        {
+            encoder.writeTag(NODE_ID);
+            encoder.writeLong(node.getId());
+            if (node.getNodeRef() != null)
+            {
+                encoder.writeTag(NODE_REF);
+                encoder.writeNodeRef(new NodeRef(node.getNodeRef()), false);
+            }
+            encoder.writeTag(NODE_TXN_ID);
+            encoder.writeLong(node.getTxnId());
+            encoder.writeTag(NODE_ACL_ID);
+            encoder.writeLong(node.getAclId());
+            if (node.getStatus() != null)
+            {
+                encoder.writeTag(NODE_STATUS);
+                encoder.writeLong(Arrays.asList(NODE_STATUSES).indexOf(node.getStatus()));
+            }
+            if (node.getTenant() != null)
+            {
+                encoder.writeTag(NODE_TENANT);
+                encoder.writeString(node.getTenant());
+            }
+            if (node.getShardPropertyValue() != null)
+            {
+                encoder.writeTag(NODE_SHARD_PROPERTY_VALUE);
+                encoder.writeString(node.getShardPropertyValue());
+            }
+            if (node.getExplicitShardId() != null)
+            {
+                encoder.writeTag(NODE_EXPLICIT_SHARD_ID);
+                encoder.writeLong(node.getExplicitShardId());
+            }
+            encoder.endRecord();
+        }
+        encoder.endRecords();
+        encoder.endRecord();
+    }
+
+    static List<NodeMetaData> readNodesMetaData(InputStream in, Function<String, Locale> localeParser, TrackingInterner interner)
+            throws IOException
+    {
+        Decoder decoder = new Decoder(in, localeParser, interner);
+        List<NodeMetaData> nodes = new ArrayList<>();
+        while (decoder.nextRecord())
+        {
+            NodeMetaData metaData = new NodeMetaData();
+            while (decoder.hasRemaining())
+            {
+                int tag = decoder.readTag();
+                switch (tag)
+                {
+                    case METADATA_ID:
+                        metaData.setId(decoder.readLong());
+                        break;
+                    case METADATA_TENANT_DOMAIN:
+                        metaData.setTenantDomain(decoder.readString());
+                        break;
+                    case METADATA_TXN_ID:
+                        metaData.setTxnId(decoder.readLong());
+                        break;
+                    case METADATA_ACL_ID:
+                        metaData.setAclId(decoder.readLong());
+                        break;
+                    case METADATA_NODE_REF:
+                        metaData.setNodeRef(decoder.readNodeRef());
+                        break;
+                    case METADATA_TYPE:
+                        metaData.setType(decoder.readQName());
+                        break;
+                    case METADATA_ASPECTS:
+                        int aspectCount = decoder.readCount();
+                        Set<QName> aspects = new HashSet<>(aspectCount * 2);
+                        for (int i = 0; i < aspectCount; i++)
+                        {
+                            aspects.add(decoder.readQName());
+                        }
+                        metaData.setAspects(aspects);
+                        break;
+                    case METADATA_PATHS:
+                        int pathCount = decoder.readCount();
+                        List<Pair<String, QName>> paths = new ArrayList<>(pathCount);
+                        for (int i = 0; i < pathCount; i++)
+                        {
+                            paths.add(new Pair<>(decoder.readString(), decoder.readQName()));
+                        }
+                        metaData.setPaths(paths);
+                        break;
+                    case METADATA_ANCESTOR_PATHS:
+                        List<String> ancestorPaths = decoder.readStrings();
+                        ancestorPaths.replaceAll(interner::string);
+                        metaData.setAncestorPaths(ancestorPaths);
+                        break;
+                    case METADATA_NAME_PATHS:
+                        int namePathCount = decoder.readCount();
+                        List<List<String>> namePaths = new ArrayList<>(namePathCount);
+                        for (int i = 0; i < namePathCount; i++)
+                        {
+                            List<String> namePath = decoder.readStrings();
+                            // The last element is the name of the node itself
+                            for (int j = 0; j < namePath.size() - 1; j++)
+                            {
+                                namePath.set(j, interner.string(namePath.get(j)));
+                            }
+                            namePaths.add(namePath);
+                        }
+                        metaData.setNamePaths(namePaths);
+                        break;
+                    case METADATA_ANCESTORS:
+                        int ancestorCount = decoder.readCount();
+                        Set<NodeRef> ancestors = new HashSet<>(ancestorCount * 2);
+                        for (int i = 0; i < ancestorCount; i++)
+                        {
+                            ancestors.add(interner.nodeRef(decoder.readNodeRef()));
+                        }
+                        metaData.setAncestors(interner.ancestors(ancestors));
+                        break;
+                    case METADATA_PROPERTIES:
+                        int propertyCount = decoder.readCount();
+                        Map<QName, PropertyValue> properties = new HashMap<>(propertyCount * 2);
+                        for (int i = 0; i < propertyCount; i++)
+                        {
+                            properties.put(decoder.readQName(), decoder.readPropertyValue());
+                        }
+                        metaData.setProperties(properties);
+                        break;
+                    case METADATA_PARENT_ASSOCS_CRC:
+                        metaData.setParentAssocsCrc(decoder.readLong());
+                        break;
+                    case METADATA_PARENT_ASSOCS:
+                        metaData.setParentAssocs(decoder.readChildAssocs(true));
+                        break;
+                    case METADATA_CHILD_ASSOCS:
+                        metaData.setChildAssocs(decoder.readChildAssocs(false));
+                        break;
+                    case METADATA_CHILD_IDS:
+                        int childCount = decoder.readCount();
+                        List<Long> childIds = new ArrayList<>(childCount);
+                        for (int i = 0; i < childCount; i++)
+                        {
+                            childIds.add(decoder.readLong());
+                        }
+                        metaData.setChildIds(childIds);
+                        break;
+                    case METADATA_OWNER:
+                        metaData.setOwner(decoder.readString());
+                        break;
+                    default:
+                        decoder.skipRecord();
+                }
+            }
+            nodes.add(metaData);
+        }
+        decoder.footer();
+        return nodes;
+    }
+
+    public static void writeNodesMetaData(OutputStream out, List<NodeMetaData> nodes) throws IOException
+    {
+        Encoder encoder = new Encoder(out);
+        for (NodeMetaData metaData : nodes)
+        {
+            encoder.writeTag(METADATA_ID);
+            encoder.writeLong(metaData.getId());
+            if (metaData.getTenantDomain() != null)
+            {
+                encoder.writeTag(METADATA_TENANT_DOMAIN);
+                encoder.writeString(metaData.getTenantDomain());
+            }
+            encoder.writeTag(METADATA_TXN_ID);
+            encoder.writeLong(metaData.getTxnId());
+            encoder.writeTag(METADATA_ACL_ID);
+            encoder.writeLong(metaData.getAclId());
+            if (metaData.getNodeRef() != null)
+            {
+                encoder.writeTag(METADATA_NODE_REF);
+                encoder.writeNodeRef(metaData.getNodeRef(), false);
+            }
+            if (metaData.getType() != null)
+            {
+                encoder.writeTag(METADATA_TYPE);
+                encoder.writeQName(metaData.getType());
+            }
+            if (metaData.getAspects() != null)
+            {
+                encoder.writeTag(METADATA_ASPECTS);
+                encoder.writeCount(metaData.getAspects());
+                for (QName aspect : metaData.getAspects())
+                {
+                    encoder.writeQName(aspect);
+                }
+            }
+            if (metaData.getPaths() != null)
+            {
+                encoder.writeTag(METADATA_PATHS);
+                encoder.writeCount(metaData.getPaths());
+                for (Pair<String, QName> path : metaData.getPaths())
+                {
+                    encoder.writeLiteral(path.getFirst());
+                    encoder.writeQName(path.getSecond());
+                }
+            }
+            if (metaData.getAncestorPaths() != null)
+            {
+                encoder.writeTag(METADATA_ANCESTOR_PATHS);
+                encoder.writeCount(metaData.getAncestorPaths());
+                for (String ancestorPath : metaData.getAncestorPaths())
+                {
+                    encoder.writeLiteral(ancestorPath);
+                }
+            }
+            if (metaData.getNamePaths() != null)
+            {
+                encoder.writeTag(METADATA_NAME_PATHS);
+                encoder.writeCount(metaData.getNamePaths());
+                for (List<String> namePath : metaData.getNamePaths())
+                {
+                    encoder.writeStrings(namePath);
+                }
+            }
+            if (metaData.getAncestors() != null)
+            {
+                encoder.writeTag(METADATA_ANCESTORS);
+                encoder.writeCount(metaData.getAncestors());
+                for (NodeRef ancestor : metaData.getAncestors())
+                {
+                    encoder.writeNodeRef(ancestor, true);
+                }
+            }
+            if (metaData.getProperties() != null)
+            {
+                encoder.writeTag(METADATA_PROPERTIES);
+                encoder.writeCount(metaData.getProperties().keySet());
+                for (Map.Entry<QName, PropertyValue> property : metaData.getProperties().entrySet())
+                {
+                    encoder.writeQName(property.getKey());
+                    encoder.writePropertyValue(property.getValue());
+                }
+            }
+            encoder.writeTag(METADATA_PARENT_ASSOCS_CRC);
+            encoder.writeLong(metaData.getParentAssocsCrc());
+            if (metaData.getParentAssocs() != null)
+            {
+                encoder.writeTag(METADATA_PARENT_ASSOCS);
+                encoder.writeChildAssocs(metaData.getParentAssocs());
+            }
+            if (metaData.getChildAssocs() != null)
+            {
+                encoder.writeTag(METADATA_CHILD_ASSOCS);
+                encoder.writeChildAssocs(metaData.getChildAssocs());
+            }
+            if (metaData.getChildIds() != null)
+            {
+                encoder.writeTag(METADATA_CHILD_IDS);
+                encoder.writeCount(metaData.getChildIds());
+                for (Long childId : metaData.getChildIds())
+                {
+                    encoder.writeLong(childId);
+                }
+            }
+            if (metaData.getOwner() != null)
+            {
+                encoder.writeTag(METADATA_OWNER);
+                encoder.writeString(metaData.getOwner());
+            }
+            encoder.endRecord();
+        }
+        encoder.endRecords();
+        encoder.endRecord();
+    }
+
+    /**
+     * Reads the records of a binary payload, one at a time, from the response stream.
+     */
+    private static final class Decoder
+    {
+        private final InputStream in;
+        private final Function<String, Locale> localeParser;
+        private final TrackingInterner interner;
+        private final List<String> strings = new ArrayList<>();
+        private final List<QName> qnames = new ArrayList<>();
+        private final List<StoreRef> stores = new ArrayList<>();
+        private final Map<String, Locale> locales = new HashMap<>();
+
+        private byte[] record = new byte[256];
+        private int position;
+        private int limit;
+
+        Decoder(InputStream in, Function<String, Locale> localeParser, TrackingInterner interner) throws IOException
+        {
+            this.in = in;
+            this.localeParser = localeParser;
+            this.interner = interner;
+
+            int version = readStreamVarInt();
+            if (version != FORMAT_VERSION)
+            {
+                throw new IOException("Unsupported binary tracking format version: " + version);
+            }
+        }
+
+        /**
+         * Loads the next record.
+         *
+         * @return false if there are no more records (i.e. the footer follows).
+         */
+        boolean nextRecord() throws IOException
+        {
+            int length = readStreamVarInt();
+            if (length == 0)
+            {
+                return false;
+            }
+            load(length);
+            return true;
+        }
+
+        void footer() throws IOException
+        {
+            load(readStreamVarInt());
+        }
+
+        boolean hasRemaining()
+        {
+            return position < limit;
+        }
+
+        /**
+         * Ignores the rest of the current record (i.e. fields added by a later format version).
+         */
+        void skipRecord()
+        {
+            position = limit;
+        }
+
+        private void load(int length) throws IOException
+        {
+            if (record.length < length)
+            {
+                record = new byte[Math.max(length, record.length * 2)];
+            }
+
+            int offset = 0;
+            while (offset < length)
+            {
+                int read = in.read(record, offset, length - offset);
+                if (read < 0)
+                {
+                    throw new EOFException("Truncated binary tracking payload");
+                }
+                offset += read;
+            }
+            position = 0;
+            limit = length;
+        }
+
+        private int readStreamVarInt() throws IOException
+        {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7)
+            {
+                int b = in.read();
+                if (b < 0)
+                {
+                    throw new EOFException("Truncated binary tracking payload");
+                }
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0)
+                {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed varint in binary tracking payload");
+        }
+
+        private long readVarLong() throws IOException
+        {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7)
+            {
+                if (position >= limit)
+                {
+                    throw new EOFException("Truncated binary tracking record");
+                }
+                byte b = record[position++];
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0)
+                {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed varint in binary tracking record");
+        }
+
+        int readTag() throws IOException
+        {
+            return (int) readVarLong();
+        }
+
+        int readCount() throws IOException
+        {
+            long count = readVarLong();
+            if (count > limit - position)
+            {
+                // Every item takes at least one byte
+                throw new IOException("Invalid item count in binary tracking record: " + count);
+            }
+            return (int) count;
+        }
+
+        long readLong() throws IOException
+        {
+            long value = readVarLong();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        int readInt() throws IOException
+        {
+            return (int) readLong();
+        }
+
+        Long readNullableLong() throws IOException
+        {
+            return readVarLong() == 0 ? null : readLong();
+        }
+
+        boolean readBoolean() throws IOException
+        {
+            return readVarLong() != 0;
+        }
+
+        String readString() throws IOException
+        {
+            int ref = (int) readVarLong();
+            switch (ref)
+            {
+                case NULL_REF:
+                    return null;
+                case DEFINE_REF:
+                    String value = readUtf8();
+                    strings.add(value);
+                    return value;
+                case LITERAL_REF:
+                    return readUtf8();
+                default:
+                    return lookup(strings, ref - FIRST_STRING_REF);
+            }
+        }
+
+        List<String> readStrings() throws IOException
+        {
+            int count = readCount();
+            List<String> values = new ArrayList<>(count);
+            for (int i = 0; i < count; i++)
+            {
+                values.add(readString());
+            }
+            return values;
+        }
+
+        private String readUtf8() throws IOException
+        {
+            int length = readCount();
+            String value = new String(record, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+
+        QName readQName() throws IOException
+        {
+            int ref = (int) readVarLong();
+            if (ref == NULL_REF)
+            {
+                return null;
+            }
+            if (ref == DEFINE_REF)
+            {
+                QName qname = QName.createQName(readString(), readString());
+                if (interner != null)
+                {
+                    qname = interner.qname(qname);
+                }
+                qnames.add(qname);
+                return qname;
+            }
+            return lookup(qnames, ref - FIRST_REF);
+        }
+
+        NodeRef readNodeRef() throws IOException
+        {
+            StoreRef storeRef;
+            int ref = (int) readVarLong();
+            if (ref == NULL_REF)
+            {
+                return null;
+            }
+            else if (ref == DEFINE_REF)
+            {
+                storeRef = new StoreRef(readString(), readString());
+                stores.add(storeRef);
+            }
+            else
+            {
+                storeRef = lookup(stores, ref - FIRST_REF);
+            }
+            return new NodeRef(storeRef, readString());
+        }
+
+        Locale readLocale() throws IOException
+        {
+            String locale = readString();
+            return locale == null ? null : locales.computeIfAbsent(locale, localeParser);
+        }
+
+        PropertyValue readPropertyValue() throws IOException
+        {
+            int type = (int) readVarLong();
+            switch (type)
+            {
+                case VALUE_NULL:
+                    return null;
+                case VALUE_STRING:
+                    return new StringPropertyValue(readString());
+                case VALUE_MLTEXT:
+                    int count = readCount();
+                    Map<Locale, String> values = new HashMap<>(count * 2);
+                    for (int i = 0; i < count; i++)
+                    {
+                        values.put(readLocale(), readString());
+                    }
+                    return new MLTextPropertyValue(values);
+                case VALUE_CONTENT:
+                    return new ContentPropertyValue(readLocale(), readLong(), readString(), readString(), readNullableLong());
+                case VALUE_MULTI:
+                    int size = readCount();
+                    MultiPropertyValue multi = new MultiPropertyValue();
+                    for (int i = 0; i < size; i++)
+                    {
+                        multi.addValue(readPropertyValue());
+                    }
+                    return multi;
+                default:
+                    throw new IOException("Unknown property value type in binary tracking record: " + type);
+            }
+        }
+
+        /**
+         * @param parents true for the parent associations, whose parent references are interned.
+         */
+        List<ChildAssociationRef> readChildAssocs(boolean parents) throws IOException
+        {
+            int count = readCount();
+            List<ChildAssociationRef> assocs = new ArrayList<>(count);
+            for (int i = 0; i < count; i++)
+            {
+                QName typeQName = readQName();
+                NodeRef parentRef = parents && interner != null ? interner.nodeRef(readNodeRef()) : readNodeRef();
+                QName qname = readQName();
+                NodeRef childRef = readNodeRef();
+                boolean primary = readBoolean();
+                int nthSibling = readInt();
+                assocs.add(new ChildAssociationRef(typeQName, parentRef, qname, childRef, primary, nthSibling));
+            }
+            return assocs;
+        }
+
+        private static <T> T lookup(List<T> dictionary, int index) throws IOException
+        {
+            if (index < 0 || index >= dictionary.size())
+            {
+                throw new IOException("Invalid dictionary reference in binary tracking record: " + index);
+            }
+            return dictionary.get(index);
+        }
+    }
+
+    /**
+     * Writes a binary payload (i.e. the repository side of the format).
+     */
+    private static final class Encoder
+    {
+        private final OutputStream out;
+        private final Map<String, Integer> strings = new HashMap<>();
+        private final Map<QName, Integer> qnames = new HashMap<>();
+        private final Map<StoreRef, Integer> stores = new HashMap<>();
+
+        private byte[] record = new byte[256];
+        private int position;
+
+        Encoder(OutputStream out) throws IOException
+        {
+            this.out = out;
+            writeStreamVarInt(FORMAT_VERSION);
+        }
+
+        void endRecord() throws IOException
+        {
+            writeStreamVarInt(position);
+            out.write(record, 0, position);
+            position = 0;
+        }
+
+        void endRecords() throws IOException
+        {
+            writeStreamVarInt(0);
+        }
+
+        private void writeStreamVarInt(int value) throws IOException
+        {
+            while ((value & ~0x7F) != 0)
+            {
+                out.write((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out.write(value);
+        }
+
+        private void ensureCapacity(int bytes)
+        {
+            if (position + bytes > record.length)
+            {
+                record = Arrays.copyOf(record, Math.max(position + bytes, record.length * 2));
+            }
+        }
+
+        private void writeVarLong(long value)
+        {
+            ensureCapacity(10);
+            while ((value & ~0x7FL) != 0)
+            {
+                record[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            record[position++] = (byte) value;
+        }
+
+        void writeTag(int tag)
+        {
+            writeVarLong(tag);
+        }
+
+        void writeCount(Collection<?> values)
+        {
+            writeVarLong(values.size());
+        }
+
+        void writeLong(long value)
+        {
+            writeVarLong((value << 1) ^ (value >> 63));
+        }
+
+        void writeNullableLong(Long value)
+        {
+            if (value == null)
+            {
+                writeVarLong(0);
+            }
+            else
+            {
+                writeVarLong(1);
+                writeLong(value);
+            }
+        }
+
+        void writeString(String value)
+        {
+            if (value == null)
+            {
+                writeVarLong(NULL_REF);
+                return;
+            }
+
+            Integer index = strings.get(value);
+            if (index != null)
+            {
+                writeVarLong(index + FIRST_STRING_REF);
+            }
+            else
+            {
+                strings.put(value, strings.size());
+                writeVarLong(DEFINE_REF);
+                writeUtf8(value);
+            }
+        }
+
+        /**
+         * Writes a string which is unlikely to be repeated in the payload, without adding it to the dictionary.
+         */
+        void writeLiteral(String value)
+        {
+            if (value == null)
+            {
+                writeVarLong(NULL_REF);
+            }
+            else
+            {
+                writeVarLong(LITERAL_REF);
+                writeUtf8(value);
+            }
+        }
+
+        void writeStrings(List<String> values)
+        {
+            writeCount(values);
+            for (String value : values)
+            {
+                writeString(value);
+            }
+        }
+
+        private void writeUtf8(String value)
+        {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length);
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, record, position, bytes.length);
+            position += bytes.length;
+        }
+
+        void writeQName(QName qname)
+        {
+            if (qname == null)
+            {
+                writeVarLong(NULL_REF);
+                return;
+            }
+
+            Integer index = qnames.get(qname);
+            if (index != null)
+            {
+                writeVarLong(index + FIRST_REF);
+            }
+            else
+            {
+                qnames.put(qname, qnames.size());
+                writeVarLong(DEFINE_REF);
+                writeString(qname.getNamespaceURI());
+                writeString(qname.getLocalName());
+            }
+        }
+
+        /**
+         * Writes a node reference: the node id is added to the dictionary only if the node is likely to be
+         * referenced again in the same payload (e.g. ancestors and parents).
+         */
+        void writeNodeRef(NodeRef nodeRef, boolean shared)
+        {
+            if (nodeRef == null)
+            {
+                writeVarLong(NULL_REF);
+                return;
+            }
+
+            StoreRef storeRef = nodeRef.getStoreRef();
+            Integer index = stores.get(storeRef);
+            if (index != null)
+            {
+                writeVarLong(index + FIRST_REF);
+            }
+            else
+            {
+                stores.put(storeRef, stores.size());
+                writeVarLong(DEFINE_REF);
+                writeString(storeRef.getProtocol());
+                writeString(storeRef.getIdentifier());
+            }
+
+            if (shared)
+            {
+                writeString(nodeRef.getId());
+            }
+            else
+            {
+                writeLiteral(nodeRef.getId());
+            }
+        }
+
+        void writePropertyValue(PropertyValue value)
+        {
+            if (value == null)
+            {
+                writeVarLong(VALUE_NULL);
+            }
+            else if (value instanceof MLTextPropertyValue)
+            {
+                Map<Locale, String> values = ((MLTextPropertyValue) value).getValues();
+                writeVarLong(VALUE_MLTEXT);
+                writeCount(values.keySet());
+                for (Map.Entry<Locale, String> entry : values.entrySet())
+                {
+                    writeString(entry.getKey() == null ? null : entry.getKey().toString());
+                    writeLiteral(entry.getValue());
+                }
+            }
+            else if (value instanceof ContentPropertyValue)
+            {
+                ContentPropertyValue content = (ContentPropertyValue) value;
+                writeVarLong(VALUE_CONTENT);
+                writeString(content.getLocale() == null ? null : content.getLocale().toString());
+                writeLong(content.getLength());
+                writeString(content.getEncoding());
+                writeString(content.getMimetype());
+                writeNullableLong(content.getId());
+            }
+            else if (value instanceof MultiPropertyValue)
+            {
+                List<PropertyValue> values = ((MultiPropertyValue) value).getValues();
+                writeVarLong(VALUE_MULTI);
+                writeCount(values);
+                for (PropertyValue single : values)
+                {
+                    writePropertyValue(single);
+                }
+            }
+            else
+            {
+                writeVarLong(VALUE_STRING);
+                writeLiteral(((StringPropertyValue) value).getValue());
+            }
+        }
+
+        void writeChildAssocs(List<ChildAssociationRef> assocs)
+        {
+            writeCount(assocs);
+            for (ChildAssociationRef assoc : assocs)
+            {
+                writeQName(assoc.getTypeQName());
+                writeNodeRef(assoc.getParentRef(), true);
+                writeQName(assoc.getQName());
+                writeNodeRef(assoc.getChildRef(), true);
+                writeVarLong(assoc.isPrimary() ? 1 : 0);
+                writeLong(assoc.getNthSibling());
+            }
+        }
+    }
+}
@@ -119,6 +119,10 @@ public class SOLRAPIClient
     private DictionaryService dictionaryService;
     private JsonFactory jsonFactory;
     private NamespaceDAO namespaceDAO;
+
+    /** Shares the QNames, ancestors and paths which repeat across the node metadata batches. */
+    private final TrackingInterner interner =
+            new TrackingInterner(Integer.getInteger("alfresco.tracking.interner.maxEntries", 65536));
     
     /**
      * This option enables ("Accept-Encoding": "gzip") header for compression
@@ -128,6 +132,12 @@ public class SOLRAPIClient
      */
     private boolean compression;
 
+    /**
+     * This option makes the tracking calls ask for the compact binary payloads (see {@link BinaryTrackingCodec})
+     * instead of JSON. A repository which doesn't support them answers with JSON anyway.
+     */
+    private boolean binaryTransport;
+
     public SOLRAPIClient(AlfrescoHttpClient repositoryHttpClient,
             DictionaryService dictionaryService,
             NamespaceDAO namespaceDAO)
@@ -148,6 +158,16 @@ public class SOLRAPIClient
         this.compression = compression;
     }
 
+    public void setBinaryTransport(boolean binaryTransport)
+    {
+        this.binaryTransport = binaryTransport;
+    }
+
+    public boolean isBinaryTransport()
+    {
+        return binaryTransport;
+    }
+
     /**
      * Get the ACL ChangeSets
      * 
@@ -184,8 +204,11 @@ public class SOLRAPIClient
         url.append(args);
         
         GetRequest req = new GetRequest(url.toString());
-        JSONObject json = callRepository(GET_ACL_CHANGESETS_URL, req);
-        
+        return callRepository(GET_ACL_CHANGESETS_URL, req, BinaryTrackingCodec::readAclChangeSets, this::aclChangeSetsFromJSON);
+    }
+
+    private AclChangeSets aclChangeSetsFromJSON(JSONObject json) throws JSONException
+    {
         JSONArray aclChangeSetsJSON = json.getJSONArray("aclChangeSets");
         List<AclChangeSet> aclChangeSets = new ArrayList<AclChangeSet>(aclChangeSetsJSON.length());
         for (int i = 0; i < aclChangeSetsJSON.length(); i++)
@@ -252,8 +275,11 @@ public class SOLRAPIClient
         jsonReq.put("aclChangeSetIds", aclChangeSetIdsJSON);
 
         PostRequest req = new PostRequest(url.toString(), jsonReq.toString(), "application/json");
-        JSONObject json = callRepository(GET_ACL_CHANGESETS_URL, req);
+        return callRepository(GET_ACL_CHANGESETS_URL, req, BinaryTrackingCodec::readAcls, this::aclsFromJSON);
+    }
 
+    private List<Acl> aclsFromJSON(JSONObject json) throws JSONException
+    {
         JSONArray aclsJSON = json.getJSONArray("acls");
         List<Acl> acls = new ArrayList<Acl>(aclsJSON.length());
         for (int i = 0; i < aclsJSON.length(); i++)
@@ -290,8 +316,13 @@ public class SOLRAPIClient
         jsonReq.put("aclIds", aclIdsJSON);
 
         PostRequest req = new PostRequest(url.toString(), jsonReq.toString(), "application/json");
-        JSONObject json = callRepository(GET_ACLS_READERS, req);
+        return callRepository(GET_ACLS_READERS, req,
+                in -> BinaryTrackingCodec.readAclReaders(in, TenantService.DEFAULT_DOMAIN),
+                this::aclReadersFromJSON);
+    }
 
+    private List<AclReaders> aclReadersFromJSON(JSONObject json) throws JSONException
+    {
         JSONArray aclsReadersJSON = json.getJSONArray("aclsReaders");
         List<AclReaders> aclsReaders = new ArrayList<AclReaders>(aclsReadersJSON.length());
         for (int i = 0; i < aclsReadersJSON.length(); i++)
@@ -437,12 +468,18 @@ public class SOLRAPIClient
         LookAheadBufferedReader reader = null;
         try
         {
+            acceptBinaryPayload(req);
             response = repositoryHttpClient.sendRequest(req);
             if(response.getStatus() != HttpStatus.SC_OK)
             {
                 throw new AlfrescoRuntimeException("GetTransactions return status is " + response.getStatus());
             }
 
+            if (BinaryTrackingCodec.isBinary(response.getContentType()))
+            {
+                return BinaryTrackingCodec.readTransactions(response.getContentAsStream());
+            }
+
             reader = new LookAheadBufferedReader(new InputStreamReader(response.getContentAsStream(), StandardCharsets.UTF_8), LOGGER);
             JsonParser parser = jsonFactory.createParser(reader);
             
@@ -577,8 +614,11 @@ public class SOLRAPIClient
 
         
         PostRequest req = new PostRequest(url.toString(), body.toString(), "application/json");
-        JSONObject json = callRepository(GET_NODES_URL, req);
+        return callRepository(GET_NODES_URL, req, BinaryTrackingCodec::readNodes, this::nodesFromJSON);
+    }
 
+    private List<Node> nodesFromJSON(JSONObject json) throws JSONException
+    {
         JSONArray jsonNodes = json.getJSONArray("nodes");
         List<Node> nodes = new ArrayList<>(jsonNodes.length());
         for(int i = 0; i < jsonNodes.length(); i++)
@@ -645,6 +685,26 @@ public class SOLRAPIClient
         return nodes;
     }
     
+    private QName qnameFromJSON(String qname)
+    {
+        return interner.qname(qname, source -> deserializer.deserializeValue(QName.class, source));
+    }
+
+    /**
+     * Replaces the association type and the parent reference (which are shared by the siblings) with their canonical
+     * instances.
+     */
+    private ChildAssociationRef internParentAssoc(ChildAssociationRef assoc)
+    {
+        return new ChildAssociationRef(
+                interner.qname(assoc.getTypeQName()),
+                interner.nodeRef(assoc.getParentRef()),
+                assoc.getQName(),
+                assoc.getChildRef(),
+                assoc.isPrimary(),
+                assoc.getNthSibling());
+    }
+
     private PropertyValue getSinglePropertyValue(DataTypeDefinition dataType, Object value) throws JSONException
     {
         PropertyValue ret = null;
@@ -811,8 +871,13 @@ public class SOLRAPIClient
         }
 
         PostRequest req = new PostRequest(url.toString(), body.toString(), "application/json");
-        JSONObject json = callRepository(GET_METADATA_URL, req);
+        return callRepository(GET_METADATA_URL, req,
+                in -> BinaryTrackingCodec.readNodesMetaData(in, locale -> DefaultTypeConverter.INSTANCE.convert(Locale.class, locale), interner),
+                this::nodesMetaDataFromJSON);
+    }
 
+    private List<NodeMetaData> nodesMetaDataFromJSON(JSONObject json) throws JSONException
+    {
         JSONArray jsonNodes = json.getJSONArray("nodes");
         List<NodeMetaData> nodes = new ArrayList<>(jsonNodes.length());
         for(int i = 0; i < jsonNodes.length(); i++)
@@ -847,7 +912,7 @@ public class SOLRAPIClient
             
             if(jsonNodeInfo.has("type"))
             {
-                metaData.setType(deserializer.deserializeValue(QName.class, jsonNodeInfo.getString("type")));
+                metaData.setType(qnameFromJSON(jsonNodeInfo.getString("type")));
             }
             
             if(jsonNodeInfo.has("aspects"))
@@ -857,7 +922,7 @@ public class SOLRAPIClient
                 for(int j = 0; j < jsonAspects.length(); j++)
                 {
                     String jsonAspect = (String)jsonAspects.get(j);
-                    aspects.add(deserializer.deserializeValue(QName.class, jsonAspect));
+                    aspects.add(qnameFromJSON(jsonAspect));
                 }
                 metaData.setAspects(aspects);
             }
@@ -871,11 +936,11 @@ public class SOLRAPIClient
                 {
                     JSONObject path = jsonPaths.getJSONObject(j);
                     String pathValue = path.getString("path");
-                    QName qname = path.has("qname") ? deserializer.deserializeValue(QName.class, path.getString("qname")) : null;
+                    QName qname = path.has("qname") ? qnameFromJSON(path.getString("qname")) : null;
                     paths.add(new Pair<String, QName>(pathValue, qname));
                     if(path.has("apath"))
                     {
-                    	String ancestorPath = path.getString("apath");
+                    	String ancestorPath = interner.string(path.getString("apath"));
                     	ancestorPaths.add(ancestorPath);
                     }
                 }
@@ -894,7 +959,10 @@ public class SOLRAPIClient
                     List<String> namePath = new ArrayList<String>(jsonNameElements.length());
                     for(int k = 0; k < jsonNameElements.length(); k++)
                     {
-                        String namePathElement =  jsonNameElements.getString(k);
+                        // The last element is the name of the node itself
+                        String namePathElement = k < jsonNameElements.length() - 1
+                                ? interner.string(jsonNameElements.getString(k))
+                                : jsonNameElements.getString(k);
                         namePath.add(namePathElement);
                     }
                     namePaths.add(namePath);
@@ -909,10 +977,10 @@ public class SOLRAPIClient
                 for(int j = 0; j < jsonAncestors.length(); j++)
                 {
                     String ancestorNodeRefString = jsonAncestors.getString(j);
-                    NodeRef ancestorNodeRef = new NodeRef(ancestorNodeRefString);
+                    NodeRef ancestorNodeRef = interner.nodeRef(ancestorNodeRefString);
                     ancestors.add(ancestorNodeRef);
                 }
-                metaData.setAncestors(ancestors);
+                metaData.setAncestors(interner.ancestors(ancestors));
             }
 
             if(jsonNodeInfo.has("properties"))
@@ -924,7 +992,7 @@ public class SOLRAPIClient
                 while(propKeysIterator.hasNext())
                 {
                     String propName = (String)propKeysIterator.next();
-                    QName propQName = deserializer.deserializeValue(QName.class, propName);
+                    QName propQName = qnameFromJSON(propName);
                     Object propValueObj = jsonProperties.opt(propName);
 
                     // check the expected property type to determine how to process the value
@@ -952,8 +1020,7 @@ public class SOLRAPIClient
                 for(int j = 0; j < jsonParentAssocs.length(); j++)
                 {
                     String childAssocRefStr = jsonParentAssocs.getString(j);
-                    ChildAssociationRef childAssociationRef = new ChildAssociationRef(childAssocRefStr);
-                    assocs.add(childAssociationRef);
+                    assocs.add(internParentAssoc(new ChildAssociationRef(childAssocRefStr)));
                 }
                 metaData.setParentAssocs(assocs);
             }
@@ -1585,11 +1652,53 @@ public class SOLRAPIClient
        repositoryHttpClient.close();
     }
 
+    /**
+     * Calls a tracking endpoint, decoding either the binary or the JSON payload (depending on the response content
+     * type).
+     */
+    private <T> T callRepository(String msgId, Request req, BinaryPayloadReader<T> binaryReader, JSONPayloadReader<T> jsonReader)
+            throws IOException, AuthenticationException, JSONException
+    {
+        if (!binaryTransport)
+        {
+            return jsonReader.read(callRepository(msgId, req));
+        }
+
+        Response response = null;
+        try
+        {
+            acceptBinaryPayload(req);
+            response = repositoryHttpClient.sendRequest(req);
+            if (response.getStatus() != HttpStatus.SC_OK)
+            {
+                throw new AlfrescoRuntimeException(msgId + " return status:" + response.getStatus());
+            }
+
+            if (BinaryTrackingCodec.isBinary(response.getContentType()))
+            {
+                return binaryReader.read(response.getContentAsStream());
+            }
+            return jsonReader.read(readJSON(req, response));
+        }
+        finally
+        {
+            ofNullable(response).ifPresent(Response::release);
+        }
+    }
+
+    private void acceptBinaryPayload(Request req)
+    {
+        if (binaryTransport)
+        {
+            Map<String, String> headers = new HashMap<>();
+            headers.put("Accept", BinaryTrackingCodec.ACCEPT);
+            req.setHeaders(headers);
+        }
+    }
+
     private JSONObject callRepository(String msgId, Request req) throws IOException, AuthenticationException
     {
         Response response = null;
-        LookAheadBufferedReader reader = null;
-        JSONObject json;
         try
         {
             response = repositoryHttpClient.sendRequest(req);
@@ -1597,7 +1706,20 @@ public class SOLRAPIClient
             {
                 throw new AlfrescoRuntimeException(msgId + " return status:" + response.getStatus());
             }
+            return readJSON(req, response);
+        }
+        finally
+        {
+            ofNullable(response).ifPresent(Response::release);
+        }
+    }
 
+    private JSONObject readJSON(Request req, Response response) throws IOException
+    {
+        LookAheadBufferedReader reader = null;
+        JSONObject json;
+        try
+        {
             reader = new LookAheadBufferedReader(new InputStreamReader(response.getContentAsStream(), StandardCharsets.UTF_8), LOGGER);
             json = new JSONObject(new JSONTokener(reader));
 
@@ -1620,11 +1742,22 @@ public class SOLRAPIClient
         }
         finally
         {
-            ofNullable(response).ifPresent(Response::release);
             ofNullable(reader).ifPresent(this::silentlyClose);
         }
     }
 
+    @FunctionalInterface
+    private interface BinaryPayloadReader<T>
+    {
+        T read(InputStream payload) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface JSONPayloadReader<T>
+    {
+        T read(JSONObject payload) throws JSONException;
+    }
+
     private void silentlyClose(Closeable closeable)
     {
         try
@@ -182,6 +182,7 @@ public class SOLRAPIClientFactory
             socketTimeout = Integer.parseInt(props.getProperty("alfresco.socketTimeout", "60000"));
 
             client = new SOLRAPIClient(getRepoClient(keyResourceLoader), dictionaryService, namespaceDAO, compression);
+            client.setBinaryTransport(Boolean.parseBoolean(props.getProperty("solr.request.binaryTransport", "false")));
             setCachedClient(alfrescoHost, alfrescoPort, alfrescoPortSSL, client);
         }
 
@@ -0,0 +1,146 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.solr.client;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import org.alfresco.service.cmr.repository.NodeRef;
+import org.alfresco.service.namespace.QName;
+
+/**
+ * Canonical instances of the values which repeat across the nodes returned by the tracking calls: type, aspect and
+ * property QNames, ancestor NodeRefs, ancestor sets (siblings share the very same set), ancestor paths and name path
+ * elements.
+ *
+ * The node metadata batches held in memory while (re)indexing share these instances by reference instead of
+ * holding a copy per node.
+ *
+ * Each kind of value has its own bounded cache: when a cache is full it's cleared, so the values which are still
+ * used get cached again and the ones which are no longer used (e.g. the ancestors of an already indexed folder) go
+ * away. The shared ancestor sets are unmodifiable.
+ */
+final class TrackingInterner
+{
+    private final Cache<String, QName> qnames;
+    private final Cache<QName, QName> canonicalQNames;
+    private final Cache<String, NodeRef> nodeRefs;
+    private final Cache<NodeRef, NodeRef> canonicalNodeRefs;
+    private final Cache<Set<NodeRef>, Set<NodeRef>> ancestors;
+    private final Cache<String, String> strings;
+
+    /**
+     * @param maxEntries the max number of entries of each cache.
+     */
+    TrackingInterner(int maxEntries)
+    {
+        this.qnames = new Cache<>(maxEntries);
+        this.canonicalQNames = new Cache<>(maxEntries);
+        this.nodeRefs = new Cache<>(maxEntries);
+        this.canonicalNodeRefs = new Cache<>(maxEntries);
+        this.ancestors = new Cache<>(maxEntries);
+        this.strings = new Cache<>(maxEntries);
+    }
+
+    /**
+     * Returns the QName of the given (prefixed or fully qualified) string.
+     *
+     * @param source the QName string.
+     * @param parser parses the QName string on cache miss.
+     * @return the canonical QName instance.
+     */
+    QName qname(String source, Function<String, QName> parser)
+    {
+        return source == null ? null : qnames.intern(source, key -> qname(parser.apply(key)));
+    }
+
+    QName qname(QName qname)
+    {
+        return qname == null ? null : canonicalQNames.intern(qname, Function.identity());
+    }
+
+    NodeRef nodeRef(String source)
+    {
+        return source == null ? null : nodeRefs.intern(source, key -> nodeRef(new NodeRef(key)));
+    }
+
+    NodeRef nodeRef(NodeRef nodeRef)
+    {
+        return nodeRef == null ? null : canonicalNodeRefs.intern(nodeRef, Function.identity());
+    }
+
+    /**
+     * Returns a shared, unmodifiable set equal to the given ancestor set.
+     *
+     * @param nodeRefs the ancestors of a node (which should be already interned): the set could become the shared
+     *                 one, so it must not be modified afterwards.
+     * @return the shared ancestor set.
+     */
+    Set<NodeRef> ancestors(Set<NodeRef> nodeRefs)
+    {
+        return nodeRefs == null ? null : ancestors.intern(nodeRefs, Collections::unmodifiableSet);
+    }
+
+    String string(String value)
+    {
+        return value == null ? null : strings.intern(value, Function.identity());
+    }
+
+    /**
+     * A concurrent map which is cleared when full.
+     */
+    private static final class Cache<K, V>
+    {
+        private final Map<K, V> entries = new ConcurrentHashMap<>();
+        private final int maxEntries;
+
+        Cache(int maxEntries)
+        {
+            this.maxEntries = maxEntries;
+        }
+
+        V intern(K key, Function<K, V> factory)
+        {
+            V value = entries.get(key);
+            if (value != null)
+            {
+                return value;
+            }
+
+            value = factory.apply(key);
+            if (entries.size() >= maxEntries)
+            {
+                entries.clear();
+            }
+            V previous = entries.putIfAbsent(key, value);
+            return previous == null ? value : previous;
+        }
+    }
+}
@@ -31,7 +31,9 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 
 import javax.annotation.concurrent.NotThreadSafe;
@@ -57,6 +59,20 @@ public class TrackerStats
 
     ConcurrentHashMap<String, IncrementalStats> docTransformationTimes = new ConcurrentHashMap<String, IncrementalStats>();
 
+    ConcurrentHashMap<String, IncrementalStats> fingerprintTimes = new ConcurrentHashMap<String, IncrementalStats>();
+
+    ConcurrentHashMap<String, IncrementalStats> contentBuilderCapacities = new ConcurrentHashMap<String, IncrementalStats>();
+
+    ConcurrentHashMap<String, IncrementalStats> bulkDeleteThroughputs = new ConcurrentHashMap<String, IncrementalStats>();
+
+    /** Keyed by setting name (e.g. "Node batch size") rather than by thread. */
+    ConcurrentHashMap<String, IncrementalStats> adaptiveSettings = new ConcurrentHashMap<String, IncrementalStats>();
+
+    /** Keyed by commit decision (e.g. "Soft commit"): the values are the docs not yet visible when the decision was taken. */
+    ConcurrentHashMap<String, IncrementalStats> commitDecisions = new ConcurrentHashMap<String, IncrementalStats>();
+
+    ConcurrentHashMap<String, IncrementalStats> searcherFreshnessLags = new ConcurrentHashMap<String, IncrementalStats>();
+
     ConcurrentHashMap<String, IncrementalStats> nodeTimes = new ConcurrentHashMap<String, IncrementalStats>();
     
     ConcurrentHashMap<String, IncrementalStats> elapsedNodeTimes = new ConcurrentHashMap<String, IncrementalStats>();
@@ -173,6 +189,66 @@ public class TrackerStats
         return aggregateResults(docTransformationTimes);
     }
 
+    /**
+     * @return the fingerprintTimes
+     */
+    public SimpleStats getFingerprintTimes()
+    {
+        return aggregateResults(fingerprintTimes);
+    }
+
+    /**
+     * @return the contentBuilderCapacities, in UTF-16 code units (the capacity of the builder which holds the text
+     *         content, not the bytes actually allocated: with compact strings a Latin-1 text takes one byte per char)
+     */
+    public SimpleStats getContentBuilderCapacities()
+    {
+        return aggregateResults(contentBuilderCapacities);
+    }
+
+    /**
+     * @return the bulkDeleteThroughputs (ids per second)
+     */
+    public SimpleStats getBulkDeleteThroughputs()
+    {
+        return aggregateResults(bulkDeleteThroughputs);
+    }
+
+    /**
+     * @return the values chosen by the adaptive batch controllers, by setting name
+     */
+    public Map<String, IncrementalStats> getAdaptiveSettings()
+    {
+        Map<String, IncrementalStats> copies = new TreeMap<String, IncrementalStats>();
+        for (Map.Entry<String, IncrementalStats> entry : adaptiveSettings.entrySet())
+        {
+            copies.put(entry.getKey(), entry.getValue().copy());
+        }
+        return copies;
+    }
+
+    /**
+     * @return the decisions taken by the commit policy (the count of each decision is the number of values), by
+     * decision name
+     */
+    public Map<String, IncrementalStats> getCommitDecisions()
+    {
+        Map<String, IncrementalStats> copies = new TreeMap<String, IncrementalStats>();
+        for (Map.Entry<String, IncrementalStats> entry : commitDecisions.entrySet())
+        {
+            copies.put(entry.getKey(), entry.getValue().copy());
+        }
+        return copies;
+    }
+
+    /**
+     * @return the searcherFreshnessLags (the age of the searcher, in milliseconds, when it was replaced)
+     */
+    public SimpleStats getSearcherFreshnessLags()
+    {
+        return aggregateResults(searcherFreshnessLags);
+    }
+
     public double getMeanModelSyncTime()
     {
         return aggregateResults(modelTimes).getMean();
@@ -961,6 +1037,81 @@ public class TrackerStats
         stats.add(time);
     }
 
+    /**
+     * @param time long
+     */
+    public void addFingerprintTime(long time)
+    {
+        IncrementalStats stats = fingerprintTimes.get(Thread.currentThread().getName());
+        if (stats == null)
+        {
+            stats = new IncrementalStats(TIME_SCALE, 50, this.infoSrv);
+            fingerprintTimes.put(Thread.currentThread().getName(), stats);
+        }
+        stats.add(time);
+    }
+
+    /**
+     * @param chars the capacity (in UTF-16 code units) of the builder which held a text content
+     */
+    public void addContentBuilderCapacity(long chars)
+    {
+        IncrementalStats stats = contentBuilderCapacities.get(Thread.currentThread().getName());
+        if (stats == null)
+        {
+            stats = new IncrementalStats(1, 50, this.infoSrv);
+            contentBuilderCapacities.put(Thread.currentThread().getName(), stats);
+        }
+        stats.add(chars);
+    }
+
+    /**
+     * @param ids the number of ids deleted in bulk
+     * @param time the time (in nanoseconds) spent for the bulk delete
+     */
+    public void addBulkDelete(long ids, long time)
+    {
+        IncrementalStats stats = bulkDeleteThroughputs.get(Thread.currentThread().getName());
+        if (stats == null)
+        {
+            stats = new IncrementalStats(1, 50, this.infoSrv);
+            bulkDeleteThroughputs.put(Thread.currentThread().getName(), stats);
+        }
+        stats.add(ids * 1_000_000_000D / Math.max(1L, time));
+    }
+
+    /**
+     * @param setting the name of the adaptive setting (e.g. "Node batch size")
+     * @param value the value chosen by the adaptive batch controller
+     */
+    public void addAdaptiveSetting(String setting, int value)
+    {
+        adaptiveSettings.computeIfAbsent(setting, key -> new IncrementalStats(1, 50, this.infoSrv)).add(value);
+    }
+
+    /**
+     * @param decision the name of the commit decision (e.g. "Soft commit")
+     * @param invisibleDocs the number of docs not yet visible when the decision was taken
+     */
+    public void addCommitDecision(String decision, long invisibleDocs)
+    {
+        commitDecisions.computeIfAbsent(decision, key -> new IncrementalStats(1, 50, this.infoSrv)).add(invisibleDocs);
+    }
+
+    /**
+     * @param lag the age (in milliseconds) of a searcher when it has been replaced by a new one
+     */
+    public void addSearcherFreshnessLag(long lag)
+    {
+        IncrementalStats stats = searcherFreshnessLags.get(Thread.currentThread().getName());
+        if (stats == null)
+        {
+            stats = new IncrementalStats(1, 50, this.infoSrv);
+            searcherFreshnessLags.put(Thread.currentThread().getName(), stats);
+        }
+        stats.add(lag);
+    }
+
     /*
      * (non-Javadoc)
      * @see java.lang.Object#toString()
@@ -970,6 +1121,9 @@ public class TrackerStats
     {
         return "TrackerStats [modelTimes="
                 + modelTimes + ", aclTimes=" + aclTimes + ", changeSetAcls=" + changeSetAcls + ", txDocs=" + txDocs + ", docTransformationTimes=" + docTransformationTimes
+                + ", fingerprintTimes=" + fingerprintTimes + ", contentBuilderCapacities=" + contentBuilderCapacities
+                + ", bulkDeleteThroughputs=" + bulkDeleteThroughputs + ", adaptiveSettings=" + adaptiveSettings
+                + ", commitDecisions=" + commitDecisions + ", searcherFreshnessLags=" + searcherFreshnessLags
                 + ", nodeTimes=" + nodeTimes + "]";
     }
 
@@ -983,6 +1137,12 @@ public class TrackerStats
         changeSetAcls.clear();
         txDocs.clear();
         docTransformationTimes.clear();
+        fingerprintTimes.clear();
+        contentBuilderCapacities.clear();
+        bulkDeleteThroughputs.clear();
+        adaptiveSettings.clear();
+        commitDecisions.clear();
+        searcherFreshnessLags.clear();
         nodeTimes.clear();
     }
 
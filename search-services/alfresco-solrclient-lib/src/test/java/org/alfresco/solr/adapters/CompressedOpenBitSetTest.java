@@ -0,0 +1,137 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+
+package org.alfresco.solr.adapters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+/**
+ * Tests the {@link CompressedOpenBitSet}.
+ */
+public class CompressedOpenBitSetTest
+{
+    private static final long ONE_BILLION = 1_000_000_000L;
+
+    @Test
+    public void emptySet()
+    {
+        CompressedOpenBitSet set = new CompressedOpenBitSet();
+
+        assertEquals(0, set.cardinality());
+        assertEquals(-1, set.nextSetBit(0));
+        assertFalse(set.get(0));
+        assertFalse(set.get(-1));
+    }
+
+    @Test
+    public void setBits_shouldBeIteratedInOrder()
+    {
+        CompressedOpenBitSet set = new CompressedOpenBitSet();
+        set.set(70_000);
+        set.set(3);
+        set.set(ONE_BILLION);
+        set.set(3);
+
+        assertEquals(3, set.cardinality());
+        assertEquals(3, set.nextSetBit(0));
+        assertEquals(3, set.nextSetBit(3));
+        assertEquals(70_000, set.nextSetBit(4));
+        assertEquals(ONE_BILLION, set.nextSetBit(70_001));
+        assertEquals(-1, set.nextSetBit(ONE_BILLION + 1));
+        assertTrue(set.get(70_000));
+        assertFalse(set.get(69_999));
+    }
+
+    @Test
+    public void denseChunks_shouldSwitchToBitmaps()
+    {
+        CompressedOpenBitSet set = new CompressedOpenBitSet();
+        for (long id = 0; id < 200_000; id += 2)
+        {
+            set.set(id);
+        }
+
+        assertEquals(100_000, set.cardinality());
+        assertEquals(4, set.getContainerCount());
+        for (long id = 0; id < 199_999; id++)
+        {
+            assertEquals(id % 2 == 0, set.get(id));
+            assertEquals(id % 2 == 0 ? id : id + 1, set.nextSetBit(id));
+        }
+        assertEquals(-1, set.nextSetBit(199_999));
+    }
+
+    @Test
+    public void or_shouldMergeAnyImplementation()
+    {
+        CompressedOpenBitSet set = new CompressedOpenBitSet();
+        set.set(1);
+        CompressedOpenBitSet other = new CompressedOpenBitSet();
+        other.set(1);
+        other.set(ONE_BILLION);
+
+        set.or(other);
+
+        assertEquals(2, set.cardinality());
+        assertTrue(set.get(ONE_BILLION));
+    }
+
+    /**
+     * Two million random ids in a billion-range id space: a plain bitset would need 125MB.
+     */
+    @Test
+    public void sparseIds_atBillionScale_shouldTakeLittleMemory()
+    {
+        Random random = new Random(42);
+        TreeSet<Long> expected = new TreeSet<>();
+        CompressedOpenBitSet set = new CompressedOpenBitSet();
+        for (int i = 0; i < 2_000_000; i++)
+        {
+            long id = (long) (random.nextDouble() * ONE_BILLION);
+            expected.add(id);
+            set.set(id);
+        }
+
+        assertEquals(expected.size(), set.cardinality());
+        assertTrue(set.ramBytesUsed() < 16 * 1024 * 1024);
+
+        long id = -1;
+        for (long expectedId : expected)
+        {
+            id = set.nextSetBit(id + 1);
+            assertEquals(expectedId, id);
+        }
+        assertEquals(-1, set.nextSetBit(id + 1));
+    }
+}
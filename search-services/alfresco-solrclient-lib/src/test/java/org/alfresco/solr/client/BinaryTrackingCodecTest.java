@@ -0,0 +1,307 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.solr.client;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.alfresco.repo.dictionary.NamespaceDAO;
+import org.alfresco.service.cmr.dictionary.DictionaryService;
+import org.alfresco.service.cmr.repository.ChildAssociationRef;
+import org.alfresco.service.cmr.repository.NodeRef;
+import org.alfresco.service.cmr.repository.StoreRef;
+import org.alfresco.service.namespace.QName;
+import org.alfresco.util.Pair;
+import org.junit.Test;
+
+/**
+ * Tests the {@link BinaryTrackingCodec} and the content negotiation of the {@link SOLRAPIClient} tracking calls.
+ */
+public class BinaryTrackingCodecTest
+{
+    private static final String NAMESPACE = "http://www.alfresco.org/model/content/1.0";
+    private static final NodeRef PARENT = new NodeRef(StoreRef.STORE_REF_WORKSPACE_SPACESSTORE, "parent");
+
+    @Test
+    public void transactionsRoundTrip() throws IOException
+    {
+        Transactions transactions = new Transactions(asList(transaction(1, 1000, 3, 0), transaction(Long.MAX_VALUE, 2000, 0, 7)), 2000L, null);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryTrackingCodec.writeTransactions(out, transactions);
+        Transactions decoded = BinaryTrackingCodec.readTransactions(new ByteArrayInputStream(out.toByteArray()));
+
+        assertEquals(transactions.getTransactions(), decoded.getTransactions());
+        assertEquals(Long.MAX_VALUE, decoded.getTransactions().get(1).getId());
+        assertEquals(7, decoded.getTransactions().get(1).getDeletes());
+        assertEquals(Long.valueOf(2000), decoded.getMaxTxnCommitTime());
+        assertNull(decoded.getMaxTxnId());
+    }
+
+    @Test
+    public void aclsRoundTrip() throws IOException
+    {
+        AclChangeSets aclChangeSets = new AclChangeSets(asList(new AclChangeSet(10, 1000, 2), new AclChangeSet(11, 1001, 0)), 1001L, 11L);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryTrackingCodec.writeAclChangeSets(out, aclChangeSets);
+        AclChangeSets decodedChangeSets = BinaryTrackingCodec.readAclChangeSets(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(2, decodedChangeSets.getAclChangeSets().get(0).getAclCount());
+        assertEquals(1001, decodedChangeSets.getAclChangeSets().get(1).getCommitTimeMs());
+        assertEquals(Long.valueOf(11), decodedChangeSets.getMaxChangeSetId());
+
+        List<Acl> acls = asList(new Acl(10, 100), new Acl(10, 101));
+        out.reset();
+        BinaryTrackingCodec.writeAcls(out, acls);
+        List<Acl> decodedAcls = BinaryTrackingCodec.readAcls(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(acls, decodedAcls);
+        assertEquals(10, decodedAcls.get(1).getAclChangeSetId());
+
+        List<AclReaders> readers = asList(
+                new AclReaders(100, asList("GROUP_EVERYONE", "admin"), Collections.emptyList(), 10, null),
+                new AclReaders(101, asList("GROUP_EVERYONE"), asList("admin"), 10, "acme"));
+        out.reset();
+        BinaryTrackingCodec.writeAclReaders(out, readers);
+        List<AclReaders> decodedReaders = BinaryTrackingCodec.readAclReaders(new ByteArrayInputStream(out.toByteArray()), "");
+        assertEquals(asList("GROUP_EVERYONE", "admin"), decodedReaders.get(0).getReaders());
+        assertEquals("", decodedReaders.get(0).getTenantDomain());
+        assertEquals(asList("admin"), decodedReaders.get(1).getDenied());
+        assertEquals("acme", decodedReaders.get(1).getTenantDomain());
+    }
+
+    @Test
+    public void nodesRoundTrip() throws IOException
+    {
+        Node updated = new Node();
+        updated.setId(1);
+        updated.setNodeRef(new NodeRef(StoreRef.STORE_REF_WORKSPACE_SPACESSTORE, "a").toString());
+        updated.setTxnId(5);
+        updated.setAclId(7);
+        updated.setStatus(Node.SolrApiNodeStatus.UPDATED);
+        updated.setShardPropertyValue("2020-01");
+        updated.setExplicitShardId(3);
+        Node deleted = new Node();
+        deleted.setId(2);
+        deleted.setStatus(Node.SolrApiNodeStatus.DELETED);
+        deleted.setTenant("acme");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryTrackingCodec.writeNodes(out, asList(updated, deleted));
+        List<Node> decoded = BinaryTrackingCodec.readNodes(new ByteArrayInputStream(out.toByteArray()));
+
+        assertEquals(updated.toString(), decoded.get(0).toString());
+        assertEquals(deleted.toString(), decoded.get(1).toString());
+        assertNull(decoded.get(1).getNodeRef());
+        assertNull(decoded.get(1).getExplicitShardId());
+    }
+
+    @Test
+    public void nodesMetaDataRoundTrip() throws IOException
+    {
+        QName name = QName.createQName(NAMESPACE, "name");
+        QName title = QName.createQName(NAMESPACE, "title");
+        QName content = QName.createQName(NAMESPACE, "content");
+        QName keywords = QName.createQName(NAMESPACE, "keywords");
+        QName contains = QName.createQName(NAMESPACE, "contains");
+
+        Map<QName, PropertyValue> properties = new HashMap<>();
+        properties.put(name, new StringPropertyValue("doc.txt"));
+        properties.put(title, new MLTextPropertyValue(Collections.singletonMap(Locale.UK, "A title")));
+        properties.put(content, new ContentPropertyValue(Locale.ENGLISH, 42, "UTF-8", "text/plain", 99L));
+        properties.put(keywords, new MultiPropertyValue(asList(new StringPropertyValue("k1"), null, new StringPropertyValue("k2"))));
+
+        NodeMetaData metaData = new NodeMetaData();
+        metaData.setId(12);
+        metaData.setTxnId(5);
+        metaData.setAclId(7);
+        metaData.setNodeRef(new NodeRef(StoreRef.STORE_REF_WORKSPACE_SPACESSTORE, "child"));
+        metaData.setType(QName.createQName(NAMESPACE, "content"));
+        metaData.setAspects(new HashSet<>(asList(QName.createQName(NAMESPACE, "titled"), QName.createQName(NAMESPACE, "auditable"))));
+        metaData.setProperties(properties);
+        metaData.setPaths(Collections.singletonList(new Pair<>("/{" + NAMESPACE + "}company_home", contains)));
+        metaData.setAncestorPaths(Collections.singletonList("/parent"));
+        metaData.setNamePaths(Collections.singletonList(asList("Company Home", "doc.txt")));
+        metaData.setAncestors(Collections.singleton(PARENT));
+        metaData.setParentAssocsCrc(-5);
+        metaData.setParentAssocs(Collections.singletonList(new ChildAssociationRef(contains, PARENT, name, metaData.getNodeRef(), true, 2)));
+        metaData.setChildIds(asList(13L, 14L));
+        metaData.setOwner("admin");
+
+        NodeMetaData sibling = new NodeMetaData();
+        sibling.setId(13);
+        sibling.setType(metaData.getType());
+        sibling.setAncestors(Collections.singleton(PARENT));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryTrackingCodec.writeNodesMetaData(out, asList(metaData, sibling));
+        List<NodeMetaData> decoded = BinaryTrackingCodec.readNodesMetaData(new ByteArrayInputStream(out.toByteArray()),
+                locale -> Locale.forLanguageTag(locale.replace('_', '-')), new TrackingInterner(100));
+
+        NodeMetaData first = decoded.get(0);
+        assertEquals(metaData.getNodeRef(), first.getNodeRef());
+        assertEquals(metaData.getType(), first.getType());
+        assertEquals(metaData.getAspects(), first.getAspects());
+        assertEquals(metaData.getPaths(), first.getPaths());
+        assertEquals(metaData.getAncestorPaths(), first.getAncestorPaths());
+        assertEquals(metaData.getNamePaths(), first.getNamePaths());
+        assertEquals(metaData.getAncestors(), first.getAncestors());
+        assertEquals(metaData.getParentAssocs(), first.getParentAssocs());
+        assertEquals(-5, first.getParentAssocsCrc());
+        assertNull(first.getChildAssocs());
+        assertEquals(metaData.getChildIds(), first.getChildIds());
+        assertEquals("admin", first.getOwner());
+        assertNull(first.getTenantDomain());
+
+        assertEquals("doc.txt", ((StringPropertyValue) first.getProperties().get(name)).getValue());
+        assertEquals("A title", ((MLTextPropertyValue) first.getProperties().get(title)).getValue(Locale.UK));
+        ContentPropertyValue decodedContent = (ContentPropertyValue) first.getProperties().get(content);
+        assertEquals(Locale.ENGLISH, decodedContent.getLocale());
+        assertEquals(42, decodedContent.getLength());
+        assertEquals("text/plain", decodedContent.getMimetype());
+        assertEquals(Long.valueOf(99), decodedContent.getId());
+        List<PropertyValue> decodedKeywords = ((MultiPropertyValue) first.getProperties().get(keywords)).getValues();
+        assertEquals(3, decodedKeywords.size());
+        assertNull(decodedKeywords.get(1));
+
+        NodeMetaData second = decoded.get(1);
+        assertEquals(13, second.getId());
+        assertTrue(first.getType() == second.getType());
+        assertSame(first.getAncestors(), second.getAncestors());
+        assertNull(second.getProperties());
+    }
+
+    @Test
+    public void unknownTrailingFieldsAreIgnored() throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryTrackingCodec.writeAcls(out, asList(new Acl(1, 2)));
+        byte[] payload = out.toByteArray();
+
+        // Version, record length (2 bytes: a longer record with an extra field), fields, end marker, empty footer
+        byte[] extended = { payload[0], 3, payload[2], payload[3], 0x7F, 0, 0 };
+        List<Acl> acls = BinaryTrackingCodec.readAcls(new ByteArrayInputStream(extended));
+        assertEquals(asList(new Acl(1, 2)), acls);
+    }
+
+    @Test(expected = EOFException.class)
+    public void truncatedPayload() throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryTrackingCodec.writeTransactions(out, new Transactions(asList(transaction(1, 2, 3, 4)), 2L, 1L));
+        byte[] payload = out.toByteArray();
+        BinaryTrackingCodec.readTransactions(new ByteArrayInputStream(Arrays.copyOf(payload, payload.length - 2)));
+    }
+
+    @Test(expected = IOException.class)
+    public void unsupportedVersion() throws IOException
+    {
+        BinaryTrackingCodec.readAcls(new ByteArrayInputStream(new byte[] { 9, 0, 0 }));
+    }
+
+    @Test
+    public void isBinary()
+    {
+        assertTrue(BinaryTrackingCodec.isBinary(BinaryTrackingCodec.CONTENT_TYPE));
+        assertTrue(BinaryTrackingCodec.isBinary(BinaryTrackingCodec.CONTENT_TYPE.toUpperCase() + "; charset=binary"));
+        assertFalse(BinaryTrackingCodec.isBinary("application/json;charset=UTF-8"));
+        assertFalse(BinaryTrackingCodec.isBinary(BinaryTrackingCodec.CONTENT_TYPE + "-v2"));
+        assertFalse(BinaryTrackingCodec.isBinary(null));
+    }
+
+    @Test
+    public void binaryPayloadIsNegotiated() throws Exception
+    {
+        Transactions transactions = new Transactions(asList(transaction(3, 300, 1, 1)), 300L, 3L);
+        MockTrackingEndpoint endpoint = new MockTrackingEndpoint(true)
+                .withTransactions(transactions)
+                .withAcls(asList(new Acl(1, 10)));
+
+        SOLRAPIClient client = client(endpoint);
+        client.setBinaryTransport(true);
+
+        assertEquals(transactions.getTransactions(), client.getTransactions(null, null, null, null, 10).getTransactions());
+        assertEquals(asList(new Acl(1, 10)), client.getAcls(asList(new AclChangeSet(1, 0, 1)), null, 10));
+        assertEquals(asList(BinaryTrackingCodec.ACCEPT, BinaryTrackingCodec.ACCEPT), endpoint.getAcceptHeaders());
+    }
+
+    @Test
+    public void jsonFallback() throws Exception
+    {
+        Transactions transactions = new Transactions(asList(transaction(3, 300, 1, 1), transaction(4, 400, 0, 2)), 400L, 4L);
+        MockTrackingEndpoint endpoint = new MockTrackingEndpoint(false)
+                .withTransactions(transactions)
+                .withAcls(asList(new Acl(1, 10), new Acl(1, 11)));
+
+        SOLRAPIClient client = client(endpoint);
+        client.setBinaryTransport(true);
+
+        Transactions decoded = client.getTransactions(null, null, null, null, 10);
+        assertEquals(transactions.getTransactions(), decoded.getTransactions());
+        assertEquals(Long.valueOf(4), decoded.getMaxTxnId());
+        assertEquals(asList(new Acl(1, 10), new Acl(1, 11)), client.getAcls(asList(new AclChangeSet(1, 0, 2)), null, 10));
+    }
+
+    @Test
+    public void binaryPayloadIsNotRequestedByDefault() throws Exception
+    {
+        MockTrackingEndpoint endpoint = new MockTrackingEndpoint(true).withAcls(asList(new Acl(1, 10)));
+
+        assertEquals(asList(new Acl(1, 10)), client(endpoint).getAcls(asList(new AclChangeSet(1, 0, 1)), null, 10));
+        assertEquals(Collections.singletonList(null), endpoint.getAcceptHeaders());
+    }
+
+    private SOLRAPIClient client(MockTrackingEndpoint endpoint) throws Exception
+    {
+        return new SOLRAPIClient(endpoint.httpClient(), mock(DictionaryService.class), mock(NamespaceDAO.class));
+    }
+
+    private Transaction transaction(long id, long commitTime, long updates, long deletes)
+    {
+        Transaction txn = new Transaction();
+        txn.setId(id);
+        txn.setCommitTimeMs(commitTime);
+        txn.setUpdates(updates);
+        txn.setDeletes(deletes);
+        return txn;
+    }
+}
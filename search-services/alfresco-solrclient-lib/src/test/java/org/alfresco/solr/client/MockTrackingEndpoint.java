@@ -0,0 +1,192 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.solr.client;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.alfresco.httpclient.AlfrescoHttpClient;
+import org.alfresco.httpclient.Request;
+import org.alfresco.httpclient.Response;
+import org.apache.http.HttpStatus;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * A local stand-in for the repository tracking endpoints (transactions, ACLs and node metadata), which answers with the binary
+ * payload when the request accepts it (and the endpoint supports it) or with JSON otherwise.
+ */
+class MockTrackingEndpoint
+{
+    private final boolean binarySupported;
+    private final List<String> acceptHeaders = new ArrayList<>();
+
+    private Transactions transactions;
+    private List<Acl> acls;
+    private List<NodeMetaData> nodesMetaData;
+    private String nodesMetaDataJSON;
+
+    MockTrackingEndpoint(boolean binarySupported)
+    {
+        this.binarySupported = binarySupported;
+    }
+
+    MockTrackingEndpoint withTransactions(Transactions transactions)
+    {
+        this.transactions = transactions;
+        return this;
+    }
+
+    MockTrackingEndpoint withAcls(List<Acl> acls)
+    {
+        this.acls = acls;
+        return this;
+    }
+
+    /**
+     * @param nodesMetaData the nodes served by the binary endpoint.
+     * @param json the same nodes, as served by the JSON endpoint.
+     */
+    MockTrackingEndpoint withNodesMetaData(List<NodeMetaData> nodesMetaData, String json)
+    {
+        this.nodesMetaData = nodesMetaData;
+        this.nodesMetaDataJSON = json;
+        return this;
+    }
+
+    /**
+     * @return the Accept header of each received request (null if missing).
+     */
+    List<String> getAcceptHeaders()
+    {
+        return acceptHeaders;
+    }
+
+    AlfrescoHttpClient httpClient() throws Exception
+    {
+        AlfrescoHttpClient httpClient = mock(AlfrescoHttpClient.class);
+        when(httpClient.sendRequest(any(Request.class))).thenAnswer(invocation -> respond(invocation.getArgument(0)));
+        return httpClient;
+    }
+
+    private Response respond(Request request) throws IOException
+    {
+        Map<String, String> headers = request.getHeaders();
+        String accept = headers == null ? null : headers.get("Accept");
+        acceptHeaders.add(accept);
+
+        boolean binary = binarySupported && accept != null && accept.contains(BinaryTrackingCodec.CONTENT_TYPE);
+        String uri = request.getFullUri();
+
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        if (uri.startsWith("api/solr/transactions"))
+        {
+            if (binary)
+            {
+                BinaryTrackingCodec.writeTransactions(payload, transactions);
+            }
+            else
+            {
+                payload.write(transactionsToJSON().getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        else if (uri.startsWith("api/solr/acls"))
+        {
+            if (binary)
+            {
+                BinaryTrackingCodec.writeAcls(payload, acls);
+            }
+            else
+            {
+                payload.write(aclsToJSON().getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        else if (uri.startsWith("api/solr/metadata"))
+        {
+            if (binary)
+            {
+                BinaryTrackingCodec.writeNodesMetaData(payload, nodesMetaData);
+            }
+            else
+            {
+                payload.write(nodesMetaDataJSON.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        else
+        {
+            throw new IllegalArgumentException("Unexpected request: " + uri);
+        }
+
+        Response response = mock(Response.class);
+        when(response.getStatus()).thenReturn(HttpStatus.SC_OK);
+        when(response.getContentType()).thenReturn(binary ? BinaryTrackingCodec.CONTENT_TYPE : "application/json;charset=UTF-8");
+        when(response.getContentAsStream()).thenReturn(new ByteArrayInputStream(payload.toByteArray()));
+        return response;
+    }
+
+    private String transactionsToJSON()
+    {
+        // The streaming JSON parser of the client relies on the field order
+        StringBuilder json = new StringBuilder("{\"transactions\":[");
+        for (Transaction txn : transactions.getTransactions())
+        {
+            json.append(json.charAt(json.length() - 1) == '[' ? "" : ",")
+                    .append("{\"id\":").append(txn.getId())
+                    .append(",\"commitTimeMs\":").append(txn.getCommitTimeMs())
+                    .append(",\"updates\":").append(txn.getUpdates())
+                    .append(",\"deletes\":").append(txn.getDeletes())
+                    .append("}");
+        }
+        return json.append("],\"maxTxnCommitTime\":").append(transactions.getMaxTxnCommitTime())
+                .append(",\"maxTxnId\":").append(transactions.getMaxTxnId())
+                .append("}").toString();
+    }
+
+    private String aclsToJSON()
+    {
+        JSONArray array = new JSONArray();
+        for (Acl acl : acls)
+        {
+            JSONObject json = new JSONObject();
+            json.put("aclChangeSetId", acl.getAclChangeSetId());
+            json.put("id", acl.getId());
+            array.put(json);
+        }
+        JSONObject json = new JSONObject();
+        json.put("acls", array);
+        return json.toString();
+    }
+}
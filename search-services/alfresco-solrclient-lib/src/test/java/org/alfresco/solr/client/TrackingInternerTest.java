@@ -0,0 +1,218 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.solr.client;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.alfresco.repo.dictionary.NamespaceDAO;
+import org.alfresco.service.cmr.dictionary.DictionaryService;
+import org.alfresco.service.cmr.repository.NodeRef;
+import org.alfresco.service.cmr.repository.StoreRef;
+import org.alfresco.service.namespace.QName;
+import org.junit.Test;
+
+/**
+ * Tests the {@link TrackingInterner} and the memory footprint of the node metadata batches which use it.
+ */
+public class TrackingInternerTest
+{
+    private static final String NAMESPACE = "http://www.alfresco.org/model/content/1.0";
+
+    @Test
+    public void qnamesAreParsedOnce()
+    {
+        TrackingInterner interner = new TrackingInterner(100);
+        AtomicInteger parsed = new AtomicInteger();
+
+        QName first = interner.qname("{" + NAMESPACE + "}name", source -> {
+            parsed.incrementAndGet();
+            return QName.createQName(source);
+        });
+        QName second = interner.qname("{" + NAMESPACE + "}name", source -> {
+            parsed.incrementAndGet();
+            return QName.createQName(source);
+        });
+
+        assertSame(first, second);
+        assertEquals(1, parsed.get());
+
+        // The same QName, decoded from a different source, is shared too
+        assertSame(first, interner.qname(QName.createQName(NAMESPACE, "name")));
+    }
+
+    @Test
+    public void nodeRefsAndStringsAreShared()
+    {
+        TrackingInterner interner = new TrackingInterner(100);
+        NodeRef nodeRef = interner.nodeRef("workspace://SpacesStore/folder");
+
+        assertSame(nodeRef, interner.nodeRef(new String("workspace://SpacesStore/folder")));
+        assertSame(nodeRef, interner.nodeRef(new NodeRef(StoreRef.STORE_REF_WORKSPACE_SPACESSTORE, "folder")));
+        assertSame(interner.string("/1/2"), interner.string(new String("/1/2")));
+    }
+
+    @Test
+    public void ancestorSetsAreSharedAndUnmodifiable()
+    {
+        TrackingInterner interner = new TrackingInterner(100);
+        NodeRef folder = interner.nodeRef("workspace://SpacesStore/folder");
+        NodeRef root = interner.nodeRef("workspace://SpacesStore/root");
+
+        Set<NodeRef> ancestors = interner.ancestors(new HashSet<>(asList(folder, root)));
+        assertSame(ancestors, interner.ancestors(new HashSet<>(asList(root, folder))));
+
+        try
+        {
+            ancestors.add(interner.nodeRef("workspace://SpacesStore/other"));
+            throw new AssertionError("Shared ancestor sets must be unmodifiable");
+        }
+        catch (UnsupportedOperationException expected)
+        {
+            // Expected
+        }
+    }
+
+    @Test
+    public void cachesAreBounded()
+    {
+        TrackingInterner interner = new TrackingInterner(2);
+        String a = interner.string(new String("a"));
+        interner.string("b");
+
+        assertSame(a, interner.string(new String("a")));
+
+        // The cache is full: it's cleared
+        interner.string("c");
+        assertNotSame(a, interner.string(new String("a")));
+    }
+
+    @Test
+    public void jsonBatchesShareRepeatedValues() throws Exception
+    {
+        assertBatchesShareRepeatedValues(false);
+    }
+
+    @Test
+    public void binaryBatchesShareRepeatedValues() throws Exception
+    {
+        assertBatchesShareRepeatedValues(true);
+    }
+
+    /**
+     * Measures the instances held by two batches of nodes in the same folder: the repeated values (type, aspect and
+     * property QNames, ancestors and ancestor paths) must be held once, no matter the number of nodes.
+     */
+    private void assertBatchesShareRepeatedValues(boolean binary) throws Exception
+    {
+        int batchSize = 500;
+        List<NodeMetaData> nodes = new ArrayList<>();
+        StringBuilder json = new StringBuilder("{\"nodes\":[");
+        for (int i = 0; i < batchSize; i++)
+        {
+            nodes.add(node(i));
+            json.append(i == 0 ? "" : ",").append(nodeJSON(i));
+        }
+        json.append("]}");
+
+        MockTrackingEndpoint endpoint = new MockTrackingEndpoint(true).withNodesMetaData(nodes, json.toString());
+        SOLRAPIClient client = new SOLRAPIClient(endpoint.httpClient(), mock(DictionaryService.class), mock(NamespaceDAO.class));
+        client.setBinaryTransport(binary);
+
+        List<NodeMetaData> batches = new ArrayList<>(client.getNodesMetaData(new NodeMetaDataParameters()));
+        batches.addAll(client.getNodesMetaData(new NodeMetaDataParameters()));
+        assertEquals(2 * batchSize, batches.size());
+
+        Set<Object> qnames = identitySet();
+        Set<Object> ancestorSets = identitySet();
+        Set<Object> ancestors = identitySet();
+        Set<Object> ancestorPaths = identitySet();
+        Set<Object> folderNames = identitySet();
+        for (NodeMetaData node : batches)
+        {
+            qnames.add(node.getType());
+            qnames.addAll(node.getAspects());
+            qnames.addAll(node.getProperties().keySet());
+            ancestorSets.add(node.getAncestors());
+            ancestors.addAll(node.getAncestors());
+            ancestorPaths.addAll(node.getAncestorPaths());
+            folderNames.addAll(node.getNamePaths().get(0).subList(0, 2));
+        }
+
+        // type, 2 aspects and 1 property
+        assertEquals(4, qnames.size());
+        assertEquals(1, ancestorSets.size());
+        assertEquals(2, ancestors.size());
+        assertEquals(1, ancestorPaths.size());
+        assertEquals(2, folderNames.size());
+    }
+
+    private static Set<Object> identitySet()
+    {
+        return Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+
+    private static NodeMetaData node(int i)
+    {
+        NodeMetaData node = new NodeMetaData();
+        node.setId(i);
+        node.setNodeRef(new NodeRef(StoreRef.STORE_REF_WORKSPACE_SPACESSTORE, "doc" + i));
+        node.setType(QName.createQName(NAMESPACE, "content"));
+        node.setAspects(new HashSet<>(asList(QName.createQName(NAMESPACE, "titled"), QName.createQName(NAMESPACE, "auditable"))));
+        node.setProperties(Collections.singletonMap(QName.createQName(NAMESPACE, "name"), new StringPropertyValue("doc" + i)));
+        node.setAncestors(new HashSet<>(asList(
+                new NodeRef(StoreRef.STORE_REF_WORKSPACE_SPACESSTORE, "root"),
+                new NodeRef(StoreRef.STORE_REF_WORKSPACE_SPACESSTORE, "folder"))));
+        node.setAncestorPaths(Collections.singletonList("/1/2"));
+        node.setNamePaths(Collections.singletonList(asList("Company Home", "Folder", "doc" + i)));
+        return node;
+    }
+
+    private static String nodeJSON(int i)
+    {
+        return "{\"id\":" + i
+                + ",\"nodeRef\":\"workspace://SpacesStore/doc" + i + "\""
+                + ",\"type\":\"{" + NAMESPACE + "}content\""
+                + ",\"aspects\":[\"{" + NAMESPACE + "}titled\",\"{" + NAMESPACE + "}auditable\"]"
+                + ",\"properties\":{\"{" + NAMESPACE + "}name\":\"doc" + i + "\"}"
+                + ",\"ancestors\":[\"workspace://SpacesStore/root\",\"workspace://SpacesStore/folder\"]"
+                + ",\"paths\":[{\"path\":\"/{" + NAMESPACE + "}doc" + i + "\",\"apath\":\"/1/2\"}]"
+                + ",\"namePaths\":[{\"namePath\":[\"Company Home\",\"Folder\",\"doc" + i + "\"]}]"
+                + "}";
+    }
+}